@@ -0,0 +1,65 @@
+package com.intsof.samples.entra.reactive;
+
+import com.intsof.samples.entra.adapter.ExternalIdTokenServiceAdapter;
+import com.intsof.samples.entra.adapter.UserAuthenticationServiceAdapter;
+import com.intsof.samples.entra.config.AuthRouteProperties;
+import com.intsof.samples.entra.config.HibernateConfig;
+import com.intsof.samples.entra.config.RateLimitRouteProperties;
+import com.intsof.samples.entra.config.RateLimitStoreConfig;
+import com.intsof.samples.entra.config.ShadowPolicyProperties;
+import com.intsof.samples.entra.config.SsoConfigProperties;
+import com.intsof.samples.entra.filter.BearerTokenPrecheck;
+import com.intsof.samples.entra.filter.ClientIpResolver;
+import com.intsof.samples.entra.repository.UserRepository;
+import com.intsof.samples.entra.service.AuditEventQueue;
+import com.intsof.samples.entra.service.AuditLoggingService;
+import com.intsof.samples.entra.service.ConcurrencyLimitingService;
+import com.intsof.samples.entra.service.CredentialStuffingDetector;
+import com.intsof.samples.entra.service.EntraIdService;
+import com.intsof.samples.entra.service.JwksKeyCache;
+import com.intsof.samples.entra.service.JwtService;
+import com.intsof.samples.entra.service.MsalClientRegistry;
+import com.intsof.samples.entra.service.RateLimitingService;
+import com.intsof.samples.entra.service.RouteRateLimitingService;
+import com.intsof.samples.entra.service.ShadowRateLimitingService;
+import com.intsof.samples.entra.service.TokenBlacklistService;
+import com.intsof.samples.entra.service.UserService;
+import com.intsof.samples.security.DatabaseSecurityProvider;
+import com.intsof.samples.security.EntraExternalIdSSOProvider;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.Map;
+
+/**
+ * Reactive (WebFlux on Netty) edition of the authentication pipeline.
+ *
+ * Token validation runs in a {@code WebFilter} and the login, refresh, logout, SSO and
+ * Entra endpoints are functional routes, on top of the same services as the servlet
+ * backend. Only the services are imported, not the backend's servlet filters and
+ * controllers. Configuration is the backend's {@code application.properties} with
+ * {@code reactive.properties} on top.
+ */
+@SpringBootApplication
+@EnableJpaRepositories(basePackageClasses = UserRepository.class)
+@Import({
+        HibernateConfig.class, RateLimitStoreConfig.class,
+        SsoConfigProperties.class, AuthRouteProperties.class, RateLimitRouteProperties.class, ShadowPolicyProperties.class,
+        JwtService.class, TokenBlacklistService.class, AuditLoggingService.class, AuditEventQueue.class,
+        RateLimitingService.class, RouteRateLimitingService.class, ShadowRateLimitingService.class,
+        ConcurrencyLimitingService.class, CredentialStuffingDetector.class,
+        UserService.class, UserAuthenticationServiceAdapter.class, DatabaseSecurityProvider.class,
+        EntraIdService.class, JwksKeyCache.class, MsalClientRegistry.class, ExternalIdTokenServiceAdapter.class, EntraExternalIdSSOProvider.class,
+        ClientIpResolver.class, BearerTokenPrecheck.class
+})
+public class ReactiveBackendApplication {
+    public static void main(String[] args) {
+        SpringApplication application = new SpringApplication(ReactiveBackendApplication.class);
+        application.setWebApplicationType(WebApplicationType.REACTIVE);
+        application.setDefaultProperties(Map.of("spring.config.name", "application,reactive"));
+        application.run(args);
+    }
+}
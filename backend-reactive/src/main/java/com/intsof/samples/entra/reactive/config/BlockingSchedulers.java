@@ -0,0 +1,144 @@
+package com.intsof.samples.entra.reactive.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded schedulers for the blocking calls of the reactive edition, so they never run
+ * on Netty's event loop threads.
+ *
+ * User store lookups (JPA) and MSAL calls get separate schedulers, so a slow identity
+ * provider cannot starve password logins and the other way round. Threads and queued
+ * tasks are both capped: a call beyond them fails right away with
+ * {@link RejectedExecutionException}, and a call not finished within the timeout with
+ * {@link TimeoutException}; handlers answer both with 503 and Retry-After.
+ *
+ * Audit lines, which go to a log file, are written by a single thread of their own, so
+ * they stay in order; when its queue is full a line is dropped and counted rather than
+ * holding up the event loop.
+ */
+@Component
+public class BlockingSchedulers {
+
+    private final Scheduler userLookup;
+    private final Scheduler msal;
+    private final Scheduler audit;
+    private final Duration timeout;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong auditDropped = new AtomicLong();
+
+    @Autowired
+    public BlockingSchedulers(@Value("${auth.reactive.user-lookup.threads:16}") int userLookupThreads,
+                              @Value("${auth.reactive.user-lookup.queue-capacity:200}") int userLookupQueueCapacity,
+                              @Value("${auth.reactive.msal.threads:8}") int msalThreads,
+                              @Value("${auth.reactive.msal.queue-capacity:100}") int msalQueueCapacity,
+                              @Value("${auth.reactive.audit.queue-capacity:10000}") int auditQueueCapacity,
+                              @Value("${auth.reactive.blocking-timeout-ms:10000}") long timeoutMillis) {
+        this.userLookup = Schedulers.newBoundedElastic(userLookupThreads, userLookupQueueCapacity, "user-lookup");
+        this.msal = Schedulers.newBoundedElastic(msalThreads, msalQueueCapacity, "msal");
+        this.audit = Schedulers.newBoundedElastic(1, auditQueueCapacity, "audit");
+        this.timeout = Duration.ofMillis(timeoutMillis);
+    }
+
+    /**
+     * Run a user store lookup, e.g. a password check
+     */
+    public <T> Mono<T> userLookup(Callable<T> call) {
+        return run(call, userLookup);
+    }
+
+    /**
+     * Run a call into MSAL or the identity provider
+     */
+    public <T> Mono<T> msal(Callable<T> call) {
+        return run(call, msal);
+    }
+
+    /**
+     * Await a call into MSAL that is already asynchronous, e.g. a code exchange running
+     * on MSAL's own executor; only the timeout applies, no scheduler thread is used
+     */
+    public <T> Mono<T> msalAsync(Supplier<? extends CompletionStage<? extends T>> call) {
+        return limit(Mono.fromCompletionStage(call));
+    }
+
+    /**
+     * Write an audit line in the background
+     */
+    public void audit(Runnable write) {
+        try {
+            audit.schedule(write);
+        } catch (RejectedExecutionException e) {
+            auditDropped.incrementAndGet();
+        }
+    }
+
+    private <T> Mono<T> run(Callable<T> call, Scheduler scheduler) {
+        return limit(Mono.fromCallable(call).subscribeOn(scheduler));
+    }
+
+    private <T> Mono<T> limit(Mono<T> call) {
+        return call
+                .timeout(timeout)
+                .doOnError(RejectedExecutionException.class, e -> rejected.incrementAndGet())
+                .doOnError(TimeoutException.class, e -> timedOut.incrementAndGet());
+    }
+
+    /**
+     * Get current statistics for monitoring
+     */
+    public BlockingStats getStats() {
+        return new BlockingStats(rejected.get(), timedOut.get(), auditDropped.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        userLookup.dispose();
+        msal.dispose();
+        // Let queued audit lines be written
+        audit.disposeGracefully().timeout(Duration.ofSeconds(5)).onErrorComplete().block();
+    }
+
+    /**
+     * Statistics class for monitoring
+     */
+    public static class BlockingStats {
+        private final long rejected;
+        private final long timedOut;
+        private final long auditDropped;
+
+        public BlockingStats(long rejected, long timedOut, long auditDropped) {
+            this.rejected = rejected;
+            this.timedOut = timedOut;
+            this.auditDropped = auditDropped;
+        }
+
+        // Getters
+        public long getRejected() { return rejected; }
+        public long getTimedOut() { return timedOut; }
+        public long getAuditDropped() { return auditDropped; }
+
+        @Override
+        public String toString() {
+            return "BlockingStats{" +
+                    "rejected=" + rejected +
+                    ", timedOut=" + timedOut +
+                    ", auditDropped=" + auditDropped +
+                    '}';
+        }
+    }
+}
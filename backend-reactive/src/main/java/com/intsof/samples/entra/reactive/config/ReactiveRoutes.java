@@ -0,0 +1,71 @@
+package com.intsof.samples.entra.reactive.config;
+
+import com.intsof.samples.entra.config.AuthRouteProperties;
+import com.intsof.samples.entra.reactive.handler.AuthCheckHandler;
+import com.intsof.samples.entra.reactive.handler.AuthHandler;
+import com.intsof.samples.entra.reactive.handler.EntraAuthHandler;
+import com.intsof.samples.entra.reactive.handler.SsoConfigHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.RequestPredicate;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.util.Locale;
+
+/**
+ * Functional routes of the reactive edition. Login, refresh and logout are mounted at
+ * the routes configured in {@code auth.routes.handlers.*}, like the servlet filter's
+ * handlers; the SSO and Entra endpoints at the servlet controllers' paths.
+ */
+@Configuration
+public class ReactiveRoutes {
+
+    @Bean
+    public RouterFunction<ServerResponse> authRoutes(AuthRouteProperties routeProperties, AuthHandler authHandler,
+                                                     AuthCheckHandler authCheckHandler, EntraAuthHandler entraAuthHandler,
+                                                     SsoConfigHandler ssoConfigHandler) {
+        RouterFunctions.Builder routes = RouterFunctions.route();
+        routeProperties.getHandlers().forEach((name, route) -> {
+            HandlerFunction<ServerResponse> handler;
+            switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "login":
+                    handler = authHandler::login;
+                    break;
+                case "refresh":
+                    handler = authHandler::refresh;
+                    break;
+                case "logout":
+                    handler = authHandler::logout;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown route handler '" + name + "'");
+            }
+            routes.route(predicate(route), handler);
+        });
+        return routes
+                .POST("/auth/check-method", authCheckHandler::checkAuthMethod)
+                .GET("/api/sso/config", ssoConfigHandler::getConfig)
+                .GET("/auth/entra/callback", entraAuthHandler::callback)
+                .POST("/auth/entra/validate", entraAuthHandler::validate)
+                .GET("/auth/entra/authorization-url", entraAuthHandler::authorizationUrl)
+                .build();
+    }
+
+    /**
+     * Predicate of a {@code [METHOD ]path} route
+     */
+    static RequestPredicate predicate(String route) {
+        String trimmed = route.trim();
+        int space = trimmed.indexOf(' ');
+        if (space < 0) {
+            return RequestPredicates.path(trimmed);
+        }
+        HttpMethod method = HttpMethod.valueOf(trimmed.substring(0, space).toUpperCase(Locale.ROOT));
+        return RequestPredicates.method(method).and(RequestPredicates.path(trimmed.substring(space + 1).trim()));
+    }
+}
@@ -0,0 +1,54 @@
+package com.intsof.samples.entra.reactive.filter;
+
+import com.intsof.samples.entra.filter.ClientIpResolver;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * Client IP address of an exchange, resolved once through {@link ClientIpResolver}
+ * and kept as an exchange attribute for the handlers.
+ */
+public final class ClientAddress {
+
+    public static final String ATTRIBUTE = ClientAddress.class.getName();
+
+    private ClientAddress() {
+    }
+
+    /**
+     * The client address, believing proxy headers only from trusted proxies
+     */
+    public static String of(ServerWebExchange exchange, ClientIpResolver resolver) {
+        String cached = exchange.getAttribute(ATTRIBUTE);
+        if (cached != null) {
+            return cached;
+        }
+
+        ServerHttpRequest request = exchange.getRequest();
+        String client = resolver.resolve(remoteAddress(request),
+                forwardedFor(request, resolver.getForwardedHeader()),
+                request.getHeaders().getFirst(ClientIpResolver.getRealIpHeader()));
+        if (client != null) {
+            exchange.getAttributes().put(ATTRIBUTE, client);
+        }
+        return client;
+    }
+
+    private static String remoteAddress(ServerHttpRequest request) {
+        InetSocketAddress peer = request.getRemoteAddress();
+        if (peer == null) return null;
+        return peer.getAddress() != null ? peer.getAddress().getHostAddress() : peer.getHostString();
+    }
+
+    /**
+     * The forwarded-for header; repeated headers are joined in order, as one list
+     */
+    private static String forwardedFor(ServerHttpRequest request, String header) {
+        List<String> values = request.getHeaders().get(header);
+        if (values == null || values.isEmpty()) return null;
+        return values.size() == 1 ? values.get(0) : String.join(",", values);
+    }
+}
@@ -0,0 +1,155 @@
+package com.intsof.samples.entra.reactive.filter;
+
+import com.intsof.samples.entra.audit.AuditEventType;
+import com.intsof.samples.entra.config.AuthRouteProperties;
+import com.intsof.samples.entra.filter.BearerTokenPrecheck;
+import com.intsof.samples.entra.filter.ClientIpResolver;
+import com.intsof.samples.entra.filter.RouteTable;
+import com.intsof.samples.entra.model.AuthenticatedPrincipal;
+import com.intsof.samples.entra.ratelimit.RateLimitDecision;
+import com.intsof.samples.entra.service.AuditEventQueue;
+import com.intsof.samples.entra.service.JwtService;
+import com.intsof.samples.entra.service.RouteRateLimitingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reactive port of the servlet {@code AuthenticationFilter}'s token validation.
+ *
+ * Applies the per-route request limits, then validates the bearer token of protected
+ * routes and stores the decoded {@link AuthenticatedPrincipal} as an exchange
+ * attribute. Everything here is in-memory work, so it runs on the event loop; audit
+ * events for rejected requests are handed to the {@link AuditEventQueue}, whose writer
+ * does the file I/O. Public and handler routes (login, refresh, logout) pass through
+ * to the functional routes.
+ */
+@Component
+public class ReactiveAuthenticationFilter implements WebFilter, Ordered {
+
+    /** After CORS, ahead of the routes */
+    public static final int ORDER = 0;
+
+    // Fixed response bodies, encoded once
+    private static final byte[] MISSING_AUTHORIZATION_BODY = "{\"error\":\"Missing Authorization header\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INVALID_TOKEN_BODY = "{\"error\":\"Invalid or expired token\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final JwtService jwtService;
+    private final AuditEventQueue auditEventQueue;
+    private final ClientIpResolver clientIpResolver;
+    private final BearerTokenPrecheck bearerTokenPrecheck;
+    private final RouteTable routeTable;
+
+    // Per-route request limits; optional so the filter can be constructed without them
+    @Autowired(required = false)
+    private RouteRateLimitingService routeRateLimitingService;
+
+    @Autowired
+    public ReactiveAuthenticationFilter(JwtService jwtService, AuditEventQueue auditEventQueue,
+                                        ClientIpResolver clientIpResolver, BearerTokenPrecheck bearerTokenPrecheck,
+                                        AuthRouteProperties routeProperties) {
+        this.jwtService = jwtService;
+        this.auditEventQueue = auditEventQueue;
+        this.clientIpResolver = clientIpResolver;
+        this.bearerTokenPrecheck = bearerTokenPrecheck;
+        this.routeTable = RouteTable.compile(routeProperties);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+        String method = request.getMethod().name();
+        String ipAddress = ClientAddress.of(exchange, clientIpResolver);
+
+        // Per-route request limits are applied before any token parsing or authentication work
+        if (routeRateLimitingService != null) {
+            RateLimitDecision decision = routeRateLimitingService.check(method, path, ipAddress, () -> username(request));
+            if (decision != null) {
+                advertiseQuota(exchange.getResponse(), decision);
+                if (!decision.isAllowed()) {
+                    return rejectRouteRateLimit(exchange.getResponse(), path, ipAddress, decision);
+                }
+            }
+        }
+
+        if (routeTable.lookup(method, path) != RouteTable.Action.PROTECTED) {
+            return chain.filter(exchange);
+        }
+
+        String authHeader = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            auditEventQueue.publish(AuditEventType.MISSING_AUTHORIZATION, ipAddress, path, null, 0);
+            return send(exchange.getResponse(), HttpStatus.UNAUTHORIZED, MISSING_AUTHORIZATION_BODY);
+        }
+
+        // Malformed tokens are turned away before they reach the JWT parser
+        BearerTokenPrecheck.Result precheck = bearerTokenPrecheck.check(authHeader, 7);
+        if (precheck != BearerTokenPrecheck.Result.VALID) {
+            auditEventQueue.publish(AuditEventType.MALFORMED_TOKEN, ipAddress, path, precheck.name(), 0);
+            return send(exchange.getResponse(), HttpStatus.UNAUTHORIZED, INVALID_TOKEN_BODY);
+        }
+
+        // Validate with blacklist check and keep the decoded identity for the handlers
+        AuthenticatedPrincipal principal = jwtService.authenticate(authHeader.substring(7));
+        if (principal == null) {
+            auditEventQueue.publish(AuditEventType.INVALID_TOKEN, ipAddress, path, null, 0);
+            return send(exchange.getResponse(), HttpStatus.UNAUTHORIZED, INVALID_TOKEN_BODY);
+        }
+        exchange.getAttributes().put(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, principal);
+        return chain.filter(exchange);
+    }
+
+    /**
+     * Advertise the remaining quota of a route rate limit decision
+     */
+    private static void advertiseQuota(ServerHttpResponse response, RateLimitDecision decision) {
+        HttpHeaders headers = response.getHeaders();
+        headers.set("RateLimit-Limit", String.valueOf(decision.getLimit()));
+        headers.set("RateLimit-Remaining", String.valueOf(decision.getRemaining()));
+        headers.set("RateLimit-Reset", String.valueOf(decision.getResetSeconds()));
+    }
+
+    private Mono<Void> rejectRouteRateLimit(ServerHttpResponse response, String path, String ipAddress,
+                                            RateLimitDecision decision) {
+        long waitTime = decision.getRetryAfterSeconds();
+        auditEventQueue.publish(AuditEventType.ROUTE_RATE_LIMITED, ipAddress, path, String.valueOf(decision.getScope()), waitTime);
+
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(waitTime));
+        String body = "{\"error\":\"Too many requests. Try again in " + waitTime + " seconds\",\"retryAfter\":" + waitTime + "}";
+        return send(response, HttpStatus.TOO_MANY_REQUESTS, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Username for user/domain scoped route policies: the login header, or the email parameter
+     */
+    private static String username(ServerHttpRequest request) {
+        String email = request.getHeaders().getFirst("X-Email");
+        return email != null ? email : request.getQueryParams().getFirst("email");
+    }
+
+    private static Mono<Void> send(ServerHttpResponse response, HttpStatus status, byte[] body) {
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().setContentLength(body.length);
+        DataBuffer buffer = response.bufferFactory().wrap(body);
+        return response.writeWith(Mono.just(buffer));
+    }
+}
@@ -0,0 +1,74 @@
+package com.intsof.samples.entra.reactive.handler;
+
+import com.intsof.samples.security.DatabaseSecurityProvider;
+import com.intsof.samples.security.EntraExternalIdSSOProvider;
+import com.intsof.samples.security.SecurityManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reactive port of {@code AuthCheckController}: tells the client whether an email's
+ * domain signs in with SSO or with a password. Domain lookup only, no I/O.
+ */
+@Component
+public class AuthCheckHandler {
+
+    private static final ParameterizedTypeReference<Map<String, String>> EMAIL_BODY = new ParameterizedTypeReference<>() {
+    };
+
+    private final SecurityManager securityManager;
+
+    @Autowired
+    public AuthCheckHandler(DatabaseSecurityProvider dbProvider, EntraExternalIdSSOProvider ssoProvider,
+                            @Value("${sso.enabled-domains}") List<String> ssoEnabledDomains) {
+        this.securityManager = new SecurityManager(dbProvider);
+        if (ssoEnabledDomains != null) {
+            ssoEnabledDomains.stream()
+                    .map(String::trim)
+                    .filter(domain -> !domain.isEmpty())
+                    .forEach(domain -> securityManager.registerProvider(domain.toLowerCase(), ssoProvider));
+        }
+    }
+
+    /**
+     * Check if user's domain requires SSO authentication; the email comes from the
+     * query parameter or a JSON body
+     */
+    public Mono<ServerResponse> checkAuthMethod(ServerRequest request) {
+        Mono<String> email = request.queryParam("email")
+                .map(Mono::just)
+                .orElseGet(() -> request.bodyToMono(EMAIL_BODY)
+                        .mapNotNull(body -> body.get("email"))
+                        .onErrorResume(e -> Mono.empty()));
+        return email
+                .filter(value -> !value.trim().isEmpty())
+                .flatMap(this::describe)
+                .switchIfEmpty(Mono.defer(() -> Responses.error(HttpStatus.BAD_REQUEST, "Email is required")));
+    }
+
+    private Mono<ServerResponse> describe(String email) {
+        boolean requiresSSO = securityManager.requiresSSO(email);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("email", email);
+        response.put("requiresSSO", requiresSSO);
+        response.put("authMethod", requiresSSO ? "SSO" : "PASSWORD");
+        if (requiresSSO) {
+            response.put("authorizationUrl", "/auth/entra/authorization-url");
+            response.put("message", "This email domain requires SSO authentication");
+        } else {
+            response.put("message", "Use password authentication");
+        }
+        return Responses.json(HttpStatus.OK, response);
+    }
+}
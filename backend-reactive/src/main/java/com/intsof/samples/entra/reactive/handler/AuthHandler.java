@@ -0,0 +1,297 @@
+package com.intsof.samples.entra.reactive.handler;
+
+import com.intsof.samples.entra.constants.ApplicationConstants;
+import com.intsof.samples.entra.dto.TokenResponse;
+import com.intsof.samples.entra.filter.ClientIpResolver;
+import com.intsof.samples.entra.ratelimit.RateLimitDecision;
+import com.intsof.samples.entra.reactive.config.BlockingSchedulers;
+import com.intsof.samples.entra.reactive.filter.ClientAddress;
+import com.intsof.samples.entra.service.AuditLoggingService;
+import com.intsof.samples.entra.service.ConcurrencyLimitingService;
+import com.intsof.samples.entra.service.CredentialStuffingDetector;
+import com.intsof.samples.entra.service.JwtService;
+import com.intsof.samples.entra.service.RateLimitingService;
+import com.intsof.samples.entra.service.ShadowRateLimitingService;
+import com.intsof.samples.entra.service.TokenBlacklistService;
+import com.intsof.samples.security.AuthenticationResult;
+import com.intsof.samples.security.DatabaseSecurityProvider;
+import com.intsof.samples.security.EntraExternalIdSSOProvider;
+import com.intsof.samples.security.SecurityManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reactive port of the servlet filter's login, refresh and logout handlers.
+ *
+ * Rate limits, lockouts and token work are in-memory and run on the event loop; the
+ * password check, which may hit the user store, goes to the bounded user lookup
+ * scheduler, and audit lines to the audit scheduler. Logins the user lookup scheduler
+ * has no room or time for get 503 with Retry-After.
+ */
+@Component
+public class AuthHandler {
+
+    private static final Map<String, Object> SSO_REDIRECT_BODY = ssoRedirectBody();
+
+    private final JwtService jwtService;
+    private final RateLimitingService rateLimitingService;
+    private final AuditLoggingService auditLoggingService;
+    private final TokenBlacklistService tokenBlacklistService;
+    private final ClientIpResolver clientIpResolver;
+    private final BlockingSchedulers blockingSchedulers;
+    private final SecurityManager securityManager;
+
+    // Bound on concurrent password checks; optional so the handler can be constructed without it
+    @Autowired(required = false)
+    private ConcurrencyLimitingService concurrencyLimitingService;
+
+    // Block list of IPs and usernames involved in credential stuffing; optional as well
+    @Autowired(required = false)
+    private CredentialStuffingDetector credentialStuffingDetector;
+
+    // Candidate login rate limit policies evaluated in dry-run mode; optional as well
+    @Autowired(required = false)
+    private ShadowRateLimitingService shadowRateLimitingService;
+
+    @Autowired
+    public AuthHandler(JwtService jwtService, RateLimitingService rateLimitingService,
+                       AuditLoggingService auditLoggingService, TokenBlacklistService tokenBlacklistService,
+                       ClientIpResolver clientIpResolver, BlockingSchedulers blockingSchedulers,
+                       DatabaseSecurityProvider dbProvider, EntraExternalIdSSOProvider ssoProvider,
+                       @Value("${sso.enabled-domains}") List<String> ssoEnabledDomains) {
+        this.jwtService = jwtService;
+        this.rateLimitingService = rateLimitingService;
+        this.auditLoggingService = auditLoggingService;
+        this.tokenBlacklistService = tokenBlacklistService;
+        this.clientIpResolver = clientIpResolver;
+        this.blockingSchedulers = blockingSchedulers;
+        this.securityManager = new SecurityManager(dbProvider);
+        if (ssoEnabledDomains != null) {
+            ssoEnabledDomains.stream()
+                    .map(String::trim)
+                    .filter(domain -> !domain.isEmpty())
+                    .forEach(domain -> securityManager.registerProvider(domain.toLowerCase(), ssoProvider));
+        }
+    }
+
+    /**
+     * Password login with the X-Email and X-Password headers
+     */
+    public Mono<ServerResponse> login(ServerRequest request) {
+        String email = request.headers().firstHeader("X-Email");
+        String password = request.headers().firstHeader("X-Password");
+        String ipAddress = ClientAddress.of(request.exchange(), clientIpResolver);
+
+        if (email == null) {
+            blockingSchedulers.audit(() -> auditLoggingService.logFailedAuth(null, ipAddress, "missing_email_header"));
+            return Responses.error(HttpStatus.BAD_REQUEST, ApplicationConstants.ERROR_EMAIL_HEADER_MISSING);
+        }
+
+        // Reject IPs and usernames blocked for credential stuffing
+        if (credentialStuffingDetector != null) {
+            long blockedFor = credentialStuffingDetector.getBlockedSeconds(ipAddress, email);
+            if (blockedFor > 0) {
+                observeShadowPolicies(ipAddress, email, false, null);
+                Map<String, Object> auditData = new HashMap<>();
+                auditData.put("waitTime", blockedFor);
+                blockingSchedulers.audit(() -> auditLoggingService.logRateLimitExceeded(email, ipAddress, "CREDENTIAL_STUFFING_BLOCK", auditData));
+                return Responses.retryLater(HttpStatus.TOO_MANY_REQUESTS, "Too many login attempts. Try again in", blockedFor, true);
+            }
+        }
+
+        // Reserve the attempt across all configured scopes; it counts as a failure until refunded
+        RateLimitDecision decision = rateLimitingService.acquire(ipAddress, email);
+        if (!decision.isAllowed()) {
+            observeShadowPolicies(ipAddress, email, false, null);
+            long waitTime = decision.getRetryAfterSeconds();
+
+            Map<String, Object> auditData = new HashMap<>();
+            auditData.put("scope", decision.getScope());
+            auditData.put("waitTime", waitTime);
+            blockingSchedulers.audit(() -> auditLoggingService.logRateLimitExceeded(email, ipAddress, "LOGIN_RATE_LIMIT", auditData));
+            return Responses.retryLater(HttpStatus.TOO_MANY_REQUESTS, "Too many login attempts. Try again in", waitTime, true);
+        }
+
+        // Shed the login before it queues for a password check if capacity is exhausted
+        if (concurrencyLimitingService != null && !concurrencyLimitingService.tryAcquire()) {
+            rateLimitingService.refund(ipAddress, email);
+            observeShadowPolicies(ipAddress, email, true, null);
+            long waitTime = concurrencyLimitingService.getRetryAfterSeconds();
+
+            Map<String, Object> auditData = new HashMap<>();
+            auditData.put("concurrencyLimit", concurrencyLimitingService.getStats().getLimit());
+            auditData.put("waitTime", waitTime);
+            blockingSchedulers.audit(() -> auditLoggingService.logAuthEvent("LOGIN_SHED", email, ipAddress, auditData));
+            return Responses.retryLater(HttpStatus.SERVICE_UNAVAILABLE, "Server busy. Try again in", waitTime, true);
+        }
+
+        long authStart = System.nanoTime();
+        Mono<AuthenticationResult> authentication = blockingSchedulers.userLookup(() -> securityManager.authenticate(email, password));
+        if (concurrencyLimitingService != null) {
+            authentication = authentication.doFinally(signal ->
+                    concurrencyLimitingService.release(authStart, signal == SignalType.ON_COMPLETE));
+        }
+        return authentication
+                .doOnError(e -> {
+                    rateLimitingService.refund(ipAddress, email);
+                    observeShadowPolicies(ipAddress, email, true, null);
+                })
+                .flatMap(result -> loginResult(result, email, ipAddress))
+                .onErrorResume(RejectedExecutionException.class, e -> busy(request, ipAddress, "queue_full"))
+                .onErrorResume(TimeoutException.class, e -> busy(request, ipAddress, "timeout"));
+    }
+
+    private Mono<ServerResponse> loginResult(AuthenticationResult result, String email, String ipAddress) {
+        if (result.isSuccess()) {
+            // Give back the reserved attempt and reset rate limiting on successful authentication
+            rateLimitingService.refund(ipAddress, email);
+            rateLimitingService.resetCounters(ipAddress, email);
+            observeShadowPolicies(ipAddress, email, true, true);
+
+            String accessToken = jwtService.generateToken(email, result.getRoles(), null);
+            String refreshToken = jwtService.generateRefreshToken(email);
+            TokenResponse tokenResponse = new TokenResponse(accessToken, refreshToken, 3600, email, result.getRoles());
+
+            Map<String, Object> auditData = new HashMap<>();
+            auditData.put("roles", result.getRoles());
+            auditData.put("authMethod", "PASSWORD");
+            blockingSchedulers.audit(() -> auditLoggingService.logSuccessfulAuth(email, ipAddress, "PASSWORD", auditData));
+            return Responses.tokens(tokenResponse);
+        }
+
+        // User needs to authenticate via SSO OAuth flow; 401 for backward compatibility
+        if (result.getMessage() != null && result.getMessage().startsWith("SSO_REDIRECT_REQUIRED")) {
+            rateLimitingService.refund(ipAddress, email);
+            Map<String, Object> auditData = new HashMap<>();
+            auditData.put("reason", "sso_redirect_required");
+            auditData.put("authMethod", "SSO");
+            blockingSchedulers.audit(() -> auditLoggingService.logAuthEvent("SSO_REDIRECT_REQUIRED", email, ipAddress, auditData));
+            return Responses.json(HttpStatus.UNAUTHORIZED, SSO_REDIRECT_BODY);
+        }
+
+        // Keep the reserved attempt as a failure for rate limiting
+        rateLimitingService.confirmFailedAttempt(ipAddress, email);
+        observeShadowPolicies(ipAddress, email, true, false);
+        if (credentialStuffingDetector != null) {
+            credentialStuffingDetector.recordFailure(ipAddress, email);
+        }
+        blockingSchedulers.audit(() -> auditLoggingService.logFailedAuth(email, ipAddress, "invalid_credentials"));
+        return Responses.error(HttpStatus.UNAUTHORIZED, ApplicationConstants.ERROR_INVALID_CREDENTIALS);
+    }
+
+    /**
+     * Refresh token rotation with family tracking, using the X-Refresh-Token header
+     */
+    public Mono<ServerResponse> refresh(ServerRequest request) {
+        String refreshToken = request.headers().firstHeader("X-Refresh-Token");
+        String ipAddress = ClientAddress.of(request.exchange(), clientIpResolver);
+
+        if (refreshToken == null) {
+            blockingSchedulers.audit(() -> auditLoggingService.logTokenRefresh(null, ipAddress, false, Map.of("reason", "missing_refresh_token")));
+            return Responses.error(HttpStatus.UNAUTHORIZED, "Missing refresh token");
+        }
+
+        JwtService.RefreshTokenResult refreshResult = jwtService.refreshTokenWithRotation(refreshToken);
+        String username = subjectOf(refreshToken);
+
+        if (refreshResult.isSuccess()) {
+            Map<String, Object> auditData = new HashMap<>();
+            auditData.put("tokenRotated", true);
+            blockingSchedulers.audit(() -> auditLoggingService.logTokenRefresh(username, ipAddress, true, auditData));
+            return Responses.tokens(new TokenResponse(
+                    refreshResult.getAccessToken(), refreshResult.getRefreshToken(), 3600, username, null));
+        }
+
+        String errorCode = refreshResult.getErrorCode();
+        Map<String, Object> auditData = new HashMap<>();
+        auditData.put("errorCode", errorCode);
+        auditData.put("reason", refreshResult.getMessage());
+
+        // Log security threats
+        if ("TOKEN_THEFT_DETECTED".equals(errorCode) || "TOKEN_FAMILY_NOT_FOUND".equals(errorCode)) {
+            blockingSchedulers.audit(() -> auditLoggingService.logSecurityThreat("TOKEN_THEFT", username, ipAddress,
+                    "Refresh token reuse detected - possible token theft"));
+        }
+        blockingSchedulers.audit(() -> auditLoggingService.logTokenRefresh(username, ipAddress, false, auditData));
+        return Responses.error(HttpStatus.UNAUTHORIZED, refreshResult.getMessage());
+    }
+
+    /**
+     * Logout, blacklisting the bearer access token if there is one
+     */
+    public Mono<ServerResponse> logout(ServerRequest request) {
+        String authHeader = request.headers().firstHeader(HttpHeaders.AUTHORIZATION);
+        String ipAddress = ClientAddress.of(request.exchange(), clientIpResolver);
+        String username = null;
+
+        try {
+            if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                String accessToken = authHeader.substring(7);
+                username = jwtService.parseToken(accessToken).getSubject();
+                tokenBlacklistService.blacklistToken(accessToken, new Date(System.currentTimeMillis() + 3600000));
+            }
+            auditLogout(username, ipAddress, null);
+            return Responses.json(HttpStatus.OK, Map.of("message", "Logout successful"));
+        } catch (Exception e) {
+            auditLogout(username, ipAddress, Map.of("error", "token_parsing_failed"));
+            return Responses.json(HttpStatus.OK, Map.of("message", "Logout completed"));
+        }
+    }
+
+    private void auditLogout(String username, String ipAddress, Map<String, Object> additionalData) {
+        blockingSchedulers.audit(() -> auditLoggingService.logLogout(username, ipAddress, additionalData));
+    }
+
+    /**
+     * Reject a login the user lookup scheduler has no room or time for
+     */
+    private Mono<ServerResponse> busy(ServerRequest request, String ipAddress, String reason) {
+        Map<String, Object> auditData = new HashMap<>();
+        auditData.put("path", request.path());
+        auditData.put("reason", reason);
+        blockingSchedulers.audit(() -> auditLoggingService.logAuthEvent("AUTH_REQUEST_SHED", null, ipAddress, auditData));
+        return Responses.retryLater(HttpStatus.SERVICE_UNAVAILABLE, "Server busy. Try again in", 1, true);
+    }
+
+    /**
+     * Report a login attempt and the enforcing decision to the shadow policies, if any
+     */
+    private void observeShadowPolicies(String ipAddress, String email, boolean allowed, Boolean success) {
+        if (shadowRateLimitingService != null) {
+            shadowRateLimitingService.observe(ipAddress, email, allowed, success);
+        }
+    }
+
+    private String subjectOf(String token) {
+        try {
+            return jwtService.parseToken(token).getSubject();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Object> ssoRedirectBody() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", "SSO_REDIRECT_REQUIRED");
+        body.put("requiresSSO", true);
+        body.put("authMethod", "SSO");
+        body.put("authorizationUrl", "/auth/entra/authorization-url");
+        body.put("message", "This email domain requires SSO authentication. Please use the authorization URL to authenticate.");
+        return body;
+    }
+}
@@ -0,0 +1,150 @@
+package com.intsof.samples.entra.reactive.handler;
+
+import com.intsof.samples.entra.dto.TokenResponse;
+import com.intsof.samples.entra.reactive.config.BlockingSchedulers;
+import com.intsof.samples.entra.service.JwtService;
+import com.intsof.samples.security.AuthenticationResult;
+import com.intsof.samples.security.EntraExternalIdSSOProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reactive port of {@code EntraAuthController}: the Microsoft Entra External ID OAuth flow.
+ * Token validation goes through the identity provider, so it runs on the bounded MSAL
+ * scheduler; the code exchange already runs on MSAL's own executor and is only awaited.
+ */
+@Component
+public class EntraAuthHandler {
+
+    private static final String WELCOME_PAGE = "https://localhost:4200/ssowelcome";
+
+    private final EntraExternalIdSSOProvider entraProvider;
+    private final JwtService jwtService;
+    private final BlockingSchedulers blockingSchedulers;
+    private final String clientId;
+    private final String authorizationUri;
+    private final String redirectUri;
+
+    @Autowired
+    public EntraAuthHandler(EntraExternalIdSSOProvider entraProvider, JwtService jwtService,
+                            BlockingSchedulers blockingSchedulers,
+                            @Value("${sso.registration.azure.client-id}") String clientId,
+                            @Value("${sso.provider.azure.authorization-uri:https://login.microsoftonline.com/}") String authorizationUri,
+                            @Value("${sso.registration.azure.redirect-uri}") String redirectUri) {
+        this.entraProvider = entraProvider;
+        this.jwtService = jwtService;
+        this.blockingSchedulers = blockingSchedulers;
+        this.clientId = clientId;
+        this.authorizationUri = authorizationUri;
+        this.redirectUri = redirectUri;
+    }
+
+    /**
+     * Handle the OAuth callback from Entra External ID and redirect to the frontend
+     */
+    public Mono<ServerResponse> callback(ServerRequest request) {
+        String code = request.queryParam("code").orElse(null);
+        String state = request.queryParam("state").orElse(null);
+        String sessionState = request.queryParam("session_state").orElse(null);
+        if (code == null || state == null || sessionState == null) {
+            return Responses.error(HttpStatus.BAD_REQUEST, "Missing code, state or session_state parameter");
+        }
+
+        return blockingSchedulers.msalAsync(() -> entraProvider.authenticateWithAuthorizationCodeAsync(code, redirectUri))
+                .map(result -> result.isSuccess()
+                        ? welcome(code, state, sessionState, result.getUserId(), "")
+                        : welcome(code, state, sessionState, "", result.getMessage()))
+                .onErrorResume(e -> Mono.just(welcome(code, state, sessionState, "",
+                        "OAuth callback processing failed: " + e.getMessage())))
+                .flatMap(location -> ServerResponse.status(HttpStatus.FOUND).location(location).build());
+    }
+
+    /**
+     * Validate an existing Entra ID token and issue application tokens for it
+     */
+    public Mono<ServerResponse> validate(ServerRequest request) {
+        String authHeader = request.headers().firstHeader(HttpHeaders.AUTHORIZATION);
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return Responses.error(HttpStatus.BAD_REQUEST, "Missing or invalid Authorization header");
+        }
+
+        String token = authHeader.substring(7);
+        return blockingSchedulers.msal(() -> entraProvider.validateEntraToken(token))
+                .flatMap(this::issueTokens)
+                .onErrorResume(RejectedExecutionException.class, e -> busy())
+                .onErrorResume(TimeoutException.class, e -> busy())
+                .onErrorResume(e -> Responses.error(HttpStatus.INTERNAL_SERVER_ERROR, "Token validation failed: " + e.getMessage()));
+    }
+
+    /**
+     * Get the Entra ID authorization URL for the frontend
+     */
+    public Mono<ServerResponse> authorizationUrl(ServerRequest request) {
+        String clientRedirectUri = request.queryParam("redirect_uri").orElse(null);
+        if (clientRedirectUri == null) {
+            return Responses.error(HttpStatus.BAD_REQUEST, "Missing redirect_uri parameter");
+        }
+        String state = request.queryParam("state").orElse(null);
+        return Responses.json(HttpStatus.OK, Map.of("authorization_url", buildAuthorizationUrl(clientRedirectUri, state)));
+    }
+
+    private Mono<ServerResponse> issueTokens(AuthenticationResult result) {
+        if (!result.isSuccess()) {
+            return Responses.error(HttpStatus.UNAUTHORIZED, result.getMessage());
+        }
+        String accessToken = jwtService.generateToken(result.getUserId(), result.getRoles(), null);
+        String refreshToken = jwtService.generateRefreshToken(result.getUserId());
+        return Responses.json(HttpStatus.OK,
+                new TokenResponse(accessToken, refreshToken, 3600, result.getUserId(), result.getRoles()));
+    }
+
+    private static Mono<ServerResponse> busy() {
+        return Responses.retryLater(HttpStatus.SERVICE_UNAVAILABLE, "Server busy. Try again in", 1, true);
+    }
+
+    /**
+     * The frontend's SSO welcome page with the outcome of the callback, query values encoded
+     */
+    private static URI welcome(String code, String state, String sessionState, String userId, String error) {
+        return UriComponentsBuilder.fromUriString(WELCOME_PAGE)
+                .queryParam("code", code)
+                .queryParam("state", state)
+                .queryParam("session_state", sessionState)
+                .queryParam("userid", userId)
+                .queryParam("error", error)
+                .encode()
+                .build()
+                .toUri();
+    }
+
+    /**
+     * Build authorization URL for Entra External ID
+     */
+    private String buildAuthorizationUrl(String clientRedirectUri, String state) {
+        StringBuilder url = new StringBuilder();
+        url.append(authorizationUri);
+        if (!authorizationUri.endsWith("/")) {
+            url.append("/");
+        }
+        url.append("?client_id=").append(clientId);
+        url.append("&response_type=code");
+        url.append("&redirect_uri=").append(clientRedirectUri);
+        url.append("&scope=openid%20profile%20email");
+        if (state != null && !state.isEmpty()) {
+            url.append("&state=").append(state);
+        }
+        return url.toString();
+    }
+}
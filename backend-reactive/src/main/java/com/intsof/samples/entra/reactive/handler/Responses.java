@@ -0,0 +1,61 @@
+package com.intsof.samples.entra.reactive.handler;
+
+import com.intsof.samples.entra.dto.TokenResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JSON responses of the reactive handlers, shaped like the servlet edition's
+ */
+final class Responses {
+
+    private Responses() {
+    }
+
+    static Mono<ServerResponse> json(HttpStatus status, Object body) {
+        return ServerResponse.status(status).contentType(MediaType.APPLICATION_JSON).bodyValue(body);
+    }
+
+    /**
+     * {@code {"error": message}}
+     */
+    static Mono<ServerResponse> error(HttpStatus status, String message) {
+        return json(status, Map.of("error", message));
+    }
+
+    /**
+     * A rejection telling the client when to retry, optionally with a Retry-After header
+     */
+    static Mono<ServerResponse> retryLater(HttpStatus status, String message, long waitTime, boolean retryAfterHeader) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", message + " " + waitTime + " seconds");
+        body.put("retryAfter", waitTime);
+        ServerResponse.BodyBuilder builder = ServerResponse.status(status).contentType(MediaType.APPLICATION_JSON);
+        if (retryAfterHeader) {
+            builder.header(HttpHeaders.RETRY_AFTER, String.valueOf(waitTime));
+        }
+        return builder.bodyValue(body);
+    }
+
+    /**
+     * Tokens as JSON; roles are left out when there are none, as in the servlet edition
+     */
+    static Mono<ServerResponse> tokens(TokenResponse tokenResponse) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("accessToken", tokenResponse.getAccessToken());
+        body.put("refreshToken", tokenResponse.getRefreshToken());
+        body.put("tokenType", tokenResponse.getTokenType());
+        body.put("expiresIn", tokenResponse.getExpiresIn());
+        body.put("username", tokenResponse.getUsername());
+        if (tokenResponse.getRoles() != null) {
+            body.put("roles", tokenResponse.getRoles());
+        }
+        return json(HttpStatus.OK, body);
+    }
+}
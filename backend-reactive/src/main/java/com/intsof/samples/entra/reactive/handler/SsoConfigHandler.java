@@ -0,0 +1,30 @@
+package com.intsof.samples.entra.reactive.handler;
+
+import com.intsof.samples.entra.config.SsoConfigProperties;
+import com.intsof.samples.entra.controller.SsoConfigController;
+import com.intsof.samples.entra.dto.SsoConfigDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive port of {@code SsoConfigController}. The configuration does not change at
+ * runtime, so it is described once.
+ */
+@Component
+public class SsoConfigHandler {
+
+    private final SsoConfigDto config;
+
+    @Autowired
+    public SsoConfigHandler(SsoConfigProperties props) {
+        this.config = SsoConfigController.describe(props);
+    }
+
+    public Mono<ServerResponse> getConfig(ServerRequest request) {
+        return Responses.json(HttpStatus.OK, config);
+    }
+}
@@ -0,0 +1,46 @@
+package com.intsof.samples.entra.reactive.filter;
+
+import com.intsof.samples.entra.filter.ClientIpResolver;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ClientAddressTest {
+    private final ClientIpResolver resolver = new ClientIpResolver(List.of("10.0.0.0/8"), "X-Forwarded-For");
+
+    @Test
+    public void testForwardedHeaderFromTrustedProxy() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/")
+                .remoteAddress(new InetSocketAddress("10.0.0.2", 40000))
+                .header("X-Forwarded-For", "203.0.113.9, 198.51.100.7")
+                .header("X-Forwarded-For", "10.0.0.1"));
+
+        // Walked from the right across both headers: 10.0.0.1 is trusted, 198.51.100.7 is the client
+        assertEquals("198.51.100.7", ClientAddress.of(exchange, resolver));
+        assertEquals("198.51.100.7", exchange.getAttribute(ClientAddress.ATTRIBUTE));
+    }
+
+    @Test
+    public void testHeadersIgnoredFromUntrustedPeer() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/")
+                .remoteAddress(new InetSocketAddress("192.0.2.10", 40000))
+                .header("X-Forwarded-For", "203.0.113.9")
+                .header("X-Real-IP", "203.0.113.9"));
+
+        assertEquals("192.0.2.10", ClientAddress.of(exchange, resolver));
+    }
+
+    @Test
+    public void testRealIpWithoutForwardedHeader() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/")
+                .remoteAddress(new InetSocketAddress("10.1.2.3", 40000))
+                .header("X-Real-IP", " 203.0.113.9 "));
+
+        assertEquals("203.0.113.9", ClientAddress.of(exchange, resolver));
+    }
+}
@@ -0,0 +1,139 @@
+package com.intsof.samples.entra.reactive.filter;
+
+import com.intsof.samples.entra.config.AuthRouteProperties;
+import com.intsof.samples.entra.filter.BearerTokenPrecheck;
+import com.intsof.samples.entra.filter.ClientIpResolver;
+import com.intsof.samples.entra.model.AuthenticatedPrincipal;
+import com.intsof.samples.entra.service.AuditEventQueue;
+import com.intsof.samples.entra.service.AuditLoggingService;
+import com.intsof.samples.entra.service.JwtService;
+import com.intsof.samples.entra.service.TokenBlacklistService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReactiveAuthenticationFilterTest {
+    private JwtService jwtService;
+    private TokenBlacklistService tokenBlacklistService;
+    private AuditEventQueue auditEventQueue;
+    private WebTestClient client;
+    // Threads rejections were audited on
+    private final List<String> auditThreads = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        tokenBlacklistService = new TokenBlacklistService();
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secret", "0123456789abcdef0123456789abcdef");
+        ReflectionTestUtils.setField(jwtService, "expiration", 3600000L);
+        ReflectionTestUtils.setField(jwtService, "refreshExpiration", 86400000L);
+        ReflectionTestUtils.setField(jwtService, "issuer", "test-issuer");
+        ReflectionTestUtils.setField(jwtService, "tokenBlacklistService", tokenBlacklistService);
+
+        AuditLoggingService auditLoggingService = new AuditLoggingService() {
+            @Override
+            public boolean isAuditEnabled() {
+                return true;
+            }
+
+            @Override
+            public void logAuthEvent(String eventType, String username, String ipAddress, Map<String, Object> eventData,
+                                     long timestamp) {
+                auditThreads.add(Thread.currentThread().getName());
+            }
+        };
+        auditEventQueue = new AuditEventQueue(auditLoggingService, true, 64, 1);
+        ReactiveAuthenticationFilter filter = new ReactiveAuthenticationFilter(jwtService, auditEventQueue,
+                ClientIpResolver.defaults(), BearerTokenPrecheck.defaults(), new AuthRouteProperties());
+
+        // Echo the authenticated subject, or "anonymous" on public routes
+        client = WebTestClient.bindToRouterFunction(RouterFunctions.route()
+                        .GET("/api/**", request -> ServerResponse.ok().bodyValue(request
+                                .attribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE)
+                                .map(principal -> ((AuthenticatedPrincipal) principal).getSubject())
+                                .orElse("anonymous")))
+                        .build())
+                .webFilter(filter)
+                .build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        auditEventQueue.shutdown();
+    }
+
+    @Test
+    public void testValidTokenPassesWithPrincipal() {
+        String token = jwtService.generateToken("testuser", List.of("USER"), null);
+
+        client.get().uri("/api/profile").header("Authorization", "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("testuser");
+    }
+
+    @Test
+    public void testMissingAuthorizationHeader() {
+        client.get().uri("/api/profile")
+                .exchange()
+                .expectStatus().isUnauthorized()
+                .expectBody().jsonPath("$.error").isEqualTo("Missing Authorization header");
+
+        // Audited by the queue's writer, not on the event loop
+        auditEventQueue.shutdown();
+        assertEquals(List.of("audit-writer"), auditThreads);
+    }
+
+    @Test
+    public void testMalformedAndInvalidTokens() {
+        client.get().uri("/api/profile").header("Authorization", "Bearer not-a-jwt")
+                .exchange()
+                .expectStatus().isUnauthorized()
+                .expectBody().jsonPath("$.error").isEqualTo("Invalid or expired token");
+
+        String forged = jwtService.generateToken("testuser", List.of("USER"), null);
+        forged = forged.substring(0, forged.length() - 2) + (forged.endsWith("AA") ? "BB" : "AA");
+        client.get().uri("/api/profile").header("Authorization", "Bearer " + forged)
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    public void testBlacklistedTokenIsRejected() {
+        String token = jwtService.generateToken("testuser", List.of("USER"), null);
+        tokenBlacklistService.blacklistToken(token, new Date(System.currentTimeMillis() + 60_000));
+
+        client.get().uri("/api/profile").header("Authorization", "Bearer " + token)
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    public void testPublicRoutePassesWithoutToken() {
+        AuthRouteProperties routes = new AuthRouteProperties();
+        routes.setPublicPaths(List.of("GET /api/sso/config"));
+        ReactiveAuthenticationFilter filter = new ReactiveAuthenticationFilter(jwtService, auditEventQueue,
+                ClientIpResolver.defaults(), BearerTokenPrecheck.defaults(), routes);
+        WebTestClient publicClient = WebTestClient.bindToRouterFunction(RouterFunctions.route()
+                        .GET("/api/sso/config", request -> ServerResponse.ok().bodyValue("config"))
+                        .build())
+                .webFilter(filter)
+                .build();
+
+        publicClient.get().uri("/api/sso/config")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("config");
+    }
+}
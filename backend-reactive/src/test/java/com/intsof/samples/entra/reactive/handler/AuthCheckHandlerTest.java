@@ -0,0 +1,59 @@
+package com.intsof.samples.entra.reactive.handler;
+
+import com.intsof.samples.security.DatabaseSecurityProvider;
+import com.intsof.samples.security.EntraExternalIdSSOProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+
+public class AuthCheckHandlerTest {
+    private WebTestClient client;
+
+    @BeforeEach
+    public void setup() {
+        AuthCheckHandler handler = new AuthCheckHandler(mock(DatabaseSecurityProvider.class),
+                mock(EntraExternalIdSSOProvider.class), List.of("example.com", "test.org"));
+        client = WebTestClient.bindToRouterFunction(RouterFunctions.route()
+                        .POST("/auth/check-method", handler::checkAuthMethod)
+                        .build())
+                .build();
+    }
+
+    @Test
+    public void testCheckAuthMethod_withSSODomain() {
+        client.post().uri("/auth/check-method?email=user@example.com")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.authMethod").isEqualTo("SSO")
+                .jsonPath("$.requiresSSO").isEqualTo(true)
+                .jsonPath("$.authorizationUrl").isEqualTo("/auth/entra/authorization-url");
+    }
+
+    @Test
+    public void testCheckAuthMethod_emailInRequestBody() {
+        client.post().uri("/auth/check-method")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("email", "user@otherdomain.com"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.authMethod").isEqualTo("PASSWORD")
+                .jsonPath("$.message").isEqualTo("Use password authentication");
+    }
+
+    @Test
+    public void testCheckAuthMethod_missingEmail() {
+        client.post().uri("/auth/check-method")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.error").isEqualTo("Email is required");
+    }
+}
@@ -0,0 +1,191 @@
+package com.intsof.samples.entra.reactive.handler;
+
+import com.intsof.samples.entra.config.AuthRouteProperties;
+import com.intsof.samples.entra.dto.TokenResponse;
+import com.intsof.samples.entra.filter.ClientIpResolver;
+import com.intsof.samples.entra.reactive.config.BlockingSchedulers;
+import com.intsof.samples.entra.reactive.config.ReactiveRoutes;
+import com.intsof.samples.entra.service.AuditLoggingService;
+import com.intsof.samples.entra.service.JwtService;
+import com.intsof.samples.entra.service.RateLimitingService;
+import com.intsof.samples.entra.service.TokenBlacklistService;
+import com.intsof.samples.security.DatabaseSecurityProvider;
+import com.intsof.samples.security.EntraExternalIdSSOProvider;
+import com.intsof.samples.security.spi.ExternalIdTokenService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class AuthHandlerTest {
+    private JwtService jwtService;
+    private RateLimitingService rateLimitingService;
+    private BlockingSchedulers blockingSchedulers;
+    private WebTestClient client;
+    // Password checks wait on this latch while it is set
+    private volatile CountDownLatch userStoreGate;
+    // Threads failed logins were audited on
+    private final List<String> auditThreads = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        TokenBlacklistService tokenBlacklistService = new TokenBlacklistService();
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secret", "0123456789abcdef0123456789abcdef");
+        ReflectionTestUtils.setField(jwtService, "expiration", 3600000L);
+        ReflectionTestUtils.setField(jwtService, "refreshExpiration", 86400000L);
+        ReflectionTestUtils.setField(jwtService, "issuer", "test-issuer");
+        ReflectionTestUtils.setField(jwtService, "tokenBlacklistService", tokenBlacklistService);
+
+        rateLimitingService = new RateLimitingService();
+        ReflectionTestUtils.setField(rateLimitingService, "maxAttempts", 5);
+        ReflectionTestUtils.setField(rateLimitingService, "windowMinutes", 1);
+        ReflectionTestUtils.setField(rateLimitingService, "rateLimitingEnabled", true);
+
+        DatabaseSecurityProvider dbProvider = new DatabaseSecurityProvider((email, password) -> {
+            CountDownLatch gate = userStoreGate;
+            if (gate != null) {
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "user@example.com".equals(email) && "secret".equals(password);
+        });
+        // One lookup thread and one queued lookup at most
+        blockingSchedulers = new BlockingSchedulers(1, 1, 1, 1, 100, 2_000);
+        AuditLoggingService auditLoggingService = new AuditLoggingService() {
+            @Override
+            public void logFailedAuth(String username, String ipAddress, String reason) {
+                auditThreads.add(Thread.currentThread().getName());
+            }
+        };
+
+        AuthHandler authHandler = new AuthHandler(jwtService, rateLimitingService, auditLoggingService,
+                tokenBlacklistService, ClientIpResolver.defaults(), blockingSchedulers, dbProvider,
+                new EntraExternalIdSSOProvider(mock(ExternalIdTokenService.class)), List.of("sso.example.org"));
+        client = WebTestClient.bindToRouterFunction(new ReactiveRoutes().authRoutes(new AuthRouteProperties(),
+                        authHandler, mock(AuthCheckHandler.class), mock(EntraAuthHandler.class), mock(SsoConfigHandler.class)))
+                .build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        CountDownLatch gate = userStoreGate;
+        if (gate != null) gate.countDown();
+        blockingSchedulers.shutdown();
+        rateLimitingService.shutdown();
+    }
+
+    @Test
+    public void testLoginIssuesTokens() {
+        TokenResponse tokens = login("user@example.com", "secret")
+                .expectStatus().isOk()
+                .expectBody(TokenResponse.class).returnResult().getResponseBody();
+
+        assertNotNull(tokens);
+        assertEquals("user@example.com", tokens.getUsername());
+        assertEquals("Bearer", tokens.getTokenType());
+        assertEquals("user@example.com", jwtService.authenticate(tokens.getAccessToken()).getSubject());
+    }
+
+    @Test
+    public void testInvalidCredentialsAreCountedTowardsTheRateLimit() {
+        for (int i = 0; i < 5; i++) {
+            login("user@example.com", "wrong")
+                    .expectStatus().isUnauthorized()
+                    .expectBody().jsonPath("$.error").isEqualTo("Invalid credentials");
+        }
+        login("user@example.com", "secret")
+                .expectStatus().isEqualTo(429)
+                .expectBody().jsonPath("$.retryAfter").exists();
+    }
+
+    @Test
+    public void testAuditLinesAreWrittenOffTheEventLoop() throws InterruptedException {
+        login("user@example.com", "wrong").expectStatus().isUnauthorized();
+        client.post().uri("/login").header("X-Password", "secret")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (auditThreads.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, auditThreads.size());
+        assertTrue(auditThreads.stream().allMatch(thread -> thread.startsWith("audit")), auditThreads.toString());
+        assertEquals(0, blockingSchedulers.getStats().getAuditDropped());
+    }
+
+    @Test
+    public void testMissingEmailAndSsoDomain() {
+        client.post().uri("/login").header("X-Password", "secret")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        login("someone@sso.example.org", "secret")
+                .expectStatus().isUnauthorized()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("SSO_REDIRECT_REQUIRED")
+                .jsonPath("$.requiresSSO").isEqualTo(true);
+    }
+
+    @Test
+    public void testLoginShedWhenUserLookupsAreSaturated() throws InterruptedException {
+        userStoreGate = new CountDownLatch(1);
+        // Occupy the single lookup thread and the single queue slot
+        blockingSchedulers.userLookup(() -> {
+            userStoreGate.await(5, TimeUnit.SECONDS);
+            return true;
+        }).subscribe();
+        blockingSchedulers.userLookup(() -> true).subscribe();
+
+        login("user@example.com", "secret")
+                .expectStatus().isEqualTo(503)
+                .expectHeader().valueEquals("Retry-After", "1");
+        assertEquals(1, blockingSchedulers.getStats().getRejected());
+
+        userStoreGate.countDown();
+    }
+
+    @Test
+    public void testRefreshAndLogoutRevokes() {
+        TokenResponse tokens = login("user@example.com", "secret")
+                .expectStatus().isOk()
+                .expectBody(TokenResponse.class).returnResult().getResponseBody();
+
+        TokenResponse refreshed = client.post().uri("/refresh").header("X-Refresh-Token", tokens.getRefreshToken())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(TokenResponse.class).returnResult().getResponseBody();
+        assertEquals("user@example.com", refreshed.getUsername());
+        assertNotNull(jwtService.authenticate(refreshed.getAccessToken()));
+
+        client.post().uri("/refresh").header("X-Refresh-Token", "not-a-token")
+                .exchange()
+                .expectStatus().isUnauthorized();
+
+        client.post().uri("/logout").header("Authorization", "Bearer " + refreshed.getAccessToken())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.message").isEqualTo("Logout successful");
+        assertNull(jwtService.authenticate(refreshed.getAccessToken()));
+    }
+
+    private WebTestClient.ResponseSpec login(String email, String password) {
+        return client.post().uri("/login")
+                .header("X-Email", email)
+                .header("X-Password", password)
+                .exchange();
+    }
+}
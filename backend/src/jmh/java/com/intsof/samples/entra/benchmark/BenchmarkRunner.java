@@ -0,0 +1,32 @@
+package com.intsof.samples.entra.benchmark;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks once per thread count (1, 4, 16 and 64 unless {@code -t} is given).
+ * Any other JMH command line options are passed through, e.g.:
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="RateLimitingServiceBenchmark -p distribution=ZIPF"
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private static final int[] THREADS = {1, 4, 16, 64};
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.getThreads().hasValue()) {
+            new Runner(options).run();
+            return;
+        }
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder().parent(options).threads(threads).build()).run();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.intsof.samples.entra.benchmark;
+
+import com.intsof.samples.entra.service.FilterMetricsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of the authentication filter's latency metrics: one
+ * {@link System#nanoTime()} at the start of the filter plus
+ * {@link FilterMetricsService#record}. Compare {@code timedRecord} with the
+ * {@code nanoTime} baseline; the budget is 50 ns per request. Thread counts are
+ * swept by {@link BenchmarkRunner}; all threads hit the same histogram, the worst case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterMetricsBenchmark {
+
+    final FilterMetricsService metrics = new FilterMetricsService();
+
+    @Benchmark
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public void timedRecord() {
+        long start = System.nanoTime();
+        metrics.record(FilterMetricsService.Route.PROTECTED, FilterMetricsService.Outcome.PASSED, start);
+    }
+}
@@ -0,0 +1,107 @@
+package com.intsof.samples.entra.benchmark;
+
+import com.intsof.samples.entra.service.RateLimitingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link RateLimitingService} on the login path under contention.
+ *
+ * {@code distribution} picks how attempts spread over {@code keys} IP/username
+ * pairs: a single hot key, a Zipfian mix, or uniform. Thread counts are swept by
+ * {@link BenchmarkRunner}. Keys are pre-drawn per thread so sampling is not measured.
+ * The lockout is on (the default), so hot keys quickly end up denied, as in an attack.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimitingServiceBenchmark {
+
+    private static final int SAMPLES = 1 << 16;
+
+    @Param({"HOT", "ZIPF", "UNIFORM"})
+    public KeyDistribution distribution;
+
+    @Param({"100000"})
+    public int keys;
+
+    @Param({"5"})
+    public int maxAttempts;
+
+    RateLimitingService service;
+    String[] ips;
+    String[] usernames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = RateLimitAccuracyHarness.policy(maxAttempts, 1);
+        ips = new String[keys];
+        usernames = new String[keys];
+        for (int k = 0; k < keys; k++) {
+            ips[k] = KeyDistribution.ip(k);
+            usernames[k] = KeyDistribution.username(k);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    /**
+     * Per-thread pre-drawn key sequence
+     */
+    @State(Scope.Thread)
+    public static class Keys {
+        int[] indexes;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(RateLimitingServiceBenchmark benchmark, ThreadParams thread) {
+            indexes = benchmark.distribution.sample(benchmark.keys, SAMPLES, 17L * thread.getThreadIndex() + 1);
+        }
+
+        int next() {
+            return indexes[next++ & (SAMPLES - 1)];
+        }
+    }
+
+    /**
+     * The pre-authentication check alone
+     */
+    @Benchmark
+    public boolean check(Keys keys) {
+        int key = keys.next();
+        return service.check(ips[key], usernames[key]).isAllowed();
+    }
+
+    /**
+     * A failed login as the filter runs it: reserve the attempt, then keep it as a failure if allowed
+     */
+    @Benchmark
+    public boolean failedLogin(Keys keys) {
+        int key = keys.next();
+        boolean allowed = service.acquire(ips[key], usernames[key]).isAllowed();
+        if (allowed) {
+            service.confirmFailedAttempt(ips[key], usernames[key]);
+        }
+        return allowed;
+    }
+}
@@ -0,0 +1,53 @@
+package com.intsof.samples.entra.audit;
+
+/**
+ * One slot of an {@link AuditEventRing}. Slots are allocated with the ring and
+ * reused, so an event handed to a drain callback is only valid during the call.
+ */
+public final class AuditEvent {
+
+    // Sequence number the slot is waiting for: the producer's claim while free,
+    // the claim plus one once published; written last, read first
+    volatile long sequence;
+
+    AuditEventType type;
+    String ipAddress;
+    String path;
+    String detail;
+    long waitTime;
+    long timestamp;
+
+    AuditEvent(long sequence) {
+        this.sequence = sequence;
+    }
+
+    void clear() {
+        type = null;
+        ipAddress = null;
+        path = null;
+        detail = null;
+        waitTime = 0;
+        timestamp = 0;
+    }
+
+    // Getters
+    public AuditEventType getType() { return type; }
+    public String getIpAddress() { return ipAddress; }
+    public String getPath() { return path; }
+    public String getDetail() { return detail; }
+    public long getWaitTime() { return waitTime; }
+    /** Epoch milliseconds at which the event was published */
+    public long getTimestamp() { return timestamp; }
+
+    @Override
+    public String toString() {
+        return "AuditEvent{" +
+                "type=" + type +
+                ", ipAddress='" + ipAddress + '\'' +
+                ", path='" + path + '\'' +
+                ", detail='" + detail + '\'' +
+                ", waitTime=" + waitTime +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
@@ -0,0 +1,117 @@
+package com.intsof.samples.entra.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, lock-free multi-producer single-consumer queue of audit events.
+ *
+ * The slots are preallocated and carry a sequence number each (Vyukov's bounded
+ * queue): a producer claims the next sequence with a CAS on the tail, fills in the
+ * slot's fields and publishes it by advancing the slot's sequence, so an offer is a
+ * handful of field writes and allocates nothing. When the consumer has not freed
+ * the slot yet the ring is full and the offer fails instead of waiting; callers
+ * count that as a drop. Only one thread may call {@link #drain}.
+ */
+public final class AuditEventRing {
+
+    private final AuditEvent[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Next sequence to consume; written by the consumer only
+    private volatile long head;
+
+    /**
+     * @param capacity number of events the ring holds, rounded up to a power of two
+     */
+    public AuditEventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.slots = new AuditEvent[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new AuditEvent(i);
+        }
+    }
+
+    /**
+     * Queue an event
+     *
+     * @param timestamp epoch milliseconds at which the event happened
+     * @return false if the ring is full
+     */
+    public boolean offer(AuditEventType type, String ipAddress, String path, String detail, long waitTime,
+                         long timestamp) {
+        while (true) {
+            long sequence = tail.get();
+            AuditEvent slot = slots[(int) sequence & mask];
+            long state = slot.sequence;
+            if (state == sequence) {
+                if (tail.compareAndSet(sequence, sequence + 1)) {
+                    slot.type = type;
+                    slot.ipAddress = ipAddress;
+                    slot.path = path;
+                    slot.detail = detail;
+                    slot.waitTime = waitTime;
+                    slot.timestamp = timestamp;
+                    slot.sequence = sequence + 1;
+                    return true;
+                }
+            } else if (state < sequence) {
+                // Still holds the event from one lap ago
+                return false;
+            }
+            // Another producer claimed this sequence; try the next one
+        }
+    }
+
+    /**
+     * Hand up to {@code max} published events to {@code handler}, oldest first, and free their slots
+     *
+     * @return number of events handed over
+     */
+    public int drain(Consumer<AuditEvent> handler, int max) {
+        long sequence = head;
+        int drained = 0;
+        try {
+            while (drained < max) {
+                AuditEvent slot = slots[(int) sequence & mask];
+                if (slot.sequence != sequence + 1) {
+                    // Empty, or claimed but not published yet
+                    break;
+                }
+                try {
+                    handler.accept(slot);
+                } finally {
+                    slot.clear();
+                    slot.sequence = sequence + slots.length;
+                    sequence++;
+                    drained++;
+                }
+            }
+        } finally {
+            head = sequence;
+        }
+        return drained;
+    }
+
+    /**
+     * Number of events claimed but not consumed yet
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /**
+     * Number of events the ring holds
+     */
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Number of events accepted since creation
+     */
+    public long published() {
+        return tail.get();
+    }
+}
@@ -0,0 +1,19 @@
+package com.intsof.samples.entra.audit;
+
+/**
+ * Audit events the authentication filter raises when it turns a request away.
+ * These are the high-volume rejections that are handed to the background audit
+ * writer; login outcomes are still logged in order on the thread that handles them.
+ */
+public enum AuditEventType {
+    /** Bearer token failed the structural precheck; detail is the failed check */
+    MALFORMED_TOKEN,
+    /** Bearer token failed JWT validation or is blacklisted */
+    INVALID_TOKEN,
+    /** Protected route called without a bearer token */
+    MISSING_AUTHORIZATION,
+    /** Route rate limit exceeded; detail is the scope, wait time in seconds */
+    ROUTE_RATE_LIMITED,
+    /** Login or refresh turned away by the auth executor; detail is the reason */
+    REQUEST_SHED
+}
@@ -0,0 +1,58 @@
+package com.intsof.samples.entra.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binds the authentication filter's routes from {@code auth.routes.*}. Each route is
+ * {@code [METHOD ]path}; a path ending in {@code /**} matches that path and everything below it:
+ *
+ * <pre>
+ * auth.routes.public-paths=/auth/check-method,GET /api/sso/config,/auth/entra/**
+ * auth.routes.handlers.login=POST /login
+ * auth.routes.handlers.refresh=POST /refresh
+ * auth.routes.handlers.logout=POST /logout
+ * </pre>
+ *
+ * Public paths skip bearer token validation. Handler routes are served by the filter
+ * itself; their paths are public for every other method as well.
+ */
+@Component
+@ConfigurationProperties(prefix = "auth.routes")
+public class AuthRouteProperties {
+
+    /** Routes passed to the controllers without a bearer token. */
+    private List<String> publicPaths = new ArrayList<>(List.of(
+            "/auth/check-method",
+            "/auth/entra/authorization-url",
+            "/auth/entra/callback",
+            "/api/sso/config",
+            "/auth/entra/validate"));
+
+    /** Filter handler (login, refresh, logout) to the route it serves. */
+    private Map<String, String> handlers = new LinkedHashMap<>(Map.of(
+            "login", "POST /login",
+            "refresh", "POST /refresh",
+            "logout", "POST /logout"));
+
+    public List<String> getPublicPaths() {
+        return publicPaths;
+    }
+
+    public void setPublicPaths(List<String> publicPaths) {
+        this.publicPaths = publicPaths;
+    }
+
+    public Map<String, String> getHandlers() {
+        return handlers;
+    }
+
+    public void setHandlers(Map<String, String> handlers) {
+        this.handlers = handlers;
+    }
+}
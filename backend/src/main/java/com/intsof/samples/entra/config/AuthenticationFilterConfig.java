@@ -1,6 +1,7 @@
 package com.intsof.samples.entra.config;
 
 import com.intsof.samples.entra.filter.AuthenticationFilter;
+import com.intsof.samples.entra.filter.LoadSheddingFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,12 +13,26 @@ public class AuthenticationFilterConfig {
     @Autowired
     private AuthenticationFilter authenticationFilter;
 
+    @Autowired
+    private LoadSheddingFilter loadSheddingFilter;
+
+    @Bean
+    public FilterRegistrationBean<LoadSheddingFilter> loadSheddingFilterRegistration() {
+        FilterRegistrationBean<LoadSheddingFilter> registrationBean = new FilterRegistrationBean<>();
+        registrationBean.setFilter(loadSheddingFilter);
+        registrationBean.setOrder(1); // Shed before any authentication work
+        registrationBean.addUrlPatterns("/*");
+        registrationBean.setAsyncSupported(true); // The authentication filter behind it goes async
+        return registrationBean;
+    }
+
     @Bean
     public FilterRegistrationBean<AuthenticationFilter> authenticationFilterRegistration() {
         FilterRegistrationBean<AuthenticationFilter> registrationBean = new FilterRegistrationBean<>();
         registrationBean.setFilter(authenticationFilter);
         registrationBean.setOrder(2); // Run after CORS filter
         registrationBean.addUrlPatterns("/*");
+        registrationBean.setAsyncSupported(true); // Logins and refreshes complete on the auth executor
         return registrationBean;
     }
 }
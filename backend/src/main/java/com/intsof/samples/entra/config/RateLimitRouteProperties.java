@@ -0,0 +1,102 @@
+package com.intsof.samples.entra.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binds per-route request rate limit policies from {@code auth.rate-limit.routes.<name>.*}:
+ *
+ * <pre>
+ * auth.rate-limit.routes.check-method.path=/auth/check-method
+ * auth.rate-limit.routes.check-method.method=POST
+ * auth.rate-limit.routes.check-method.scope=ip
+ * auth.rate-limit.routes.check-method.rate=20
+ * auth.rate-limit.routes.check-method.period-seconds=60
+ * auth.rate-limit.routes.check-method.burst=5
+ * </pre>
+ */
+@Component
+@ConfigurationProperties(prefix = "auth.rate-limit")
+public class RateLimitRouteProperties {
+
+    /** Policies keyed by a descriptive name; several policies may target the same path. */
+    private Map<String, Route> routes = new LinkedHashMap<>();
+
+    public Map<String, Route> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<String, Route> routes) {
+        this.routes = routes;
+    }
+
+    public static class Route {
+        /** Exact request path the policy applies to. */
+        private String path;
+
+        /** HTTP method to match; "*" or empty matches any. */
+        private String method = "*";
+
+        /** Key extractor: ip, subnet, user, domain or global. User scopes read X-Email or the email parameter. */
+        private String scope = "ip";
+
+        /** Sustained requests allowed per period. */
+        private int rate = 60;
+
+        private int periodSeconds = 60;
+
+        /** Requests that may be made back-to-back before the sustained rate applies. */
+        private int burst = 10;
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public void setScope(String scope) {
+            this.scope = scope;
+        }
+
+        public int getRate() {
+            return rate;
+        }
+
+        public void setRate(int rate) {
+            this.rate = rate;
+        }
+
+        public int getPeriodSeconds() {
+            return periodSeconds;
+        }
+
+        public void setPeriodSeconds(int periodSeconds) {
+            this.periodSeconds = periodSeconds;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.intsof.samples.entra.config;
+
+import com.intsof.samples.entra.ratelimit.JdbcQuotaLedger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Shared rate limit store, enabled with {@code auth.rate-limit.store=shared}.
+ * All instances must point {@code auth.rate-limit.shared.url} at the same database,
+ * e.g. an HSQLDB server ({@code jdbc:hsqldb:hsql://host/ratelimit}).
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "auth.rate-limit", name = "store", havingValue = "shared")
+public class RateLimitStoreConfig {
+
+    @Bean
+    public JdbcQuotaLedger sharedQuotaLedger(@Value("${auth.rate-limit.shared.url}") String url,
+                                             @Value("${auth.rate-limit.shared.username:sa}") String username,
+                                             @Value("${auth.rate-limit.shared.password:}") String password) {
+        DriverManagerDataSource ds = new DriverManagerDataSource();
+        ds.setDriverClassName("org.hsqldb.jdbc.JDBCDriver");
+        ds.setUrl(url);
+        ds.setUsername(username);
+        ds.setPassword(password);
+        return new JdbcQuotaLedger(ds);
+    }
+}
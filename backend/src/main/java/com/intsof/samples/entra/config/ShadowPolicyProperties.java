@@ -0,0 +1,134 @@
+package com.intsof.samples.entra.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binds candidate login rate limit policies from {@code auth.rate-limit.shadow.policies.<name>.*}.
+ * Candidates run in shadow mode next to the enforcing policy and never reject anything:
+ *
+ * <pre>
+ * auth.rate-limit.shadow.policies.strict.max-attempts=3
+ * auth.rate-limit.shadow.policies.strict.window-minutes=5
+ * auth.rate-limit.shadow.policies.strict.scopes=ip,subnet,user
+ * auth.rate-limit.shadow.policies.strict.lockout-enabled=true
+ * </pre>
+ *
+ * The same keys drive the offline {@code AuditLogReplay} tool.
+ */
+@Component
+@ConfigurationProperties(prefix = "auth.rate-limit.shadow")
+public class ShadowPolicyProperties {
+
+    /** Candidate policies keyed by a descriptive name. */
+    private Map<String, Policy> policies = new LinkedHashMap<>();
+
+    public Map<String, Policy> getPolicies() {
+        return policies;
+    }
+
+    public void setPolicies(Map<String, Policy> policies) {
+        this.policies = policies;
+    }
+
+    /**
+     * Settings of one login rate limit policy; defaults match the enforcing policy's defaults
+     */
+    public static class Policy {
+        private int maxAttempts = 5;
+
+        private int windowMinutes = 1;
+
+        /** Scope chain: ip, subnet, user, domain, global. */
+        private List<String> scopes = new ArrayList<>(List.of("ip", "user"));
+
+        private int subnetMaxAttempts = 20;
+
+        private int domainMaxAttempts = 50;
+
+        private int globalMaxAttempts = 1000;
+
+        private boolean lockoutEnabled = true;
+
+        private int lockoutMaxMinutes = 1440;
+
+        private int lockoutDecayMinutes = 15;
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public int getWindowMinutes() {
+            return windowMinutes;
+        }
+
+        public void setWindowMinutes(int windowMinutes) {
+            this.windowMinutes = windowMinutes;
+        }
+
+        public List<String> getScopes() {
+            return scopes;
+        }
+
+        public void setScopes(List<String> scopes) {
+            this.scopes = scopes;
+        }
+
+        public int getSubnetMaxAttempts() {
+            return subnetMaxAttempts;
+        }
+
+        public void setSubnetMaxAttempts(int subnetMaxAttempts) {
+            this.subnetMaxAttempts = subnetMaxAttempts;
+        }
+
+        public int getDomainMaxAttempts() {
+            return domainMaxAttempts;
+        }
+
+        public void setDomainMaxAttempts(int domainMaxAttempts) {
+            this.domainMaxAttempts = domainMaxAttempts;
+        }
+
+        public int getGlobalMaxAttempts() {
+            return globalMaxAttempts;
+        }
+
+        public void setGlobalMaxAttempts(int globalMaxAttempts) {
+            this.globalMaxAttempts = globalMaxAttempts;
+        }
+
+        public boolean isLockoutEnabled() {
+            return lockoutEnabled;
+        }
+
+        public void setLockoutEnabled(boolean lockoutEnabled) {
+            this.lockoutEnabled = lockoutEnabled;
+        }
+
+        public int getLockoutMaxMinutes() {
+            return lockoutMaxMinutes;
+        }
+
+        public void setLockoutMaxMinutes(int lockoutMaxMinutes) {
+            this.lockoutMaxMinutes = lockoutMaxMinutes;
+        }
+
+        public int getLockoutDecayMinutes() {
+            return lockoutDecayMinutes;
+        }
+
+        public void setLockoutDecayMinutes(int lockoutDecayMinutes) {
+            this.lockoutDecayMinutes = lockoutDecayMinutes;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.intsof.samples.entra.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Virtual thread support for the backend's own executors.
+ *
+ * The backend still builds and runs on Java 17, so virtual threads (Java 21+) are
+ * reached through reflection. With {@code spring.threads.virtual.enabled=true} on
+ * Java 21, Spring Boot moves Tomcat's request threads to virtual threads itself;
+ * services pass the same setting to {@link #threadFactory} for their executors.
+ * On older JVMs the platform factory is used, so the setting is harmless there.
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+        } catch (ReflectiveOperationException e) {
+            // Before Java 21
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Whether this JVM has virtual threads
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Factory of platform daemon threads named {@code namePrefix1, namePrefix2, ...}, so
+     * background executors never keep the JVM alive (e.g. in standalone tools)
+     */
+    public static ThreadFactory namedDaemonThreads(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Factory of virtual threads named {@code namePrefix0, namePrefix1, ...} if requested
+     * and supported, {@code platformFactory} otherwise
+     */
+    public static ThreadFactory threadFactory(boolean virtual, String namePrefix, ThreadFactory platformFactory) {
+        if (!virtual || !isSupported()) {
+            return platformFactory;
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return platformFactory;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.intsof.samples.entra.controller;
+
+import com.intsof.samples.entra.model.AuthenticatedPrincipal;
+import com.intsof.samples.entra.service.AuditEventQueue;
+import com.intsof.samples.entra.service.FilterMetricsService;
+import com.intsof.samples.entra.service.LoadSheddingService;
+import com.intsof.samples.entra.service.VirtualThreadPinningMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Operational metrics for administrators. The authentication filter has already
+ * validated the bearer token; these endpoints additionally require the ADMIN role.
+ */
+@RestController
+@RequestMapping("/admin/metrics")
+public class AdminMetricsController {
+
+    private static final String ADMIN_ROLE = "ADMIN";
+
+    private final FilterMetricsService filterMetricsService;
+    private final LoadSheddingService loadSheddingService;
+    private final AuditEventQueue auditEventQueue;
+    private final VirtualThreadPinningMonitor virtualThreadPinningMonitor;
+
+    @Autowired
+    public AdminMetricsController(FilterMetricsService filterMetricsService, LoadSheddingService loadSheddingService,
+                                  AuditEventQueue auditEventQueue, VirtualThreadPinningMonitor virtualThreadPinningMonitor) {
+        this.filterMetricsService = filterMetricsService;
+        this.loadSheddingService = loadSheddingService;
+        this.auditEventQueue = auditEventQueue;
+        this.virtualThreadPinningMonitor = virtualThreadPinningMonitor;
+    }
+
+    /**
+     * Authentication filter latency (microseconds) and throughput, by route and outcome
+     */
+    @GetMapping("/auth-filter")
+    public ResponseEntity<?> getAuthFilterMetrics(AuthenticatedPrincipal principal) {
+        if (principal == null || !principal.hasRole(ADMIN_ROLE)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Admin role required"));
+        }
+        return ResponseEntity.ok(filterMetricsService.getStats());
+    }
+
+    /**
+     * Load shedding state; a non-zero level means requests are being shed
+     */
+    @GetMapping("/load-shedding")
+    public ResponseEntity<?> getLoadSheddingState(AuthenticatedPrincipal principal) {
+        if (principal == null || !principal.hasRole(ADMIN_ROLE)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Admin role required"));
+        }
+        return ResponseEntity.ok(loadSheddingService.getStats());
+    }
+
+    /**
+     * Background audit writer; dropped counts events lost to a full queue
+     */
+    @GetMapping("/audit-queue")
+    public ResponseEntity<?> getAuditQueueStats(AuthenticatedPrincipal principal) {
+        if (principal == null || !principal.hasRole(ADMIN_ROLE)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Admin role required"));
+        }
+        return ResponseEntity.ok(auditEventQueue.getStats());
+    }
+
+    /**
+     * Virtual thread pinning seen through JFR, by application call site; inactive without virtual threads
+     */
+    @GetMapping("/virtual-threads")
+    public ResponseEntity<?> getVirtualThreadStats(AuthenticatedPrincipal principal) {
+        if (principal == null || !principal.hasRole(ADMIN_ROLE)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Admin role required"));
+        }
+        return ResponseEntity.ok(virtualThreadPinningMonitor.getStats());
+    }
+}
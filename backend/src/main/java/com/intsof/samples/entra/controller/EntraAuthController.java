@@ -4,8 +4,6 @@ import com.intsof.samples.entra.dto.TokenResponse;
 import com.intsof.samples.entra.service.JwtService;
 import com.intsof.samples.security.AuthenticationResult;
 import com.intsof.samples.security.EntraExternalIdSSOProvider;
-import jakarta.servlet.http.HttpServletResponse;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
@@ -13,11 +11,15 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.io.IOException;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Controller for handling Microsoft Entra External ID OAuth flow
@@ -26,6 +28,8 @@ import java.util.Map;
 @RequestMapping("/auth/entra")
 public class EntraAuthController {
 
+    private static final String WELCOME_PAGE = "https://localhost:4200/ssowelcome";
+
     @Autowired
     private EntraExternalIdSSOProvider entraProvider;
 
@@ -44,51 +48,51 @@ public class EntraAuthController {
     @Value("${sso.registration.azure.redirect-uri}")
     private String redirectUri;
 
+    @Value("${sso.callback.timeout-ms:15000}")
+    private long callbackTimeoutMillis;
+
     /**
-     * Handle OAuth callback from Entra External ID
+     * Handle OAuth callback from Entra External ID.
+     * The code exchange runs on the MSAL executor and the request is answered when it
+     * completes, so no container thread waits on the Entra round trip. An exchange not
+     * done within the callback timeout redirects with an error.
      */
     @GetMapping("/callback")
-    //public void handleOAuthCallback(
-    public ResponseEntity<?> handleOAuthCallback(
+    public CompletableFuture<ResponseEntity<?>> handleOAuthCallback(
             @RequestParam("code") String authorizationCode,
             @RequestParam("state") String state,
-            @RequestParam("session_state") String sessionState,
-            HttpServletResponse response) throws IOException {
-
-        String errorMessage = "";
-        String userId = "";
-        try {
-            AuthenticationResult result = entraProvider.authenticateWithAuthorizationCode(authorizationCode, redirectUri);
-
-            if (result.isSuccess()) {
-                // Generate application JWT tokens
-                String accessToken = jwtService.generateToken(result.getUserId(), result.getRoles(), null);
-                String refreshToken = jwtService.generateRefreshToken(result.getUserId());
-                userId = result.getUserId();
-                TokenResponse tokenResponse = new TokenResponse(
-                    accessToken,
-                    refreshToken,
-                    3600,
-                    result.getUserId(),
-                    result.getRoles()
-                );
-                //return ResponseEntity.ok(tokenResponse);
-            } else {
-                Map<String, String> error = new HashMap<>();
-                error.put("error", result.getMessage());
-                //return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
-                errorMessage = result.getMessage();
-            }
-        } catch (Exception e) {
-            Map<String, String> error = new HashMap<>();
-            error.put("error", "OAuth callback processing failed: " + e.getMessage());
-            errorMessage = "OAuth callback processing failed: " + e.getMessage();
-            //return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
-        }
+            @RequestParam("session_state") String sessionState) {
+
+        return entraProvider.authenticateWithAuthorizationCodeAsync(authorizationCode, redirectUri)
+            .toCompletableFuture()
+            .orTimeout(callbackTimeoutMillis, TimeUnit.MILLISECONDS)
+            .thenApply(result -> result.isSuccess()
+                ? welcome(authorizationCode, state, sessionState, result.getUserId(), "")
+                : welcome(authorizationCode, state, sessionState, "", result.getMessage()))
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                String errorMessage = cause instanceof TimeoutException
+                    ? "OAuth callback timed out"
+                    : "OAuth callback processing failed: " + cause.getMessage();
+                return welcome(authorizationCode, state, sessionState, "", errorMessage);
+            });
+    }
 
-        URI redirectUri = URI.create("https://localhost:4200/ssowelcome?code=" + authorizationCode + "&state=" + state + "&session_state=" + sessionState  + "&userid=" + userId + "&error=" + errorMessage);
+    /**
+     * Redirect to the frontend's SSO welcome page with the outcome of the callback, query values encoded
+     */
+    private static ResponseEntity<?> welcome(String code, String state, String sessionState, String userId, String error) {
+        URI location = UriComponentsBuilder.fromUriString(WELCOME_PAGE)
+            .queryParam("code", code)
+            .queryParam("state", state)
+            .queryParam("session_state", sessionState)
+            .queryParam("userid", userId)
+            .queryParam("error", error)
+            .encode()
+            .build()
+            .toUri();
         HttpHeaders headers = new HttpHeaders();
-        headers.setLocation(redirectUri);
+        headers.setLocation(location);
         return new ResponseEntity<>(headers, HttpStatus.FOUND);
     }
 
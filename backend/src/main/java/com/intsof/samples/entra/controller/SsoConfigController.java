@@ -31,6 +31,13 @@ public class SsoConfigController {
 
     @GetMapping("/config")
     public ResponseEntity<SsoConfigDto> getConfig() {
+        return ResponseEntity.ok(describe(props));
+    }
+
+    /**
+     * The client-facing view of the SSO configuration; shared with the reactive edition
+     */
+    public static SsoConfigDto describe(SsoConfigProperties props) {
         // Build authorization endpoint: <authorizationUri>/<tenantId>/oauth2/v2.0/authorize
         String baseAuthUri = props.getProvider().getAzure().getAuthorizationUri();
         if (!StringUtils.hasText(baseAuthUri)) {
@@ -63,7 +70,7 @@ public class SsoConfigController {
 
         String clientId = props.getRegistration().getAzure().getClientId();
 
-        SsoConfigDto dto = new SsoConfigDto(
+        return new SsoConfigDto(
                 props.getEnabledDomains(),
                 authorizationEndpoint,
                 tokenEndpoint,
@@ -71,7 +78,6 @@ public class SsoConfigController {
                 scopes,
                 clientId
         );
-        return ResponseEntity.ok(dto);
     }
 }
 
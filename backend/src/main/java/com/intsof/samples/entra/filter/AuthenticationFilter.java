@@ -1,16 +1,28 @@
 package com.intsof.samples.entra.filter;
 
+import com.intsof.samples.entra.audit.AuditEventType;
+import com.intsof.samples.entra.config.AuthRouteProperties;
 import com.intsof.samples.entra.constants.ApplicationConstants;
+import com.intsof.samples.entra.ratelimit.RateLimitDecision;
+import com.intsof.samples.entra.service.ConcurrencyLimitingService;
+import com.intsof.samples.entra.service.FilterMetricsService;
+import com.intsof.samples.entra.service.CredentialStuffingDetector;
 import com.intsof.samples.entra.service.JwtService;
 import com.intsof.samples.entra.service.RateLimitingService;
+import com.intsof.samples.entra.service.RouteRateLimitingService;
+import com.intsof.samples.entra.service.ShadowRateLimitingService;
+import com.intsof.samples.entra.service.AuditEventQueue;
 import com.intsof.samples.entra.service.AuditLoggingService;
+import com.intsof.samples.entra.service.AuthExecutorService;
 import com.intsof.samples.entra.service.TokenBlacklistService;
 import com.intsof.samples.entra.dto.TokenResponse;
+import com.intsof.samples.entra.model.AuthenticatedPrincipal;
 import com.intsof.samples.security.AuthenticationResult;
 import com.intsof.samples.security.DatabaseSecurityProvider;
 import com.intsof.samples.security.EntraExternalIdSSOProvider;
 import com.intsof.samples.security.ISecurityProvider;
 import com.intsof.samples.security.SecurityManager;
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.FilterConfig;
@@ -24,9 +36,14 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component("authenticationFilter")
 public class AuthenticationFilter implements Filter {
@@ -39,6 +56,42 @@ public class AuthenticationFilter implements Filter {
     @Autowired(required = false)
     private com.intsof.samples.entra.service.UserService userService;
 
+    // Per-route request limits; optional so the filter can be constructed without them
+    @Autowired(required = false)
+    private RouteRateLimitingService routeRateLimitingService;
+
+    // Bound on concurrent password checks; optional like the route limits
+    @Autowired(required = false)
+    private ConcurrencyLimitingService concurrencyLimitingService;
+
+    // Block list of IPs and usernames involved in credential stuffing; optional as well
+    @Autowired(required = false)
+    private CredentialStuffingDetector credentialStuffingDetector;
+
+    // Candidate login rate limit policies evaluated in dry-run mode; optional as well
+    @Autowired(required = false)
+    private ShadowRateLimitingService shadowRateLimitingService;
+
+    // Runs logins and refreshes off the container threads; optional as well
+    @Autowired(required = false)
+    private AuthExecutorService authExecutorService;
+
+    // Client IP resolution behind trusted proxies; loopback-only defaults when absent
+    @Autowired(required = false)
+    private ClientIpResolver clientIpResolver;
+
+    // Structural bearer token check ahead of the JWT parser; defaults when absent
+    @Autowired(required = false)
+    private BearerTokenPrecheck bearerTokenPrecheck;
+
+    // Latency histograms per route and outcome; optional as well
+    @Autowired(required = false)
+    private FilterMetricsService filterMetricsService;
+
+    // Background writer for rejection audit events; they are logged inline when absent
+    @Autowired(required = false)
+    private AuditEventQueue auditEventQueue;
+
     // Constructor for testability and DI
     @Autowired
     public AuthenticationFilter(JwtService jwtService, RateLimitingService rateLimitingService, 
@@ -49,23 +102,48 @@ public class AuthenticationFilter implements Filter {
         this.tokenBlacklistService = tokenBlacklistService;
     }
 
-    private static final String LOGIN_PATH = "/login";
-    private static final String LOGOUT_PATH = "/logout";
-    
-    /**
-     * Check if a path is whitelisted and doesn't require authentication
-     */
-    private boolean isWhitelistedPath(String path) {
-        return LOGIN_PATH.equals(path) || 
-               "/refresh".equals(path) || 
-               LOGOUT_PATH.equals(path) ||
-               "/auth/check-method".equals(path) ||
-               "/auth/entra/authorization-url".equals(path) ||
-               "/auth/entra/callback".equals(path) ||
-               "/api/sso/config".equals(path) ||
-               "/auth/entra/validate".equals(path);
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    // Metrics route of each route table action, by ordinal
+    private static final FilterMetricsService.Route[] METRICS_ROUTES = Arrays.stream(RouteTable.Action.values())
+            .map(action -> FilterMetricsService.Route.valueOf(action.name()))
+            .toArray(FilterMetricsService.Route[]::new);
+
+    /** What happens to a request after the filter's own work */
+    private enum Continuation {
+        /** Pass it on to the controllers */
+        CHAIN,
+        /** The filter has answered it */
+        RESPONDED,
+        /** The auth executor will answer it */
+        ASYNC
     }
 
+    // States of a login or refresh handed to the auth executor
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+
+    // Fixed response bodies, encoded once
+    private static final byte[] MISSING_AUTHORIZATION_BODY = JsonWriter.errorBody("Missing Authorization header");
+    private static final byte[] INVALID_TOKEN_BODY = JsonWriter.errorBody("Invalid or expired token");
+    private static final byte[] EMAIL_HEADER_MISSING_BODY = JsonWriter.errorBody(ApplicationConstants.ERROR_EMAIL_HEADER_MISSING);
+    private static final byte[] INVALID_CREDENTIALS_BODY = JsonWriter.errorBody(ApplicationConstants.ERROR_INVALID_CREDENTIALS);
+    private static final byte[] MISSING_REFRESH_TOKEN_BODY = JsonWriter.errorBody("Missing refresh token");
+    private static final byte[] LOGOUT_SUCCESSFUL_BODY = "{\"message\":\"Logout successful\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LOGOUT_COMPLETED_BODY = "{\"message\":\"Logout completed\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSO_REDIRECT_BODY = ("{\"error\":\"SSO_REDIRECT_REQUIRED\",\"requiresSSO\":true,\"authMethod\":\"SSO\","
+            + "\"authorizationUrl\":\"/auth/entra/authorization-url\","
+            + "\"message\":\"This email domain requires SSO authentication. Please use the authorization URL to authenticate.\"}")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INTERNAL_ERROR_BODY = JsonWriter.errorBody("Internal server error");
+
+    // Public and handler routes; replaced by the configured table in init()
+    private RouteTable routeTable = RouteTable.defaults();
+
+    @Autowired(required = false)
+    private AuthRouteProperties routeProperties;
+
     private SecurityManager securityManager;
 
     @Autowired
@@ -83,6 +161,9 @@ public class AuthenticationFilter implements Filter {
         ISecurityProvider ssoProvider = this.ssoProvider;
 
         this.securityManager = new SecurityManager(dbProvider);
+        if (routeProperties != null) {
+            this.routeTable = RouteTable.compile(routeProperties);
+        }
 
         if (ssoEnabledDomains != null && !ssoEnabledDomains.isEmpty()) {
             ssoEnabledDomains.stream()
@@ -95,80 +176,228 @@ public class AuthenticationFilter implements Filter {
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
+        long start = System.nanoTime();
         HttpServletRequest req = (HttpServletRequest) request;
         HttpServletResponse res = (HttpServletResponse) response;
+        RouteTable.Action action = routeTable.lookup(req.getMethod(), req.getRequestURI());
+
+        Continuation next;
+        try {
+            next = filter(req, res, action, start);
+        } catch (IOException | RuntimeException e) {
+            recordMetrics(action, FilterMetricsService.Outcome.ERROR, start);
+            throw e;
+        }
+        switch (next) {
+            case CHAIN:
+                recordMetrics(action, FilterMetricsService.Outcome.PASSED, start);
+                chain.doFilter(request, response);
+                break;
+            case RESPONDED:
+                recordMetrics(action, FilterMetricsService.Outcome.ofStatus(res.getStatus()), start);
+                break;
+            default:
+                // Recorded by the auth executor task when it finishes
+        }
+    }
+
+    /**
+     * Authenticate the request or answer it
+     *
+     * @return whether to pass the request on, or whether it has been answered now or will be asynchronously
+     */
+    private Continuation filter(HttpServletRequest req, HttpServletResponse res, RouteTable.Action action, long start)
+            throws IOException {
         res.setContentType(ApplicationConstants.CONTENT_TYPE_JSON);
         String path = req.getRequestURI();
-        String method = req.getMethod();
         String ipAddress = getClientIpAddress(req);
 
+        // Per-route request limits are applied before any token parsing or authentication work
+        if (routeRateLimitingService != null && !applyRouteRateLimit(req, res, path, ipAddress)) {
+            return Continuation.RESPONDED;
+        }
+
         // JWT validation for protected routes - skip authentication endpoints
-        if (!isWhitelistedPath(path)) {
+        if (action == RouteTable.Action.PROTECTED) {
             String authHeader = req.getHeader("Authorization");
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                // Already authenticated by the load shedding filter to rank the request
+                if (req.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE) != null) {
+                    return Continuation.CHAIN;
+                }
+                // Malformed tokens are turned away before they reach the JWT parser
+                BearerTokenPrecheck.Result precheck = tokenPrecheck().check(authHeader, 7);
+                if (precheck != BearerTokenPrecheck.Result.VALID) {
+                    audit(AuditEventType.MALFORMED_TOKEN, ipAddress, path, precheck.name(), 0);
+                    JsonWriter.send(res, HttpServletResponse.SC_UNAUTHORIZED, INVALID_TOKEN_BODY);
+                    return Continuation.RESPONDED;
+                }
                 String token = authHeader.substring(7);
-                // Enhanced validation with blacklist check
-                if (jwtService.validateTokenWithBlacklist(token)) {
-                    chain.doFilter(request, response);
-                    return;
+                // Validate with blacklist check and keep the decoded identity for controllers
+                AuthenticatedPrincipal principal = jwtService.authenticate(token);
+                if (principal != null) {
+                    req.setAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, principal);
+                    return Continuation.CHAIN;
                 } else {
-                    Map<String, Object> auditData = new HashMap<>();
-                    auditData.put("reason", "invalid_or_expired_token");
-                    auditData.put("path", path);
-                    auditLoggingService.logAuthEvent("TOKEN_VALIDATION_FAILED", null, ipAddress, auditData);
-                    
-                    res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                    res.getWriter().write("{\"error\": \"Invalid or expired token\"}");
-                    return;
+                    audit(AuditEventType.INVALID_TOKEN, ipAddress, path, null, 0);
+                    JsonWriter.send(res, HttpServletResponse.SC_UNAUTHORIZED, INVALID_TOKEN_BODY);
+                    return Continuation.RESPONDED;
                 }
             } else {
-                Map<String, Object> auditData = new HashMap<>();
-                auditData.put("reason", "missing_authorization_header");
-                auditData.put("path", path);
-                auditLoggingService.logAuthEvent("UNAUTHORIZED_ACCESS_ATTEMPT", null, ipAddress, auditData);
-                
-                res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                res.getWriter().write("{\"error\": \"Missing Authorization header\"}");
-                return;
+                audit(AuditEventType.MISSING_AUTHORIZATION, ipAddress, path, null, 0);
+                JsonWriter.send(res, HttpServletResponse.SC_UNAUTHORIZED, MISSING_AUTHORIZATION_BODY);
+                return Continuation.RESPONDED;
             }
         }
 
-        // Handle login
-        if (LOGIN_PATH.equals(path) && "POST".equalsIgnoreCase(method)) {
-            String email = req.getHeader("X-Email");
-            String password = req.getHeader("X-Password");
-            handleLogin(email, password, ipAddress, res);
-            return;
+        switch (action) {
+            case LOGIN:
+                String email = req.getHeader("X-Email");
+                String password = req.getHeader("X-Password");
+                return dispatch(req, res, path, ipAddress, action, start,
+                        () -> handleLogin(email, password, ipAddress, res));
+            case REFRESH:
+                String refreshToken = req.getHeader("X-Refresh-Token");
+                return dispatch(req, res, path, ipAddress, action, start,
+                        () -> handleRefresh(refreshToken, ipAddress, res));
+            case LOGOUT:
+                String authHeader = req.getHeader("Authorization");
+                handleLogout(authHeader, ipAddress, res);
+                return Continuation.RESPONDED;
+            default:
+                // Public routes pass through to controllers
+                return Continuation.CHAIN;
         }
+    }
 
-        // Handle token refresh
-        if ("/refresh".equals(path) && "POST".equalsIgnoreCase(method)) {
-            String refreshToken = req.getHeader("X-Refresh-Token");
-            handleRefresh(refreshToken, ipAddress, res);
-            return;
+    private void recordMetrics(RouteTable.Action action, FilterMetricsService.Outcome outcome, long start) {
+        if (filterMetricsService != null) {
+            filterMetricsService.record(METRICS_ROUTES[action.ordinal()], outcome, start);
         }
+    }
 
-        // Handle logout
-        if (LOGOUT_PATH.equals(path) && "POST".equalsIgnoreCase(method)) {
-            String authHeader = req.getHeader("Authorization");
-            handleLogout(authHeader, ipAddress, res);
-            return;
+    /**
+     * Run a login or refresh on the auth executor in servlet async mode, freeing the
+     * container thread; inline if there is no executor or the request cannot go async
+     */
+    private Continuation dispatch(HttpServletRequest req, HttpServletResponse res, String path, String ipAddress,
+                                  RouteTable.Action action, long start, ResponseTask task) throws IOException {
+        if (authExecutorService == null || !authExecutorService.isEnabled() || !req.isAsyncSupported()) {
+            task.run();
+            return Continuation.RESPONDED;
         }
 
-        // Allow logout to pass through for GET requests (legacy support)
-        if (LOGOUT_PATH.equals(path)) {
-            chain.doFilter(request, response);
-            return;
+        AsyncContext async = req.startAsync(req, res);
+        // No container timeout: it would also fire while the task is running and end the
+        // request under it. Only the wait in the queue is bounded, by the executor's timer.
+        async.setTimeout(0);
+        // The worker (QUEUED -> RUNNING) and the queue timeout (QUEUED -> DONE) race; the winner owns the response
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        ScheduledFuture<?> queueTimeout = authExecutorService.scheduleQueueTimeout(() -> {
+            if (state.compareAndSet(QUEUED, DONE)) {
+                authExecutorService.recordTimeout();
+                try {
+                    sendAuthBusy(res, path, ipAddress, "queue_timeout");
+                } catch (IOException e) {
+                    // The client is gone
+                }
+                recordMetrics(action, FilterMetricsService.Outcome.SHED, start);
+                async.complete();
+            }
+        });
+
+        try {
+            authExecutorService.execute(() -> {
+                if (!state.compareAndSet(QUEUED, RUNNING)) {
+                    return;
+                }
+                queueTimeout.cancel(false);
+                try {
+                    task.run();
+                } catch (IOException | RuntimeException e) {
+                    sendInternalError(res);
+                } finally {
+                    state.set(DONE);
+                    recordMetrics(action, FilterMetricsService.Outcome.ofStatus(res.getStatus()), start);
+                    try {
+                        async.complete();
+                    } catch (IllegalStateException e) {
+                        // The container already ended the request, e.g. after a network error
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queueTimeout.cancel(false);
+            if (!state.compareAndSet(QUEUED, DONE)) {
+                // The queue timeout fired first and answers the request
+                return Continuation.ASYNC;
+            }
+            sendAuthBusy(res, path, ipAddress, "queue_full");
+            async.complete();
+            return Continuation.RESPONDED;
         }
+        return Continuation.ASYNC;
+    }
 
-        // Allow whitelisted paths to pass through to controllers
-        if (isWhitelistedPath(path)) {
-            chain.doFilter(request, response);
-            return;
+    /**
+     * Answer a login or refresh that failed on the auth executor, unless a response is already on its way
+     */
+    private static void sendInternalError(HttpServletResponse res) {
+        if (res.isCommitted()) return;
+        try {
+            res.reset();
+            res.setContentType(ApplicationConstants.CONTENT_TYPE_JSON);
+            JsonWriter.send(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, INTERNAL_ERROR_BODY);
+        } catch (IOException | IllegalStateException e) {
+            // The client is gone
+        }
+    }
+
+    /**
+     * Reject a login or refresh the auth executor has no room for
+     */
+    private void sendAuthBusy(HttpServletResponse res, String path, String ipAddress, String reason) throws IOException {
+        audit(AuditEventType.REQUEST_SHED, ipAddress, path, reason, 0);
+
+        res.setHeader("Retry-After", "1");
+        sendRetryLater(res, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy. Try again in", 1);
+    }
+
+    /**
+     * Record a rejected request without formatting or logging on the request thread
+     */
+    private void audit(AuditEventType type, String ipAddress, String path, String detail, long waitTime) {
+        if (auditEventQueue != null) {
+            auditEventQueue.publish(type, ipAddress, path, detail, waitTime);
+        } else {
+            AuditEventQueue.write(auditLoggingService, type, ipAddress, path, detail, waitTime, System.currentTimeMillis());
         }
+    }
+
+    /**
+     * Apply the route's request rate limit policies and advertise the remaining quota
+     *
+     * @return false if the request was rejected
+     */
+    private boolean applyRouteRateLimit(HttpServletRequest req, HttpServletResponse res, String path, String ipAddress) throws IOException {
+        RateLimitDecision decision = routeRateLimitingService.check(req, ipAddress);
+        if (decision == null) {
+            return true;
+        }
+
+        res.setHeader("RateLimit-Limit", String.valueOf(decision.getLimit()));
+        res.setHeader("RateLimit-Remaining", String.valueOf(decision.getRemaining()));
+        res.setHeader("RateLimit-Reset", String.valueOf(decision.getResetSeconds()));
+        if (decision.isAllowed()) {
+            return true;
+        }
+
+        long waitTime = decision.getRetryAfterSeconds();
+        audit(AuditEventType.ROUTE_RATE_LIMITED, ipAddress, path, String.valueOf(decision.getScope()), waitTime);
 
-        res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-        res.getWriter().write("{\"error\": \"" + ApplicationConstants.ERROR_UNAUTHORIZED + "\"}");
+        res.setHeader("Retry-After", String.valueOf(waitTime));
+        sendRetryLater(res, SC_TOO_MANY_REQUESTS, "Too many requests. Try again in", waitTime);
+        return false;
     }
 
     /**
@@ -177,29 +406,78 @@ public class AuthenticationFilter implements Filter {
     private void handleLogin(String email, String password, String ipAddress, HttpServletResponse res) throws IOException {
         if (email == null) {
             auditLoggingService.logFailedAuth(null, ipAddress, "missing_email_header");
-            res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            res.getWriter().write("{\"error\": \"" + ApplicationConstants.ERROR_EMAIL_HEADER_MISSING + "\"}");
+            JsonWriter.send(res, HttpServletResponse.SC_BAD_REQUEST, EMAIL_HEADER_MISSING_BODY);
             return;
         }
         
-        // Check rate limiting
-        if (!rateLimitingService.isAllowed(ipAddress, email)) {
-            long waitTime = rateLimitingService.getTimeUntilNextAttempt(ipAddress, email);
+        // Reject IPs and usernames blocked for credential stuffing
+        if (credentialStuffingDetector != null) {
+            long blockedFor = credentialStuffingDetector.getBlockedSeconds(ipAddress, email);
+            if (blockedFor > 0) {
+                observeShadowPolicies(ipAddress, email, false, null);
+                Map<String, Object> auditData = new HashMap<>();
+                auditData.put("waitTime", blockedFor);
+                auditLoggingService.logRateLimitExceeded(email, ipAddress, "CREDENTIAL_STUFFING_BLOCK", auditData);
+                
+                res.setHeader("Retry-After", String.valueOf(blockedFor));
+                sendRetryLater(res, SC_TOO_MANY_REQUESTS, "Too many login attempts. Try again in", blockedFor);
+                return;
+            }
+        }
+        
+        // Reserve the attempt across all configured scopes; it counts as a failure until refunded
+        RateLimitDecision decision = rateLimitingService.acquire(ipAddress, email);
+        if (!decision.isAllowed()) {
+            observeShadowPolicies(ipAddress, email, false, null);
+            long waitTime = decision.getRetryAfterSeconds();
             
             Map<String, Object> auditData = new HashMap<>();
+            auditData.put("scope", decision.getScope());
             auditData.put("waitTime", waitTime);
-            auditData.put("remainingAttempts", rateLimitingService.getRemainingAttempts(ipAddress));
-            auditLoggingService.logRateLimitExceeded(email, ipAddress, "LOGIN_RATE_LIMIT");
+            auditLoggingService.logRateLimitExceeded(email, ipAddress, "LOGIN_RATE_LIMIT", auditData);
             
-            res.setStatus(429); // HTTP 429 Too Many Requests
-            res.getWriter().write("{\"error\": \"Too many login attempts. Try again in " + waitTime + " seconds\", \"retryAfter\": " + waitTime + "}");
+            res.setHeader("Retry-After", String.valueOf(waitTime));
+            sendRetryLater(res, SC_TOO_MANY_REQUESTS, "Too many login attempts. Try again in", waitTime);
             return;
         }
         
-        AuthenticationResult result = securityManager.authenticate(email, password);
+        // Shed the login before it queues for a password check if capacity is exhausted
+        if (concurrencyLimitingService != null && !concurrencyLimitingService.tryAcquire()) {
+            rateLimitingService.refund(ipAddress, email);
+            observeShadowPolicies(ipAddress, email, true, null);
+            long waitTime = concurrencyLimitingService.getRetryAfterSeconds();
+            
+            Map<String, Object> auditData = new HashMap<>();
+            auditData.put("concurrencyLimit", concurrencyLimitingService.getStats().getLimit());
+            auditData.put("waitTime", waitTime);
+            auditLoggingService.logAuthEvent("LOGIN_SHED", email, ipAddress, auditData);
+            
+            res.setHeader("Retry-After", String.valueOf(waitTime));
+            sendRetryLater(res, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy. Try again in", waitTime);
+            return;
+        }
+        
+        AuthenticationResult result;
+        long authStart = System.nanoTime();
+        boolean authCompleted = false;
+        try {
+            result = securityManager.authenticate(email, password);
+            authCompleted = true;
+        } catch (RuntimeException e) {
+            rateLimitingService.refund(ipAddress, email);
+            observeShadowPolicies(ipAddress, email, true, null);
+            throw e;
+        } finally {
+            if (concurrencyLimitingService != null) {
+                concurrencyLimitingService.release(authStart, authCompleted);
+            }
+        }
+        
         if (result.isSuccess()) {
-            // Reset rate limiting on successful authentication
+            // Give back the reserved attempt and reset rate limiting on successful authentication
+            rateLimitingService.refund(ipAddress, email);
             rateLimitingService.resetCounters(ipAddress, email);
+            observeShadowPolicies(ipAddress, email, true, true);
             
             // Generate JWT tokens
             String accessToken = jwtService.generateToken(email, result.getRoles(), null);
@@ -212,30 +490,41 @@ public class AuthenticationFilter implements Filter {
             auditData.put("authMethod", "PASSWORD");
             auditLoggingService.logSuccessfulAuth(email, ipAddress, "PASSWORD", auditData);
             
-            res.setStatus(HttpServletResponse.SC_OK);
-            res.getWriter().write(toJson(tokenResponse));
+            writeTokenResponse(res, tokenResponse);
         } else {
             // Check if SSO redirect is required
             if (result.getMessage() != null && result.getMessage().startsWith("SSO_REDIRECT_REQUIRED")) {
                 // User needs to authenticate via SSO OAuth flow
+                rateLimitingService.refund(ipAddress, email);
                 Map<String, Object> auditData = new HashMap<>();
                 auditData.put("reason", "sso_redirect_required");
                 auditData.put("authMethod", "SSO");
                 auditLoggingService.logAuthEvent("SSO_REDIRECT_REQUIRED", email, ipAddress, auditData);
                 
-                res.setStatus(HttpServletResponse.SC_UNAUTHORIZED); // Keep 401 for backward compatibility
-                res.getWriter().write("{\"error\": \"SSO_REDIRECT_REQUIRED\", \"requiresSSO\": true, \"authMethod\": \"SSO\", \"authorizationUrl\": \"/auth/entra/authorization-url\", \"message\": \"This email domain requires SSO authentication. Please use the authorization URL to authenticate.\"}");
+                JsonWriter.send(res, HttpServletResponse.SC_UNAUTHORIZED, SSO_REDIRECT_BODY); // Keep 401 for backward compatibility
                 return;
             }
             
-            // Record failed attempt for rate limiting
-            rateLimitingService.recordFailedAttempt(ipAddress, email);
+            // Keep the reserved attempt as a failure for rate limiting
+            rateLimitingService.confirmFailedAttempt(ipAddress, email);
+            observeShadowPolicies(ipAddress, email, true, false);
+            if (credentialStuffingDetector != null) {
+                credentialStuffingDetector.recordFailure(ipAddress, email);
+            }
             
             // Audit failed login
             auditLoggingService.logFailedAuth(email, ipAddress, "invalid_credentials");
             
-            res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            res.getWriter().write("{\"error\": \"" + ApplicationConstants.ERROR_INVALID_CREDENTIALS + "\"}");
+            JsonWriter.send(res, HttpServletResponse.SC_UNAUTHORIZED, INVALID_CREDENTIALS_BODY);
+        }
+    }
+
+    /**
+     * Report a login attempt and the enforcing decision to the shadow policies, if any
+     */
+    private void observeShadowPolicies(String ipAddress, String email, boolean allowed, Boolean success) {
+        if (shadowRateLimitingService != null) {
+            shadowRateLimitingService.observe(ipAddress, email, allowed, success);
         }
     }
 
@@ -246,8 +535,7 @@ public class AuthenticationFilter implements Filter {
         if (refreshToken == null) {
             auditLoggingService.logTokenRefresh(null, ipAddress, false, 
                 Map.of("reason", "missing_refresh_token"));
-            res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            res.getWriter().write("{\"error\": \"Missing refresh token\"}");
+            JsonWriter.send(res, HttpServletResponse.SC_UNAUTHORIZED, MISSING_REFRESH_TOKEN_BODY);
             return;
         }
         
@@ -276,8 +564,7 @@ public class AuthenticationFilter implements Filter {
             auditData.put("tokenRotated", true);
             auditLoggingService.logTokenRefresh(username, ipAddress, true, auditData);
             
-            res.setStatus(HttpServletResponse.SC_OK);
-            res.getWriter().write(toJson(tokenResponse));
+            writeTokenResponse(res, tokenResponse);
         } else {
             // Handle different error scenarios
             String errorCode = refreshResult.getErrorCode();
@@ -301,8 +588,8 @@ public class AuthenticationFilter implements Filter {
             
             auditLoggingService.logTokenRefresh(username, ipAddress, false, auditData);
             
-            res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            res.getWriter().write("{\"error\": \"" + refreshResult.getMessage() + "\"}");
+            JsonWriter.get().beginObject().name("error").value(refreshResult.getMessage()).endObject()
+                    .send(res, HttpServletResponse.SC_UNAUTHORIZED);
         }
     }
     
@@ -328,54 +615,72 @@ public class AuthenticationFilter implements Filter {
             // Audit logout
             auditLoggingService.logLogout(username, ipAddress);
             
-            res.setStatus(HttpServletResponse.SC_OK);
-            res.getWriter().write("{\"message\": \"Logout successful\"}");
+            JsonWriter.send(res, HttpServletResponse.SC_OK, LOGOUT_SUCCESSFUL_BODY);
             
         } catch (Exception e) {
             auditLoggingService.logLogout(username, ipAddress, 
                 Map.of("error", "token_parsing_failed"));
             
-            res.setStatus(HttpServletResponse.SC_OK);
-            res.getWriter().write("{\"message\": \"Logout completed\"}");
+            JsonWriter.send(res, HttpServletResponse.SC_OK, LOGOUT_COMPLETED_BODY);
         }
     }
     
+    private BearerTokenPrecheck tokenPrecheck() {
+        BearerTokenPrecheck precheck = bearerTokenPrecheck;
+        if (precheck == null) {
+            precheck = bearerTokenPrecheck = BearerTokenPrecheck.defaults();
+        }
+        return precheck;
+    }
+
     /**
-     * Get client IP address from request, handling proxy headers
+     * Get client IP address from request, believing proxy headers only from trusted proxies
      */
     private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-        
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
+        ClientIpResolver resolver = clientIpResolver;
+        if (resolver == null) {
+            resolver = clientIpResolver = ClientIpResolver.defaults();
         }
-        
-        return request.getRemoteAddr();
+        return resolver.resolve(request);
     }
 
-    private String toJson(TokenResponse tokenResponse) {
-        // Simple manual JSON serialization for demo
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-        sb.append("\"accessToken\": \"").append(tokenResponse.getAccessToken()).append("\",");
-        sb.append("\"refreshToken\": \"").append(tokenResponse.getRefreshToken()).append("\",");
-        sb.append("\"tokenType\": \"").append(tokenResponse.getTokenType()).append("\",");
-        sb.append("\"expiresIn\": ").append(tokenResponse.getExpiresIn()).append(",");
-        sb.append("\"username\": \"").append(tokenResponse.getUsername()).append("\"");
+    /**
+     * Send tokens as JSON, written straight into this thread's reusable buffer
+     */
+    private static void writeTokenResponse(HttpServletResponse res, TokenResponse tokenResponse) throws IOException {
+        JsonWriter json = JsonWriter.get().beginObject()
+                .name("accessToken").value(tokenResponse.getAccessToken())
+                .name("refreshToken").value(tokenResponse.getRefreshToken())
+                .name("tokenType").value(tokenResponse.getTokenType())
+                .name("expiresIn").value(tokenResponse.getExpiresIn())
+                .name("username").value(tokenResponse.getUsername());
         if (tokenResponse.getRoles() != null) {
-            sb.append(",\"roles\": [");
-            for (int i = 0; i < tokenResponse.getRoles().size(); i++) {
-                sb.append("\"").append(tokenResponse.getRoles().get(i)).append("\"");
-                if (i < tokenResponse.getRoles().size() - 1) sb.append(",");
+            json.name("roles").beginArray();
+            for (String role : tokenResponse.getRoles()) {
+                json.value(role);
             }
-            sb.append("]");
+            json.endArray();
         }
-        sb.append("}");
-        return sb.toString();
+        json.endObject().send(res, HttpServletResponse.SC_OK);
+    }
+
+    /**
+     * Send a rejection telling the client when to retry
+     */
+    private static void sendRetryLater(HttpServletResponse res, int status, String message, long waitTime) throws IOException {
+        JsonWriter.get().beginObject()
+                .name("error").value(message + " " + waitTime + " seconds")
+                .name("retryAfter").value(waitTime)
+                .endObject()
+                .send(res, status);
+    }
+
+    /**
+     * Work that writes a response
+     */
+    @FunctionalInterface
+    private interface ResponseTask {
+        void run() throws IOException;
     }
 
     @Override
@@ -0,0 +1,158 @@
+package com.intsof.samples.entra.filter;
+
+import com.intsof.samples.entra.service.JwtService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Structural check of bearer tokens before any parsing or signature work.
+ *
+ * A single pass over the characters checks the length bounds, that there are exactly
+ * three non-empty Base64URL segments, and that the header segment is the one
+ * {@link JwtService} issues. Scanner noise and broken clients are turned away with a
+ * reason code instead of a parser exception; rejects are counted per reason.
+ * Tokens that pass still get the full validation.
+ */
+@Component
+public class BearerTokenPrecheck {
+
+    /** Outcome of the check; everything but {@link #VALID} is a reject reason */
+    public enum Result {
+        VALID,
+        TOO_SHORT,
+        TOO_LONG,
+        SEGMENT_COUNT,
+        EMPTY_SEGMENT,
+        INVALID_CHARACTER,
+        UNEXPECTED_HEADER
+    }
+
+    private static final boolean[] BASE64URL = new boolean[128];
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++) BASE64URL[c] = true;
+        for (char c = 'a'; c <= 'z'; c++) BASE64URL[c] = true;
+        for (char c = '0'; c <= '9'; c++) BASE64URL[c] = true;
+        BASE64URL['-'] = true;
+        BASE64URL['_'] = true;
+    }
+
+    private final String expectedHeader;
+    private final int minLength;
+    private final int maxLength;
+    private final AtomicLongArray rejected = new AtomicLongArray(Result.values().length);
+
+    @Autowired
+    public BearerTokenPrecheck(@Value("${auth.token.precheck.max-length:4096}") int maxLength) {
+        this(JwtService.ENCODED_HEADER, maxLength);
+    }
+
+    BearerTokenPrecheck(String expectedHeader, int maxLength) {
+        this.expectedHeader = expectedHeader;
+        // Header, two dots and at least one character of payload and signature
+        this.minLength = expectedHeader.length() + 3;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Check with the defaults, for filters constructed without Spring
+     */
+    public static BearerTokenPrecheck defaults() {
+        return new BearerTokenPrecheck(4096);
+    }
+
+    /**
+     * Check the token in {@code text[from, text.length())}, e.g. after the "Bearer " scheme,
+     * and count it if it is rejected
+     */
+    public Result check(CharSequence text, int from) {
+        Result result = scan(text, from);
+        if (result != Result.VALID) {
+            rejected.incrementAndGet(result.ordinal());
+        }
+        return result;
+    }
+
+    /**
+     * Whether the token in {@code text[from, text.length())} passes, without counting rejects
+     */
+    public boolean isValid(CharSequence text, int from) {
+        return scan(text, from) == Result.VALID;
+    }
+
+    private Result scan(CharSequence text, int from) {
+        int length = text.length() - from;
+        if (length < minLength) return Result.TOO_SHORT;
+        if (length > maxLength) return Result.TOO_LONG;
+
+        int headerLength = expectedHeader.length();
+        int dots = 0;
+        int segmentStart = from;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int offset = i - from;
+            if (offset < headerLength) {
+                if (c != expectedHeader.charAt(offset)) {
+                    return c < 128 && (BASE64URL[c] || c == '.') ? Result.UNEXPECTED_HEADER : Result.INVALID_CHARACTER;
+                }
+            } else if (c == '.') {
+                if (i == segmentStart) return Result.EMPTY_SEGMENT;
+                if (++dots > 2) return Result.SEGMENT_COUNT;
+                segmentStart = i + 1;
+            } else if (c >= 128 || !BASE64URL[c]) {
+                return Result.INVALID_CHARACTER;
+            } else if (offset == headerLength) {
+                // The header segment must end exactly where the expected one does
+                return Result.UNEXPECTED_HEADER;
+            }
+        }
+        if (dots != 2) return Result.SEGMENT_COUNT;
+        if (segmentStart == text.length()) return Result.EMPTY_SEGMENT;
+        return Result.VALID;
+    }
+
+    /**
+     * Get current statistics for monitoring
+     */
+    public PrecheckStats getStats() {
+        Map<String, Long> byReason = new LinkedHashMap<>();
+        long total = 0;
+        for (Result result : Result.values()) {
+            if (result == Result.VALID) continue;
+            long count = rejected.get(result.ordinal());
+            byReason.put(result.name(), count);
+            total += count;
+        }
+        return new PrecheckStats(total, byReason);
+    }
+
+    /**
+     * Statistics class for monitoring
+     */
+    public static class PrecheckStats {
+        private final long rejected;
+        private final Map<String, Long> rejectedByReason;
+
+        public PrecheckStats(long rejected, Map<String, Long> rejectedByReason) {
+            this.rejected = rejected;
+            this.rejectedByReason = rejectedByReason;
+        }
+
+        // Getters
+        public long getRejected() { return rejected; }
+        public Map<String, Long> getRejectedByReason() { return rejectedByReason; }
+
+        @Override
+        public String toString() {
+            return "PrecheckStats{" +
+                    "rejected=" + rejected +
+                    ", rejectedByReason=" + rejectedByReason +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.intsof.samples.entra.filter;
+
+import com.intsof.samples.entra.ratelimit.IpAddress;
+import com.intsof.samples.entra.ratelimit.IpRangeSet;
+import jakarta.servlet.ServletConnection;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the client IP address of a request behind reverse proxies.
+ *
+ * Forwarding headers are only believed when the connection comes from a trusted
+ * proxy ({@code auth.client-ip.trusted-proxies}, CIDR ranges). The forwarded-for
+ * list is then walked from the right, skipping trusted hops; the first untrusted
+ * entry is the client. Entries to the left of it were written by the client itself
+ * and are ignored, so a spoofed header cannot pick the address the rate limiter and
+ * audit log see. If an entry is not an IP literal, the last trusted hop is used.
+ *
+ * Keep-alive connections from a proxy usually repeat the same header, so the last
+ * resolution is cached per connection.
+ */
+@Component
+public class ClientIpResolver {
+
+    private static final String REAL_IP_HEADER = "X-Real-IP";
+    private static final int MAX_CACHED_CONNECTIONS = 10_000;
+
+    private final IpRangeSet trustedProxies;
+    private final String forwardedHeader;
+    private final Map<String, Resolution> byConnection = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ClientIpResolver(@Value("${auth.client-ip.trusted-proxies:127.0.0.0/8,::1/128}") List<String> trustedProxies,
+                            @Value("${auth.client-ip.header:X-Forwarded-For}") String forwardedHeader) {
+        this.trustedProxies = IpRangeSet.of(trustedProxies);
+        this.forwardedHeader = forwardedHeader;
+    }
+
+    /**
+     * Resolver trusting only the loopback addresses, for filters constructed without Spring
+     */
+    public static ClientIpResolver defaults() {
+        return new ClientIpResolver(List.of("127.0.0.0/8", "::1/128"), "X-Forwarded-For");
+    }
+
+    /**
+     * The client address of the request
+     */
+    public String resolve(HttpServletRequest request) {
+        String remote = request.getRemoteAddr();
+        if (remote == null || !isTrusted(remote, 0, remote.length())) {
+            return remote;
+        }
+
+        String forwarded = forwardedFor(request);
+        if (forwarded == null) {
+            return realIp(remote, request.getHeader(REAL_IP_HEADER));
+        }
+
+        ServletConnection connection = request.getServletConnection();
+        String connectionId = connection != null ? connection.getConnectionId() : null;
+        if (connectionId != null) {
+            Resolution cached = byConnection.get(connectionId);
+            if (cached != null && cached.remote.equals(remote) && cached.forwarded.equals(forwarded)) {
+                return cached.client;
+            }
+        }
+
+        String client = resolve(remote, forwarded);
+        if (connectionId != null) {
+            if (byConnection.size() >= MAX_CACHED_CONNECTIONS) {
+                byConnection.clear();
+            }
+            byConnection.put(connectionId, new Resolution(remote, forwarded, client));
+        }
+        return client;
+    }
+
+    /**
+     * The client address for a peer and its forwarding headers, for stacks without servlet requests.
+     * Unlike {@link #resolve(HttpServletRequest)} nothing is cached per connection.
+     *
+     * @param forwarded the forwarded-for header, repeated headers joined with commas; null if absent
+     * @param realIp    the {@code X-Real-IP} header, used when there is no forwarded-for header
+     */
+    public String resolve(String remote, String forwarded, String realIp) {
+        if (remote == null || !isTrusted(remote, 0, remote.length())) {
+            return remote;
+        }
+        return forwarded == null || forwarded.isEmpty() ? realIp(remote, realIp) : resolve(remote, forwarded);
+    }
+
+    /**
+     * Name of the forwarded-for header
+     */
+    public String getForwardedHeader() {
+        return forwardedHeader;
+    }
+
+    /**
+     * Name of the single-address header believed from trusted proxies without a forwarded-for header
+     */
+    public static String getRealIpHeader() {
+        return REAL_IP_HEADER;
+    }
+
+    /**
+     * Walk a forwarded-for list from the right, starting at the trusted peer {@code remote}
+     */
+    String resolve(String remote, String forwarded) {
+        long[] bits = new long[2];
+        String lastTrusted = remote;
+        int end = forwarded.length();
+        while (end >= 0) {
+            int comma = forwarded.lastIndexOf(',', end - 1);
+            int start = comma + 1;
+            int to = end;
+            while (start < to && forwarded.charAt(start) <= ' ') start++;
+            while (to > start && forwarded.charAt(to - 1) <= ' ') to--;
+
+            if (!IpAddress.parse(forwarded, start, to, bits)) {
+                return lastTrusted;
+            }
+            String hop = start == 0 && to == forwarded.length() ? forwarded : forwarded.substring(start, to);
+            if (!trustedProxies.contains(bits[0], bits[1])) {
+                return hop;
+            }
+            lastTrusted = hop;
+            if (comma < 0) break;
+            end = comma;
+        }
+        // Every hop is a trusted proxy: the leftmost one is the closest thing to a client
+        return lastTrusted;
+    }
+
+    /**
+     * Whether the address is in a trusted proxy range
+     */
+    public boolean isTrusted(String address) {
+        return address != null && isTrusted(address, 0, address.length());
+    }
+
+    private boolean isTrusted(String address, int from, int to) {
+        if (trustedProxies.isEmpty()) return false;
+        long[] bits = new long[2];
+        return IpAddress.parse(address, from, to, bits) && trustedProxies.contains(bits[0], bits[1]);
+    }
+
+    private static String realIp(String remote, String realIp) {
+        return realIp != null && isAddress(realIp.trim()) ? realIp.trim() : remote;
+    }
+
+    private static boolean isAddress(String text) {
+        return IpAddress.parse(text, 0, text.length(), new long[2]);
+    }
+
+    /**
+     * The forwarded-for header; repeated headers are joined in order, as one list
+     */
+    private String forwardedFor(HttpServletRequest request) {
+        Enumeration<String> values = request.getHeaders(forwardedHeader);
+        if (values == null || !values.hasMoreElements()) return null;
+
+        String first = values.nextElement();
+        if (!values.hasMoreElements()) {
+            return first.isEmpty() ? null : first;
+        }
+        StringBuilder joined = new StringBuilder(first);
+        while (values.hasMoreElements()) {
+            joined.append(',').append(values.nextElement());
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Last resolution on a connection, valid while the peer and the header are unchanged
+     */
+    private static final class Resolution {
+        final String remote;
+        final String forwarded;
+        final String client;
+
+        Resolution(String remote, String forwarded, String client) {
+            this.remote = remote;
+            this.forwarded = forwarded;
+            this.client = client;
+        }
+    }
+}
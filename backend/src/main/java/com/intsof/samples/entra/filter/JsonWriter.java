@@ -0,0 +1,222 @@
+package com.intsof.samples.entra.filter;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming JSON writer for the filter's responses.
+ *
+ * Writes UTF-8 straight into a byte buffer that is reused per thread, escaping
+ * strings as it goes, so a response costs no intermediate String or char[]. The
+ * finished body is sent through the output stream with its Content-Length. Fixed
+ * bodies are encoded once with {@link #errorBody} and sent with {@link #send(HttpServletResponse, int, byte[])}.
+ */
+final class JsonWriter {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // Buffers that grew for an unusually large body are not kept
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final ThreadLocal<JsonWriter> BUFFERS = ThreadLocal.withInitial(JsonWriter::new);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+    private boolean needsComma;
+
+    private JsonWriter() {
+    }
+
+    /**
+     * This thread's writer, emptied
+     */
+    static JsonWriter get() {
+        JsonWriter writer = BUFFERS.get();
+        if (writer.buffer.length > MAX_RETAINED_CAPACITY) {
+            writer.buffer = new byte[INITIAL_CAPACITY];
+        }
+        writer.length = 0;
+        writer.needsComma = false;
+        return writer;
+    }
+
+    /**
+     * {@code {"error": message}}, encoded once
+     */
+    static byte[] errorBody(String message) {
+        return new JsonWriter().beginObject().name("error").value(message).endObject().toByteArray();
+    }
+
+    /**
+     * Send a pre-encoded body
+     */
+    static void send(HttpServletResponse res, int status, byte[] body) throws IOException {
+        res.setStatus(status);
+        res.setCharacterEncoding("UTF-8");
+        res.setContentLength(body.length);
+        res.getOutputStream().write(body);
+    }
+
+    /**
+     * Send the body written so far
+     */
+    void send(HttpServletResponse res, int status) throws IOException {
+        res.setStatus(status);
+        res.setCharacterEncoding("UTF-8");
+        res.setContentLength(length);
+        res.getOutputStream().write(buffer, 0, length);
+    }
+
+    JsonWriter beginObject() {
+        separate();
+        put((byte) '{');
+        needsComma = false;
+        return this;
+    }
+
+    JsonWriter endObject() {
+        put((byte) '}');
+        needsComma = true;
+        return this;
+    }
+
+    JsonWriter beginArray() {
+        separate();
+        put((byte) '[');
+        needsComma = false;
+        return this;
+    }
+
+    JsonWriter endArray() {
+        put((byte) ']');
+        needsComma = true;
+        return this;
+    }
+
+    JsonWriter name(String name) {
+        separate();
+        string(name);
+        put((byte) ':');
+        needsComma = false;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        separate();
+        if (value == null) {
+            ascii("null");
+        } else {
+            string(value);
+        }
+        needsComma = true;
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        separate();
+        if (value == Long.MIN_VALUE) {
+            ascii("-9223372036854775808");
+        } else {
+            if (value < 0) {
+                put((byte) '-');
+                value = -value;
+            }
+            int digits = 1;
+            for (long v = value; v >= 10; v /= 10) digits++;
+            ensure(digits);
+            for (int i = length + digits - 1; i >= length; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += digits;
+        }
+        needsComma = true;
+        return this;
+    }
+
+    JsonWriter value(boolean value) {
+        separate();
+        ascii(value ? "true" : "false");
+        needsComma = true;
+        return this;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void separate() {
+        if (needsComma) put((byte) ',');
+    }
+
+    private void string(String s) {
+        // Worst case is six bytes per char (a \\u00XX escape)
+        ensure(s.length() * 6 + 2);
+        byte[] b = buffer;
+        int n = length;
+        b[n++] = '"';
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    b[n++] = (byte) c;
+                    continue;
+                }
+                b[n++] = '\\';
+                switch (c) {
+                    case '"': b[n++] = '"'; break;
+                    case '\\': b[n++] = '\\'; break;
+                    case '\n': b[n++] = 'n'; break;
+                    case '\r': b[n++] = 'r'; break;
+                    case '\t': b[n++] = 't'; break;
+                    case '\b': b[n++] = 'b'; break;
+                    case '\f': b[n++] = 'f'; break;
+                    default:
+                        b[n++] = 'u';
+                        b[n++] = '0';
+                        b[n++] = '0';
+                        b[n++] = HEX[c >> 4];
+                        b[n++] = HEX[c & 0xf];
+                }
+            } else if (c < 0x800) {
+                b[n++] = (byte) (0xc0 | (c >> 6));
+                b[n++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[n++] = (byte) (0xf0 | (cp >> 18));
+                b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                b[n++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates cannot be encoded
+                b[n++] = '?';
+            } else {
+                b[n++] = (byte) (0xe0 | (c >> 12));
+                b[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                b[n++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        b[n++] = '"';
+        length = n;
+    }
+
+    private void ascii(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buffer[length++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        buffer[length++] = b;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.intsof.samples.entra.filter;
+
+import com.intsof.samples.entra.constants.ApplicationConstants;
+import com.intsof.samples.entra.model.AuthenticatedPrincipal;
+import com.intsof.samples.entra.service.JwtService;
+import com.intsof.samples.entra.service.LoadSheddingService;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Front filter that sheds load by priority before any authentication work, see
+ * {@link LoadSheddingService}. Runs ahead of {@link AuthenticationFilter}; a bearer
+ * token is verified here, so a forged one cannot buy high priority, and the principal
+ * is left on the request for the authentication filter to reuse. A request
+ * that goes async gives its slot back once the container thread is done with it: the
+ * queued work is bounded by {@code AuthExecutorService}, and holding slots through its
+ * queue would let a login storm pin every one of them.
+ */
+@Component("loadSheddingFilter")
+public class LoadSheddingFilter implements Filter {
+
+    private static final String REQUEST_START_HEADER = "X-Request-Start";
+    // Proxy timestamps further off than this are clock trouble, not queueing
+    private static final long MAX_EXTERNAL_DELAY_MILLIS = 60_000;
+    private static final byte[] OVERLOADED_BODY = JsonWriter.errorBody("Server overloaded. Try again later");
+
+    private final LoadSheddingService loadSheddingService;
+    private final ClientIpResolver clientIpResolver;
+
+    // Structural bearer token check run before the signature is verified; defaults when absent
+    @Autowired(required = false)
+    private BearerTokenPrecheck bearerTokenPrecheck;
+
+    // Verifies bearer tokens for ranking API calls; without it no request ranks high
+    @Autowired(required = false)
+    private JwtService jwtService;
+
+    @Autowired
+    public LoadSheddingFilter(LoadSheddingService loadSheddingService, ClientIpResolver clientIpResolver) {
+        this.loadSheddingService = loadSheddingService;
+        this.clientIpResolver = clientIpResolver;
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!loadSheddingService.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest req = (HttpServletRequest) request;
+        LoadSheddingService.Priority priority = loadSheddingService.priorityOf(req.getRequestURI(), authenticate(req));
+        if (!loadSheddingService.tryAdmit(priority, externalDelayNanos(req))) {
+            HttpServletResponse res = (HttpServletResponse) response;
+            res.setContentType(ApplicationConstants.CONTENT_TYPE_JSON);
+            res.setHeader("Retry-After", "1");
+            JsonWriter.send(res, HttpServletResponse.SC_SERVICE_UNAVAILABLE, OVERLOADED_BODY);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            loadSheddingService.release();
+        }
+    }
+
+    /**
+     * Authenticate the bearer token of a request, keeping the principal on it
+     *
+     * @return whether the request carries a verified, unrevoked token
+     */
+    private boolean authenticate(HttpServletRequest req) {
+        String authHeader = req.getHeader("Authorization");
+        if (jwtService == null || authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return false;
+        }
+        BearerTokenPrecheck precheck = bearerTokenPrecheck;
+        if (precheck == null) {
+            precheck = bearerTokenPrecheck = BearerTokenPrecheck.defaults();
+        }
+        if (!precheck.isValid(authHeader, 7)) {
+            return false;
+        }
+        AuthenticatedPrincipal principal = jwtService.authenticate(authHeader.substring(7));
+        if (principal == null) {
+            return false;
+        }
+        req.setAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, principal);
+        return true;
+    }
+
+    /**
+     * Time the request spent queued in a trusted proxy, from its {@code X-Request-Start} header
+     */
+    private long externalDelayNanos(HttpServletRequest req) {
+        String header = req.getHeader(REQUEST_START_HEADER);
+        if (header == null || !clientIpResolver.isTrusted(req.getRemoteAddr())) {
+            return 0;
+        }
+        long startMillis = parseRequestStart(header);
+        long delay = System.currentTimeMillis() - startMillis;
+        return startMillis < 0 || delay <= 0 || delay > MAX_EXTERNAL_DELAY_MILLIS ? 0 : TimeUnit.MILLISECONDS.toNanos(delay);
+    }
+
+    /**
+     * Epoch milliseconds of an {@code X-Request-Start} value: {@code t=} followed by
+     * seconds with a fraction (nginx {@code $msec}), or by whole milli- or microseconds
+     *
+     * @return -1 if malformed
+     */
+    static long parseRequestStart(String header) {
+        int from = header.startsWith("t=") ? 2 : 0;
+        long whole = 0;
+        long fraction = 0;
+        long fractionScale = 1;
+        boolean dot = false;
+        int digits = 0;
+        for (int i = from; i < header.length(); i++) {
+            char c = header.charAt(i);
+            if (c == '.' && !dot) {
+                dot = true;
+            } else if (c >= '0' && c <= '9' && digits < 18) {
+                digits++;
+                if (dot) {
+                    if (fractionScale < 1000) {
+                        fraction = fraction * 10 + (c - '0');
+                        fractionScale *= 10;
+                    }
+                } else {
+                    whole = whole * 10 + (c - '0');
+                }
+            } else {
+                return -1;
+            }
+        }
+        if (digits == 0) return -1;
+        if (dot) return whole * 1000 + fraction * (1000 / fractionScale);
+        // Without a fraction the magnitude tells the unit: seconds, milliseconds or microseconds
+        if (whole >= 100_000_000_000_000L) return whole / 1000;
+        if (whole >= 100_000_000_000L) return whole;
+        return whole * 1000;
+    }
+}
@@ -0,0 +1,194 @@
+package com.intsof.samples.entra.filter;
+
+import com.intsof.samples.entra.config.AuthRouteProperties;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The authentication filter's routes, compiled once at startup into a character trie.
+ *
+ * A lookup walks the request path once, whatever the number of routes, and
+ * allocates nothing. Each trie node holds one action per HTTP method plus one for
+ * any method, both for the exact path and for the {@code /**} subtree below it. The
+ * exact route wins over prefix routes, and a longer prefix over a shorter one;
+ * unmatched requests are {@link Action#PROTECTED}.
+ */
+public final class RouteTable {
+
+    /**
+     * What the filter does with a request
+     */
+    public enum Action {
+        /** Validate the bearer token, then pass the request on */
+        PROTECTED,
+        /** Pass the request on without a token */
+        PUBLIC,
+        LOGIN,
+        REFRESH,
+        LOGOUT
+    }
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS"};
+    private static final int ANY = METHODS.length;
+    private static final String SUBTREE = "/**";
+
+    private final Node root = new Node();
+
+    private RouteTable() {
+    }
+
+    /**
+     * The routes of the default configuration
+     */
+    public static RouteTable defaults() {
+        return compile(new AuthRouteProperties());
+    }
+
+    public static RouteTable compile(AuthRouteProperties properties) {
+        RouteTable table = new RouteTable();
+        properties.getHandlers().forEach((name, route) -> {
+            Action action;
+            try {
+                action = Action.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                action = null;
+            }
+            if (action == null || action == Action.PUBLIC || action == Action.PROTECTED) {
+                throw new IllegalArgumentException("Unknown route handler '" + name + "'");
+            }
+            if (route == null || route.isBlank()) {
+                throw new IllegalArgumentException("Route handler '" + name + "' has no path");
+            }
+            table.add(route, action);
+            // Other methods on a handler path pass through to the controllers, e.g. GET /logout
+            table.add(path(route.trim()), Action.PUBLIC);
+        });
+        for (String route : properties.getPublicPaths()) {
+            if (route != null && !route.isBlank()) {
+                table.add(route, Action.PUBLIC);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * The action for a request
+     */
+    public Action lookup(String method, String path) {
+        if (path == null || path.isEmpty()) {
+            return Action.PROTECTED;
+        }
+        int m = methodIndex(method);
+        Action prefixMatch = null;
+        Node node = root;
+        int length = path.length();
+        for (int i = 0; i < length; i++) {
+            // A subtree route on /a covers /a and /a/..., but not /ab
+            if (node.subtree != null && path.charAt(i) == '/') {
+                Action action = node.subtree.get(m);
+                if (action != null) prefixMatch = action;
+            }
+            node = node.child(path.charAt(i));
+            if (node == null) {
+                return prefixMatch != null ? prefixMatch : Action.PROTECTED;
+            }
+        }
+        Action action = node.exact != null ? node.exact.get(m) : null;
+        if (action == null && node.subtree != null) {
+            action = node.subtree.get(m);
+        }
+        return action != null ? action : prefixMatch != null ? prefixMatch : Action.PROTECTED;
+    }
+
+    private void add(String route, Action action) {
+        String trimmed = route.trim();
+        String path = path(trimmed);
+        int method = path.length() == trimmed.length() ? ANY : methodIndex(trimmed.substring(0, trimmed.indexOf(' ')));
+        if (method < 0) {
+            throw new IllegalArgumentException("Unsupported method in route '" + route + "'");
+        }
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException("Route '" + route + "' must start with '/'");
+        }
+
+        boolean subtree = path.endsWith(SUBTREE);
+        if (subtree) {
+            path = path.substring(0, path.length() - SUBTREE.length());
+        }
+        Node node = root;
+        for (int i = 0; i < path.length(); i++) {
+            node = node.childOrCreate(path.charAt(i));
+        }
+        if (subtree) {
+            if (node.subtree == null) node.subtree = new Actions();
+            node.subtree.putIfAbsent(method, action);
+        } else {
+            if (node.exact == null) node.exact = new Actions();
+            node.exact.putIfAbsent(method, action);
+        }
+    }
+
+    private static String path(String route) {
+        int space = route.indexOf(' ');
+        return space < 0 ? route : route.substring(space + 1).trim();
+    }
+
+    /**
+     * Slot of an HTTP method, ANY for methods without their own slot, -1 for a bad configured method
+     */
+    private static int methodIndex(String method) {
+        if (method == null) return ANY;
+        if ("*".equals(method)) return ANY;
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i].equalsIgnoreCase(method)) return i;
+        }
+        return method.chars().allMatch(Character::isLetter) ? ANY : -1;
+    }
+
+    /**
+     * Actions of one path, per method
+     */
+    private static final class Actions {
+        private final Action[] byMethod = new Action[METHODS.length + 1];
+
+        Action get(int method) {
+            Action action = byMethod[method];
+            return action != null ? action : byMethod[ANY];
+        }
+
+        // The first configured route for a path and method wins
+        void putIfAbsent(int method, Action action) {
+            if (byMethod[method] == null) byMethod[method] = action;
+        }
+    }
+
+    private static final class Node {
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private Actions exact;
+        private Actions subtree;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i >= 0) return children[i];
+            int at = -i - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newLabels[at] = c;
+            newChildren[at] = new Node();
+            System.arraycopy(labels, at, newLabels, at + 1, labels.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[at];
+        }
+    }
+}
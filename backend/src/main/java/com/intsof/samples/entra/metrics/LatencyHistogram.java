@@ -0,0 +1,135 @@
+package com.intsof.samples.entra.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory, lock-free latency histogram with HDR-style log-linear buckets.
+ *
+ * Every power of two is split into 16 linear sub-buckets, so a recorded value is
+ * off by at most 1/16 (6.25%) of itself, from 1 ns up to the 17 s ceiling; larger
+ * values land in the top bucket. A bucket index is a leading-zero count and a
+ * shift, and recording is a single atomic increment; the mean is estimated from
+ * the bucket midpoints. Like a {@code LongAdder}, the counts are striped by thread
+ * (one full bucket array per stripe, so stripes never share a cache line), which
+ * keeps threads that record the same latency from contending.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below this are their own bucket
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int MAX_VALUE_BITS = 34;
+
+    /** Number of buckets */
+    static final int BUCKETS = index((1L << MAX_VALUE_BITS) - 1) + 1;
+
+    private static final int STRIPES =
+            Math.min(8, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+
+    // Stripe-major: stripe s holds buckets [s * BUCKETS, (s + 1) * BUCKETS)
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+
+    /**
+     * Record one value in nanoseconds; negative values count as zero
+     */
+    public void record(long nanos) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        counts.getAndIncrement(stripe * BUCKETS + Math.min(index(Math.max(0, nanos)), BUCKETS - 1));
+    }
+
+    static int index(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Smallest value that falls into the bucket
+     */
+    static long lowerBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Largest value that falls into the bucket; for the top bucket, the ceiling
+     */
+    static long upperBound(int index) {
+        return lowerBound(index + 1) - 1;
+    }
+
+    /**
+     * Copy of the current counts; values recorded concurrently may be missing
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        double sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                copy[i] += counts.get(stripe * BUCKETS + i);
+            }
+            count += copy[i];
+            sum += copy[i] * ((lowerBound(i) + upperBound(i)) / 2.0);
+        }
+        return new Snapshot(copy, count, sum);
+    }
+
+    /**
+     * Point-in-time view of a histogram
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final double sum;
+
+        private Snapshot(long[] counts, long count, double sum) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Mean in nanoseconds, from the bucket midpoints; 0 if empty
+         */
+        public long getMean() {
+            return count == 0 ? 0 : Math.round(sum / count);
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile (0..1), in nanoseconds; 0 if empty
+         */
+        public long getValueAtQuantile(double quantile) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(counts.length - 1);
+        }
+
+        /**
+         * Upper bound of the highest non-empty bucket, in nanoseconds; 0 if empty
+         */
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) return upperBound(i);
+            }
+            return 0;
+        }
+    }
+}
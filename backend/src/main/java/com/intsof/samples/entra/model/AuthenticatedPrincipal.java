@@ -0,0 +1,47 @@
+package com.intsof.samples.entra.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Identity from a validated access token, decoded once by the authentication filter.
+ * Stored as request attribute {@link #REQUEST_ATTRIBUTE}; controllers receive it by
+ * declaring a parameter of this type.
+ */
+public final class AuthenticatedPrincipal {
+
+    /** Request attribute under which the filter stores the principal */
+    public static final String REQUEST_ATTRIBUTE = AuthenticatedPrincipal.class.getName();
+
+    private final String subject;
+    private final List<String> roles;
+    private final String tokenId;
+    private final Instant expiresAt;
+
+    public AuthenticatedPrincipal(String subject, List<String> roles, String tokenId, Instant expiresAt) {
+        this.subject = subject;
+        this.roles = roles == null ? List.of() : List.copyOf(roles);
+        this.tokenId = tokenId;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getSubject() { return subject; }
+    public List<String> getRoles() { return roles; }
+    /** The token's jti claim; null for tokens issued before it was added */
+    public String getTokenId() { return tokenId; }
+    public Instant getExpiresAt() { return expiresAt; }
+
+    public boolean hasRole(String role) {
+        return roles.contains(role);
+    }
+
+    @Override
+    public String toString() {
+        return "AuthenticatedPrincipal{" +
+                "subject='" + subject + '\'' +
+                ", roles=" + roles +
+                ", tokenId='" + tokenId + '\'' +
+                ", expiresAt=" + expiresAt +
+                '}';
+    }
+}
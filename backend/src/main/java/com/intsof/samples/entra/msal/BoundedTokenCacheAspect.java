@@ -0,0 +1,145 @@
+package com.intsof.samples.entra.msal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.microsoft.aad.msal4j.ITokenCache;
+import com.microsoft.aad.msal4j.ITokenCacheAccessAspect;
+import com.microsoft.aad.msal4j.ITokenCacheAccessContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a long-lived MSAL client's token cache to a bounded number of accounts.
+ *
+ * Every code exchange adds an account with its access, refresh and ID tokens to the
+ * client's cache, which would otherwise grow with every user who ever signed in.
+ * After every {@code trimEvery} cache changes the cache is serialized, the accounts
+ * whose tokens were cached longest ago are removed from it, and the trimmed form is
+ * loaded back, so the serialization cost is spread over many logins and the cache
+ * never holds more than {@code maxAccounts + trimEvery} accounts.
+ */
+public final class BoundedTokenCacheAspect implements ITokenCacheAccessAspect {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedTokenCacheAspect.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] ACCOUNT_SECTIONS = {"Account", "AccessToken", "RefreshToken", "IdToken"};
+
+    private final int maxAccounts;
+    private final int trimEvery;
+    // A lock rather than a monitor, so waiting virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private int changesSinceTrim;
+    private volatile int accounts;
+    private volatile int serializedLength;
+    private final AtomicLong evicted = new AtomicLong();
+
+    public BoundedTokenCacheAspect(int maxAccounts) {
+        this.maxAccounts = Math.max(1, maxAccounts);
+        this.trimEvery = Math.max(1, this.maxAccounts / 10);
+    }
+
+    @Override
+    public void beforeCacheAccess(ITokenCacheAccessContext context) {
+        // The client application keeps the cache in memory; nothing to load
+    }
+
+    @Override
+    public void afterCacheAccess(ITokenCacheAccessContext context) {
+        if (!context.hasCacheChanged()) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (++changesSinceTrim < trimEvery) {
+                return;
+            }
+            changesSinceTrim = 0;
+            trim(context.tokenCache());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not trim MSAL token cache: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the accounts beyond the limit, oldest first
+     */
+    void trim(ITokenCache cache) throws IOException {
+        String serialized = cache.serialize();
+        JsonNode root = MAPPER.readTree(serialized);
+        if (!(root instanceof ObjectNode)) {
+            return;
+        }
+
+        // Newest cached_at per account, across all of its entries
+        Map<String, Long> lastCached = new HashMap<>();
+        for (String section : ACCOUNT_SECTIONS) {
+            root.path(section).forEach(entry -> {
+                String account = entry.path("home_account_id").asText("");
+                if (!account.isEmpty()) {
+                    lastCached.merge(account, entry.path("cached_at").asLong(0), Math::max);
+                }
+            });
+        }
+        if (lastCached.size() <= maxAccounts) {
+            accounts = lastCached.size();
+            serializedLength = serialized.length();
+            return;
+        }
+
+        List<Map.Entry<String, Long>> oldestFirst = new ArrayList<>(lastCached.entrySet());
+        oldestFirst.sort(Map.Entry.comparingByValue());
+        Set<String> removed = new HashSet<>();
+        for (int i = 0; i < oldestFirst.size() - maxAccounts; i++) {
+            removed.add(oldestFirst.get(i).getKey());
+        }
+        for (String section : ACCOUNT_SECTIONS) {
+            Iterator<JsonNode> entries = root.path(section).elements();
+            while (entries.hasNext()) {
+                if (removed.contains(entries.next().path("home_account_id").asText(""))) {
+                    entries.remove();
+                }
+            }
+        }
+
+        String trimmed = MAPPER.writeValueAsString(root);
+        cache.deserialize(trimmed);
+        accounts = lastCached.size() - removed.size();
+        serializedLength = trimmed.length();
+        evicted.addAndGet(removed.size());
+    }
+
+    /**
+     * Accounts in the cache when it was last serialized
+     */
+    public int getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Length of the cache when it was last serialized (in characters)
+     */
+    public int getSerializedLength() {
+        return serializedLength;
+    }
+
+    /**
+     * Accounts removed to keep the cache within its limit
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+}
@@ -0,0 +1,60 @@
+package com.intsof.samples.entra.msal;
+
+import com.microsoft.aad.msal4j.HttpMethod;
+import com.microsoft.aad.msal4j.HttpRequest;
+import com.microsoft.aad.msal4j.HttpResponse;
+import com.microsoft.aad.msal4j.IHttpClient;
+import com.microsoft.aad.msal4j.IHttpResponse;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MSAL transport backed by one shared {@link HttpClient}, which keeps connections to
+ * the Entra endpoints alive (HTTP/2 where offered, pooled HTTP/1.1 otherwise) instead
+ * of opening one per request as MSAL's default {@code HttpsURLConnection} client can.
+ * Thread-safe; a single instance serves every MSAL client application.
+ */
+public final class PooledMsalHttpClient implements IHttpClient {
+
+    // Set by the JDK client itself; it refuses requests that carry them
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+
+    public PooledMsalHttpClient(long connectTimeoutMillis, long requestTimeoutMillis) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+    }
+
+    @Override
+    public IHttpResponse send(HttpRequest request) throws Exception {
+        java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(URI.create(request.url().toString()))
+                .timeout(requestTimeout);
+        if (request.headers() != null) {
+            for (Map.Entry<String, String> header : request.headers().entrySet()) {
+                if (header.getValue() != null && !RESTRICTED_HEADERS.contains(header.getKey().toLowerCase())) {
+                    builder.header(header.getKey(), header.getValue());
+                }
+            }
+        }
+        String body = request.body();
+        builder.method(request.httpMethod() != null ? request.httpMethod().methodName : HttpMethod.GET.methodName,
+                body == null ? java.net.http.HttpRequest.BodyPublishers.noBody()
+                        : java.net.http.HttpRequest.BodyPublishers.ofString(body));
+
+        java.net.http.HttpResponse<String> response = httpClient.send(builder.build(),
+                java.net.http.HttpResponse.BodyHandlers.ofString());
+        HttpResponse result = new HttpResponse().statusCode(response.statusCode()).body(response.body());
+        result.addHeaders(response.headers().map());
+        return result;
+    }
+}
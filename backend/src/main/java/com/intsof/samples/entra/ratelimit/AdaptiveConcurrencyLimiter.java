@@ -0,0 +1,161 @@
+package com.intsof.samples.entra.ratelimit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive limit on the number of concurrent calls into an expensive operation.
+ *
+ * The limit follows the observed latency (gradient algorithm): the latency of the
+ * last few calls is compared with a slowly moving long-term average. While they are
+ * close the limit grows by about {@code sqrt(limit)} per sample window; once recent
+ * calls get slower than {@code tolerance} times the long-term latency, work is
+ * queueing somewhere, and the limit shrinks in proportion. Calls that fail with an
+ * error cut the limit multiplicatively (AIMD backoff).
+ *
+ * Calls beyond the limit are rejected immediately instead of waiting, so the caller
+ * can shed them while threads are still free for everything else. Acquire and
+ * release are lock-free; the limit is recomputed once per sample window.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    // Long-term latency average over roughly this many samples
+    private static final int LONG_WINDOW = 600;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final int windowSamples;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile double limit;
+    private volatile long recentLatencyNanos;
+
+    // Current sample window, guarded by sampleLock
+    private final ReentrantLock sampleLock = new ReentrantLock();
+    private long windowLatencySum;
+    private int windowCount;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+    private double longLatencyNanos;
+    private long longSamples;
+
+    /**
+     * @param initialLimit  concurrency allowed before any latency has been observed
+     * @param tolerance     how much slower than the long-term latency recent calls may get before the limit shrinks
+     * @param windowSamples calls per limit update
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, int windowSamples) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.tolerance = Math.max(1.0, tolerance);
+        this.windowSamples = Math.max(1, windowSamples);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * Claim a slot for one call
+     *
+     * @return false if the limit is reached; the call must then not be made
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Release the slot of a call made after {@link #tryAcquire()} returned true
+     *
+     * @param latencyNanos how long the call took
+     * @param dropped      true if the call failed with an error rather than a result
+     */
+    public void release(long latencyNanos, boolean dropped) {
+        int concurrent = inFlight.getAndDecrement();
+        onSample(Math.max(0, latencyNanos), concurrent, dropped);
+    }
+
+    private void onSample(long latencyNanos, int concurrent, boolean dropped) {
+        // A lock rather than a monitor, so releases on virtual threads never pin their carrier
+        sampleLock.lock();
+        try {
+            windowLatencySum += latencyNanos;
+            windowCount++;
+            windowMaxInFlight = Math.max(windowMaxInFlight, concurrent);
+            windowDropped |= dropped;
+            if (windowCount < windowSamples) return;
+
+            long recent = windowLatencySum / windowCount;
+            recentLatencyNanos = recent;
+            double current = limit;
+            double next;
+            if (windowDropped) {
+                next = current * BACKOFF_RATIO;
+            } else {
+                longSamples++;
+                double weight = 1.0 / Math.min(longSamples, LONG_WINDOW);
+                longLatencyNanos += (recent - longLatencyNanos) * weight;
+
+                // Only grow when the limit was actually in use, or it would drift up while idle
+                double gradient = Math.max(0.5, Math.min(1.0, tolerance * longLatencyNanos / Math.max(1, recent)));
+                double queue = windowMaxInFlight * 2 >= current ? Math.sqrt(current) : 0;
+                next = current * (1 - SMOOTHING) + (current * gradient + queue) * SMOOTHING;
+
+                // Let the long-term average recover after a sustained slowdown has been absorbed
+                if (recent > longLatencyNanos * tolerance) {
+                    longLatencyNanos *= 0.95;
+                }
+            }
+            limit = Math.min(maxLimit, Math.max(minLimit, next));
+
+            windowLatencySum = 0;
+            windowCount = 0;
+            windowMaxInFlight = 0;
+            windowDropped = false;
+        } finally {
+            sampleLock.unlock();
+        }
+    }
+
+    /**
+     * Current concurrency limit
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Calls currently holding a slot
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Average latency of the last sample window, 0 before the first one completes
+     */
+    public long getRecentLatencyNanos() {
+        return recentLatencyNanos;
+    }
+}
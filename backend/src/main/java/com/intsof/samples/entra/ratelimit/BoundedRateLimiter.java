@@ -0,0 +1,197 @@
+package com.intsof.samples.entra.ratelimit;
+
+/**
+ * Failure limiter with a hard memory bound, for use under IP / username spray attacks.
+ *
+ * Every key starts out untracked: its failures are only counted in a fixed-size
+ * {@link CountMinSketch}. Once the sketch shows {@code promotionThreshold} failures
+ * the key becomes a suspect and is promoted to an exact {@link GcraRateLimiter}
+ * counter, of which at most {@code maxTrackedKeys} exist at any time.
+ *
+ * Keys are primitive longs, e.g. from {@link IpAddress}; String keys are hashed
+ * to 64 bits first, so a lookup allocates nothing.
+ *
+ * Accuracy trade-offs:
+ * <ul>
+ *   <li>Exact counters are seeded with at most {@code promotionThreshold} failures,
+ *       so sketch over-counting can never lock out a key on promotion.</li>
+ *   <li>While below the cap, untracked keys are always allowed; the sketch only
+ *       decides who earns an exact counter.</li>
+ *   <li>Once the cap is reached, untracked keys are denied when their sketch
+ *       estimate reaches the limit. Because count-min over-counts, heavy spray
+ *       traffic can then deny an innocent key whose counters collide - the limiter
+ *       fails closed rather than letting an attacker flood the table and bypass it.</li>
+ * </ul>
+ */
+public class BoundedRateLimiter implements RateLimitStore {
+
+    private final GcraRateLimiter exact;
+    private final CountMinSketch sketch;
+    private final int maxTrackedKeys;
+    private final int promotionThreshold;
+
+    public BoundedRateLimiter(int maxTrackedKeys, int promotionThreshold, int sketchDepth, int sketchWidth) {
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.promotionThreshold = Math.max(1, promotionThreshold);
+        this.exact = new GcraRateLimiter(maxTrackedKeys);
+        this.sketch = new CountMinSketch(sketchDepth, sketchWidth);
+    }
+
+    /**
+     * Check whether another attempt is allowed without recording one
+     */
+    public boolean isAllowed(String key, int limit, long periodMillis, long now) {
+        return isAllowed(CountMinSketch.hash64(key), limit, periodMillis, now);
+    }
+
+    @Override
+    public boolean isAllowed(long key, int limit, long periodMillis, long now) {
+        if (exact.contains(key)) {
+            return exact.isAllowed(key, limit, periodMillis, now);
+        }
+        return !isSaturated() || sketch.estimate(CountMinSketch.mix64(key), periodMillis, now) < limit;
+    }
+
+    /**
+     * Record a failed attempt, promoting the key to an exact counter once it is a suspect
+     */
+    public void recordFailure(String key, int limit, long periodMillis, long now) {
+        recordFailure(CountMinSketch.hash64(key), limit, periodMillis, now);
+    }
+
+    @Override
+    public void recordFailure(long key, int limit, long periodMillis, long now) {
+        if (exact.contains(key)) {
+            exact.record(key, limit, periodMillis, now);
+            return;
+        }
+
+        int estimate = sketch.increment(CountMinSketch.mix64(key), periodMillis, now);
+        if (estimate >= promotionThreshold && !isSaturated()) {
+            exact.record(key, Math.min(estimate, promotionThreshold), limit, periodMillis, now);
+        }
+    }
+
+    /**
+     * Reserve an attempt if one is allowed, in one atomic step per counter.
+     *
+     * An untracked key's reservation is counted in the sketch. The first
+     * {@code promotionThreshold - 1} outstanding reservations per key (by sketch ticket)
+     * are let through without an exact counter; every later one seeds the key's exact
+     * counter with those and takes its unit from there, so concurrent attempts can
+     * never get more than {@code limit} through. Once the exact table is full, untracked
+     * keys are admitted while their sketch estimate stays within the limit.
+     */
+    @Override
+    public boolean tryAcquire(long key, int limit, long periodMillis, long now) {
+        int promoteAt = Math.min(promotionThreshold, limit);
+        if (!exact.contains(key)) {
+            long hash = CountMinSketch.mix64(key);
+            int ticket = sketch.incrementTicket(hash, periodMillis, now);
+            if (ticket < promoteAt && !isSaturated()) {
+                return true;
+            }
+            if (isSaturated() || !exact.seed(key, promoteAt - 1, limit, periodMillis, now)) {
+                if (sketch.estimate(hash, periodMillis, now) <= limit) {
+                    return true;
+                }
+                sketch.decrement(hash, periodMillis, now);
+                return false;
+            }
+        } else {
+            // A slot inserted a moment ago may not hold its seeded state yet
+            exact.seed(key, promoteAt - 1, limit, periodMillis, now);
+        }
+        return exact.tryAcquire(key, limit, periodMillis, now);
+    }
+
+    /**
+     * Give back a reservation from {@link #tryAcquire(long, int, long, long)}
+     */
+    @Override
+    public void refund(long key, int limit, long periodMillis, long now) {
+        if (exact.contains(key)) {
+            exact.refund(key, limit, periodMillis, now);
+        } else {
+            sketch.decrement(CountMinSketch.mix64(key), periodMillis, now);
+        }
+    }
+
+    /**
+     * Remaining attempts before the key is limited
+     */
+    public int remaining(String key, int limit, long periodMillis, long now) {
+        return remaining(CountMinSketch.hash64(key), limit, periodMillis, now);
+    }
+
+    @Override
+    public int remaining(long key, int limit, long periodMillis, long now) {
+        if (exact.contains(key)) {
+            return exact.remaining(key, limit, periodMillis, now);
+        }
+        int estimate = sketch.estimate(CountMinSketch.mix64(key), periodMillis, now);
+        int counted = isSaturated() ? estimate : Math.min(estimate, promotionThreshold - 1);
+        return Math.max(0, limit - counted);
+    }
+
+    /**
+     * Milliseconds until the key may attempt again
+     */
+    public long retryAfterMillis(String key, int limit, long periodMillis, long now) {
+        return retryAfterMillis(CountMinSketch.hash64(key), limit, periodMillis, now);
+    }
+
+    @Override
+    public long retryAfterMillis(long key, int limit, long periodMillis, long now) {
+        if (exact.contains(key)) {
+            return exact.retryAfterMillis(key, limit, periodMillis, now);
+        }
+        return isAllowed(key, limit, periodMillis, now) ? 0 : sketch.millisUntilExpiry(periodMillis, now);
+    }
+
+    /**
+     * Reset the key after a successful authentication. A tracked key keeps a
+     * cleared exact counter so stale sketch counts cannot resurface for it.
+     */
+    public void reset(String key, long now) {
+        reset(CountMinSketch.hash64(key), now);
+    }
+
+    @Override
+    public void reset(long key, long now) {
+        exact.clear(key, now);
+    }
+
+    /**
+     * Give the key an exact counter with {@code consumed} of its {@code limit} units used,
+     * replacing whatever was counted before. Ignored once the exact table is full.
+     */
+    public void assign(long key, int consumed, int limit, long periodMillis, long now) {
+        if (exact.contains(key) || !isSaturated()) {
+            exact.assign(key, consumed, limit, periodMillis, now);
+        }
+    }
+
+    /**
+     * Drop exact counters that have been idle long enough for the sketch to have forgotten them too
+     */
+    @Override
+    public void evictIdle(long periodMillis, long now) {
+        exact.evictIdle(now - 2 * periodMillis);
+    }
+
+    /**
+     * Number of keys with an exact counter
+     */
+    @Override
+    public int trackedKeys() {
+        return exact.size();
+    }
+
+    /**
+     * Whether the exact counter table is full
+     */
+    public boolean isSaturated() {
+        return exact.size() >= maxTrackedKeys;
+    }
+}
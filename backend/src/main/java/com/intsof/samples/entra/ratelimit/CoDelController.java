@@ -0,0 +1,106 @@
+package com.intsof.samples.entra.ratelimit;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * CoDel-style (controlled delay) overload detector that drives a shedding level.
+ *
+ * Every admitted request reports how long it waited. A short burst that queues
+ * briefly is fine; a standing queue is not. Only when the delay has stayed above
+ * {@code target} for a whole {@code interval} does the controller start shedding
+ * (level 1). While the delay stays above target it escalates one more level after
+ * {@code interval / sqrt(count)}, the CoDel control law, up to {@code maxLevel}.
+ * One sample below target ends shedding; re-entering soon after resumes close to
+ * the previous escalation count, as in CoDel.
+ *
+ * Reading the level is a volatile read. Samples update the state under a lock that
+ * is only tried: when another thread is updating, the sample is skipped.
+ */
+public class CoDelController {
+
+    // Re-entering shedding within this many intervals keeps most of the previous count
+    private static final int REENTRY_INTERVALS = 16;
+
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final int maxLevel;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private long firstAboveTime;
+    private long escalateNext;
+    private long lastExit;
+    private int count;
+
+    private volatile int level;
+    private volatile long lastDelayNanos;
+
+    public CoDelController(long targetNanos, long intervalNanos, int maxLevel) {
+        this.targetNanos = Math.max(1, targetNanos);
+        this.intervalNanos = Math.max(1, intervalNanos);
+        this.maxLevel = Math.max(1, maxLevel);
+    }
+
+    /**
+     * Report the queueing delay of a request
+     *
+     * @param now {@link System#nanoTime()}
+     * @return the shedding level after the sample
+     */
+    public int onSample(long now, long delayNanos) {
+        lastDelayNanos = delayNanos;
+        if (!lock.tryLock()) {
+            return level;
+        }
+        try {
+            if (delayNanos < targetNanos) {
+                firstAboveTime = 0;
+                if (level > 0) {
+                    level = 0;
+                    lastExit = now;
+                }
+                return 0;
+            }
+            if (firstAboveTime == 0) {
+                firstAboveTime = now + intervalNanos;
+                return level;
+            }
+            if (now - firstAboveTime < 0) {
+                return level;
+            }
+
+            if (level == 0) {
+                // Persistently above target for an interval: start shedding
+                boolean recent = count > 2 && now - lastExit < REENTRY_INTERVALS * intervalNanos;
+                count = recent ? count - 2 : 1;
+                escalateNext = now + controlLaw(count);
+                level = Math.min(count, maxLevel);
+            } else if (now - escalateNext >= 0) {
+                count++;
+                escalateNext = now + controlLaw(count);
+                level = Math.min(count, maxLevel);
+            }
+            return level;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long controlLaw(int count) {
+        return (long) (intervalNanos / Math.sqrt(count));
+    }
+
+    /**
+     * Current shedding level: 0 while not overloaded, up to {@code maxLevel}
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Queueing delay reported by the latest sample (in nanoseconds)
+     */
+    public long getLastDelayNanos() {
+        return lastDelayNanos;
+    }
+}
@@ -0,0 +1,200 @@
+package com.intsof.samples.entra.ratelimit;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size count-min sketch over a sliding time window. Counting is lock-free;
+ * only the once-per-period generation rotation takes a lock.
+ *
+ * Counts live in two generations of {@code depth x width} counters: the current
+ * period and the previous one. Estimates sum both, so a count is remembered for
+ * between one and two periods. Memory is {@code 2 * depth * width * 4} bytes no
+ * matter how many distinct keys are offered.
+ *
+ * Accuracy: estimates never under-count (except for increments made with a
+ * clock older than the latest rotation), and over-count by at most {@code e / width} times the
+ * total number of increments in the window with probability {@code 1 - e^-depth}.
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicIntegerArray[] generations = new AtomicIntegerArray[2];
+    private final AtomicLong epoch = new AtomicLong(Long.MIN_VALUE);
+    // A lock rather than a monitor, so virtual threads waiting for a rotation do not pin their carrier
+    private final ReentrantLock rotationLock = new ReentrantLock();
+
+    /**
+     * @param depth number of hash rows
+     * @param width counters per row, rounded up to a power of two
+     */
+    public CountMinSketch(int depth, int width) {
+        int size = Integer.highestOneBit(Math.max(2, width) - 1) << 1;
+        this.depth = Math.max(1, depth);
+        this.mask = size - 1;
+        this.generations[0] = new AtomicIntegerArray(this.depth * size);
+        this.generations[1] = new AtomicIntegerArray(this.depth * size);
+    }
+
+    /**
+     * Add one occurrence of the key and return its new estimate
+     */
+    public int increment(String key, long periodMillis, long now) {
+        return increment(hash64(key), periodMillis, now);
+    }
+
+    /**
+     * Add one occurrence of a pre-hashed key and return its new estimate
+     */
+    public int increment(long hash, long periodMillis, long now) {
+        long current = rotate(periodMillis, now);
+        AtomicIntegerArray cur = generations[(int) (current & 1)];
+        AtomicIntegerArray prev = generations[(int) ((current - 1) & 1)];
+
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = index(hash, row);
+            estimate = Math.min(estimate, cur.incrementAndGet(index) + prev.get(index));
+        }
+        return estimate;
+    }
+
+    /**
+     * Add one occurrence of a pre-hashed key and return the new value of its
+     * first-row counter (current plus previous generation). The counter is only
+     * changed atomically, so unlike the estimate that value serves as a ticket: at
+     * most {@code n} outstanding occurrences of a key can see a value of {@code n} or
+     * less. Colliding keys only push tickets up.
+     */
+    public int incrementTicket(long hash, long periodMillis, long now) {
+        long current = rotate(periodMillis, now);
+        AtomicIntegerArray cur = generations[(int) (current & 1)];
+        AtomicIntegerArray prev = generations[(int) ((current - 1) & 1)];
+
+        int first = index(hash, 0);
+        int ticket = cur.incrementAndGet(first) + prev.get(first);
+        for (int row = 1; row < depth; row++) {
+            cur.incrementAndGet(index(hash, row));
+        }
+        return ticket;
+    }
+
+    /**
+     * Take back one occurrence of a pre-hashed key. Counters never drop below zero;
+     * an occurrence that has aged into the previous generation is left there.
+     */
+    public void decrement(long hash, long periodMillis, long now) {
+        AtomicIntegerArray cur = generations[(int) (rotate(periodMillis, now) & 1)];
+        for (int row = 0; row < depth; row++) {
+            int index = index(hash, row);
+            int count;
+            do {
+                count = cur.get(index);
+            } while (count > 0 && !cur.compareAndSet(index, count, count - 1));
+        }
+    }
+
+    /**
+     * Estimated number of occurrences of the key within the window
+     */
+    public int estimate(String key, long periodMillis, long now) {
+        return estimate(hash64(key), periodMillis, now);
+    }
+
+    /**
+     * Estimated number of occurrences of a pre-hashed key within the window
+     */
+    public int estimate(long hash, long periodMillis, long now) {
+        long current = rotate(periodMillis, now);
+        AtomicIntegerArray cur = generations[(int) (current & 1)];
+        AtomicIntegerArray prev = generations[(int) ((current - 1) & 1)];
+
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = index(hash, row);
+            estimate = Math.min(estimate, cur.get(index) + prev.get(index));
+        }
+        return estimate;
+    }
+
+    /**
+     * Milliseconds until everything counted so far has aged out of the window
+     */
+    public long millisUntilExpiry(long periodMillis, long now) {
+        return 2 * periodMillis - Math.floorMod(now, periodMillis);
+    }
+
+    /**
+     * Advance to the period containing {@code now}, clearing generations that fell out of the window.
+     * The new period is published only once its generation is clear, so no increment made
+     * in it is wiped and tickets stay unique.
+     */
+    private long rotate(long periodMillis, long now) {
+        long target = Math.floorDiv(now, Math.max(1, periodMillis));
+        long seen = epoch.get();
+        if (seen >= target) {
+            return seen;
+        }
+        rotationLock.lock();
+        try {
+            seen = epoch.get();
+            if (seen < target) {
+                clear(generations[(int) (target & 1)]);
+                if (target - seen != 1) {
+                    clear(generations[(int) ((target - 1) & 1)]);
+                }
+                epoch.set(target);
+                return target;
+            }
+            return seen;
+        } finally {
+            rotationLock.unlock();
+        }
+    }
+
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+
+    private static void clear(AtomicIntegerArray counters) {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.lazySet(i, 0);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the key's chars, finished with the MurmurHash3 mixer
+     */
+    static long hash64(String key) {
+        return hash64(key, 0, key.length(), false);
+    }
+
+    /**
+     * 64-bit hash of {@code text[from, to)}, optionally case-insensitive, without copying it
+     */
+    static long hash64(CharSequence text, int from, int to, boolean ignoreCase) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            h ^= ignoreCase ? Character.toLowerCase(c) : c;
+            h *= 0x100000001b3L;
+        }
+        return mix64(h);
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer
+     */
+    static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,220 @@
+package com.intsof.samples.entra.ratelimit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-key count of distinct values over a sliding time window, e.g. how many
+ * different usernames one IP has tried.
+ *
+ * Each key gets a small HyperLogLog sketch: 64 six-bit registers packed into 7
+ * longs, updated lock-free with compare-and-set. Like {@link CountMinSketch},
+ * sketches live in two generations (the current period and the previous one) and
+ * estimates merge both, so a value is remembered for between one and two periods.
+ * When the window moves on, the expired generation is dropped as a whole.
+ *
+ * Memory is bounded by {@code maxKeys} sketches per generation; keys beyond that
+ * are not tracked until the next period. Estimates are exact-ish for small counts
+ * (linear counting) and within about 13% above that.
+ */
+public class DistinctCountTracker {
+
+    private static final int REGISTER_BITS = 6;
+    private static final int REGISTERS = 64;
+    private static final int REGISTERS_PER_WORD = 10;
+    private static final int WORDS = (REGISTERS + REGISTERS_PER_WORD - 1) / REGISTERS_PER_WORD;
+    private static final long REGISTER_MASK = (1L << REGISTER_BITS) - 1;
+    private static final double ALPHA = 0.709; // HyperLogLog bias correction for 64 registers
+
+    private final int maxKeys;
+    private final AtomicReferenceArray<Generation> generations = new AtomicReferenceArray<>(2);
+    private final AtomicLong epoch = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong untracked = new AtomicLong();
+
+    /**
+     * @param maxKeys sketches per generation
+     */
+    public DistinctCountTracker(int maxKeys) {
+        this.maxKeys = Math.max(1, maxKeys);
+        generations.set(0, new Generation(this.maxKeys));
+        generations.set(1, new Generation(this.maxKeys));
+    }
+
+    /**
+     * Record that {@code value} was seen for {@code key} and return the key's new estimate
+     */
+    public int add(long key, long value, long periodMillis, long now) {
+        long current = rotate(periodMillis, now);
+        Generation cur = generations.get((int) (current & 1));
+        Generation prev = generations.get((int) ((current - 1) & 1));
+
+        key = LongStateTable.normalize(key);
+        int base = cur.sketch(key);
+        if (base < 0) {
+            untracked.incrementAndGet();
+        } else {
+            long hash = CountMinSketch.mix64(value);
+            int register = (int) (hash & (REGISTERS - 1));
+            int rank = Long.numberOfLeadingZeros(hash >>> 6) - 5;
+            cur.raise(base, register, rank);
+        }
+        return estimate(cur, prev, key);
+    }
+
+    /**
+     * Estimated number of distinct values seen for the key within the window
+     */
+    public int estimate(long key, long periodMillis, long now) {
+        long current = rotate(periodMillis, now);
+        return estimate(generations.get((int) (current & 1)), generations.get((int) ((current - 1) & 1)),
+                LongStateTable.normalize(key));
+    }
+
+    /**
+     * Keys with a sketch in the current period
+     */
+    public int trackedKeys() {
+        long current = epoch.get();
+        return current == Long.MIN_VALUE ? 0 : generations.get((int) (current & 1)).size();
+    }
+
+    /**
+     * Additions dropped because the current period had no sketch left for their key
+     */
+    public long untrackedCount() {
+        return untracked.get();
+    }
+
+    private int estimate(Generation cur, Generation prev, long key) {
+        int curBase = cur.find(key);
+        int prevBase = prev.find(key);
+        if (curBase < 0 && prevBase < 0) return 0;
+
+        double sum = 0;
+        int zeros = 0;
+        for (int register = 0; register < REGISTERS; register++) {
+            int rank = Math.max(cur.register(curBase, register), prev.register(prevBase, register));
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) zeros++;
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // Linear counting is far more accurate for small cardinalities
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return (int) Math.round(estimate);
+    }
+
+    /**
+     * Advance to the period containing {@code now}, replacing generations that fell out of the window
+     */
+    private long rotate(long periodMillis, long now) {
+        long target = Math.floorDiv(now, Math.max(1, periodMillis));
+        while (true) {
+            long seen = epoch.get();
+            if (seen >= target) {
+                return seen;
+            }
+            if (epoch.compareAndSet(seen, target)) {
+                generations.set((int) (target & 1), new Generation(maxKeys));
+                if (target - seen != 1) {
+                    generations.set((int) ((target - 1) & 1), new Generation(maxKeys));
+                }
+                return target;
+            }
+        }
+    }
+
+    /**
+     * The sketches of one period: a key index into a shared register arena
+     */
+    private static final class Generation {
+        private final LongStateTable keys;
+        private final AtomicLongArray registers;
+        private final AtomicInteger allocated = new AtomicInteger();
+        // Keys that own a sketch; below allocated when racing inserts wasted some
+        private final AtomicInteger tracked = new AtomicInteger();
+        private final int capacity;
+
+        Generation(int capacity) {
+            this.capacity = capacity;
+            this.keys = new LongStateTable(capacity);
+            this.registers = new AtomicLongArray(capacity * WORDS);
+        }
+
+        /**
+         * Offset of the key's sketch, or -1 if the key is absent
+         */
+        int find(long key) {
+            long value = keys.get(key);
+            return value > 0 ? (int) (value - 1) * WORDS : -1;
+        }
+
+        /**
+         * Offset of the key's sketch, allocating one if needed; -1 if none is left
+         */
+        int sketch(long key) {
+            int existing = find(key);
+            if (existing >= 0 || allocated.get() >= capacity) {
+                return existing;
+            }
+            while (true) {
+                LongStateTable.Segment s = keys.segment();
+                int slot = s.findOrInsert(key);
+                if (slot == LongStateTable.RETRY) {
+                    continue;
+                }
+                if (slot == LongStateTable.FULL) {
+                    return -1;
+                }
+                long value = s.get(slot);
+                if (value == LongStateTable.MOVED) {
+                    keys.awaitRebuild();
+                    continue;
+                }
+                if (value > 0) {
+                    return (int) (value - 1) * WORDS;
+                }
+                if (allocated.get() >= capacity) {
+                    return -1;
+                }
+                // A sketch lost to a racing insert of the same key is simply left unused
+                int index = allocated.getAndIncrement();
+                if (index >= capacity) {
+                    return -1;
+                }
+                if (s.compareAndSet(slot, 0, index + 1L)) {
+                    tracked.incrementAndGet();
+                    return index * WORDS;
+                }
+            }
+        }
+
+        int size() {
+            return tracked.get();
+        }
+
+        int register(int base, int register) {
+            if (base < 0) return 0;
+            long word = registers.get(base + register / REGISTERS_PER_WORD);
+            return (int) ((word >>> (register % REGISTERS_PER_WORD * REGISTER_BITS)) & REGISTER_MASK);
+        }
+
+        void raise(int base, int register, int rank) {
+            int index = base + register / REGISTERS_PER_WORD;
+            int shift = register % REGISTERS_PER_WORD * REGISTER_BITS;
+            while (true) {
+                long word = registers.get(index);
+                if (((word >>> shift) & REGISTER_MASK) >= rank) {
+                    return;
+                }
+                long updated = (word & ~(REGISTER_MASK << shift)) | ((long) rank << shift);
+                if (registers.compareAndSet(index, word, updated)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.intsof.samples.entra.ratelimit;
+
+/**
+ * Lock-free rate limiter based on the Generic Cell Rate Algorithm (GCRA).
+ *
+ * The whole state of a key is a single long - its theoretical arrival time (TAT)
+ * in epoch milliseconds - updated with one compare-and-set. A key may consume
+ * {@code limit} units per {@code periodMillis}; units are replenished smoothly,
+ * one every {@code periodMillis / limit}, so there is no window edge at which the
+ * counter resets and no 2x burst across window boundaries.
+ *
+ * Keys are primitive longs (see {@link IpAddress}); String keys are hashed to 64
+ * bits. State lives in a {@link LongStateTable}, so lookups allocate nothing.
+ *
+ * Limits are passed per call so one engine can serve differently configured callers.
+ */
+public class GcraRateLimiter {
+
+    private static final int DEFAULT_MAX_KEYS = 1 << 20;
+
+    private final LongStateTable cells;
+
+    public GcraRateLimiter() {
+        this(DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * @param maxKeys number of keys the table must be able to hold; it grows lazily up to twice this many slots
+     */
+    public GcraRateLimiter(int maxKeys) {
+        this.cells = new LongStateTable(maxKeys);
+    }
+
+    /**
+     * Check whether at least one unit is available without consuming it
+     */
+    public boolean isAllowed(String key, int limit, long periodMillis, long now) {
+        return isAllowed(hash(key), limit, periodMillis, now);
+    }
+
+    public boolean isAllowed(long key, int limit, long periodMillis, long now) {
+        return remaining(key, limit, periodMillis, now) > 0;
+    }
+
+    /**
+     * Atomically consume one unit if available
+     */
+    public boolean tryAcquire(String key, int limit, long periodMillis, long now) {
+        return tryAcquire(hash(key), limit, periodMillis, now);
+    }
+
+    public boolean tryAcquire(long key, int limit, long periodMillis, long now) {
+        return acquire(key, emissionInterval(limit, periodMillis), limit, now) >= 0;
+    }
+
+    /**
+     * Give back one unit taken by {@link #tryAcquire}. Units that have already been
+     * replenished are not refunded twice.
+     */
+    public void refund(long key, int limit, long periodMillis, long now) {
+        key = LongStateTable.normalize(key);
+        long interval = emissionInterval(limit, periodMillis);
+
+        while (true) {
+            LongStateTable.Segment t = cells.segment();
+            int slot = t.find(key);
+            if (slot < 0) {
+                return;
+            }
+            long tat = t.get(slot);
+            if (tat == LongStateTable.MOVED) {
+                cells.awaitRebuild();
+                continue;
+            }
+            if (tat <= now || t.compareAndSet(slot, tat, Math.max(now, tat - interval))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Start tracking the key with {@code units} of its budget in use, unless it is tracked already
+     *
+     * @return false if the table has no room for the key
+     */
+    public boolean seed(long key, int units, int limit, long periodMillis, long now) {
+        key = LongStateTable.normalize(key);
+        long newTat = now + emissionInterval(limit, periodMillis) * Math.max(0, Math.min(units, limit));
+
+        while (true) {
+            LongStateTable.Segment t = cells.segment();
+            int slot = t.findOrInsert(key);
+            if (slot == LongStateTable.RETRY) {
+                continue;
+            }
+            if (slot == LongStateTable.FULL) {
+                return false;
+            }
+            long tat = t.get(slot);
+            if (tat == LongStateTable.MOVED) {
+                cells.awaitRebuild();
+                continue;
+            }
+            // A fresh slot holds 0; anything else was set by another caller first
+            if (tat != 0 || t.compareAndSet(slot, 0, newTat)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Atomically consume one unit at a sustained rate of one per {@code intervalMillis},
+     * allowing bursts of up to {@code burst} units.
+     *
+     * @return the key's theoretical arrival time after consuming, or -1 if denied
+     */
+    public long acquire(long key, long intervalMillis, int burst, long now) {
+        key = LongStateTable.normalize(key);
+        long capacity = intervalMillis * Math.max(1, burst);
+
+        while (true) {
+            LongStateTable.Segment t = cells.segment();
+            int slot = t.findOrInsert(key);
+            if (slot == LongStateTable.RETRY) {
+                continue;
+            }
+            if (slot == LongStateTable.FULL) {
+                // Table is full: behave as for an unseen key and keep no state
+                return intervalMillis > capacity ? -1 : now + intervalMillis;
+            }
+            long tat = t.get(slot);
+            if (tat == LongStateTable.MOVED) {
+                cells.awaitRebuild();
+                continue;
+            }
+            long newTat = Math.max(tat, now) + intervalMillis;
+            if (newTat - now > capacity) {
+                return -1;
+            }
+            if (t.compareAndSet(slot, tat, newTat)) {
+                return newTat;
+            }
+        }
+    }
+
+    /**
+     * Current theoretical arrival time of the key, or 0 if it has no state
+     */
+    public long theoreticalArrivalTime(long key) {
+        return Math.max(0, read(LongStateTable.normalize(key)));
+    }
+
+    /**
+     * Consume one unit unconditionally. The penalty saturates at one full period.
+     */
+    public void record(String key, int limit, long periodMillis, long now) {
+        record(hash(key), 1, limit, periodMillis, now);
+    }
+
+    public void record(long key, int limit, long periodMillis, long now) {
+        record(key, 1, limit, periodMillis, now);
+    }
+
+    /**
+     * Consume {@code units} unconditionally. The penalty saturates at one full period.
+     */
+    public void record(String key, int units, int limit, long periodMillis, long now) {
+        record(hash(key), units, limit, periodMillis, now);
+    }
+
+    public void record(long key, int units, int limit, long periodMillis, long now) {
+        key = LongStateTable.normalize(key);
+        long interval = emissionInterval(limit, periodMillis);
+        long ceiling = now + interval * limit;
+
+        while (true) {
+            LongStateTable.Segment t = cells.segment();
+            int slot = t.findOrInsert(key);
+            if (slot == LongStateTable.RETRY) {
+                continue;
+            }
+            if (slot == LongStateTable.FULL) {
+                return;
+            }
+            long tat = t.get(slot);
+            if (tat == LongStateTable.MOVED) {
+                cells.awaitRebuild();
+                continue;
+            }
+            long newTat = Math.min(Math.max(tat, now) + interval * units, ceiling);
+            if (newTat == tat || t.compareAndSet(slot, tat, newTat)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Set the key's state so that exactly {@code units} of its budget are in use
+     */
+    public void assign(long key, int units, int limit, long periodMillis, long now) {
+        key = LongStateTable.normalize(key);
+        long interval = emissionInterval(limit, periodMillis);
+        long newTat = now + interval * Math.max(0, Math.min(units, limit));
+
+        while (true) {
+            LongStateTable.Segment t = cells.segment();
+            int slot = t.findOrInsert(key);
+            if (slot == LongStateTable.RETRY) {
+                continue;
+            }
+            if (slot == LongStateTable.FULL) {
+                return;
+            }
+            long tat = t.get(slot);
+            if (tat == LongStateTable.MOVED) {
+                cells.awaitRebuild();
+                continue;
+            }
+            if (t.compareAndSet(slot, tat, newTat)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Number of units that can still be consumed right now
+     */
+    public int remaining(String key, int limit, long periodMillis, long now) {
+        return remaining(hash(key), limit, periodMillis, now);
+    }
+
+    public int remaining(long key, int limit, long periodMillis, long now) {
+        long tat = read(LongStateTable.normalize(key));
+        if (tat < 0) return limit;
+
+        long interval = emissionInterval(limit, periodMillis);
+        long used = Math.max(0, tat - now);
+        return (int) Math.max(0, (interval * limit - used) / interval);
+    }
+
+    /**
+     * Milliseconds until the next unit becomes available (0 if one is available now)
+     */
+    public long retryAfterMillis(String key, int limit, long periodMillis, long now) {
+        return retryAfterMillis(hash(key), limit, periodMillis, now);
+    }
+
+    public long retryAfterMillis(long key, int limit, long periodMillis, long now) {
+        long tat = read(LongStateTable.normalize(key));
+        if (tat < 0) return 0;
+
+        long interval = emissionInterval(limit, periodMillis);
+        long used = Math.max(0, tat - now);
+        return Math.max(0, used - interval * (limit - 1));
+    }
+
+    /**
+     * Whether the key currently has state
+     */
+    public boolean contains(String key) {
+        return contains(hash(key));
+    }
+
+    public boolean contains(long key) {
+        return read(LongStateTable.normalize(key)) >= 0;
+    }
+
+    /**
+     * Forget all state for a key
+     */
+    public void reset(String key) {
+        reset(hash(key));
+    }
+
+    public void reset(long key) {
+        cells.remove(LongStateTable.normalize(key));
+    }
+
+    /**
+     * Restore a tracked key's full budget while keeping it tracked
+     */
+    public void clear(String key, long now) {
+        clear(hash(key), now);
+    }
+
+    public void clear(long key, long now) {
+        key = LongStateTable.normalize(key);
+        while (true) {
+            LongStateTable.Segment t = cells.segment();
+            int slot = t.find(key);
+            if (slot < 0) {
+                return;
+            }
+            long tat = t.get(slot);
+            if (tat == LongStateTable.MOVED) {
+                cells.awaitRebuild();
+                continue;
+            }
+            if (t.compareAndSet(slot, tat, now)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove keys whose budget has been fully replenished since {@code idleSince}.
+     * Rebuilds the table, which also drops tombstones.
+     */
+    public void evictIdle(long idleSince) {
+        cells.compact(tat -> tat > idleSince);
+    }
+
+    /**
+     * Number of keys currently tracked
+     */
+    public int size() {
+        return cells.size();
+    }
+
+    private long read(long key) {
+        return cells.get(key);
+    }
+
+    private static long hash(String key) {
+        return CountMinSketch.hash64(key);
+    }
+
+    private static long emissionInterval(int limit, long periodMillis) {
+        return Math.max(1, periodMillis / Math.max(1, limit));
+    }
+}
@@ -0,0 +1,224 @@
+package com.intsof.samples.entra.ratelimit;
+
+/**
+ * Allocation-free parsing of textual IP addresses into primitive rate limit keys.
+ *
+ * Addresses are scanned once, character by character, without splitting or
+ * creating substrings. IPv4 addresses become a 32-bit value and IPv6 addresses two
+ * 64-bit halves, so subnet masking is a single AND. IPv4-mapped IPv6 addresses
+ * ({@code ::ffff:a.b.c.d}) are treated as the IPv4 address they carry.
+ *
+ * Keys are non-zero longs; {@link #NO_KEY} means the text is not an IP literal.
+ * IPv4 keys are exact. IPv6 keys are 64-bit mixes of the address, which is
+ * collision-free in practice.
+ */
+public final class IpAddress {
+
+    /** Returned when the text is not a valid IP literal */
+    public static final long NO_KEY = 0L;
+
+    // Marks IPv4 keys so they never coincide with a small IPv6 hash
+    private static final long IPV4_TAG = 0x0000_ffff_0000_0000L;
+    private static final long INVALID = -1L;
+    private static final long IPV4_SUBNET_MASK = 0xffff_ff00L;
+
+    private IpAddress() {
+    }
+
+    /**
+     * Primitive key of the exact address
+     */
+    public static long key(CharSequence address) {
+        if (address == null) return NO_KEY;
+        return key(address, 0, address.length());
+    }
+
+    /**
+     * Primitive key of the address in {@code text[from, to)}
+     */
+    public static long key(CharSequence text, int from, int to) {
+        if (indexOf(text, ':', from, to) < 0) {
+            long ipv4 = parseIpv4(text, from, to);
+            return ipv4 == INVALID ? NO_KEY : IPV4_TAG | ipv4;
+        }
+
+        return parseIpv6(text, from, to, false, null);
+    }
+
+    /**
+     * Primitive key of the address's network: the /24 for IPv4 and the /64 for IPv6
+     */
+    public static long subnetKey(CharSequence address) {
+        if (address == null) return NO_KEY;
+        int to = address.length();
+        if (indexOf(address, ':', 0, to) < 0) {
+            long ipv4 = parseIpv4(address, 0, to);
+            return ipv4 == INVALID ? NO_KEY : IPV4_TAG | (ipv4 & IPV4_SUBNET_MASK);
+        }
+
+        return parseIpv6(address, 0, to, true, null);
+    }
+
+    /**
+     * Parse the address in {@code text[from, to)} into its 128 bits, IPv4 as the
+     * IPv4-mapped IPv6 address, e.g. for network range checks
+     *
+     * @param bits receives the high and the low 64 bits
+     * @return false if the text is not an IP literal
+     */
+    public static boolean parse(CharSequence text, int from, int to, long[] bits) {
+        if (indexOf(text, ':', from, to) < 0) {
+            long ipv4 = parseIpv4(text, from, to);
+            if (ipv4 == INVALID) return false;
+            bits[0] = 0;
+            bits[1] = IPV4_TAG | ipv4;
+            return true;
+        }
+
+        return parseIpv6(text, from, to, false, bits) != NO_KEY;
+    }
+
+    /**
+     * Parse a dotted-quad IPv4 address
+     *
+     * @return the address as an unsigned 32-bit value, or -1 if malformed
+     */
+    static long parseIpv4(CharSequence text, int from, int to) {
+        long result = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (value < 0 || octets == 3) return INVALID;
+                result = (result << 8) | value;
+                octets++;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) return INVALID;
+            } else {
+                return INVALID;
+            }
+        }
+        if (octets != 3 || value < 0) return INVALID;
+        return (result << 8) | value;
+    }
+
+    /**
+     * Parse an IPv6 address into its key (or its /64 key). Brackets and a zone suffix
+     * are ignored, "::" compression and an embedded IPv4 tail are supported.
+     *
+     * Groups after "::" are accumulated right-aligned in a 128-bit shift register
+     * (two longs), groups before it left-aligned by position, so the whole address
+     * is assembled in a single pass with no intermediate arrays.
+     *
+     * @param out if not null, receives the address's high and low 64 bits instead of a key
+     * @return the key (any non-zero value when {@code out} is given), or {@link #NO_KEY} if malformed
+     */
+    static long parseIpv6(CharSequence text, int from, int to, boolean subnet, long[] out) {
+        if (from < to && text.charAt(from) == '[') {
+            if (text.charAt(to - 1) != ']') return NO_KEY;
+            from++;
+            to--;
+        }
+        int zone = indexOf(text, '%', from, to);
+        if (zone >= 0) to = zone;
+        if (from >= to) return NO_KEY;
+
+        long headHigh = 0, headLow = 0;
+        long tailHigh = 0, tailLow = 0;
+        int headGroups = 0, tailGroups = 0;
+        boolean compressed = false;
+
+        int i = from;
+        if (text.charAt(i) == ':') {
+            if (to - i < 2 || text.charAt(i + 1) != ':') return NO_KEY;
+            compressed = true;
+            i += 2;
+        }
+
+        while (i < to) {
+            int groupStart = i;
+            int value = 0;
+            int digits = 0;
+            while (i < to) {
+                int digit = Character.digit(text.charAt(i), 16);
+                if (digit < 0) break;
+                value = (value << 4) | digit;
+                digits++;
+                i++;
+            }
+
+            int groups;
+            long groupBits;
+            if (i < to && text.charAt(i) == '.') {
+                // Embedded IPv4 tail: the rest of the literal is a dotted quad
+                long ipv4 = parseIpv4(text, groupStart, to);
+                if (ipv4 == INVALID) return NO_KEY;
+                groups = 2;
+                groupBits = ipv4;
+                i = to;
+            } else {
+                if (digits == 0 || digits > 4) return NO_KEY;
+                groups = 1;
+                groupBits = value;
+            }
+
+            if (compressed) {
+                tailGroups += groups;
+                int shift = 16 * groups;
+                tailHigh = (tailHigh << shift) | (tailLow >>> (64 - shift));
+                tailLow = (tailLow << shift) | groupBits;
+            } else {
+                for (int g = groups - 1; g >= 0; g--) {
+                    int position = headGroups++;
+                    long bits = (groupBits >>> (16 * g)) & 0xffff;
+                    if (position < 4) {
+                        headHigh |= bits << (16 * (3 - position));
+                    } else if (position < 8) {
+                        headLow |= bits << (16 * (7 - position));
+                    }
+                }
+            }
+            if (headGroups + tailGroups > 8) return NO_KEY;
+
+            if (i == to) break;
+            if (text.charAt(i) != ':') return NO_KEY;
+            i++;
+            if (i < to && text.charAt(i) == ':') {
+                if (compressed) return NO_KEY;
+                compressed = true;
+                i++;
+            } else if (i == to) {
+                return NO_KEY;
+            }
+        }
+
+        if (compressed ? headGroups + tailGroups > 7 : headGroups != 8) return NO_KEY;
+
+        long high = headHigh | tailHigh;
+        long low = headLow | tailLow;
+        if (out != null) {
+            out[0] = high;
+            out[1] = low;
+            return 1;
+        }
+        if (isIpv4Mapped(high, low)) {
+            return IPV4_TAG | (low & (subnet ? IPV4_SUBNET_MASK : 0xffff_ffffL));
+        }
+        long key = subnet ? CountMinSketch.mix64(high) : CountMinSketch.mix64(high * 31 + CountMinSketch.mix64(low));
+        return key == NO_KEY ? 1 : key;
+    }
+
+    private static boolean isIpv4Mapped(long high, long low) {
+        return high == 0 && (low >>> 32) == 0xffffL;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,132 @@
+package com.intsof.samples.entra.ratelimit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Immutable set of IP ranges in CIDR notation (e.g. {@code 10.0.0.0/8}, {@code 2001:db8::/32})
+ * with an allocation-free membership test.
+ *
+ * Addresses are compared as 128-bit values, IPv4 as IPv4-mapped IPv6, so both
+ * families share one structure. Ranges are grouped by prefix length; a lookup masks
+ * the address once per distinct length and binary-searches that length's sorted
+ * network prefixes, so its cost depends on the number of distinct lengths (a
+ * handful in practice), not on the number of ranges.
+ */
+public final class IpRangeSet {
+
+    // IPv4 prefix lengths are shifted into the IPv4-mapped space
+    private static final int IPV4_MAPPED_PREFIX = 96;
+
+    private final int[] lengths;
+    // Per length: sorted network prefixes as interleaved high/low pairs
+    private final long[][] networks;
+
+    private IpRangeSet(int[] lengths, long[][] networks) {
+        this.lengths = lengths;
+        this.networks = networks;
+    }
+
+    /**
+     * Compile ranges; a bare address is a single-address range
+     *
+     * @throws IllegalArgumentException if a range is malformed
+     */
+    public static IpRangeSet of(List<String> ranges) {
+        TreeMap<Integer, List<long[]>> byLength = new TreeMap<>();
+        long[] bits = new long[2];
+        for (String range : ranges) {
+            String cidr = range.trim();
+            if (cidr.isEmpty()) continue;
+
+            int slash = cidr.indexOf('/');
+            int end = slash < 0 ? cidr.length() : slash;
+            if (!IpAddress.parse(cidr, 0, end, bits)) {
+                throw new IllegalArgumentException("Invalid IP range '" + range + "'");
+            }
+            boolean ipv4 = cidr.indexOf(':') < 0;
+            int maxLength = ipv4 ? 32 : 128;
+            int length;
+            try {
+                length = slash < 0 ? maxLength : Integer.parseInt(cidr.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid IP range '" + range + "'");
+            }
+            if (length < 0 || length > maxLength) {
+                throw new IllegalArgumentException("Invalid prefix length in IP range '" + range + "'");
+            }
+            if (ipv4) length += IPV4_MAPPED_PREFIX;
+
+            byLength.computeIfAbsent(length, l -> new ArrayList<>())
+                    .add(new long[] {bits[0] & highMask(length), bits[1] & lowMask(length)});
+        }
+
+        int[] lengths = new int[byLength.size()];
+        long[][] networks = new long[byLength.size()][];
+        int i = 0;
+        // Longest prefixes first; any match will do, so the order only matters for speed
+        for (Integer length : byLength.descendingKeySet()) {
+            List<long[]> prefixes = byLength.get(length);
+            prefixes.sort((a, b) -> a[0] != b[0] ? Long.compareUnsigned(a[0], b[0]) : Long.compareUnsigned(a[1], b[1]));
+            long[] sorted = new long[prefixes.size() * 2];
+            for (int p = 0; p < prefixes.size(); p++) {
+                sorted[2 * p] = prefixes.get(p)[0];
+                sorted[2 * p + 1] = prefixes.get(p)[1];
+            }
+            lengths[i] = length;
+            networks[i] = sorted;
+            i++;
+        }
+        return new IpRangeSet(lengths, networks);
+    }
+
+    public boolean isEmpty() {
+        return lengths.length == 0;
+    }
+
+    /**
+     * Whether the 128-bit address (as produced by {@link IpAddress#parse}) is in any range
+     */
+    public boolean contains(long high, long low) {
+        for (int i = 0; i < lengths.length; i++) {
+            int length = lengths[i];
+            if (binarySearch(networks[i], high & highMask(length), low & lowMask(length))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean binarySearch(long[] pairs, long high, long low) {
+        int lo = 0;
+        int hi = pairs.length / 2 - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Long.compareUnsigned(pairs[2 * mid], high);
+            if (cmp == 0) cmp = Long.compareUnsigned(pairs[2 * mid + 1], low);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long highMask(int length) {
+        return length >= 64 ? -1L : length == 0 ? 0 : -1L << (64 - length);
+    }
+
+    private static long lowMask(int length) {
+        return length <= 64 ? 0 : length == 128 ? -1L : -1L << (128 - length);
+    }
+
+    @Override
+    public String toString() {
+        return "IpRangeSet{lengths=" + Arrays.toString(lengths) + '}';
+    }
+}
@@ -0,0 +1,143 @@
+package com.intsof.samples.entra.ratelimit;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cluster-wide failure counts for {@link SharedRateLimitStore}, kept in a database
+ * every instance can reach (e.g. an HSQLDB server).
+ *
+ * Counts are stored per namespace (rate limit scope), key and fixed window, and are
+ * only ever touched in batches by the stores' background reconciliation.
+ *
+ * The table is created on first use rather than at startup, so the application starts
+ * even while the database is down. Until the database can be reached every call
+ * throws, which the stores treat as the ledger being unavailable.
+ */
+public class JdbcQuotaLedger {
+
+    private static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS RATE_LIMIT_COUNTER ("
+                    + "NAMESPACE VARCHAR(16) NOT NULL, "
+                    + "KEY_HASH BIGINT NOT NULL, "
+                    + "WINDOW_START BIGINT NOT NULL, "
+                    + "FAILURES INT NOT NULL, "
+                    + "PRIMARY KEY (NAMESPACE, KEY_HASH, WINDOW_START))";
+
+    private static final String ADD_FAILURES =
+            "MERGE INTO RATE_LIMIT_COUNTER c "
+                    + "USING (VALUES (CAST(? AS VARCHAR(16)), CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS INT))) "
+                    + "AS v (NAMESPACE, KEY_HASH, WINDOW_START, FAILURES) "
+                    + "ON c.NAMESPACE = v.NAMESPACE AND c.KEY_HASH = v.KEY_HASH AND c.WINDOW_START = v.WINDOW_START "
+                    + "WHEN MATCHED THEN UPDATE SET c.FAILURES = c.FAILURES + v.FAILURES "
+                    + "WHEN NOT MATCHED THEN INSERT VALUES (v.NAMESPACE, v.KEY_HASH, v.WINDOW_START, v.FAILURES)";
+
+    // Keys per SELECT ... IN (...) statement
+    private static final int READ_CHUNK = 256;
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean tableCreated;
+
+    public JdbcQuotaLedger(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Add failure counts for the given window in one batch
+     */
+    public void addFailures(String namespace, long window, long[] keys, int[] counts, int size) {
+        if (size == 0) return;
+
+        ensureTable();
+        jdbcTemplate.batchUpdate(ADD_FAILURES, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, namespace);
+                ps.setLong(2, keys[i]);
+                ps.setLong(3, window);
+                ps.setInt(4, counts[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return size;
+            }
+        });
+    }
+
+    /**
+     * Forget all counts for the given keys in one batch
+     */
+    public void clear(String namespace, long[] keys, int size) {
+        if (size == 0) return;
+
+        ensureTable();
+        jdbcTemplate.batchUpdate("DELETE FROM RATE_LIMIT_COUNTER WHERE NAMESPACE = ? AND KEY_HASH = ?",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, namespace);
+                        ps.setLong(2, keys[i]);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return size;
+                    }
+                });
+    }
+
+    /**
+     * Cluster-wide failure counts of the given keys in windows {@code window - 1} and
+     * {@code window}, as {@code [previous, current]} pairs. Keys without failures are absent.
+     */
+    public Map<Long, int[]> failures(String namespace, long window, long[] keys, int size) {
+        ensureTable();
+        Map<Long, int[]> result = new HashMap<>();
+        for (int from = 0; from < size; from += READ_CHUNK) {
+            int to = Math.min(size, from + READ_CHUNK);
+            StringBuilder sql = new StringBuilder(
+                    "SELECT KEY_HASH, WINDOW_START, FAILURES FROM RATE_LIMIT_COUNTER "
+                            + "WHERE NAMESPACE = ? AND WINDOW_START >= ? AND WINDOW_START <= ? AND KEY_HASH IN (");
+            Object[] args = new Object[3 + to - from];
+            args[0] = namespace;
+            args[1] = window - 1;
+            args[2] = window;
+            for (int i = from; i < to; i++) {
+                sql.append(i == from ? "?" : ",?");
+                args[3 + i - from] = keys[i];
+            }
+            sql.append(')');
+
+            jdbcTemplate.query(sql.toString(), rs -> {
+                int[] counts = result.computeIfAbsent(rs.getLong(1), k -> new int[2]);
+                counts[rs.getLong(2) == window ? 1 : 0] += rs.getInt(3);
+            }, args);
+        }
+        return result;
+    }
+
+    /**
+     * Delete counts of windows before {@code window}
+     */
+    public void purge(String namespace, long window) {
+        ensureTable();
+        jdbcTemplate.update("DELETE FROM RATE_LIMIT_COUNTER WHERE NAMESPACE = ? AND WINDOW_START < ?", namespace, window);
+    }
+
+    /**
+     * Create the table on the first call that reaches the database; a failure is retried on the next call
+     */
+    private void ensureTable() {
+        if (!tableCreated) {
+            jdbcTemplate.execute(CREATE_TABLE);
+            tableCreated = true;
+        }
+    }
+}
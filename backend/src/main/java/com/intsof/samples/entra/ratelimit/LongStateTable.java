@@ -0,0 +1,294 @@
+package com.intsof.samples.entra.ratelimit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Lock-free hash table from long keys to one non-negative long of state each.
+ *
+ * Key/value pairs are interleaved in a single {@link AtomicLongArray} with linear
+ * probing, so lookups allocate nothing. Slots are claimed with a CAS on the key and
+ * never move while a {@link Segment} is in use; removed keys leave a tombstone.
+ * The table grows (and is compacted) by rebuilding it under a lock, slot by slot:
+ * every value is swapped for {@link #MOVED}, and callers that meet the marker call
+ * {@link #awaitRebuild()} and retry against the new segment.
+ *
+ * Callers update values with their own CAS loop:
+ *
+ * <pre>
+ * while (true) {
+ *     LongStateTable.Segment s = table.segment();
+ *     int slot = s.findOrInsert(key);
+ *     if (slot == LongStateTable.RETRY) continue;
+ *     if (slot == LongStateTable.FULL) return ...;
+ *     long value = s.get(slot);
+ *     if (value == LongStateTable.MOVED) { table.awaitRebuild(); continue; }
+ *     if (s.compareAndSet(slot, value, next(value))) return ...;
+ * }
+ * </pre>
+ */
+final class LongStateTable {
+
+    /** Value marker of a slot that is being moved or removed */
+    static final long MOVED = Long.MIN_VALUE;
+    /** Returned by lookups when the key is absent */
+    static final long ABSENT = -1L;
+    /** Slot result: the table was replaced, start over */
+    static final int RETRY = -2;
+    /** Slot result: no room for another key */
+    static final int FULL = -1;
+
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = -1L;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxCapacity;
+    private volatile Segment table = new Segment(INITIAL_CAPACITY);
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    /**
+     * @param maxKeys number of keys the table must be able to hold; it grows lazily up to twice this many slots
+     */
+    LongStateTable(int maxKeys) {
+        this.maxCapacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, maxKeys) * 2 - 1) << 1);
+    }
+
+    /**
+     * Keys 0 and -1 are reserved as slot markers; callers pass keys through this first
+     */
+    static long normalize(long key) {
+        return key == EMPTY || key == TOMBSTONE ? 1 : key;
+    }
+
+    /**
+     * The current segment; re-read after every {@link #RETRY} or {@link #MOVED}
+     */
+    Segment segment() {
+        return table;
+    }
+
+    /**
+     * Current value of the key, or {@link #ABSENT}
+     */
+    long get(long key) {
+        while (true) {
+            Segment s = table;
+            int slot = s.find(key);
+            if (slot < 0) {
+                return ABSENT;
+            }
+            long value = s.get(slot);
+            if (value != MOVED) {
+                return value;
+            }
+            awaitRebuild();
+        }
+    }
+
+    /**
+     * Remove the key, leaving a tombstone
+     *
+     * @return whether the key was present
+     */
+    boolean remove(long key) {
+        return remove(key, false, 0);
+    }
+
+    /**
+     * Remove the key only if it currently holds {@code expected}
+     *
+     * @return whether the key was removed
+     */
+    boolean remove(long key, long expected) {
+        return remove(key, true, expected);
+    }
+
+    private boolean remove(long key, boolean conditional, long expected) {
+        while (true) {
+            Segment s = table;
+            int slot = s.find(key);
+            if (slot < 0) {
+                return false;
+            }
+            long value = s.get(slot);
+            if (value == MOVED) {
+                awaitRebuild();
+                continue;
+            }
+            if (conditional && value != expected) {
+                return false;
+            }
+            // Freeze the value first so no concurrent update can land after the key is gone
+            if (s.compareAndSet(slot, value, MOVED)) {
+                s.slots.set(slot, TOMBSTONE);
+                s.tombstones.incrementAndGet();
+                s.live.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Rebuild the table keeping only the entries whose value passes {@code retain}
+     */
+    void compact(LongPredicate retain) {
+        Segment s = table;
+        rebuild(s, s.capacity, retain);
+    }
+
+    /**
+     * Visit every live entry. Entries updated concurrently may be seen in either state.
+     */
+    void forEach(EntryVisitor visitor) {
+        Segment s = table;
+        for (int slot = 0; slot < s.slots.length(); slot += 2) {
+            long key = s.slots.get(slot);
+            long value = s.slots.get(slot + 1);
+            if (key != EMPTY && key != TOMBSTONE && value != MOVED) {
+                visitor.visit(key, value);
+            }
+        }
+    }
+
+    /**
+     * Number of keys currently held
+     */
+    int size() {
+        return table.live.get();
+    }
+
+    // Rebuilds hold the lock; acquiring it means the table has been republished.
+    // A lock rather than a monitor, so waiting virtual threads do not pin their carrier.
+    void awaitRebuild() {
+        rebuildLock.lock();
+        rebuildLock.unlock();
+    }
+
+    /**
+     * Copy retained entries into a fresh segment, unless another thread already replaced {@code expected}
+     */
+    private void rebuild(Segment expected, int capacity, LongPredicate retain) {
+        rebuildLock.lock();
+        try {
+            Segment old = table;
+            if (old != expected) {
+                return;
+            }
+
+            Segment fresh = new Segment(capacity);
+            for (int slot = 0; slot < old.slots.length(); slot += 2) {
+                long value = old.slots.getAndSet(slot + 1, MOVED);
+                long key = old.slots.get(slot);
+                if (key == EMPTY || key == TOMBSTONE || value == MOVED || (retain != null && !retain.test(value))) {
+                    continue;
+                }
+                fresh.place(key, value);
+            }
+            table = fresh;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Callback for {@link #forEach}
+     */
+    interface EntryVisitor {
+        void visit(long key, long value);
+    }
+
+    /**
+     * Fixed-capacity slot array; replaced as a whole when the table grows
+     */
+    final class Segment {
+        private final int capacity;
+        private final int mask;
+        private final AtomicLongArray slots;
+        private final AtomicInteger used = new AtomicInteger();
+        private final AtomicInteger live = new AtomicInteger();
+        private final AtomicInteger tombstones = new AtomicInteger();
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.slots = new AtomicLongArray(capacity * 2);
+        }
+
+        long get(int slot) {
+            return slots.get(slot + 1);
+        }
+
+        boolean compareAndSet(int slot, long expected, long value) {
+            return slots.compareAndSet(slot + 1, expected, value);
+        }
+
+        /**
+         * Index of the key's slot, or -1 if absent
+         */
+        int find(long key) {
+            int index = home(key);
+            for (int probe = 0; probe < capacity; probe++) {
+                int slot = ((index + probe) & mask) * 2;
+                long current = slots.get(slot);
+                if (current == key) return slot;
+                if (current == EMPTY) return -1;
+            }
+            return -1;
+        }
+
+        /**
+         * Index of the key's slot, claiming the first empty one (value 0) if absent.
+         * Doubles the table when it gets half full and returns {@link #RETRY}; returns
+         * {@link #FULL} only at maximum capacity with no free or reclaimable slot left.
+         */
+        int findOrInsert(long key) {
+            int index = home(key);
+            for (int probe = 0; probe < capacity; probe++) {
+                int slot = ((index + probe) & mask) * 2;
+                long current = slots.get(slot);
+                if (current == key) return slot;
+                if (current != EMPTY) continue;
+
+                if ((used.get() + 1) * 2 > capacity && capacity < maxCapacity) {
+                    rebuild(this, capacity * 2, null);
+                    return RETRY;
+                }
+                if (slots.compareAndSet(slot, EMPTY, key)) {
+                    used.incrementAndGet();
+                    live.incrementAndGet();
+                    return slot;
+                }
+                // Lost the race for this slot; it may have been claimed for the same key
+                if (slots.get(slot) == key) return slot;
+            }
+            if (tombstones.get() == 0 && table == this) {
+                return FULL;
+            }
+            rebuild(this, capacity, null);
+            return RETRY;
+        }
+
+        /**
+         * Insert during a rebuild, before the segment is published
+         */
+        private void place(long key, long value) {
+            int index = home(key);
+            for (int probe = 0; probe < capacity; probe++) {
+                int slot = ((index + probe) & mask) * 2;
+                if (slots.get(slot) == EMPTY) {
+                    slots.set(slot, key);
+                    slots.set(slot + 1, value);
+                    used.incrementAndGet();
+                    live.incrementAndGet();
+                    return;
+                }
+            }
+        }
+
+        private int home(long key) {
+            return (int) CountMinSketch.mix64(key) & mask;
+        }
+    }
+}
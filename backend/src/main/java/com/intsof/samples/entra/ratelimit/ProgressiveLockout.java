@@ -0,0 +1,214 @@
+package com.intsof.samples.entra.ratelimit;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Progressive lockout with exponential backoff and decay.
+ *
+ * Each time a key trips its rate limit it earns a violation, raising its penalty
+ * level by one and locking it out for {@code base * 2^(level - 1)}, capped at
+ * {@code max}. Every {@code decay} period that passes after a lockout ends without
+ * a new violation lowers the level by one, so a one-off burst of typos costs a
+ * single base lockout and is forgotten, while a key that keeps coming back is
+ * locked out for longer and longer.
+ *
+ * The whole state of a key is one long packing its level and the time of its last
+ * violation, updated lock-free with compare-and-set in a {@link LongStateTable}.
+ * Durations are passed per call, like {@link GcraRateLimiter}'s limits.
+ */
+public class ProgressiveLockout {
+
+    private static final int TIME_BITS = 47;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final int MAX_LEVEL = 63;
+    private static final int SNAPSHOT_MAGIC = 0x504c4b31; // "PLK1"
+
+    private final LongStateTable states;
+
+    /**
+     * @param maxKeys maximum number of keys with a penalty
+     */
+    public ProgressiveLockout(int maxKeys) {
+        this.states = new LongStateTable(maxKeys);
+    }
+
+    /**
+     * Record a violation and start the resulting lockout
+     *
+     * @return when the lockout ends, or 0 if no more keys can be tracked
+     */
+    public long violation(long key, long baseMillis, long maxMillis, long decayMillis, long now) {
+        key = LongStateTable.normalize(key);
+        while (true) {
+            LongStateTable.Segment s = states.segment();
+            int slot = s.findOrInsert(key);
+            if (slot == LongStateTable.RETRY) {
+                continue;
+            }
+            if (slot == LongStateTable.FULL) {
+                return 0;
+            }
+            long state = s.get(slot);
+            if (state == LongStateTable.MOVED) {
+                states.awaitRebuild();
+                continue;
+            }
+            int level = Math.min(MAX_LEVEL, decayedLevel(state, baseMillis, maxMillis, decayMillis, now) + 1);
+            if (s.compareAndSet(slot, state, pack(level, now))) {
+                return now + duration(level, baseMillis, maxMillis);
+            }
+        }
+    }
+
+    /**
+     * End of the key's current lockout, or 0 if it is not locked out
+     */
+    public long lockedUntil(long key, long baseMillis, long maxMillis, long now) {
+        long state = states.get(LongStateTable.normalize(key));
+        if (state <= 0) return 0;
+
+        long end = lockoutEnd(state, baseMillis, maxMillis);
+        return now < end ? end : 0;
+    }
+
+    /**
+     * Current penalty level of the key after decay
+     */
+    public int level(long key, long baseMillis, long maxMillis, long decayMillis, long now) {
+        long state = states.get(LongStateTable.normalize(key));
+        return state <= 0 ? 0 : decayedLevel(state, baseMillis, maxMillis, decayMillis, now);
+    }
+
+    /**
+     * End the key's current lockout now but keep its level, which starts decaying
+     */
+    public void release(long key, long baseMillis, long maxMillis, long now) {
+        key = LongStateTable.normalize(key);
+        while (true) {
+            LongStateTable.Segment s = states.segment();
+            int slot = s.find(key);
+            if (slot < 0) {
+                return;
+            }
+            long state = s.get(slot);
+            if (state == LongStateTable.MOVED) {
+                states.awaitRebuild();
+                continue;
+            }
+            int level = levelOf(state);
+            if (level == 0 || lockoutEnd(state, baseMillis, maxMillis) <= now) {
+                return;
+            }
+            long released = pack(level, Math.max(0, now - duration(level, baseMillis, maxMillis)));
+            if (s.compareAndSet(slot, state, released)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forgive the key entirely
+     */
+    public void clear(long key) {
+        states.remove(LongStateTable.normalize(key));
+    }
+
+    /**
+     * Drop keys whose penalty has fully decayed
+     */
+    public void evictIdle(long baseMillis, long maxMillis, long decayMillis, long now) {
+        states.compact(state -> decayedLevel(state, baseMillis, maxMillis, decayMillis, now) > 0);
+    }
+
+    /**
+     * Number of keys with a penalty
+     */
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Write every penalty as a 16-byte (key, state) record
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        long[] entries = new long[states.size() * 2 + 32];
+        int[] count = {0};
+        states.forEach((key, state) -> {
+            if (state > 0 && count[0] + 2 <= entries.length) {
+                entries[count[0]++] = key;
+                entries[count[0]++] = state;
+            }
+        });
+
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(count[0] / 2);
+        for (int i = 0; i < count[0]; i++) {
+            out.writeLong(entries[i]);
+        }
+    }
+
+    /**
+     * Restore penalties written by {@link #writeTo}, keeping any newer state already present
+     */
+    public void readFrom(DataInput in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a lockout snapshot");
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            restore(LongStateTable.normalize(in.readLong()), in.readLong());
+        }
+    }
+
+    private void restore(long key, long restored) {
+        while (true) {
+            LongStateTable.Segment s = states.segment();
+            int slot = s.findOrInsert(key);
+            if (slot == LongStateTable.RETRY) {
+                continue;
+            }
+            if (slot == LongStateTable.FULL) {
+                return;
+            }
+            long state = s.get(slot);
+            if (state == LongStateTable.MOVED) {
+                states.awaitRebuild();
+                continue;
+            }
+            if ((state & TIME_MASK) >= (restored & TIME_MASK) || s.compareAndSet(slot, state, restored)) {
+                return;
+            }
+        }
+    }
+
+    private static long pack(int level, long time) {
+        return ((long) level << TIME_BITS) | (time & TIME_MASK);
+    }
+
+    private static int levelOf(long state) {
+        return (int) (state >>> TIME_BITS);
+    }
+
+    private static long lockoutEnd(long state, long baseMillis, long maxMillis) {
+        return (state & TIME_MASK) + duration(levelOf(state), baseMillis, maxMillis);
+    }
+
+    private static int decayedLevel(long state, long baseMillis, long maxMillis, long decayMillis, long now) {
+        int level = levelOf(state);
+        if (level == 0) return 0;
+
+        long cleanFor = now - lockoutEnd(state, baseMillis, maxMillis);
+        if (cleanFor <= 0) return level;
+        return (int) Math.max(0, level - cleanFor / Math.max(1, decayMillis));
+    }
+
+    private static long duration(int level, long baseMillis, long maxMillis) {
+        if (level <= 0) return 0;
+        // Past 2^40 any realistic base exceeds the cap anyway
+        int shift = Math.min(level - 1, 40);
+        long duration = baseMillis << shift;
+        return duration < 0 || duration > maxMillis ? maxMillis : duration;
+    }
+}
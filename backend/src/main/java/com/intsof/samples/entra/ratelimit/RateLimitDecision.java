@@ -0,0 +1,71 @@
+package com.intsof.samples.entra.ratelimit;
+
+/**
+ * Outcome of evaluating a chain of rate limit scopes.
+ */
+public final class RateLimitDecision {
+
+    private static final RateLimitDecision ALLOWED = new RateLimitDecision(true, null, 0, -1, -1, 0);
+
+    private final boolean allowed;
+    private final RateLimitScope scope;
+    private final long retryAfterSeconds;
+    private final int limit;
+    private final int remaining;
+    private final long resetSeconds;
+
+    private RateLimitDecision(boolean allowed, RateLimitScope scope, long retryAfterSeconds,
+                              int limit, int remaining, long resetSeconds) {
+        this.allowed = allowed;
+        this.scope = scope;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.limit = limit;
+        this.remaining = remaining;
+        this.resetSeconds = resetSeconds;
+    }
+
+    public static RateLimitDecision allowed() {
+        return ALLOWED;
+    }
+
+    public static RateLimitDecision denied(RateLimitScope scope, long retryAfterSeconds) {
+        return new RateLimitDecision(false, scope, retryAfterSeconds, -1, -1, 0);
+    }
+
+    /**
+     * Decision carrying quota information for {@code RateLimit-*} response headers
+     */
+    public static RateLimitDecision of(boolean allowed, RateLimitScope scope, long retryAfterSeconds,
+                                       int limit, int remaining, long resetSeconds) {
+        return new RateLimitDecision(allowed, scope, retryAfterSeconds, limit, remaining, resetSeconds);
+    }
+
+    public boolean isAllowed() { return allowed; }
+
+    /** Scope that denied the attempt, or null if allowed */
+    public RateLimitScope getScope() { return scope; }
+
+    public long getRetryAfterSeconds() { return retryAfterSeconds; }
+
+    /** Quota size, or -1 if the decision carries no quota information */
+    public int getLimit() { return limit; }
+
+    /** Units left in the quota, or -1 if unknown */
+    public int getRemaining() { return remaining; }
+
+    /** Seconds until the quota is fully replenished */
+    public long getResetSeconds() { return resetSeconds; }
+
+    public boolean hasQuota() { return limit >= 0; }
+
+    @Override
+    public String toString() {
+        return "RateLimitDecision{" +
+                "allowed=" + allowed +
+                ", scope=" + scope +
+                ", retryAfterSeconds=" + retryAfterSeconds +
+                ", limit=" + limit +
+                ", remaining=" + remaining +
+                '}';
+    }
+}
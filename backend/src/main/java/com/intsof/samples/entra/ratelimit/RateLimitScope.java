@@ -0,0 +1,94 @@
+package com.intsof.samples.entra.ratelimit;
+
+/**
+ * Granularity at which authentication failures are counted.
+ *
+ * Keys are primitive longs computed straight from the request values without
+ * allocating: parsed addresses for the IP scopes, 64-bit hashes for the rest.
+ */
+public enum RateLimitScope {
+
+    /** Exact client address */
+    IP("ip") {
+        @Override
+        public long key(String ipAddress, String username) {
+            if (ipAddress == null) return NO_KEY;
+            long key = IpAddress.key(ipAddress);
+            // Unparseable addresses (e.g. "unknown" from a proxy) are still limited by their text
+            return key != IpAddress.NO_KEY ? key : nonZero(CountMinSketch.hash64(ipAddress));
+        }
+    },
+
+    /** Client network: IPv4 /24 or IPv6 /64 */
+    SUBNET("subnet") {
+        @Override
+        public long key(String ipAddress, String username) {
+            return IpAddress.subnetKey(ipAddress);
+        }
+    },
+
+    /** Username (email), case-insensitive */
+    USER("user") {
+        @Override
+        public long key(String ipAddress, String username) {
+            if (username == null) return NO_KEY;
+            return nonZero(CountMinSketch.hash64(username, 0, username.length(), true));
+        }
+    },
+
+    /** Email domain (the part after the last '@'), compared case-insensitively as in provider routing */
+    DOMAIN("domain") {
+        @Override
+        public long key(String ipAddress, String username) {
+            if (username == null) return NO_KEY;
+            int at = username.lastIndexOf('@');
+            if (at < 0 || at == username.length() - 1) return NO_KEY;
+            return nonZero(CountMinSketch.hash64(username, at + 1, username.length(), true));
+        }
+    },
+
+    /** Every attempt against this instance */
+    GLOBAL("global") {
+        @Override
+        public long key(String ipAddress, String username) {
+            return 1L;
+        }
+    };
+
+    /** Returned when the scope does not apply to the attempt */
+    public static final long NO_KEY = 0L;
+
+    private final String configName;
+
+    RateLimitScope(String configName) {
+        this.configName = configName;
+    }
+
+    /**
+     * Key of the attempt within this scope, or {@link #NO_KEY} if the scope does not apply
+     */
+    public abstract long key(String ipAddress, String username);
+
+    /**
+     * Name used in {@code auth.rate-limit.*} properties
+     */
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * Resolve a scope from its configuration name
+     */
+    public static RateLimitScope fromConfigName(String name) {
+        for (RateLimitScope scope : values()) {
+            if (scope.configName.equalsIgnoreCase(name.trim())) {
+                return scope;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rate limit scope: " + name);
+    }
+
+    private static long nonZero(long key) {
+        return key == NO_KEY ? 1 : key;
+    }
+}
@@ -0,0 +1,72 @@
+package com.intsof.samples.entra.ratelimit;
+
+/**
+ * Storage for the failed-attempt counters of one rate limit scope.
+ *
+ * Implementations must answer every call from local state: they are consulted on
+ * each login attempt, so anything shared with other instances has to be exchanged
+ * in the background through {@link #synchronize(int, long, long)}.
+ *
+ * <ul>
+ *   <li>{@link BoundedRateLimiter} - in-memory, per instance (the default)</li>
+ *   <li>{@link SharedRateLimitStore} - cluster-wide limits via a shared database</li>
+ * </ul>
+ */
+public interface RateLimitStore {
+
+    /**
+     * Check whether another attempt is allowed without recording one
+     */
+    boolean isAllowed(long key, int limit, long periodMillis, long now);
+
+    /**
+     * Record a failed attempt
+     */
+    void recordFailure(long key, int limit, long periodMillis, long now);
+
+    /**
+     * Atomically reserve an attempt if one is allowed. The reservation counts as a
+     * failure until it is given back with {@link #refund}, so concurrent attempts
+     * cannot all pass a check before any of them is recorded.
+     *
+     * @return false if the key is limited; nothing is reserved then
+     */
+    boolean tryAcquire(long key, int limit, long periodMillis, long now);
+
+    /**
+     * Give back a reservation whose attempt did not fail
+     */
+    void refund(long key, int limit, long periodMillis, long now);
+
+    /**
+     * Remaining attempts before the key is limited
+     */
+    int remaining(long key, int limit, long periodMillis, long now);
+
+    /**
+     * Milliseconds until the key may attempt again
+     */
+    long retryAfterMillis(long key, int limit, long periodMillis, long now);
+
+    /**
+     * Reset the key after a successful authentication
+     */
+    void reset(long key, long now);
+
+    /**
+     * Drop state that has been idle for long enough
+     */
+    void evictIdle(long periodMillis, long now);
+
+    /**
+     * Number of keys with an exact counter
+     */
+    int trackedKeys();
+
+    /**
+     * Exchange state with other instances. Called periodically from a background
+     * thread; a no-op for stores that are not shared.
+     */
+    default void synchronize(int limit, long periodMillis, long now) {
+    }
+}
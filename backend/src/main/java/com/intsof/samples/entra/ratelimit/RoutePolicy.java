@@ -0,0 +1,113 @@
+package com.intsof.samples.entra.ratelimit;
+
+/**
+ * Request rate limit for one route, compiled from configuration at startup.
+ *
+ * Every matching request consumes one unit of its key's budget: a sustained rate of
+ * {@code rate} requests per {@code periodMillis}, with bursts of up to {@code burst}.
+ * Keys are derived from the request according to the policy's {@link RateLimitScope}.
+ *
+ * Once {@code maxTrackedKeys} keys are tracked, new keys are counted per key in a
+ * fixed-size {@link CountMinSketch} until idle keys are evicted: each may make
+ * {@code burst} requests per window of {@code burst} intervals. Flooding the table
+ * with fresh keys therefore neither bypasses the limit nor starves other new clients;
+ * as with {@link BoundedRateLimiter}, heavy spray can make the sketch over-count and
+ * deny a colliding key, failing closed.
+ */
+public class RoutePolicy {
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 16_384;
+
+    private final String name;
+    private final String method;
+    private final String path;
+    private final RateLimitScope scope;
+    private final long intervalMillis;
+    private final int burst;
+    private final int maxTrackedKeys;
+    private final GcraRateLimiter limiter;
+    private final CountMinSketch overflow = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+
+    /**
+     * @param method HTTP method to match, or null for any
+     */
+    public RoutePolicy(String name, String method, String path, RateLimitScope scope,
+                       int rate, long periodMillis, int burst, int maxTrackedKeys) {
+        if (rate <= 0 || periodMillis <= 0) {
+            throw new IllegalArgumentException("Rate limit policy '" + name + "' needs a positive rate and period");
+        }
+        this.name = name;
+        this.method = method;
+        this.path = path;
+        this.scope = scope;
+        this.intervalMillis = Math.max(1, periodMillis / rate);
+        this.burst = Math.max(1, burst);
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.limiter = new GcraRateLimiter(maxTrackedKeys);
+    }
+
+    /**
+     * Whether the policy applies to the given HTTP method
+     */
+    public boolean matchesMethod(String requestMethod) {
+        return method == null || method.equalsIgnoreCase(requestMethod);
+    }
+
+    /**
+     * Consume one unit for the request's key
+     *
+     * @return the decision, or null if the request carries no key for this policy's scope
+     */
+    public RateLimitDecision apply(String ipAddress, String username, long now) {
+        long key = scope.key(ipAddress, username);
+        if (key == RateLimitScope.NO_KEY) {
+            return null;
+        }
+
+        // New keys are counted approximately once the table is full; idle keys are evicted periodically
+        if (limiter.size() >= maxTrackedKeys && !limiter.contains(key)) {
+            return applyOverflow(key, now);
+        }
+
+        long tat = limiter.acquire(key, intervalMillis, burst, now);
+        if (tat >= 0) {
+            int remaining = (int) Math.max(0, (intervalMillis * burst - (tat - now)) / intervalMillis);
+            return RateLimitDecision.of(true, scope, 0, burst, remaining, toSeconds(tat - now));
+        }
+
+        long current = Math.max(limiter.theoreticalArrivalTime(key), now);
+        long retryAfter = Math.max(0, current + intervalMillis - now - intervalMillis * burst);
+        return RateLimitDecision.of(false, scope, toSeconds(retryAfter), burst, 0, toSeconds(current - now));
+    }
+
+    private RateLimitDecision applyOverflow(long key, long now) {
+        long window = intervalMillis * burst;
+        long hash = CountMinSketch.mix64(key);
+        int count = overflow.increment(hash, window, now);
+        long reset = toSeconds(overflow.millisUntilExpiry(window, now));
+        if (count <= burst) {
+            return RateLimitDecision.of(true, scope, 0, burst, burst - count, reset);
+        }
+        overflow.decrement(hash, window, now);
+        return RateLimitDecision.of(false, scope, reset, burst, 0, reset);
+    }
+
+    /**
+     * Drop keys whose budget is fully replenished
+     */
+    public void evictIdle(long now) {
+        limiter.evictIdle(now);
+    }
+
+    public String getName() { return name; }
+    public String getMethod() { return method; }
+    public String getPath() { return path; }
+    public RateLimitScope getScope() { return scope; }
+    public int getBurst() { return burst; }
+    public int getTrackedKeys() { return limiter.size(); }
+
+    private static long toSeconds(long millis) {
+        return (millis + 999) / 1000;
+    }
+}
@@ -0,0 +1,309 @@
+package com.intsof.samples.entra.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Rate limit store whose limits hold across all instances of the application.
+ *
+ * Every decision is still made locally, against a {@link BoundedRateLimiter}; the
+ * cluster-wide picture is exchanged in the background:
+ *
+ * <ul>
+ *   <li><b>Quota slices.</b> Each instance may only use its share of a key's
+ *       remaining budget, {@code ceil(remaining / instances)}. A key seen for the
+ *       first time gets a slice of the full limit, so {@code instances} replicas
+ *       together cannot exceed the limit before they have talked to each other.</li>
+ *   <li><b>Batched reconciliation.</b> Failures are buffered per key and written to
+ *       the {@link JdbcQuotaLedger} in one batch by {@link #synchronize}. The same pass
+ *       reads the cluster-wide counts of the active keys back and resizes their
+ *       slices, so no login ever waits for the database.</li>
+ * </ul>
+ *
+ * Limits are approximate: slices are rounded up and resized from a view that is one
+ * sync interval old, so up to {@code instances - 1} extra attempts may get through.
+ * The ledger counts fixed windows; a key's cluster-wide count is the current window
+ * plus the overlapping part of the previous one. If the database is unreachable,
+ * buffered failures are kept and the instance keeps enforcing its last slices.
+ */
+public class SharedRateLimitStore implements RateLimitStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedRateLimitStore.class);
+
+    // Results of track()
+    private static final int UNTRACKED = 0;
+    private static final int TRACKED = 1;
+    private static final int CREATED = 2;
+
+    private final String namespace;
+    private final JdbcQuotaLedger ledger;
+    private final BoundedRateLimiter local;
+    private final int instances;
+    private final int maxSharedKeys;
+
+    // Keys with failures this instance has to report or enforce a slice for. Each holds
+    // 1 + its failures not yet written to the ledger; a fresh slot holds 0 until its creator claims it.
+    private final LongStateTable keys;
+    private final ConcurrentLinkedQueue<Long> pendingResets = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param namespace     name of the scope in the ledger
+     * @param local         store that makes the per-request decisions
+     * @param instances     number of instances sharing the limit
+     * @param maxSharedKeys cap on keys buffered for reconciliation
+     */
+    public SharedRateLimitStore(String namespace, JdbcQuotaLedger ledger, BoundedRateLimiter local,
+                                int instances, int maxSharedKeys) {
+        this.namespace = namespace;
+        this.ledger = ledger;
+        this.local = local;
+        this.instances = Math.max(1, instances);
+        this.maxSharedKeys = maxSharedKeys;
+        this.keys = new LongStateTable(maxSharedKeys);
+    }
+
+    @Override
+    public boolean isAllowed(long key, int limit, long periodMillis, long now) {
+        return local.isAllowed(key, limit, periodMillis, now);
+    }
+
+    @Override
+    public void recordFailure(long key, int limit, long periodMillis, long now) {
+        int state = track(key);
+        if (state == CREATED) {
+            // First failure here: pre-allocate this instance's slice of the full limit
+            int used = limit - local.remaining(key, limit, periodMillis, now);
+            local.assign(key, Math.max(used, limit - slice(limit)) + 1, limit, periodMillis, now);
+            addPending(key, 1);
+            return;
+        }
+        // Untracked keys (too many to reconcile) are counted locally only
+        if (state == TRACKED) {
+            addPending(key, 1);
+        }
+        local.recordFailure(key, limit, periodMillis, now);
+    }
+
+    @Override
+    public boolean tryAcquire(long key, int limit, long periodMillis, long now) {
+        int state = track(key);
+        if (state == CREATED) {
+            // First reservation here: pre-allocate this instance's slice of the full limit
+            int used = limit - local.remaining(key, limit, periodMillis, now);
+            local.assign(key, Math.max(used, limit - slice(limit)), limit, periodMillis, now);
+        }
+        if (!local.tryAcquire(key, limit, periodMillis, now)) {
+            return false;
+        }
+        if (state != UNTRACKED) {
+            addPending(key, 1);
+        }
+        return true;
+    }
+
+    @Override
+    public void refund(long key, int limit, long periodMillis, long now) {
+        local.refund(key, limit, periodMillis, now);
+        // A reservation already written to the ledger stays counted there until its window ends
+        addPending(key, -1);
+    }
+
+    @Override
+    public int remaining(long key, int limit, long periodMillis, long now) {
+        return local.remaining(key, limit, periodMillis, now);
+    }
+
+    @Override
+    public long retryAfterMillis(long key, int limit, long periodMillis, long now) {
+        return local.retryAfterMillis(key, limit, periodMillis, now);
+    }
+
+    @Override
+    public void reset(long key, long now) {
+        local.reset(key, now);
+        if (keys.remove(LongStateTable.normalize(key))) {
+            pendingResets.add(key);
+        }
+    }
+
+    @Override
+    public void evictIdle(long periodMillis, long now) {
+        local.evictIdle(periodMillis, now);
+    }
+
+    @Override
+    public int trackedKeys() {
+        return local.trackedKeys();
+    }
+
+    /**
+     * Flush buffered failures and resets in batches, then resize every active key's
+     * slice from its cluster-wide count
+     */
+    @Override
+    public void synchronize(int limit, long periodMillis, long now) {
+        long window = Math.floorDiv(now, Math.max(1, periodMillis));
+
+        // Snapshot the active keys and take their buffered failures
+        int size = keys.size();
+        long[] active = new long[size];
+        int[] found = new int[1];
+        keys.forEach((key, value) -> {
+            if (found[0] < size) active[found[0]++] = key;
+        });
+        int count = found[0];
+        long[] dirtyKeys = new long[count];
+        int[] dirtyCounts = new int[count];
+        int dirty = 0;
+        for (int i = 0; i < count; i++) {
+            int pending = takePending(active[i]);
+            if (pending > 0) {
+                dirtyKeys[dirty] = active[i];
+                dirtyCounts[dirty++] = pending;
+            }
+        }
+
+        long[] resets = new long[pendingResets.size()];
+        int resetCount = 0;
+        Long reset;
+        while (resetCount < resets.length && (reset = pendingResets.poll()) != null) {
+            resets[resetCount++] = reset;
+        }
+
+        try {
+            ledger.clear(namespace, resets, resetCount);
+            ledger.addFailures(namespace, window, dirtyKeys, dirtyCounts, dirty);
+        } catch (RuntimeException e) {
+            logger.warn("Rate limit ledger unavailable for scope '{}', will retry: {}", namespace, e.getMessage());
+            for (int i = 0; i < dirty; i++) {
+                addPending(dirtyKeys[i], dirtyCounts[i]);
+            }
+            for (int i = 0; i < resetCount; i++) {
+                pendingResets.add(resets[i]);
+            }
+            return;
+        }
+
+        Map<Long, int[]> counts;
+        try {
+            counts = ledger.failures(namespace, window, active, count);
+            ledger.purge(namespace, window - 1);
+        } catch (RuntimeException e) {
+            logger.warn("Reading cluster-wide rate limits for scope '{}' failed: {}", namespace, e.getMessage());
+            return;
+        }
+
+        double previousWeight = 1.0 - (double) Math.floorMod(now, periodMillis) / periodMillis;
+        for (int i = 0; i < count; i++) {
+            long key = active[i];
+            long state = keys.get(key);
+            if (state == LongStateTable.ABSENT) continue;
+
+            int[] windows = counts.get(key);
+            int failures = windows == null ? 0 : (int) Math.ceil(windows[0] * previousWeight) + windows[1];
+            // Nothing left to enforce cluster-wide
+            if (failures == 0 && keys.remove(key, 1)) continue;
+
+            // Failures recorded since the snapshot are not in the ledger yet, so add them back
+            int consumed = limit - slice(Math.max(0, limit - failures));
+            local.assign(key, consumed + pending(key), limit, periodMillis, now);
+        }
+    }
+
+    /**
+     * Number of keys buffered for reconciliation
+     */
+    public int sharedKeys() {
+        return keys.size();
+    }
+
+    private int slice(int remaining) {
+        return (remaining + instances - 1) / instances;
+    }
+
+    /**
+     * Look the key up, inserting it while there is room for more keys
+     *
+     * @return {@link #CREATED} if this call inserted it, {@link #TRACKED} if it was there already,
+     *         {@link #UNTRACKED} if there is no room for it
+     */
+    private int track(long key) {
+        key = LongStateTable.normalize(key);
+        while (true) {
+            LongStateTable.Segment t = keys.segment();
+            int slot = keys.size() < maxSharedKeys ? t.findOrInsert(key) : t.find(key);
+            if (slot == LongStateTable.RETRY) {
+                continue;
+            }
+            if (slot < 0) {
+                return UNTRACKED;
+            }
+            long value = t.get(slot);
+            if (value == LongStateTable.MOVED) {
+                keys.awaitRebuild();
+                continue;
+            }
+            if (value != 0) {
+                return TRACKED;
+            }
+            if (t.compareAndSet(slot, 0, 1)) {
+                return CREATED;
+            }
+        }
+    }
+
+    /**
+     * Adjust the key's failures not yet written to the ledger, never below zero
+     */
+    private void addPending(long key, int delta) {
+        key = LongStateTable.normalize(key);
+        while (true) {
+            LongStateTable.Segment t = keys.segment();
+            int slot = t.find(key);
+            if (slot < 0) {
+                return;
+            }
+            long value = t.get(slot);
+            if (value == LongStateTable.MOVED) {
+                keys.awaitRebuild();
+                continue;
+            }
+            long next = Math.max(1, Math.max(1, value) + delta);
+            if (next == value || t.compareAndSet(slot, value, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Take the key's failures not yet written to the ledger, leaving none
+     */
+    private int takePending(long key) {
+        key = LongStateTable.normalize(key);
+        while (true) {
+            LongStateTable.Segment t = keys.segment();
+            int slot = t.find(key);
+            if (slot < 0) {
+                return 0;
+            }
+            long value = t.get(slot);
+            if (value == LongStateTable.MOVED) {
+                keys.awaitRebuild();
+                continue;
+            }
+            if (value <= 1) {
+                return 0;
+            }
+            if (t.compareAndSet(slot, value, 1)) {
+                return (int) (value - 1);
+            }
+        }
+    }
+
+    private int pending(long key) {
+        return (int) Math.max(0, keys.get(LongStateTable.normalize(key)) - 1);
+    }
+}
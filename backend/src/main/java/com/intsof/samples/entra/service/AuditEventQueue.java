@@ -0,0 +1,216 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.audit.AuditEvent;
+import com.intsof.samples.entra.audit.AuditEventRing;
+import com.intsof.samples.entra.audit.AuditEventType;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves the authentication filter's rejection audit events off the request thread.
+ * The filter publishes compact typed events into a bounded lock-free ring; a single
+ * background writer drains it and does the formatting, sanitizing and logging through
+ * {@link AuditLoggingService}, producing the same audit lines as before. When the
+ * ring is full the event is dropped and counted rather than slowing the request.
+ */
+@Service
+public class AuditEventQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditEventQueue.class);
+    private static final int DRAIN_BATCH = 256;
+
+    private final AuditLoggingService auditLoggingService;
+    private final boolean enabled;
+    private final long idleWaitNanos;
+    private final AuditEventRing ring;
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    // Written by the writer thread only
+    private volatile long written;
+    private volatile long failed;
+    private volatile boolean running = true;
+
+    @Autowired
+    public AuditEventQueue(AuditLoggingService auditLoggingService,
+                           @Value("${audit.async.enabled:true}") boolean enabled,
+                           @Value("${audit.async.capacity:8192}") int capacity,
+                           @Value("${audit.async.idle-wait-ms:10}") long idleWaitMillis) {
+        this.auditLoggingService = auditLoggingService;
+        this.enabled = enabled;
+        this.idleWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, idleWaitMillis));
+        this.ring = new AuditEventRing(capacity);
+        if (enabled) {
+            this.writer = new Thread(this::runWriter, "audit-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            this.writer = null;
+        }
+    }
+
+    /**
+     * Queue a rejection event, or log it right away when the queue is disabled
+     */
+    public void publish(AuditEventType type, String ipAddress, String path, String detail, long waitTime) {
+        if (!auditLoggingService.isAuditEnabled()) {
+            return;
+        }
+        // Taken here, on the request thread: the writer may get to the event much later
+        long timestamp = System.currentTimeMillis();
+        if (writer == null) {
+            write(auditLoggingService, type, ipAddress, path, detail, waitTime, timestamp);
+        } else if (!ring.offer(type, ipAddress, path, detail, waitTime, timestamp)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Log an event in the format the filter has always used
+     *
+     * @param timestamp epoch milliseconds at which the event happened
+     */
+    public static void write(AuditLoggingService auditLoggingService, AuditEventType type, String ipAddress,
+                             String path, String detail, long waitTime, long timestamp) {
+        Map<String, Object> auditData = new HashMap<>();
+        switch (type) {
+            case MALFORMED_TOKEN:
+                auditData.put("reason", "malformed_token");
+                auditData.put("check", detail);
+                auditData.put("path", path);
+                auditLoggingService.logAuthEvent("TOKEN_VALIDATION_FAILED", null, ipAddress, auditData, timestamp);
+                break;
+            case INVALID_TOKEN:
+                auditData.put("reason", "invalid_or_expired_token");
+                auditData.put("path", path);
+                auditLoggingService.logAuthEvent("TOKEN_VALIDATION_FAILED", null, ipAddress, auditData, timestamp);
+                break;
+            case MISSING_AUTHORIZATION:
+                auditData.put("reason", "missing_authorization_header");
+                auditData.put("path", path);
+                auditLoggingService.logAuthEvent("UNAUTHORIZED_ACCESS_ATTEMPT", null, ipAddress, auditData, timestamp);
+                break;
+            case ROUTE_RATE_LIMITED:
+                auditData.put("path", path);
+                auditData.put("scope", detail);
+                auditData.put("waitTime", waitTime);
+                auditLoggingService.logRateLimitExceeded(null, ipAddress, "ROUTE_RATE_LIMIT", auditData, timestamp);
+                break;
+            case REQUEST_SHED:
+                auditData.put("path", path);
+                auditData.put("reason", detail);
+                auditLoggingService.logAuthEvent("AUTH_REQUEST_SHED", null, ipAddress, auditData, timestamp);
+                break;
+        }
+    }
+
+    private void runWriter() {
+        while (running) {
+            if (drain(DRAIN_BATCH) == 0) {
+                LockSupport.parkNanos(this, idleWaitNanos);
+            }
+        }
+        drain(Integer.MAX_VALUE);
+    }
+
+    private int drain(int max) {
+        return ring.drain(this::write, max);
+    }
+
+    private void write(AuditEvent event) {
+        try {
+            write(auditLoggingService, event.getType(), event.getIpAddress(), event.getPath(),
+                    event.getDetail(), event.getWaitTime(), event.getTimestamp());
+            written++;
+        } catch (RuntimeException e) {
+            failed++;
+            logger.warn("Failed to write audit event {}", event, e);
+        }
+    }
+
+    /**
+     * Get current statistics for monitoring
+     */
+    public AuditQueueStats getStats() {
+        return new AuditQueueStats(
+            ring.capacity(),
+            ring.size(),
+            ring.published(),
+            written,
+            dropped.sum(),
+            failed,
+            writer != null
+        );
+    }
+
+    /**
+     * Stop the writer after it has written what is queued
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Statistics class for monitoring
+     */
+    public static class AuditQueueStats {
+        private final int capacity;
+        private final int queued;
+        private final long published;
+        private final long written;
+        private final long dropped;
+        private final long failed;
+        private final boolean enabled;
+
+        public AuditQueueStats(int capacity, int queued, long published, long written, long dropped, long failed, boolean enabled) {
+            this.capacity = capacity;
+            this.queued = queued;
+            this.published = published;
+            this.written = written;
+            this.dropped = dropped;
+            this.failed = failed;
+            this.enabled = enabled;
+        }
+
+        // Getters
+        public int getCapacity() { return capacity; }
+        public int getQueued() { return queued; }
+        public long getPublished() { return published; }
+        public long getWritten() { return written; }
+        public long getDropped() { return dropped; }
+        public long getFailed() { return failed; }
+        public boolean isEnabled() { return enabled; }
+
+        @Override
+        public String toString() {
+            return "AuditQueueStats{" +
+                    "capacity=" + capacity +
+                    ", queued=" + queued +
+                    ", published=" + published +
+                    ", written=" + written +
+                    ", dropped=" + dropped +
+                    ", failed=" + failed +
+                    ", enabled=" + enabled +
+                    '}';
+        }
+    }
+}
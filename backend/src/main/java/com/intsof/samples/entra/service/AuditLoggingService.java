@@ -5,7 +5,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Map;
 
@@ -158,11 +160,26 @@ public class AuditLoggingService {
      * Log rate limiting events
      */
     public void logRateLimitExceeded(String username, String ipAddress, String limitType) {
+        logRateLimitExceeded(username, ipAddress, limitType, null);
+    }
+    
+    /**
+     * Log rate limiting events with additional details (e.g. the scope that tripped)
+     */
+    public void logRateLimitExceeded(String username, String ipAddress, String limitType, Map<String, Object> additionalData) {
+        logRateLimitExceeded(username, ipAddress, limitType, additionalData, System.currentTimeMillis());
+    }
+    
+    /**
+     * Log rate limiting events that happened at {@code timestamp} (epoch milliseconds), e.g. when written later
+     */
+    public void logRateLimitExceeded(String username, String ipAddress, String limitType, Map<String, Object> additionalData,
+                                     long timestamp) {
         if (!auditEnabled) return;
         
         StringBuilder logMessage = new StringBuilder();
         logMessage.append("RATE_LIMIT_EXCEEDED | ");
-        logMessage.append("timestamp=").append(LocalDateTime.now().format(DATE_FORMATTER)).append(" | ");
+        logMessage.append("timestamp=").append(formatTime(timestamp)).append(" | ");
         logMessage.append("username=").append(sanitizeForLog(username)).append(" | ");
         logMessage.append("limitType=").append(sanitizeForLog(limitType)).append(" | ");
         
@@ -170,6 +187,11 @@ public class AuditLoggingService {
             logMessage.append("ip=").append(sanitizeForLog(ipAddress)).append(" | ");
         }
         
+        if (additionalData != null) {
+            additionalData.forEach((key, value) -> 
+                logMessage.append(key).append("=").append(sanitizeForLog(String.valueOf(value))).append(" | "));
+        }
+        
         auditLogger.warn(logMessage.toString());
     }
     
@@ -197,11 +219,19 @@ public class AuditLoggingService {
      * Log general authentication events
      */
     public void logAuthEvent(String eventType, String username, String ipAddress, Map<String, Object> eventData) {
+        logAuthEvent(eventType, username, ipAddress, eventData, System.currentTimeMillis());
+    }
+    
+    /**
+     * Log general authentication events that happened at {@code timestamp} (epoch milliseconds), e.g. when written later
+     */
+    public void logAuthEvent(String eventType, String username, String ipAddress, Map<String, Object> eventData,
+                             long timestamp) {
         if (!auditEnabled) return;
         
         StringBuilder logMessage = new StringBuilder();
         logMessage.append("AUTH_EVENT | ");
-        logMessage.append("timestamp=").append(LocalDateTime.now().format(DATE_FORMATTER)).append(" | ");
+        logMessage.append("timestamp=").append(formatTime(timestamp)).append(" | ");
         logMessage.append("eventType=").append(sanitizeForLog(eventType)).append(" | ");
         logMessage.append("username=").append(sanitizeForLog(username)).append(" | ");
         
@@ -217,6 +247,10 @@ public class AuditLoggingService {
         auditLogger.info(logMessage.toString());
     }
     
+    private static String formatTime(long timestamp) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()).format(DATE_FORMATTER);
+    }
+    
     /**
      * Sanitize log input to prevent log injection attacks
      */
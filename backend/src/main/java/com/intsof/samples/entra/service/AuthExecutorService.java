@@ -0,0 +1,176 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.config.VirtualThreads;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor for login and token refresh work.
+ * The authentication filter hands these requests over in servlet async mode, so a
+ * login storm waits here instead of holding container threads that token-validated
+ * API traffic needs. Both the pool and its queue are bounded: work beyond them is
+ * rejected right away, and queued work that is not started within the timeout is
+ * answered with a retry instead. In virtual thread mode the workers are virtual
+ * threads; the pool size still bounds how many run at once.
+ */
+@Service
+public class AuthExecutorService {
+
+    private final boolean enabled;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor queueTimer;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    @Autowired
+    public AuthExecutorService(@Value("${auth.async.enabled:true}") boolean enabled,
+                               @Value("${auth.async.threads:16}") int threads,
+                               @Value("${auth.async.queue-capacity:200}") int queueCapacity,
+                               @Value("${auth.async.timeout-ms:10000}") long timeoutMillis,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.enabled = enabled;
+        this.timeoutMillis = timeoutMillis;
+        BlockingQueue<Runnable> queue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+                VirtualThreads.threadFactory(virtualThreads, "auth-worker-", VirtualThreads.namedDaemonThreads("auth-worker-")),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.queueTimer = new ScheduledThreadPoolExecutor(1, VirtualThreads.namedDaemonThreads("auth-queue-timer-"));
+        this.queueTimer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Whether logins and refreshes should be handed to this executor
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Longest a request may wait in the queue for a worker (in milliseconds)
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Queue a task
+     *
+     * @throws RejectedExecutionException if every worker is busy and the queue is full
+     */
+    public void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Run {@code onTimeout} once a task queued now has waited out the timeout.
+     * Cancel the returned future as soon as the task starts.
+     */
+    public ScheduledFuture<?> scheduleQueueTimeout(Runnable onTimeout) {
+        return queueTimer.schedule(onTimeout, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record a request that timed out before a worker picked it up
+     */
+    public void recordTimeout() {
+        timedOut.incrementAndGet();
+    }
+
+    /**
+     * Get current statistics for monitoring
+     */
+    public AuthExecutorStats getStats() {
+        return new AuthExecutorStats(
+            executor.getMaximumPoolSize(),
+            executor.getActiveCount(),
+            executor.getQueue().size(),
+            executor.getCompletedTaskCount(),
+            rejected.get(),
+            timedOut.get(),
+            enabled
+        );
+    }
+
+    /**
+     * Shutdown the executor. Requests still waiting in the queue are answered with a
+     * retry right away; running ones get a few seconds to finish.
+     */
+    @PreDestroy
+    public void shutdown() {
+        // Fire the pending queue timeouts now: each answers its request unless a worker
+        // has already started it, and the worker then skips the abandoned task
+        for (Runnable pendingTimeout : queueTimer.getQueue().toArray(new Runnable[0])) {
+            pendingTimeout.run();
+        }
+        queueTimer.shutdownNow();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Statistics class for monitoring
+     */
+    public static class AuthExecutorStats {
+        private final int threads;
+        private final int active;
+        private final int queued;
+        private final long completed;
+        private final long rejected;
+        private final long timedOut;
+        private final boolean enabled;
+
+        public AuthExecutorStats(int threads, int active, int queued, long completed, long rejected, long timedOut, boolean enabled) {
+            this.threads = threads;
+            this.active = active;
+            this.queued = queued;
+            this.completed = completed;
+            this.rejected = rejected;
+            this.timedOut = timedOut;
+            this.enabled = enabled;
+        }
+
+        // Getters
+        public int getThreads() { return threads; }
+        public int getActive() { return active; }
+        public int getQueued() { return queued; }
+        public long getCompleted() { return completed; }
+        public long getRejected() { return rejected; }
+        public long getTimedOut() { return timedOut; }
+        public boolean isEnabled() { return enabled; }
+
+        @Override
+        public String toString() {
+            return "AuthExecutorStats{" +
+                    "threads=" + threads +
+                    ", active=" + active +
+                    ", queued=" + queued +
+                    ", completed=" + completed +
+                    ", rejected=" + rejected +
+                    ", timedOut=" + timedOut +
+                    ", enabled=" + enabled +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.ratelimit.AdaptiveConcurrencyLimiter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Protects password verification capacity.
+ * Password checks are the most CPU-expensive work the application does; without a
+ * bound a login burst can occupy every request thread and make token validation for
+ * logged-in users queue behind it. Logins beyond the adaptive concurrency limit are
+ * shed right away, see {@link AdaptiveConcurrencyLimiter}.
+ */
+@Service
+public class ConcurrencyLimitingService {
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final boolean enabled;
+
+    @Autowired
+    public ConcurrencyLimitingService(@Value("${auth.concurrency-limit.enabled:true}") boolean enabled,
+                                      @Value("${auth.concurrency-limit.initial-limit:20}") int initialLimit,
+                                      @Value("${auth.concurrency-limit.min-limit:2}") int minLimit,
+                                      @Value("${auth.concurrency-limit.max-limit:200}") int maxLimit,
+                                      @Value("${auth.concurrency-limit.tolerance:2.0}") double tolerance,
+                                      @Value("${auth.concurrency-limit.window-samples:10}") int windowSamples) {
+        this.enabled = enabled;
+        this.limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, tolerance, windowSamples);
+    }
+
+    /**
+     * Claim a slot for a password check
+     *
+     * @return false if the check must be shed
+     */
+    public boolean tryAcquire() {
+        return !enabled || limiter.tryAcquire();
+    }
+
+    /**
+     * Release the slot claimed by {@link #tryAcquire()}
+     *
+     * @param startNanos {@link System#nanoTime()} when the check started
+     * @param completed  false if the check ended with an exception
+     */
+    public void release(long startNanos, boolean completed) {
+        if (enabled) {
+            limiter.release(System.nanoTime() - startNanos, !completed);
+        }
+    }
+
+    /**
+     * Suggested wait for a shed login (in seconds): about one recent check, at least a second
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(limiter.getRecentLatencyNanos() + 999_999_999L));
+    }
+
+    /**
+     * Get current statistics for monitoring
+     */
+    public ConcurrencyLimitStats getStats() {
+        return new ConcurrencyLimitStats(
+            limiter.getLimit(),
+            limiter.getInFlight(),
+            limiter.getAcceptedCount(),
+            limiter.getRejectedCount(),
+            TimeUnit.NANOSECONDS.toMillis(limiter.getRecentLatencyNanos()),
+            enabled
+        );
+    }
+
+    /**
+     * Statistics class for monitoring
+     */
+    public static class ConcurrencyLimitStats {
+        private final int limit;
+        private final int inFlight;
+        private final long accepted;
+        private final long rejected;
+        private final long recentLatencyMillis;
+        private final boolean enabled;
+
+        public ConcurrencyLimitStats(int limit, int inFlight, long accepted, long rejected,
+                                     long recentLatencyMillis, boolean enabled) {
+            this.limit = limit;
+            this.inFlight = inFlight;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.recentLatencyMillis = recentLatencyMillis;
+            this.enabled = enabled;
+        }
+
+        // Getters
+        public int getLimit() { return limit; }
+        public int getInFlight() { return inFlight; }
+        public long getAccepted() { return accepted; }
+        public long getRejected() { return rejected; }
+        public long getRecentLatencyMillis() { return recentLatencyMillis; }
+        public boolean isEnabled() { return enabled; }
+
+        @Override
+        public String toString() {
+            return "ConcurrencyLimitStats{" +
+                    "limit=" + limit +
+                    ", inFlight=" + inFlight +
+                    ", accepted=" + accepted +
+                    ", rejected=" + rejected +
+                    ", recentLatencyMillis=" + recentLatencyMillis +
+                    ", enabled=" + enabled +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.config.VirtualThreads;
+import com.intsof.samples.entra.ratelimit.DistinctCountTracker;
+import com.intsof.samples.entra.ratelimit.ProgressiveLockout;
+import com.intsof.samples.entra.ratelimit.RateLimitScope;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects credential stuffing and password spraying from failed logins.
+ * Per-key failure counters cannot see these attacks: one IP tries many different
+ * usernames a few times each, or one username is tried from many different networks.
+ * Networks are counted as IPv4 /24 and IPv6 /64 prefixes, like the subnet rate limit
+ * scope, so one client rotating through its own prefix cannot pose as many.
+ * The detector counts distinct counterparts per key over a sliding window with
+ * {@link DistinctCountTracker}, reports keys that exceed their threshold through
+ * {@link AuditLoggingService#logSecurityThreat}, and puts them on a block list that
+ * the login path consults before checking any password. Repeat offenders are
+ * blocked for longer each time, see {@link ProgressiveLockout}. Targeted usernames
+ * are only reported by default: blocking them would lock the victim out as well.
+ */
+@Service
+public class CredentialStuffingDetector {
+
+    private final AuditLoggingService auditLoggingService;
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxUsernamesPerIp;
+    private final int maxIpsPerUsername;
+    private final long blockMillis;
+    private final long maxBlockMillis;
+    private final boolean blockTargetedUsernames;
+
+    // Distinct usernames per IP, and distinct networks per username
+    private final DistinctCountTracker usernamesPerIp;
+    private final DistinctCountTracker ipsPerUsername;
+
+    // Block lists
+    private final ProgressiveLockout blockedIps;
+    private final ProgressiveLockout blockedUsernames;
+
+    // Cleanup executor
+    private final ScheduledExecutorService cleanupExecutor;
+
+    @Autowired
+    public CredentialStuffingDetector(AuditLoggingService auditLoggingService,
+                                      @Value("${auth.stuffing.enabled:true}") boolean enabled,
+                                      @Value("${auth.stuffing.window-minutes:10}") int windowMinutes,
+                                      @Value("${auth.stuffing.max-usernames-per-ip:20}") int maxUsernamesPerIp,
+                                      @Value("${auth.stuffing.max-ips-per-username:20}") int maxIpsPerUsername,
+                                      @Value("${auth.stuffing.block-minutes:30}") int blockMinutes,
+                                      @Value("${auth.stuffing.max-block-minutes:1440}") int maxBlockMinutes,
+                                      @Value("${auth.stuffing.block-targeted-usernames:false}") boolean blockTargetedUsernames,
+                                      @Value("${auth.stuffing.max-tracked-keys:10000}") int maxTrackedKeys,
+                                      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.auditLoggingService = auditLoggingService;
+        this.enabled = enabled;
+        this.windowMillis = windowMinutes * 60 * 1000L;
+        this.maxUsernamesPerIp = maxUsernamesPerIp;
+        this.maxIpsPerUsername = maxIpsPerUsername;
+        this.blockMillis = blockMinutes * 60 * 1000L;
+        this.maxBlockMillis = maxBlockMinutes * 60 * 1000L;
+        this.blockTargetedUsernames = blockTargetedUsernames;
+        this.usernamesPerIp = new DistinctCountTracker(maxTrackedKeys);
+        this.ipsPerUsername = new DistinctCountTracker(maxTrackedKeys);
+        this.blockedIps = new ProgressiveLockout(maxTrackedKeys);
+        this.blockedUsernames = new ProgressiveLockout(maxTrackedKeys);
+
+        this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(
+                VirtualThreads.threadFactory(virtualThreads, "stuffing-cleanup-", VirtualThreads.namedDaemonThreads("stuffing-cleanup-")));
+        
+        // Schedule cleanup task to run every 5 minutes
+        cleanupExecutor.scheduleAtFixedRate(this::cleanupExpiredBlocks, 5, 5, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Seconds until the IP or username is unblocked, or 0 if neither is blocked
+     */
+    public long getBlockedSeconds(String ipAddress, String username) {
+        if (!enabled) return 0;
+
+        long now = System.currentTimeMillis();
+        long until = 0;
+        long ipKey = RateLimitScope.IP.key(ipAddress, null);
+        if (ipKey != RateLimitScope.NO_KEY) {
+            until = blockedIps.lockedUntil(ipKey, blockMillis, maxBlockMillis, now);
+        }
+        long userKey = RateLimitScope.USER.key(null, username);
+        if (userKey != RateLimitScope.NO_KEY) {
+            until = Math.max(until, blockedUsernames.lockedUntil(userKey, blockMillis, maxBlockMillis, now));
+        }
+        return until > now ? (until - now + 999) / 1000 : 0;
+    }
+
+    /**
+     * Feed a failed login to the detector, blocking and reporting the IP or username if it crosses a threshold
+     */
+    public void recordFailure(String ipAddress, String username) {
+        if (!enabled) return;
+
+        long ipKey = RateLimitScope.IP.key(ipAddress, null);
+        long userKey = RateLimitScope.USER.key(null, username);
+        if (ipKey == RateLimitScope.NO_KEY || userKey == RateLimitScope.NO_KEY) return;
+
+        long now = System.currentTimeMillis();
+        int usernames = usernamesPerIp.add(ipKey, userKey, windowMillis, now);
+        if (usernames >= maxUsernamesPerIp && blockedIps.lockedUntil(ipKey, blockMillis, maxBlockMillis, now) == 0) {
+            blockedIps.violation(ipKey, blockMillis, maxBlockMillis, windowMillis, now);
+            auditLoggingService.logSecurityThreat("CREDENTIAL_STUFFING", username, ipAddress,
+                    "ip tried ~" + usernames + " distinct usernames within " + windowMillis / 60_000 + " minutes");
+        }
+
+        long subnetKey = RateLimitScope.SUBNET.key(ipAddress, null);
+        if (subnetKey == RateLimitScope.NO_KEY) return;
+        int ips = ipsPerUsername.add(userKey, subnetKey, windowMillis, now);
+        if (ips >= maxIpsPerUsername && blockedUsernames.lockedUntil(userKey, blockMillis, maxBlockMillis, now) == 0) {
+            if (blockTargetedUsernames) {
+                blockedUsernames.violation(userKey, blockMillis, maxBlockMillis, windowMillis, now);
+            }
+            auditLoggingService.logSecurityThreat("DISTRIBUTED_LOGIN_ATTACK", username, ipAddress,
+                    "username tried from ~" + ips + " distinct networks within " + windowMillis / 60_000 + " minutes");
+        }
+    }
+
+    /**
+     * Drop block list entries whose penalty has fully decayed
+     */
+    private void cleanupExpiredBlocks() {
+        long now = System.currentTimeMillis();
+        blockedIps.evictIdle(blockMillis, maxBlockMillis, windowMillis, now);
+        blockedUsernames.evictIdle(blockMillis, maxBlockMillis, windowMillis, now);
+    }
+
+    /**
+     * Get current statistics for monitoring
+     */
+    public StuffingStats getStats() {
+        return new StuffingStats(
+            usernamesPerIp.trackedKeys(),
+            ipsPerUsername.trackedKeys(),
+            blockedIps.size(),
+            blockedUsernames.size(),
+            enabled
+        );
+    }
+
+    /**
+     * Shutdown the cleanup executor
+     */
+    @PreDestroy
+    public void shutdown() {
+        cleanupExecutor.shutdown();
+    }
+
+    /**
+     * Statistics class for monitoring
+     */
+    public static class StuffingStats {
+        private final int trackedIps;
+        private final int trackedUsernames;
+        private final int blockedIps;
+        private final int blockedUsernames;
+        private final boolean enabled;
+
+        public StuffingStats(int trackedIps, int trackedUsernames, int blockedIps, int blockedUsernames, boolean enabled) {
+            this.trackedIps = trackedIps;
+            this.trackedUsernames = trackedUsernames;
+            this.blockedIps = blockedIps;
+            this.blockedUsernames = blockedUsernames;
+            this.enabled = enabled;
+        }
+
+        // Getters
+        public int getTrackedIps() { return trackedIps; }
+        public int getTrackedUsernames() { return trackedUsernames; }
+        public int getBlockedIps() { return blockedIps; }
+        public int getBlockedUsernames() { return blockedUsernames; }
+        public boolean isEnabled() { return enabled; }
+
+        @Override
+        public String toString() {
+            return "StuffingStats{" +
+                    "trackedIps=" + trackedIps +
+                    ", trackedUsernames=" + trackedUsernames +
+                    ", blockedIps=" + blockedIps +
+                    ", blockedUsernames=" + blockedUsernames +
+                    ", enabled=" + enabled +
+                    '}';
+        }
+    }
+}
@@ -1,13 +1,16 @@
 package com.intsof.samples.entra.service;
 
 import com.microsoft.aad.msal4j.*;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSVerifier;
 import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTParser;
 import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.net.MalformedURLException;
 import java.net.URI;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -37,6 +40,14 @@ public class EntraIdService {
     @Value("${sso.provider.user-info-uri:}")
     private String userInfoUri;
     
+    // Signing keys for signature verification; tokens are rejected when absent or unconfigured
+    @Autowired(required = false)
+    private JwksKeyCache jwksKeyCache;
+    
+    // Long-lived MSAL clients per authority; defaults when absent
+    @Autowired(required = false)
+    private MsalClientRegistry msalClientRegistry;
+    
     /**
      * Validate an Entra ID token and extract user information
      */
@@ -63,6 +74,11 @@ public class EntraIdService {
                 return new EntraTokenValidationResult(false, "Invalid token audience", null);
             }
             
+            // Verify the signature last, once the cheap claim checks have passed
+            if (!hasValidSignature(jwt)) {
+                return new EntraTokenValidationResult(false, "Invalid token signature", null);
+            }
+            
             // Extract user profile
             EntraUserProfile userProfile = extractUserProfile(claimsSet);
             
@@ -73,13 +89,28 @@ public class EntraIdService {
         }
     }
     
+    /**
+     * Check the token's RSA signature against the cached signing key named by its kid
+     */
+    private boolean hasValidSignature(JWT jwt) throws Exception {
+        if (jwksKeyCache == null || !jwksKeyCache.isEnabled() || !(jwt instanceof SignedJWT)) {
+            return false;
+        }
+        SignedJWT signedJwt = (SignedJWT) jwt;
+        if (!JWSAlgorithm.Family.RSA.contains(signedJwt.getHeader().getAlgorithm())) {
+            return false;
+        }
+        JWSVerifier verifier = jwksKeyCache.getVerifier(signedJwt.getHeader().getKeyID());
+        return verifier != null && signedJwt.verify(verifier);
+    }
+    
     /**
      * Exchange authorization code for tokens
      */
     public CompletableFuture<IAuthenticationResult> acquireTokenByAuthorizationCode(
             String authorizationCode, String redirectUri, Set<String> scopes) {
         try {
-            ConfidentialClientApplication app = createConfidentialClientApplication();
+            ConfidentialClientApplication app = confidentialClientApplication();
             
             AuthorizationCodeParameters parameters = AuthorizationCodeParameters
                 .builder(authorizationCode, URI.create(redirectUri))
@@ -217,19 +248,18 @@ public class EntraIdService {
     }
     
     /**
-     * Create MSAL4J Confidential Client Application
+     * The shared MSAL4J Confidential Client Application for the tenant, created on first use
      */
-    private ConfidentialClientApplication createConfidentialClientApplication() throws MalformedURLException {
+    private ConfidentialClientApplication confidentialClientApplication() {
         if (clientId == null || clientId.isEmpty() || clientSecret == null || clientSecret.isEmpty()) {
             throw new IllegalStateException("Entra ID client configuration is missing");
         }
         
-        IClientCredential credential = ClientCredentialFactory.createFromSecret(clientSecret);
-        
-        return ConfidentialClientApplication
-            .builder(clientId, credential)
-            .authority("https://login.microsoftonline.com/" + tenantId)
-            .build();
+        MsalClientRegistry registry = msalClientRegistry;
+        if (registry == null) {
+            registry = msalClientRegistry = MsalClientRegistry.defaults();
+        }
+        return registry.getClient("https://login.microsoftonline.com/" + tenantId, clientId, clientSecret);
     }
     
     /**
@@ -0,0 +1,154 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.metrics.LatencyHistogram;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latency and throughput of the authentication filter, per route and outcome.
+ *
+ * Routes are the filter's route classes (protected, public, login, refresh, logout),
+ * so the set of histograms is fixed and allocated up front: recording indexes an
+ * array and never allocates or locks. The latency is the filter's own time, up to
+ * handing the request to the controllers or finishing the response; for logins and
+ * refreshes on the auth executor it includes the wait in its queue.
+ */
+@Service
+public class FilterMetricsService {
+
+    /** Route classes; mirrors the filter's route table actions */
+    public enum Route {
+        PROTECTED, PUBLIC, LOGIN, REFRESH, LOGOUT
+    }
+
+    /** How the filter finished with a request */
+    public enum Outcome {
+        /** Handed to the controllers */
+        PASSED,
+        /** Answered by the filter with a 2xx or 3xx */
+        OK,
+        /** 401 or 403 */
+        UNAUTHORIZED,
+        /** 429 */
+        RATE_LIMITED,
+        /** 503 */
+        SHED,
+        /** Any other 4xx */
+        CLIENT_ERROR,
+        /** Any other 5xx */
+        ERROR;
+
+        /**
+         * Outcome of a response the filter wrote itself
+         */
+        public static Outcome ofStatus(int status) {
+            switch (status) {
+                case 401:
+                case 403:
+                    return UNAUTHORIZED;
+                case 429:
+                    return RATE_LIMITED;
+                case 503:
+                    return SHED;
+                default:
+                    return status >= 500 ? ERROR : status >= 400 ? CLIENT_ERROR : OK;
+            }
+        }
+    }
+
+    private static final Route[] ROUTES = Route.values();
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[ROUTES.length * OUTCOMES.length];
+    private final long startedAt = System.currentTimeMillis();
+
+    public FilterMetricsService() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Record a request the filter started at {@code startNanos} ({@link System#nanoTime()})
+     */
+    public void record(Route route, Outcome outcome, long startNanos) {
+        histograms[route.ordinal() * OUTCOMES.length + outcome.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Get current statistics for monitoring: route -> outcome -> latency, for the combinations seen so far
+     */
+    public Map<String, Map<String, RouteStats>> getStats() {
+        double uptimeSeconds = Math.max(1, System.currentTimeMillis() - startedAt) / 1000.0;
+        Map<String, Map<String, RouteStats>> stats = new LinkedHashMap<>();
+        for (Route route : ROUTES) {
+            Map<String, RouteStats> byOutcome = new LinkedHashMap<>();
+            for (Outcome outcome : OUTCOMES) {
+                LatencyHistogram.Snapshot snapshot = histograms[route.ordinal() * OUTCOMES.length + outcome.ordinal()].snapshot();
+                if (snapshot.getCount() == 0) continue;
+                byOutcome.put(outcome.name(), new RouteStats(
+                        snapshot.getCount(),
+                        snapshot.getCount() / uptimeSeconds,
+                        snapshot.getMean() / 1000,
+                        snapshot.getValueAtQuantile(0.5) / 1000,
+                        snapshot.getValueAtQuantile(0.99) / 1000,
+                        snapshot.getValueAtQuantile(0.999) / 1000,
+                        snapshot.getMax() / 1000
+                ));
+            }
+            if (!byOutcome.isEmpty()) {
+                stats.put(route.name(), byOutcome);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Statistics class for monitoring; latencies in microseconds
+     */
+    public static class RouteStats {
+        private final long count;
+        private final double ratePerSecond;
+        private final long meanMicros;
+        private final long p50Micros;
+        private final long p99Micros;
+        private final long p999Micros;
+        private final long maxMicros;
+
+        public RouteStats(long count, double ratePerSecond, long meanMicros, long p50Micros, long p99Micros,
+                          long p999Micros, long maxMicros) {
+            this.count = count;
+            this.ratePerSecond = ratePerSecond;
+            this.meanMicros = meanMicros;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+            this.p999Micros = p999Micros;
+            this.maxMicros = maxMicros;
+        }
+
+        // Getters
+        public long getCount() { return count; }
+        /** Average since startup */
+        public double getRatePerSecond() { return ratePerSecond; }
+        public long getMeanMicros() { return meanMicros; }
+        public long getP50Micros() { return p50Micros; }
+        public long getP99Micros() { return p99Micros; }
+        public long getP999Micros() { return p999Micros; }
+        public long getMaxMicros() { return maxMicros; }
+
+        @Override
+        public String toString() {
+            return "RouteStats{" +
+                    "count=" + count +
+                    ", ratePerSecond=" + ratePerSecond +
+                    ", meanMicros=" + meanMicros +
+                    ", p50Micros=" + p50Micros +
+                    ", p99Micros=" + p99Micros +
+                    ", p999Micros=" + p999Micros +
+                    ", maxMicros=" + maxMicros +
+                    '}';
+        }
+    }
+}
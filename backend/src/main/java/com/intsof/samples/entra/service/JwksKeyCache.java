@@ -0,0 +1,296 @@
+package com.intsof.samples.entra.service;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of Entra's token signing keys, so verifying a token signature costs a map
+ * lookup and the RSA check rather than a JWKS download.
+ *
+ * The key set is loaded at startup and refreshed in the background well before it
+ * expires; every RSA signing key gets a verifier built once and indexed by its
+ * {@code kid}. A token signed with an unknown {@code kid} (key rotation) triggers a
+ * refetch, but at most once per minimum interval, and concurrent callers wait for
+ * the same download instead of starting their own. If refreshes keep failing, the
+ * last key set is used until its maximum age and then no token verifies.
+ * Disabled when no JWK set URI is configured, in which case no token verifies either.
+ */
+@Service
+public class JwksKeyCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwksKeyCache.class);
+
+    private final URI jwkSetUri;
+    private final long maxAgeMillis;
+    private final long minRefetchMillis;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService refreshExecutor;
+
+    private volatile KeySet keys = KeySet.EMPTY;
+    private final AtomicReference<CompletableFuture<KeySet>> inFlight = new AtomicReference<>();
+    private final AtomicLong lastFetchStarted = new AtomicLong(Long.MIN_VALUE / 2);
+
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder fetchFailures = new LongAdder();
+    private final LongAdder unknownKidLookups = new LongAdder();
+    private final LongAdder throttledRefetches = new LongAdder();
+
+    @Autowired
+    public JwksKeyCache(@Value("${sso.provider.jwk-set-uri:}") String jwkSetUri,
+                        @Value("${sso.jwks.refresh-interval-minutes:60}") long refreshIntervalMinutes,
+                        @Value("${sso.jwks.max-age-minutes:1440}") long maxAgeMinutes,
+                        @Value("${sso.jwks.min-refetch-interval-ms:30000}") long minRefetchMillis,
+                        @Value("${sso.jwks.timeout-ms:5000}") long timeoutMillis) {
+        this.jwkSetUri = jwkSetUri == null || jwkSetUri.isBlank() ? null : URI.create(jwkSetUri.trim());
+        this.maxAgeMillis = TimeUnit.MINUTES.toMillis(maxAgeMinutes);
+        this.minRefetchMillis = minRefetchMillis;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        if (this.jwkSetUri == null) {
+            logger.warn("No JWK set URI configured (sso.provider.jwk-set-uri); Entra tokens will be rejected");
+            this.httpClient = null;
+            this.refreshExecutor = null;
+            return;
+        }
+
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwks-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Initial load right away, then periodic refreshes ahead of the maximum age
+        refreshExecutor.scheduleWithFixedDelay(() -> refresh(true), 0, refreshIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Whether signatures should be verified against this cache
+     */
+    public boolean isEnabled() {
+        return jwkSetUri != null;
+    }
+
+    /**
+     * Verifier for the signing key with this id, refetching the key set once per
+     * interval when the id is unknown
+     *
+     * @return the verifier, or null if no such key is known
+     */
+    public JWSVerifier getVerifier(String kid) {
+        if (!isEnabled() || kid == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        JWSVerifier verifier = keys.lookup(kid, now, maxAgeMillis);
+        if (verifier != null) {
+            return verifier;
+        }
+
+        unknownKidLookups.increment();
+        CompletableFuture<KeySet> pending = inFlight.get();
+        if (pending == null) {
+            pending = refresh(false);
+        }
+        KeySet fetched = await(pending);
+        return fetched.lookup(kid, System.currentTimeMillis(), maxAgeMillis);
+    }
+
+    /**
+     * Download the key set, or join the download already running.
+     * Unless forced, a download is only started once per minimum interval.
+     */
+    private CompletableFuture<KeySet> refresh(boolean force) {
+        while (true) {
+            CompletableFuture<KeySet> current = inFlight.get();
+            if (current != null) {
+                return current;
+            }
+            CompletableFuture<KeySet> mine = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, mine)) {
+                continue;
+            }
+            // Checked while holding the in-flight slot, so a download that just finished is seen
+            long now = System.currentTimeMillis();
+            if (!force && now - lastFetchStarted.get() < minRefetchMillis) {
+                throttledRefetches.increment();
+                inFlight.set(null);
+                mine.complete(keys);
+                return mine;
+            }
+            lastFetchStarted.set(now);
+            try {
+                KeySet fetched = fetch();
+                keys = fetched;
+                mine.complete(fetched);
+            } catch (IOException | ParseException | JOSEException | RuntimeException e) {
+                fetchFailures.increment();
+                logger.warn("Could not load signing keys from {}: {}", jwkSetUri, e.getMessage());
+                mine.complete(keys);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                mine.complete(keys);
+            } finally {
+                inFlight.set(null);
+            }
+            return mine;
+        }
+    }
+
+    private KeySet await(CompletableFuture<KeySet> pending) {
+        try {
+            return pending.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Fall back to what is cached
+        }
+        return keys;
+    }
+
+    private KeySet fetch() throws IOException, InterruptedException, ParseException, JOSEException {
+        fetches.increment();
+        HttpRequest request = HttpRequest.newBuilder(jwkSetUri)
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode());
+        }
+
+        Map<String, JWSVerifier> verifiers = new HashMap<>();
+        for (JWK jwk : JWKSet.parse(response.body()).getKeys()) {
+            if (jwk instanceof RSAKey && jwk.getKeyID() != null
+                    && (jwk.getKeyUse() == null || KeyUse.SIGNATURE.equals(jwk.getKeyUse()))) {
+                verifiers.put(jwk.getKeyID(), new RSASSAVerifier((RSAKey) jwk));
+            }
+        }
+        return new KeySet(Collections.unmodifiableMap(verifiers), System.currentTimeMillis());
+    }
+
+    /**
+     * Get current statistics for monitoring
+     */
+    public JwksStats getStats() {
+        KeySet current = keys;
+        return new JwksStats(
+            current.verifiers.size(),
+            current.fetchedAt,
+            fetches.sum(),
+            fetchFailures.sum(),
+            unknownKidLookups.sum(),
+            throttledRefetches.sum(),
+            isEnabled()
+        );
+    }
+
+    /**
+     * Stop background refreshes
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Immutable snapshot of the verifiers from one download
+     */
+    private static final class KeySet {
+        static final KeySet EMPTY = new KeySet(Map.of(), 0);
+
+        final Map<String, JWSVerifier> verifiers;
+        final long fetchedAt;
+
+        KeySet(Map<String, JWSVerifier> verifiers, long fetchedAt) {
+            this.verifiers = verifiers;
+            this.fetchedAt = fetchedAt;
+        }
+
+        JWSVerifier lookup(String kid, long now, long maxAgeMillis) {
+            return now - fetchedAt > maxAgeMillis ? null : verifiers.get(kid);
+        }
+    }
+
+    /**
+     * Statistics class for monitoring
+     */
+    public static class JwksStats {
+        private final int keys;
+        private final long fetchedAt;
+        private final long fetches;
+        private final long fetchFailures;
+        private final long unknownKidLookups;
+        private final long throttledRefetches;
+        private final boolean enabled;
+
+        public JwksStats(int keys, long fetchedAt, long fetches, long fetchFailures,
+                         long unknownKidLookups, long throttledRefetches, boolean enabled) {
+            this.keys = keys;
+            this.fetchedAt = fetchedAt;
+            this.fetches = fetches;
+            this.fetchFailures = fetchFailures;
+            this.unknownKidLookups = unknownKidLookups;
+            this.throttledRefetches = throttledRefetches;
+            this.enabled = enabled;
+        }
+
+        // Getters
+        public int getKeys() { return keys; }
+        public long getFetchedAt() { return fetchedAt; }
+        public long getFetches() { return fetches; }
+        public long getFetchFailures() { return fetchFailures; }
+        public long getUnknownKidLookups() { return unknownKidLookups; }
+        public long getThrottledRefetches() { return throttledRefetches; }
+        public boolean isEnabled() { return enabled; }
+
+        @Override
+        public String toString() {
+            return "JwksStats{" +
+                    "keys=" + keys +
+                    ", fetchedAt=" + fetchedAt +
+                    ", fetches=" + fetches +
+                    ", fetchFailures=" + fetchFailures +
+                    ", unknownKidLookups=" + unknownKidLookups +
+                    ", throttledRefetches=" + throttledRefetches +
+                    ", enabled=" + enabled +
+                    '}';
+        }
+    }
+}
@@ -10,10 +10,14 @@ import org.springframework.stereotype.Service;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.intsof.samples.entra.model.AuthenticatedPrincipal;
 import com.intsof.samples.entra.model.RefreshTokenFamily;
 
 @Service
 public class JwtService {
+    /** Base64URL header segment of every token issued here */
+    public static final String ENCODED_HEADER = new JWSHeader(JWSAlgorithm.HS256).toBase64URL().toString();
+
     @Value("${jwt.secret}")
     private String secret;
 
@@ -42,6 +46,7 @@ public class JwtService {
                     .subject(subject)
                     .issuer(issuer)
                     .expirationTime(new Date(System.currentTimeMillis() + expiration))
+                    .jwtID(UUID.randomUUID().toString())
                     .claim("roles", roles);
             if (claims != null) {
                 claims.forEach(builder::claim);
@@ -56,13 +61,26 @@ public class JwtService {
     }
 
     public boolean validateToken(String token) {
+        return verifiedClaims(token) != null;
+    }
+
+    /**
+     * Check signature and expiry; the one place both validation paths verify a token
+     *
+     * @return the claims, or null if the token is forged, malformed or expired
+     */
+    private JWTClaimsSet verifiedClaims(String token) {
         try {
             SignedJWT signedJWT = SignedJWT.parse(token);
             JWSVerifier verifier = new MACVerifier(secret.getBytes());
-            return signedJWT.verify(verifier) &&
-                    signedJWT.getJWTClaimsSet().getExpirationTime().after(new Date());
+            if (!signedJWT.verify(verifier)) {
+                return null;
+            }
+            JWTClaimsSet claimsSet = signedJWT.getJWTClaimsSet();
+            Date expirationTime = claimsSet.getExpirationTime();
+            return expirationTime != null && expirationTime.after(new Date()) ? claimsSet : null;
         } catch (Exception e) {
-            return false;
+            return null;
         }
     }
 
@@ -244,11 +262,26 @@ public class JwtService {
      * Enhanced token validation that checks blacklist
      */
     public boolean validateTokenWithBlacklist(String token) {
-        if (!validateToken(token)) {
-            return false;
+        return authenticate(token) != null;
+    }
+
+    /**
+     * Validate an access token (signature, expiry, blacklist) and decode its identity in one parse
+     *
+     * @return the principal, or null if the token is not valid
+     */
+    public AuthenticatedPrincipal authenticate(String token) {
+        JWTClaimsSet claimsSet = verifiedClaims(token);
+        if (claimsSet == null || tokenBlacklistService.isTokenBlacklisted(token)) {
+            return null;
+        }
+        try {
+            List<String> roles = claimsSet.getStringListClaim("roles");
+            return new AuthenticatedPrincipal(claimsSet.getSubject(), roles, claimsSet.getJWTID(),
+                    claimsSet.getExpirationTime().toInstant());
+        } catch (Exception e) {
+            return null;
         }
-        
-        return !tokenBlacklistService.isTokenBlacklisted(token);
     }
 
     @SuppressWarnings("unchecked")
@@ -0,0 +1,235 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.ratelimit.CoDelController;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sheds low-priority requests first when the backend saturates.
+ *
+ * Requests are admitted through a bounded number of in-flight slots; beyond it they
+ * wait in a FIFO queue here, where the wait can be measured, instead of invisibly in
+ * the container's. A proxy-reported delay ({@code X-Request-Start}) is added when
+ * present. The delays drive a {@link CoDelController}: at level 1 low-priority
+ * requests (configuration and discovery endpoints) are rejected, at level 2 logins
+ * and API calls without a valid bearer token as well. API calls whose token has been
+ * verified are never shed by level and may wait longer for a slot than the rest. Like
+ * CoDel, the check is repeated when a request leaves the queue, so work that waited
+ * through the onset of overload is dropped rather than served late.
+ */
+@Service
+public class LoadSheddingService {
+
+    /** Shed order: lowest first */
+    public enum Priority {
+        LOW, NORMAL, HIGH
+    }
+
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final long maxQueueWaitMillis;
+    private final long maxHighQueueWaitMillis;
+    private final Set<String> lowPriorityPaths;
+    private final Set<String> normalPriorityPaths;
+    private final CoDelController controller;
+    private final Semaphore slots;
+
+    private final AtomicInteger reportedLevel = new AtomicInteger();
+    private final AtomicLong shedLow = new AtomicLong();
+    private final AtomicLong shedNormal = new AtomicLong();
+    private final AtomicLong queueTimeouts = new AtomicLong();
+    private final AtomicLong levelChanges = new AtomicLong();
+
+    @Autowired(required = false)
+    private AuditLoggingService auditLoggingService;
+
+    @Autowired
+    public LoadSheddingService(@Value("${auth.shedding.enabled:true}") boolean enabled,
+                               @Value("${auth.shedding.max-concurrent:100}") int maxConcurrent,
+                               @Value("${auth.shedding.max-queue-wait-ms:1000}") long maxQueueWaitMillis,
+                               @Value("${auth.shedding.max-high-queue-wait-ms:10000}") long maxHighQueueWaitMillis,
+                               @Value("${auth.shedding.target-delay-ms:5}") long targetDelayMillis,
+                               @Value("${auth.shedding.interval-ms:100}") long intervalMillis,
+                               @Value("${auth.shedding.low-priority-paths:/auth/check-method,/api/sso/config,/auth/entra/authorization-url}")
+                               List<String> lowPriorityPaths,
+                               @Value("${auth.shedding.normal-priority-paths:/login,/refresh,/auth/entra/callback}")
+                               List<String> normalPriorityPaths) {
+        this.enabled = enabled;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+        this.maxHighQueueWaitMillis = maxHighQueueWaitMillis;
+        this.lowPriorityPaths = new HashSet<>(lowPriorityPaths);
+        this.normalPriorityPaths = new HashSet<>(normalPriorityPaths);
+        this.controller = new CoDelController(TimeUnit.MILLISECONDS.toNanos(targetDelayMillis),
+                TimeUnit.MILLISECONDS.toNanos(intervalMillis), Priority.HIGH.ordinal());
+        this.slots = new Semaphore(this.maxConcurrent, true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Priority of a request; anything not listed is API traffic, which ranks high only
+     * when it is authenticated
+     *
+     * @param authenticated whether the request carries a verified, unrevoked bearer token
+     */
+    public Priority priorityOf(String path, boolean authenticated) {
+        if (lowPriorityPaths.contains(path)) return Priority.LOW;
+        if (normalPriorityPaths.contains(path)) return Priority.NORMAL;
+        return authenticated ? Priority.HIGH : Priority.NORMAL;
+    }
+
+    /**
+     * Admit a request, waiting for an in-flight slot if necessary
+     *
+     * @param externalDelayNanos queueing delay reported by a proxy in front, or 0
+     * @return false if the request is shed; otherwise {@link #release()} must follow
+     */
+    public boolean tryAdmit(Priority priority, long externalDelayNanos) {
+        if (!enabled) return true;
+        if (isShed(priority)) return false;
+
+        long start = System.nanoTime();
+        boolean acquired = false;
+        try {
+            // The timed form honours fairness: a free slot goes to whoever queued first,
+            // and the zero-wait sample is only taken when nobody is waiting
+            acquired = slots.tryAcquire(0, TimeUnit.NANOSECONDS);
+            if (!acquired) {
+                // Authenticated API traffic waits longer for its slot, but not forever
+                long maxWaitMillis = priority == Priority.HIGH ? maxHighQueueWaitMillis : maxQueueWaitMillis;
+                acquired = slots.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long now = System.nanoTime();
+        sample(now, now - start + externalDelayNanos);
+        if (!acquired) {
+            queueTimeouts.incrementAndGet();
+            return false;
+        }
+        // Checked again on the way out of the queue, as CoDel drops at dequeue
+        if (isShed(priority)) {
+            slots.release();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Free the slot of a request admitted by {@link #tryAdmit}
+     */
+    public void release() {
+        if (enabled) {
+            slots.release();
+        }
+    }
+
+    private boolean isShed(Priority priority) {
+        if (priority.ordinal() >= controller.getLevel()) return false;
+        (priority == Priority.LOW ? shedLow : shedNormal).incrementAndGet();
+        return true;
+    }
+
+    private void sample(long now, long delayNanos) {
+        int level = controller.onSample(now, delayNanos);
+        int previous = reportedLevel.getAndSet(level);
+        if (previous == level) return;
+
+        levelChanges.incrementAndGet();
+        if (auditLoggingService != null) {
+            Map<String, Object> auditData = new HashMap<>();
+            auditData.put("level", level);
+            auditData.put("previousLevel", previous);
+            auditData.put("delayMillis", TimeUnit.NANOSECONDS.toMillis(delayNanos));
+            auditLoggingService.logAuthEvent("LOAD_SHEDDING_LEVEL_CHANGED", null, null, auditData);
+        }
+    }
+
+    /**
+     * Get current statistics for monitoring; alert on a non-zero level
+     */
+    public LoadSheddingStats getStats() {
+        return new LoadSheddingStats(
+            controller.getLevel(),
+            TimeUnit.NANOSECONDS.toMicros(controller.getLastDelayNanos()),
+            maxConcurrent - slots.availablePermits(),
+            slots.getQueueLength(),
+            shedLow.get(),
+            shedNormal.get(),
+            queueTimeouts.get(),
+            levelChanges.get(),
+            enabled
+        );
+    }
+
+    /**
+     * Statistics class for monitoring
+     */
+    public static class LoadSheddingStats {
+        private final int level;
+        private final long lastDelayMicros;
+        private final int inFlight;
+        private final int queued;
+        private final long shedLow;
+        private final long shedNormal;
+        private final long queueTimeouts;
+        private final long levelChanges;
+        private final boolean enabled;
+
+        public LoadSheddingStats(int level, long lastDelayMicros, int inFlight, int queued, long shedLow,
+                                 long shedNormal, long queueTimeouts, long levelChanges, boolean enabled) {
+            this.level = level;
+            this.lastDelayMicros = lastDelayMicros;
+            this.inFlight = inFlight;
+            this.queued = queued;
+            this.shedLow = shedLow;
+            this.shedNormal = shedNormal;
+            this.queueTimeouts = queueTimeouts;
+            this.levelChanges = levelChanges;
+            this.enabled = enabled;
+        }
+
+        // Getters
+        /** 0: nothing shed, 1: low priority shed, 2: low priority and logins shed */
+        public int getLevel() { return level; }
+        public long getLastDelayMicros() { return lastDelayMicros; }
+        public int getInFlight() { return inFlight; }
+        public int getQueued() { return queued; }
+        public long getShedLow() { return shedLow; }
+        public long getShedNormal() { return shedNormal; }
+        /** Requests that waited longer than the queue allows for their priority */
+        public long getQueueTimeouts() { return queueTimeouts; }
+        public long getLevelChanges() { return levelChanges; }
+        public boolean isEnabled() { return enabled; }
+
+        @Override
+        public String toString() {
+            return "LoadSheddingStats{" +
+                    "level=" + level +
+                    ", lastDelayMicros=" + lastDelayMicros +
+                    ", inFlight=" + inFlight +
+                    ", queued=" + queued +
+                    ", shedLow=" + shedLow +
+                    ", shedNormal=" + shedNormal +
+                    ", queueTimeouts=" + queueTimeouts +
+                    ", levelChanges=" + levelChanges +
+                    ", enabled=" + enabled +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.config.VirtualThreads;
+import com.intsof.samples.entra.msal.BoundedTokenCacheAspect;
+import com.intsof.samples.entra.msal.PooledMsalHttpClient;
+import com.microsoft.aad.msal4j.ClientCredentialFactory;
+import com.microsoft.aad.msal4j.ConfidentialClientApplication;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived MSAL confidential client applications, one per authority and client id.
+ *
+ * Building a {@link ConfidentialClientApplication} sets up its HTTP client and token
+ * cache, and the authority metadata it discovers on first use is kept by the
+ * instance, so reusing one per authority leaves only the token endpoint round trip
+ * on each code exchange. Clients are created lazily on first use; all of them share
+ * one pooled HTTP client, and each has a token cache bounded in accounts.
+ *
+ * MSAL runs each token request on an executor and hands back a future. Left alone it
+ * uses the common fork-join pool, whose few threads the blocking HTTP calls would tie
+ * up; the clients here share a bounded executor instead (virtual threads in virtual
+ * thread mode). Requests beyond its threads and queue fail right away.
+ */
+@Service
+public class MsalClientRegistry {
+
+    private final int maxCachedAccounts;
+    private final PooledMsalHttpClient httpClient;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final AtomicLong created = new AtomicLong();
+
+    @Autowired
+    public MsalClientRegistry(@Value("${sso.msal.token-cache.max-accounts:500}") int maxCachedAccounts,
+                              @Value("${sso.msal.http.connect-timeout-ms:5000}") long connectTimeoutMillis,
+                              @Value("${sso.msal.http.timeout-ms:10000}") long requestTimeoutMillis,
+                              @Value("${sso.msal.executor.threads:32}") int threads,
+                              @Value("${sso.msal.executor.queue-capacity:200}") int queueCapacity,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.maxCachedAccounts = maxCachedAccounts;
+        this.httpClient = new PooledMsalHttpClient(connectTimeoutMillis, requestTimeoutMillis);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                VirtualThreads.threadFactory(virtualThreads, "msal-", VirtualThreads.namedDaemonThreads("msal-")),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Registry with the default limits, for use outside of Spring
+     */
+    public static MsalClientRegistry defaults() {
+        return new MsalClientRegistry(500, 5000, 10000, 32, 200, false);
+    }
+
+    /**
+     * The client application for this authority and client id, created on first use
+     */
+    public ConfidentialClientApplication getClient(String authority, String clientId, String clientSecret) {
+        String key = authority + '|' + clientId;
+        return clients.computeIfAbsent(key, k -> create(authority, clientId, clientSecret)).application;
+    }
+
+    private Client create(String authority, String clientId, String clientSecret) {
+        BoundedTokenCacheAspect tokenCache = new BoundedTokenCacheAspect(maxCachedAccounts);
+        try {
+            ConfidentialClientApplication application = ConfidentialClientApplication
+                .builder(clientId, ClientCredentialFactory.createFromSecret(clientSecret))
+                .authority(authority)
+                .httpClient(httpClient)
+                .setTokenCacheAccessAspect(tokenCache)
+                .executorService(executor)
+                .build();
+            created.incrementAndGet();
+            return new Client(application, tokenCache);
+        } catch (MalformedURLException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get current statistics for monitoring
+     */
+    public MsalClientStats getStats() {
+        int accounts = 0;
+        long evicted = 0;
+        for (Client client : clients.values()) {
+            accounts += client.tokenCache.getAccounts();
+            evicted += client.tokenCache.getEvicted();
+        }
+        return new MsalClientStats(clients.size(), created.get(), accounts, evicted,
+                executor.getActiveCount(), executor.getQueue().size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class Client {
+        final ConfidentialClientApplication application;
+        final BoundedTokenCacheAspect tokenCache;
+
+        Client(ConfidentialClientApplication application, BoundedTokenCacheAspect tokenCache) {
+            this.application = application;
+            this.tokenCache = tokenCache;
+        }
+    }
+
+    /**
+     * Statistics class for monitoring
+     */
+    public static class MsalClientStats {
+        private final int clients;
+        private final long created;
+        private final int cachedAccounts;
+        private final long evictedAccounts;
+        private final int activeRequests;
+        private final int queuedRequests;
+
+        public MsalClientStats(int clients, long created, int cachedAccounts, long evictedAccounts,
+                               int activeRequests, int queuedRequests) {
+            this.clients = clients;
+            this.created = created;
+            this.cachedAccounts = cachedAccounts;
+            this.evictedAccounts = evictedAccounts;
+            this.activeRequests = activeRequests;
+            this.queuedRequests = queuedRequests;
+        }
+
+        // Getters
+        public int getClients() { return clients; }
+        public long getCreated() { return created; }
+        public int getCachedAccounts() { return cachedAccounts; }
+        public long getEvictedAccounts() { return evictedAccounts; }
+        public int getActiveRequests() { return activeRequests; }
+        public int getQueuedRequests() { return queuedRequests; }
+
+        @Override
+        public String toString() {
+            return "MsalClientStats{" +
+                    "clients=" + clients +
+                    ", created=" + created +
+                    ", cachedAccounts=" + cachedAccounts +
+                    ", evictedAccounts=" + evictedAccounts +
+                    ", activeRequests=" + activeRequests +
+                    ", queuedRequests=" + queuedRequests +
+                    '}';
+        }
+    }
+}
@@ -1,21 +1,56 @@
 package com.intsof.samples.entra.service;
 
+import com.intsof.samples.entra.config.ShadowPolicyProperties;
+import com.intsof.samples.entra.config.VirtualThreads;
+import com.intsof.samples.entra.ratelimit.BoundedRateLimiter;
+import com.intsof.samples.entra.ratelimit.JdbcQuotaLedger;
+import com.intsof.samples.entra.ratelimit.ProgressiveLockout;
+import com.intsof.samples.entra.ratelimit.RateLimitDecision;
+import com.intsof.samples.entra.ratelimit.RateLimitScope;
+import com.intsof.samples.entra.ratelimit.RateLimitStore;
+import com.intsof.samples.entra.ratelimit.SharedRateLimitStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Rate limiting service for authentication endpoints
- * Supports both IP-based and user-based rate limiting
+ * Supports a configurable chain of scopes (IP, subnet, user, email domain,
+ * global), evaluated in order for every login attempt. Failed attempts are
+ * tracked by a lock-free GCRA engine, so budgets replenish smoothly instead of
+ * resetting at fixed window edges. Logins reserve their attempt with
+ * {@link #acquire} before the password check and get it back on success, so
+ * concurrent guesses cannot overshoot a limit. Memory is bounded: only keys that keep
+ * failing get an exact counter, see {@link BoundedRateLimiter}.
+ * With {@code auth.rate-limit.store=shared} the limits hold across all
+ * instances, see {@link SharedRateLimitStore}.
+ * IPs and users that keep hitting their limit are locked out for exponentially
+ * longer each time, see {@link ProgressiveLockout}.
  */
 @Service
 public class RateLimitingService {
     
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitingService.class);
+    
     @Value("${auth.rate-limit.max-attempts:5}")
     private int maxAttempts;
     
@@ -25,18 +60,227 @@ public class RateLimitingService {
     @Value("${auth.rate-limit.enabled:true}")
     private boolean rateLimitingEnabled;
     
+    @Value("${auth.rate-limit.subnet.max-attempts:20}")
+    private int subnetMaxAttempts = 20;
+    
+    @Value("${auth.rate-limit.domain.max-attempts:50}")
+    private int domainMaxAttempts = 50;
+    
+    @Value("${auth.rate-limit.global.max-attempts:1000}")
+    private int globalMaxAttempts = 1000;
+    
+    @Value("${auth.rate-limit.lockout.enabled:true}")
+    private boolean lockoutEnabled = true;
+    
+    @Value("${auth.rate-limit.lockout.max-minutes:1440}")
+    private int lockoutMaxMinutes = 1440;
+    
+    @Value("${auth.rate-limit.lockout.decay-minutes:15}")
+    private int lockoutDecayMinutes = 15;
+    
+    @Value("${auth.rate-limit.lockout.snapshot-file:}")
+    private String lockoutSnapshotFile = "";
+    
+    private static final int DEFAULT_MAX_TRACKED_KEYS = 100_000;
+    private static final int DEFAULT_PROMOTION_THRESHOLD = 2;
+    private static final int DEFAULT_SKETCH_WIDTH = 16_384;
+    private static final int SKETCH_DEPTH = 4;
+    private static final List<String> DEFAULT_SCOPES = List.of("ip", "user");
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+    
+    private final int maxTrackedKeys;
+    
+    // Scopes evaluated for every login attempt, in configured order
+    private final RateLimitScope[] scopeChain;
+    
+    // One store per scope, indexed by ordinal (null for scopes not in use)
+    private final RateLimitStore[] limiters = new RateLimitStore[RateLimitScope.values().length];
+    
     // IP-based rate limiting
-    private final ConcurrentHashMap<String, RateLimitCounter> ipAttempts = new ConcurrentHashMap<>();
+    private final RateLimitStore ipLimiter;
     
     // User-based rate limiting  
-    private final ConcurrentHashMap<String, RateLimitCounter> userAttempts = new ConcurrentHashMap<>();
+    private final RateLimitStore userLimiter;
+    
+    // Escalating lockouts for IPs and users that keep hitting their limit
+    private final ProgressiveLockout ipLockout;
+    private final ProgressiveLockout userLockout;
     
     // Cleanup executor
-    private final ScheduledExecutorService cleanupExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final ScheduledExecutorService cleanupExecutor;
     
     public RateLimitingService() {
+        this(DEFAULT_MAX_TRACKED_KEYS, DEFAULT_PROMOTION_THRESHOLD, DEFAULT_SKETCH_WIDTH, DEFAULT_SCOPES);
+    }
+    
+    /**
+     * In-memory limits for this instance only
+     */
+    public RateLimitingService(int maxTrackedKeys, int promotionThreshold, int sketchWidth, List<String> scopes) {
+        this(maxTrackedKeys, promotionThreshold, sketchWidth, scopes, Optional.empty(), 1, DEFAULT_SYNC_INTERVAL_MILLIS, false);
+    }
+    
+    /**
+     * @param maxTrackedKeys     hard cap on exact counters per scope
+     * @param promotionThreshold failures a key needs before it gets an exact counter
+     * @param sketchWidth        counters per count-min row; each scope uses 2 * 4 * width ints
+     * @param scopes             scope chain evaluated for each login attempt (ip, subnet, user, domain, global)
+     * @param sharedLedger       cluster-wide ledger; present when {@code auth.rate-limit.store=shared}
+     * @param instances          number of instances sharing the limits
+     * @param syncIntervalMillis how often shared stores reconcile with the ledger
+     * @param virtualThreads     run cleanup and synchronization on a virtual thread (Java 21+)
+     */
+    @Autowired
+    public RateLimitingService(@Value("${auth.rate-limit.max-tracked-keys:100000}") int maxTrackedKeys,
+                               @Value("${auth.rate-limit.promotion-threshold:2}") int promotionThreshold,
+                               @Value("${auth.rate-limit.sketch-width:16384}") int sketchWidth,
+                               @Value("${auth.rate-limit.scopes:ip,user}") List<String> scopes,
+                               Optional<JdbcQuotaLedger> sharedLedger,
+                               @Value("${auth.rate-limit.shared.instances:2}") int instances,
+                               @Value("${auth.rate-limit.shared.sync-interval-ms:1000}") long syncIntervalMillis,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.scopeChain = scopes.stream()
+                .filter(name -> !name.isBlank())
+                .map(RateLimitScope::fromConfigName)
+                .distinct()
+                .toArray(RateLimitScope[]::new);
+        
+        // IP and user limiters always exist for the per-dimension checks
+        for (RateLimitScope scope : RateLimitScope.values()) {
+            if (scope == RateLimitScope.IP || scope == RateLimitScope.USER || List.of(scopeChain).contains(scope)) {
+                BoundedRateLimiter local = new BoundedRateLimiter(maxTrackedKeys, promotionThreshold, SKETCH_DEPTH, sketchWidth);
+                limiters[scope.ordinal()] = sharedLedger
+                        .<RateLimitStore>map(ledger -> new SharedRateLimitStore(scope.getConfigName(), ledger, local, instances, maxTrackedKeys))
+                        .orElse(local);
+            }
+        }
+        this.ipLimiter = limiters[RateLimitScope.IP.ordinal()];
+        this.userLimiter = limiters[RateLimitScope.USER.ordinal()];
+        this.ipLockout = new ProgressiveLockout(maxTrackedKeys);
+        this.userLockout = new ProgressiveLockout(maxTrackedKeys);
+        
+        this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(
+                VirtualThreads.threadFactory(virtualThreads, "rate-limit-cleanup-", VirtualThreads.namedDaemonThreads("rate-limit-cleanup-")));
+        
         // Schedule cleanup task to run every 5 minutes
         cleanupExecutor.scheduleAtFixedRate(this::cleanupExpiredCounters, 5, 5, TimeUnit.MINUTES);
+        
+        // Reconcile shared stores in the background, never on the request path
+        if (sharedLedger.isPresent()) {
+            cleanupExecutor.scheduleWithFixedDelay(this::synchronizeStores, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Evaluate the configured scope chain for a login attempt in one pass.
+     * Uses a single clock read and stops at the first scope that denies.
+     */
+    public RateLimitDecision check(String ipAddress, String username) {
+        return check(ipAddress, username, System.currentTimeMillis());
+    }
+    
+    /**
+     * Evaluate the scope chain at the given time (used to replay recorded traffic)
+     */
+    public RateLimitDecision check(String ipAddress, String username, long now) {
+        if (!rateLimitingEnabled) return RateLimitDecision.allowed();
+        
+        long window = windowMillis();
+        
+        for (RateLimitScope scope : scopeChain) {
+            long key = scope.key(ipAddress, username);
+            if (key == RateLimitScope.NO_KEY) continue;
+            
+            long lockedUntil = lockedUntil(scope, key, now);
+            if (lockedUntil > now) {
+                return RateLimitDecision.denied(scope, toSeconds(lockedUntil - now));
+            }
+            
+            RateLimitStore limiter = limiters[scope.ordinal()];
+            int limit = limitFor(scope);
+            if (!limiter.isAllowed(key, limit, window, now)) {
+                return RateLimitDecision.denied(scope, toSeconds(limiter.retryAfterMillis(key, limit, window, now)));
+            }
+        }
+        return RateLimitDecision.allowed();
+    }
+    
+    /**
+     * Reserve a login attempt in every configured scope, or in none if any scope denies.
+     * The reservation counts as a failure: follow up with {@link #refund} if the
+     * attempt does not fail, or {@link #confirmFailedAttempt} if it does.
+     */
+    public RateLimitDecision acquire(String ipAddress, String username) {
+        return acquire(ipAddress, username, System.currentTimeMillis());
+    }
+    
+    /**
+     * Reserve a login attempt made at the given time
+     */
+    public RateLimitDecision acquire(String ipAddress, String username, long now) {
+        if (!rateLimitingEnabled) return RateLimitDecision.allowed();
+        
+        long window = windowMillis();
+        
+        for (int i = 0; i < scopeChain.length; i++) {
+            RateLimitScope scope = scopeChain[i];
+            long key = scope.key(ipAddress, username);
+            if (key == RateLimitScope.NO_KEY) continue;
+            
+            long lockedUntil = lockedUntil(scope, key, now);
+            if (lockedUntil > now) {
+                refund(ipAddress, username, i, now);
+                return RateLimitDecision.denied(scope, toSeconds(lockedUntil - now));
+            }
+            
+            RateLimitStore limiter = limiters[scope.ordinal()];
+            int limit = limitFor(scope);
+            if (!limiter.tryAcquire(key, limit, window, now)) {
+                refund(ipAddress, username, i, now);
+                return RateLimitDecision.denied(scope, toSeconds(limiter.retryAfterMillis(key, limit, window, now)));
+            }
+        }
+        return RateLimitDecision.allowed();
+    }
+    
+    /**
+     * Give back an attempt reserved by {@link #acquire} that did not fail,
+     * e.g. a successful login or one redirected to SSO
+     */
+    public void refund(String ipAddress, String username) {
+        refund(ipAddress, username, System.currentTimeMillis());
+    }
+    
+    /**
+     * Give back a reserved attempt at the given time
+     */
+    public void refund(String ipAddress, String username, long now) {
+        if (!rateLimitingEnabled) return;
+        
+        refund(ipAddress, username, scopeChain.length, now);
+    }
+    
+    /**
+     * Keep an attempt reserved by {@link #acquire} as a failure.
+     * An IP or user whose limit it exhausted earns a lockout violation.
+     */
+    public void confirmFailedAttempt(String ipAddress, String username) {
+        confirmFailedAttempt(ipAddress, username, System.currentTimeMillis());
+    }
+    
+    /**
+     * Keep a reserved attempt as a failure at the given time
+     */
+    public void confirmFailedAttempt(String ipAddress, String username, long now) {
+        if (!rateLimitingEnabled) return;
+        
+        for (RateLimitScope scope : scopeChain) {
+            long key = scope.key(ipAddress, username);
+            if (key != RateLimitScope.NO_KEY) {
+                recordViolation(scope, key, now);
+            }
+        }
     }
     
     /**
@@ -45,8 +289,10 @@ public class RateLimitingService {
     public boolean isIpAllowed(String ipAddress) {
         if (!rateLimitingEnabled || ipAddress == null) return true;
         
-        RateLimitCounter counter = ipAttempts.computeIfAbsent(ipAddress, k -> new RateLimitCounter());
-        return counter.isAllowed(maxAttempts, windowMinutes);
+        long key = RateLimitScope.IP.key(ipAddress, null);
+        long now = System.currentTimeMillis();
+        return lockedUntil(RateLimitScope.IP, key, now) <= now
+                && ipLimiter.isAllowed(key, maxAttempts, windowMillis(), now);
     }
     
     /**
@@ -55,44 +301,94 @@ public class RateLimitingService {
     public boolean isUserAllowed(String username) {
         if (!rateLimitingEnabled || username == null) return true;
         
-        RateLimitCounter counter = userAttempts.computeIfAbsent(username.toLowerCase(), k -> new RateLimitCounter());
-        return counter.isAllowed(maxAttempts, windowMinutes);
+        long key = RateLimitScope.USER.key(null, username);
+        long now = System.currentTimeMillis();
+        return lockedUntil(RateLimitScope.USER, key, now) <= now
+                && userLimiter.isAllowed(key, maxAttempts, windowMillis(), now);
     }
     
     /**
-     * Check if both IP and user are allowed (combined check)
+     * Check if the attempt passes every configured scope (combined check)
      */
     public boolean isAllowed(String ipAddress, String username) {
-        return isIpAllowed(ipAddress) && isUserAllowed(username);
+        return check(ipAddress, username).isAllowed();
     }
     
     /**
-     * Record a failed authentication attempt
+     * Record a failed authentication attempt in every configured scope.
+     * An IP or user whose limit this failure exhausts earns a lockout violation.
      */
     public void recordFailedAttempt(String ipAddress, String username) {
+        recordFailedAttempt(ipAddress, username, System.currentTimeMillis());
+    }
+    
+    /**
+     * Record a failed authentication attempt made at the given time
+     */
+    public void recordFailedAttempt(String ipAddress, String username, long now) {
         if (!rateLimitingEnabled) return;
         
-        if (ipAddress != null) {
-            RateLimitCounter ipCounter = ipAttempts.computeIfAbsent(ipAddress, k -> new RateLimitCounter());
-            ipCounter.recordAttempt();
-        }
+        long window = windowMillis();
         
-        if (username != null) {
-            RateLimitCounter userCounter = userAttempts.computeIfAbsent(username.toLowerCase(), k -> new RateLimitCounter());
-            userCounter.recordAttempt();
+        for (RateLimitScope scope : scopeChain) {
+            long key = scope.key(ipAddress, username);
+            if (key == RateLimitScope.NO_KEY) continue;
+            
+            limiters[scope.ordinal()].recordFailure(key, limitFor(scope), window, now);
+            recordViolation(scope, key, now);
+        }
+    }
+    
+    /**
+     * Give back the reservations of the first {@code scopes} scopes in the chain
+     */
+    private void refund(String ipAddress, String username, int scopes, long now) {
+        long window = windowMillis();
+        for (int i = 0; i < scopes; i++) {
+            RateLimitScope scope = scopeChain[i];
+            long key = scope.key(ipAddress, username);
+            if (key != RateLimitScope.NO_KEY) {
+                limiters[scope.ordinal()].refund(key, limitFor(scope), window, now);
+            }
+        }
+    }
+    
+    /**
+     * Start a lockout for an IP or user whose limit is now exhausted, unless one is running
+     */
+    private void recordViolation(RateLimitScope scope, long key, long now) {
+        ProgressiveLockout lockout = lockoutFor(scope);
+        long window = windowMillis();
+        if (lockout != null && !limiters[scope.ordinal()].isAllowed(key, limitFor(scope), window, now)
+                && lockout.lockedUntil(key, window, lockoutMaxMillis(), now) == 0) {
+            lockout.violation(key, window, lockoutMaxMillis(), lockoutDecayMillis(), now);
         }
     }
     
     /**
-     * Reset rate limit counters for successful authentication
+     * Reset rate limit counters for successful authentication.
+     * Only the IP and user scopes are cleared; shared scopes keep their history.
+     * The user's penalty is forgiven, while the IP's lockout ends but its penalty
+     * level is left to decay, since other clients may share the address.
      */
     public void resetCounters(String ipAddress, String username) {
+        resetCounters(ipAddress, username, System.currentTimeMillis());
+    }
+    
+    /**
+     * Reset rate limit counters for a successful authentication made at the given time
+     */
+    public void resetCounters(String ipAddress, String username, long now) {
         if (ipAddress != null) {
-            ipAttempts.remove(ipAddress);
+            long key = RateLimitScope.IP.key(ipAddress, null);
+            ipLimiter.reset(key, now);
+            ipLockout.release(key, windowMillis(), lockoutMaxMillis(), now);
         }
         
         if (username != null) {
-            userAttempts.remove(username.toLowerCase());
+            long key = RateLimitScope.USER.key(null, username);
+            userLimiter.reset(key, now);
+            userLockout.clear(key);
         }
     }
     
@@ -102,50 +398,154 @@ public class RateLimitingService {
     public int getRemainingAttempts(String ipAddress) {
         if (!rateLimitingEnabled || ipAddress == null) return maxAttempts;
         
-        RateLimitCounter counter = ipAttempts.get(ipAddress);
-        if (counter == null) return maxAttempts;
-        
-        return Math.max(0, maxAttempts - counter.getAttemptCount());
+        return ipLimiter.remaining(RateLimitScope.IP.key(ipAddress, null), maxAttempts, windowMillis(), System.currentTimeMillis());
     }
     
     /**
-     * Get time until next attempt is allowed (in seconds)
+     * Get time until next attempt is allowed across all configured scopes (in seconds)
      */
     public long getTimeUntilNextAttempt(String ipAddress, String username) {
         if (!rateLimitingEnabled) return 0;
         
-        long ipWaitTime = 0;
-        long userWaitTime = 0;
+        long now = System.currentTimeMillis();
+        long window = windowMillis();
+        long waitTime = 0;
         
-        if (ipAddress != null) {
-            RateLimitCounter ipCounter = ipAttempts.get(ipAddress);
-            if (ipCounter != null) {
-                ipWaitTime = ipCounter.getTimeUntilReset(windowMinutes);
+        for (RateLimitScope scope : scopeChain) {
+            long key = scope.key(ipAddress, username);
+            if (key != RateLimitScope.NO_KEY) {
+                waitTime = Math.max(waitTime, limiters[scope.ordinal()].retryAfterMillis(key, limitFor(scope), window, now));
+                waitTime = Math.max(waitTime, lockedUntil(scope, key, now) - now);
             }
         }
         
-        if (username != null) {
-            RateLimitCounter userCounter = userAttempts.get(username.toLowerCase());
-            if (userCounter != null) {
-                userWaitTime = userCounter.getTimeUntilReset(windowMinutes);
+        return toSeconds(waitTime);
+    }
+    
+    /**
+     * Cleanup rate limit state whose budget has fully replenished
+     */
+    private void cleanupExpiredCounters() {
+        long now = System.currentTimeMillis();
+        for (RateLimitStore limiter : limiters) {
+            if (limiter != null) {
+                limiter.evictIdle(windowMillis(), now);
             }
         }
+        ipLockout.evictIdle(windowMillis(), lockoutMaxMillis(), lockoutDecayMillis(), now);
+        userLockout.evictIdle(windowMillis(), lockoutMaxMillis(), lockoutDecayMillis(), now);
+        saveLockouts();
+    }
+    
+    /**
+     * Restore lockout penalties saved by a previous run, if a snapshot file is configured
+     */
+    @PostConstruct
+    void loadLockouts() {
+        Path file = lockoutSnapshotPath();
+        if (file == null || !Files.isRegularFile(file)) return;
         
-        return Math.max(ipWaitTime, userWaitTime);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            ipLockout.readFrom(in);
+            userLockout.readFrom(in);
+            logger.info("Restored {} IP and {} user lockout penalties from {}", ipLockout.size(), userLockout.size(), file);
+        } catch (IOException e) {
+            logger.warn("Could not restore lockout penalties from {}: {}", file, e.getMessage());
+        }
     }
     
     /**
-     * Cleanup expired rate limit counters
+     * Write lockout penalties to the snapshot file, replacing it atomically
      */
-    private void cleanupExpiredCounters() {
-        long now = System.currentTimeMillis();
-        long expireTime = windowMinutes * 60 * 1000L;
+    void saveLockouts() {
+        Path file = lockoutSnapshotPath();
+        if (file == null) return;
         
-        ipAttempts.entrySet().removeIf(entry -> 
-            now - entry.getValue().getFirstAttemptTime() > expireTime);
-            
-        userAttempts.entrySet().removeIf(entry -> 
-            now - entry.getValue().getFirstAttemptTime() > expireTime);
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                ipLockout.writeTo(out);
+                userLockout.writeTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not save lockout penalties to {}: {}", file, e.getMessage());
+        }
+    }
+    
+    /**
+     * Exchange counts with the other instances (shared stores only)
+     */
+    void synchronizeStores() {
+        if (!rateLimitingEnabled) return;
+        
+        long now = System.currentTimeMillis();
+        for (RateLimitScope scope : RateLimitScope.values()) {
+            RateLimitStore limiter = limiters[scope.ordinal()];
+            if (limiter != null) {
+                limiter.synchronize(limitFor(scope), windowMillis(), now);
+            }
+        }
+    }
+    
+    /**
+     * Apply a candidate policy's limits (shadow evaluation and replays)
+     */
+    void configure(ShadowPolicyProperties.Policy policy) {
+        this.maxAttempts = policy.getMaxAttempts();
+        this.windowMinutes = policy.getWindowMinutes();
+        this.subnetMaxAttempts = policy.getSubnetMaxAttempts();
+        this.domainMaxAttempts = policy.getDomainMaxAttempts();
+        this.globalMaxAttempts = policy.getGlobalMaxAttempts();
+        this.lockoutEnabled = policy.isLockoutEnabled();
+        this.lockoutMaxMinutes = policy.getLockoutMaxMinutes();
+        this.lockoutDecayMinutes = policy.getLockoutDecayMinutes();
+        this.rateLimitingEnabled = true;
+    }
+    
+    private ProgressiveLockout lockoutFor(RateLimitScope scope) {
+        if (!lockoutEnabled) return null;
+        switch (scope) {
+            case IP: return ipLockout;
+            case USER: return userLockout;
+            default: return null;
+        }
+    }
+    
+    private long lockedUntil(RateLimitScope scope, long key, long now) {
+        ProgressiveLockout lockout = lockoutFor(scope);
+        return lockout == null ? 0 : lockout.lockedUntil(key, windowMillis(), lockoutMaxMillis(), now);
+    }
+    
+    private Path lockoutSnapshotPath() {
+        return lockoutSnapshotFile == null || lockoutSnapshotFile.isBlank() ? null : Paths.get(lockoutSnapshotFile);
+    }
+    
+    private int limitFor(RateLimitScope scope) {
+        switch (scope) {
+            case SUBNET: return subnetMaxAttempts;
+            case DOMAIN: return domainMaxAttempts;
+            case GLOBAL: return globalMaxAttempts;
+            default: return maxAttempts;
+        }
+    }
+    
+    private long windowMillis() {
+        return windowMinutes * 60 * 1000L;
+    }
+    
+    // Lockouts start at one window and double per violation up to this cap
+    private long lockoutMaxMillis() {
+        return lockoutMaxMinutes * 60 * 1000L;
+    }
+    
+    private long lockoutDecayMillis() {
+        return lockoutDecayMinutes * 60 * 1000L;
+    }
+    
+    // Round up so callers never retry a moment too early
+    private static long toSeconds(long millis) {
+        return (millis + 999) / 1000;
     }
     
     /**
@@ -153,8 +553,10 @@ public class RateLimitingService {
      */
     public RateLimitStats getStats() {
         return new RateLimitStats(
-            ipAttempts.size(),
-            userAttempts.size(),
+            ipLimiter.trackedKeys(),
+            userLimiter.trackedKeys(),
+            ipLockout.size() + userLockout.size(),
+            maxTrackedKeys,
             maxAttempts,
             windowMinutes,
             rateLimitingEnabled
@@ -162,55 +564,12 @@ public class RateLimitingService {
     }
     
     /**
-     * Shutdown the cleanup executor
+     * Shutdown the cleanup executor and save lockout penalties
      */
+    @PreDestroy
     public void shutdown() {
         cleanupExecutor.shutdown();
-    }
-    
-    /**
-     * Inner class to track rate limit attempts
-     */
-    private static class RateLimitCounter {
-        private final AtomicInteger attempts = new AtomicInteger(0);
-        private volatile long firstAttemptTime = System.currentTimeMillis();
-        
-        public boolean isAllowed(int maxAttempts, int windowMinutes) {
-            long now = System.currentTimeMillis();
-            long windowMillis = windowMinutes * 60 * 1000L;
-            
-            // Reset counter if window has expired
-            if (now - firstAttemptTime > windowMillis) {
-                attempts.set(0);
-                firstAttemptTime = now;
-            }
-            
-            return attempts.get() < maxAttempts;
-        }
-        
-        public void recordAttempt() {
-            attempts.incrementAndGet();
-        }
-        
-        public int getAttemptCount() {
-            return attempts.get();
-        }
-        
-        public long getFirstAttemptTime() {
-            return firstAttemptTime;
-        }
-        
-        public long getTimeUntilReset(int windowMinutes) {
-            long now = System.currentTimeMillis();
-            long windowMillis = windowMinutes * 60 * 1000L;
-            long timeElapsed = now - firstAttemptTime;
-            
-            if (timeElapsed >= windowMillis) {
-                return 0;
-            }
-            
-            return (windowMillis - timeElapsed) / 1000; // Return seconds
-        }
+        saveLockouts();
     }
     
     /**
@@ -219,14 +578,18 @@ public class RateLimitingService {
     public static class RateLimitStats {
         private final int activeIpCounters;
         private final int activeUserCounters;
+        private final int penalizedKeys;
+        private final int maxTrackedKeys;
         private final int maxAttempts;
         private final int windowMinutes;
         private final boolean enabled;
         
-        public RateLimitStats(int activeIpCounters, int activeUserCounters, 
+        public RateLimitStats(int activeIpCounters, int activeUserCounters, int penalizedKeys, int maxTrackedKeys,
                              int maxAttempts, int windowMinutes, boolean enabled) {
             this.activeIpCounters = activeIpCounters;
             this.activeUserCounters = activeUserCounters;
+            this.penalizedKeys = penalizedKeys;
+            this.maxTrackedKeys = maxTrackedKeys;
             this.maxAttempts = maxAttempts;
             this.windowMinutes = windowMinutes;
             this.enabled = enabled;
@@ -235,6 +598,8 @@ public class RateLimitingService {
         // Getters
         public int getActiveIpCounters() { return activeIpCounters; }
         public int getActiveUserCounters() { return activeUserCounters; }
+        public int getPenalizedKeys() { return penalizedKeys; }
+        public int getMaxTrackedKeys() { return maxTrackedKeys; }
         public int getMaxAttempts() { return maxAttempts; }
         public int getWindowMinutes() { return windowMinutes; }
         public boolean isEnabled() { return enabled; }
@@ -244,6 +609,8 @@ public class RateLimitingService {
             return "RateLimitStats{" +
                     "activeIpCounters=" + activeIpCounters +
                     ", activeUserCounters=" + activeUserCounters +
+                    ", penalizedKeys=" + penalizedKeys +
+                    ", maxTrackedKeys=" + maxTrackedKeys +
                     ", maxAttempts=" + maxAttempts +
                     ", windowMinutes=" + windowMinutes +
                     ", enabled=" + enabled +
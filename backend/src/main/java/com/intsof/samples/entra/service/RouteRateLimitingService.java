@@ -0,0 +1,154 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.config.RateLimitRouteProperties;
+import com.intsof.samples.entra.config.VirtualThreads;
+import com.intsof.samples.entra.ratelimit.RateLimitDecision;
+import com.intsof.samples.entra.ratelimit.RateLimitScope;
+import com.intsof.samples.entra.ratelimit.RoutePolicy;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Request rate limiting for individual routes (login, refresh, check-method, Entra
+ * callback, ...). Policies are declared in {@link RateLimitRouteProperties}, compiled
+ * once at startup into a path lookup table, and applied by the authentication filter
+ * before any expensive work is done.
+ */
+@Service
+public class RouteRateLimitingService {
+
+    private static final RoutePolicy[] NO_POLICIES = new RoutePolicy[0];
+
+    private final Map<String, RoutePolicy[]> policiesByPath;
+    private final boolean enabled;
+
+    // Cleanup executor
+    private final ScheduledExecutorService cleanupExecutor;
+
+    @Autowired
+    public RouteRateLimitingService(RateLimitRouteProperties properties,
+                                    @Value("${auth.rate-limit.enabled:true}") boolean enabled,
+                                    @Value("${auth.rate-limit.max-tracked-keys:100000}") int maxTrackedKeys,
+                                    @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.enabled = enabled;
+        this.policiesByPath = compile(properties, maxTrackedKeys);
+        this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(
+                VirtualThreads.threadFactory(virtualThreads, "route-rate-limit-cleanup-",
+                        VirtualThreads.namedDaemonThreads("route-rate-limit-cleanup-")));
+
+        // Schedule cleanup task to run every minute
+        cleanupExecutor.scheduleAtFixedRate(this::cleanupIdleKeys, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Apply every policy registered for the request's route.
+     *
+     * @return the most restrictive decision, or null if no policy applies
+     */
+    public RateLimitDecision check(HttpServletRequest request, String ipAddress) {
+        if (!enabled) return null;
+        return check(request.getMethod(), request.getRequestURI(), ipAddress, () -> extractUsername(request));
+    }
+
+    /**
+     * Apply every policy registered for a route, for stacks without servlet requests.
+     *
+     * @param usernameSource supplies the username for user/domain scoped policies; called at most once
+     * @return the most restrictive decision, or null if no policy applies
+     */
+    public RateLimitDecision check(String method, String path, String ipAddress, Supplier<String> usernameSource) {
+        if (!enabled) return null;
+
+        RoutePolicy[] policies = policiesByPath.getOrDefault(path, NO_POLICIES);
+        if (policies.length == 0) return null;
+
+        long now = System.currentTimeMillis();
+        String username = null;
+        boolean usernameResolved = false;
+        RateLimitDecision result = null;
+
+        for (RoutePolicy policy : policies) {
+            if (!policy.matchesMethod(method)) continue;
+
+            if (!usernameResolved && (policy.getScope() == RateLimitScope.USER || policy.getScope() == RateLimitScope.DOMAIN)) {
+                username = usernameSource.get();
+                usernameResolved = true;
+            }
+
+            RateLimitDecision decision = policy.apply(ipAddress, username, now);
+            if (decision == null) continue;
+            if (!decision.isAllowed()) {
+                return decision;
+            }
+            if (result == null || decision.getRemaining() < result.getRemaining()) {
+                result = decision;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compiled policies, for monitoring
+     */
+    public List<RoutePolicy> getPolicies() {
+        List<RoutePolicy> all = new ArrayList<>();
+        policiesByPath.values().forEach(policies -> all.addAll(List.of(policies)));
+        return all;
+    }
+
+    /**
+     * Shutdown the cleanup executor
+     */
+    @PreDestroy
+    public void shutdown() {
+        cleanupExecutor.shutdown();
+    }
+
+    private static Map<String, RoutePolicy[]> compile(RateLimitRouteProperties properties, int maxTrackedKeys) {
+        Map<String, List<RoutePolicy>> byPath = new HashMap<>();
+        properties.getRoutes().forEach((name, route) -> {
+            if (route.getPath() == null || route.getPath().isBlank()) {
+                throw new IllegalArgumentException("Rate limit policy '" + name + "' has no path");
+            }
+            String method = route.getMethod() == null || route.getMethod().isBlank() || "*".equals(route.getMethod().trim())
+                    ? null : route.getMethod().trim();
+            RoutePolicy policy = new RoutePolicy(name, method, route.getPath().trim(),
+                    RateLimitScope.fromConfigName(route.getScope()), route.getRate(),
+                    route.getPeriodSeconds() * 1000L, route.getBurst(), maxTrackedKeys);
+            byPath.computeIfAbsent(policy.getPath(), p -> new ArrayList<>()).add(policy);
+        });
+
+        Map<String, RoutePolicy[]> compiled = new HashMap<>();
+        byPath.forEach((path, policies) -> compiled.put(path, policies.toArray(NO_POLICIES)));
+        return Map.copyOf(compiled);
+    }
+
+    /**
+     * Username for user/domain scoped policies: the login header, or the email parameter
+     */
+    private static String extractUsername(HttpServletRequest request) {
+        String email = request.getHeader("X-Email");
+        return email != null ? email : request.getParameter("email");
+    }
+
+    private void cleanupIdleKeys() {
+        long now = System.currentTimeMillis();
+        policiesByPath.values().forEach(policies -> {
+            for (RoutePolicy policy : policies) {
+                policy.evictIdle(now);
+            }
+        });
+    }
+}
@@ -0,0 +1,203 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.config.ShadowPolicyProperties;
+import com.intsof.samples.entra.ratelimit.RateLimitDecision;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shadow (dry-run) evaluation of candidate login rate limit policies.
+ * Every candidate in {@link ShadowPolicyProperties} sees the same login attempts
+ * as the enforcing {@link RateLimitingService} and records what it would have
+ * decided, but never rejects anything. Disagreements with the enforcing policy are
+ * written to the audit log as {@code SHADOW_RATE_LIMIT} events, and per-policy
+ * counters show how many successful (i.e. legitimate) logins a candidate would
+ * have blocked before it is switched on.
+ */
+@Service
+public class ShadowRateLimitingService {
+
+    private static final int MAX_TRACKED_KEYS = 100_000;
+    private static final int PROMOTION_THRESHOLD = 2;
+    private static final int SKETCH_WIDTH = 16_384;
+
+    private final AuditLoggingService auditLoggingService;
+    private final Candidate[] candidates;
+
+    @Autowired
+    public ShadowRateLimitingService(ShadowPolicyProperties properties, AuditLoggingService auditLoggingService) {
+        this.auditLoggingService = auditLoggingService;
+        this.candidates = properties.getPolicies().entrySet().stream()
+                .map(entry -> new Candidate(entry.getKey(), createPolicy(entry.getValue())))
+                .toArray(Candidate[]::new);
+    }
+
+    /**
+     * Build a standalone login rate limiter for a policy, e.g. to replay recorded traffic against it.
+     * The caller must {@link RateLimitingService#shutdown()} it when done.
+     */
+    public static RateLimitingService createPolicy(ShadowPolicyProperties.Policy policy) {
+        List<String> scopes = policy.getScopes() == null || policy.getScopes().isEmpty()
+                ? List.of("ip", "user") : policy.getScopes();
+        RateLimitingService service = new RateLimitingService(MAX_TRACKED_KEYS, PROMOTION_THRESHOLD, SKETCH_WIDTH, scopes);
+        service.configure(policy);
+        return service;
+    }
+
+    /**
+     * Evaluate one login attempt against a policy, then feed it the outcome if the policy let it through
+     *
+     * @param success true or false for a completed password check, null if the outcome is unknown
+     * @return the policy's decision
+     */
+    public static RateLimitDecision simulate(RateLimitingService policy, String ipAddress, String username,
+                                             Boolean success, long now) {
+        RateLimitDecision decision = policy.acquire(ipAddress, username, now);
+        if (decision.isAllowed()) {
+            if (Boolean.FALSE.equals(success)) {
+                policy.confirmFailedAttempt(ipAddress, username, now);
+            } else {
+                policy.refund(ipAddress, username, now);
+                if (success != null) {
+                    policy.resetCounters(ipAddress, username, now);
+                }
+            }
+        }
+        return decision;
+    }
+
+    /**
+     * Whether any candidate policy is configured
+     */
+    public boolean isActive() {
+        return candidates.length > 0;
+    }
+
+    /**
+     * Let every candidate evaluate a login attempt the enforcing policy has decided on
+     *
+     * @param enforcedAllowed whether the enforcing policy let the attempt through
+     * @param success         outcome of the password check, null if there was none
+     */
+    public void observe(String ipAddress, String username, boolean enforcedAllowed, Boolean success) {
+        if (candidates.length == 0) return;
+
+        long now = System.currentTimeMillis();
+        for (Candidate candidate : candidates) {
+            RateLimitDecision decision = simulate(candidate.policy, ipAddress, username, success, now);
+            candidate.attempts.incrementAndGet();
+            if (!decision.isAllowed()) {
+                candidate.wouldDeny.incrementAndGet();
+                if (Boolean.TRUE.equals(success)) {
+                    candidate.wouldDenySuccessful.incrementAndGet();
+                }
+            }
+            if (decision.isAllowed() == enforcedAllowed) continue;
+
+            (enforcedAllowed ? candidate.extraDenials : candidate.extraAllows).incrementAndGet();
+            Map<String, Object> auditData = new HashMap<>();
+            auditData.put("policy", candidate.name);
+            auditData.put("shadowDecision", decision.isAllowed() ? "allow" : "deny");
+            auditData.put("enforcedDecision", enforcedAllowed ? "allow" : "deny");
+            if (!decision.isAllowed()) {
+                auditData.put("scope", decision.getScope());
+            }
+            if (success != null) {
+                auditData.put("outcome", success ? "success" : "failure");
+            }
+            auditLoggingService.logAuthEvent("SHADOW_RATE_LIMIT", username, ipAddress, auditData);
+        }
+    }
+
+    /**
+     * Get current statistics for monitoring, per candidate policy
+     */
+    public Map<String, ShadowPolicyStats> getStats() {
+        Map<String, ShadowPolicyStats> stats = new LinkedHashMap<>();
+        for (Candidate candidate : candidates) {
+            stats.put(candidate.name, new ShadowPolicyStats(
+                candidate.attempts.get(),
+                candidate.wouldDeny.get(),
+                candidate.extraDenials.get(),
+                candidate.extraAllows.get(),
+                candidate.wouldDenySuccessful.get()
+            ));
+        }
+        return stats;
+    }
+
+    /**
+     * Shutdown the candidate policies
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (Candidate candidate : candidates) {
+            candidate.policy.shutdown();
+        }
+    }
+
+    /**
+     * A candidate policy and its would-be decisions
+     */
+    private static final class Candidate {
+        final String name;
+        final RateLimitingService policy;
+        final AtomicLong attempts = new AtomicLong();
+        final AtomicLong wouldDeny = new AtomicLong();
+        final AtomicLong extraDenials = new AtomicLong();
+        final AtomicLong extraAllows = new AtomicLong();
+        final AtomicLong wouldDenySuccessful = new AtomicLong();
+
+        Candidate(String name, RateLimitingService policy) {
+            this.name = name;
+            this.policy = policy;
+        }
+    }
+
+    /**
+     * Statistics class for monitoring
+     */
+    public static class ShadowPolicyStats {
+        private final long attempts;
+        private final long wouldDeny;
+        private final long extraDenials;
+        private final long extraAllows;
+        private final long wouldDenySuccessful;
+
+        public ShadowPolicyStats(long attempts, long wouldDeny, long extraDenials, long extraAllows, long wouldDenySuccessful) {
+            this.attempts = attempts;
+            this.wouldDeny = wouldDeny;
+            this.extraDenials = extraDenials;
+            this.extraAllows = extraAllows;
+            this.wouldDenySuccessful = wouldDenySuccessful;
+        }
+
+        // Getters
+        public long getAttempts() { return attempts; }
+        public long getWouldDeny() { return wouldDeny; }
+        /** Attempts the candidate would deny but the enforcing policy allowed */
+        public long getExtraDenials() { return extraDenials; }
+        /** Attempts the candidate would allow but the enforcing policy denied */
+        public long getExtraAllows() { return extraAllows; }
+        /** Successful logins the candidate would have blocked */
+        public long getWouldDenySuccessful() { return wouldDenySuccessful; }
+
+        @Override
+        public String toString() {
+            return "ShadowPolicyStats{" +
+                    "attempts=" + attempts +
+                    ", wouldDeny=" + wouldDeny +
+                    ", extraDenials=" + extraDenials +
+                    ", extraAllows=" + extraAllows +
+                    ", wouldDenySuccessful=" + wouldDenySuccessful +
+                    '}';
+        }
+    }
+}
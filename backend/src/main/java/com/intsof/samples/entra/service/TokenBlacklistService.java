@@ -1,5 +1,8 @@
 package com.intsof.samples.entra.service;
 
+import com.intsof.samples.entra.config.VirtualThreads;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.Date;
@@ -20,9 +23,20 @@ public class TokenBlacklistService {
     private final ConcurrentHashMap<String, Date> blacklistedTokens = new ConcurrentHashMap<>();
     
     // Scheduled executor for cleanup tasks
-    private final ScheduledExecutorService cleanupExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final ScheduledExecutorService cleanupExecutor;
     
     public TokenBlacklistService() {
+        this(false);
+    }
+    
+    /**
+     * @param virtualThreads run the cleanup task on a virtual thread (Java 21+)
+     */
+    @Autowired
+    public TokenBlacklistService(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(
+                VirtualThreads.threadFactory(virtualThreads, "token-blacklist-cleanup-", Executors.defaultThreadFactory()));
+        
         // Schedule cleanup task to run every hour to remove expired blacklisted tokens
         cleanupExecutor.scheduleAtFixedRate(this::cleanupExpiredTokens, 1, 1, TimeUnit.HOURS);
     }
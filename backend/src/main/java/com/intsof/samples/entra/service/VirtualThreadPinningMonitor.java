@@ -0,0 +1,169 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.config.VirtualThreads;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts virtual threads pinned to their carrier thread.
+ * A virtual thread that blocks inside a {@code synchronized} block or a native call
+ * keeps its carrier thread, and enough of them starve the whole virtual thread
+ * scheduler. In virtual thread mode this service listens to the JFR
+ * {@code jdk.VirtualThreadPinned} events above a threshold and keeps counts per
+ * pinning site (the first application frame of the stack) for monitoring.
+ */
+@Service
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.intsof.";
+    private static final int MAX_SITES = 100;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    @Value("${auth.virtual-threads.pinning-threshold-ms:20}")
+    private long thresholdMillis;
+
+    private final LongAdder pinnedCount = new LongAdder();
+    private final LongAdder pinnedNanos = new LongAdder();
+    private final AtomicLong maxPinnedNanos = new AtomicLong();
+    private final Map<String, LongAdder> pinnedBySite = new ConcurrentHashMap<>();
+
+    private volatile RecordingStream stream;
+
+    /**
+     * Start listening for pinning events when virtual threads are in use
+     */
+    @PostConstruct
+    public void start() {
+        if (!virtualThreadsEnabled || !VirtualThreads.isSupported()) return;
+
+        RecordingStream recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMillis)).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::onPinned);
+        recording.startAsync();
+        stream = recording;
+        logger.info("Virtual thread pinning monitor started (threshold {} ms)", thresholdMillis);
+    }
+
+    private void onPinned(RecordedEvent event) {
+        String site = pinningSite(event.getStackTrace());
+        record(event.getDuration().toNanos(), site);
+        logger.warn("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(), site);
+    }
+
+    /**
+     * Count one pinning of the given duration at a site
+     */
+    void record(long nanos, String site) {
+        pinnedCount.increment();
+        pinnedNanos.add(nanos);
+        maxPinnedNanos.accumulateAndGet(nanos, Math::max);
+        // Bounded: sites beyond the cap are only counted in the totals
+        LongAdder counter = pinnedBySite.get(site);
+        if (counter == null && pinnedBySite.size() < MAX_SITES) {
+            counter = pinnedBySite.computeIfAbsent(site, s -> new LongAdder());
+        }
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * First application frame of the stack, or the top frame if there is none
+     */
+    private static String pinningSite(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) return "unknown";
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        RecordedFrame site = frames.get(0);
+        for (RecordedFrame frame : frames) {
+            if (frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE)) {
+                site = frame;
+                break;
+            }
+        }
+        return site.getMethod().getType().getName() + "." + site.getMethod().getName() + ":" + site.getLineNumber();
+    }
+
+    /**
+     * Get current statistics for monitoring
+     */
+    public PinningStats getStats() {
+        Map<String, Long> bySite = new LinkedHashMap<>();
+        pinnedBySite.forEach((site, count) -> bySite.put(site, count.sum()));
+        return new PinningStats(
+            pinnedCount.sum(),
+            pinnedNanos.sum() / 1_000_000,
+            maxPinnedNanos.get() / 1_000_000,
+            bySite,
+            stream != null
+        );
+    }
+
+    /**
+     * Stop listening for pinning events
+     */
+    @PreDestroy
+    public void shutdown() {
+        RecordingStream recording = stream;
+        stream = null;
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    /**
+     * Statistics class for monitoring
+     */
+    public static class PinningStats {
+        private final long pinnedCount;
+        private final long pinnedMillis;
+        private final long maxPinnedMillis;
+        private final Map<String, Long> pinnedBySite;
+        private final boolean active;
+
+        public PinningStats(long pinnedCount, long pinnedMillis, long maxPinnedMillis, Map<String, Long> pinnedBySite, boolean active) {
+            this.pinnedCount = pinnedCount;
+            this.pinnedMillis = pinnedMillis;
+            this.maxPinnedMillis = maxPinnedMillis;
+            this.pinnedBySite = pinnedBySite;
+            this.active = active;
+        }
+
+        // Getters
+        public long getPinnedCount() { return pinnedCount; }
+        public long getPinnedMillis() { return pinnedMillis; }
+        public long getMaxPinnedMillis() { return maxPinnedMillis; }
+        public Map<String, Long> getPinnedBySite() { return pinnedBySite; }
+        public boolean isActive() { return active; }
+
+        @Override
+        public String toString() {
+            return "PinningStats{" +
+                    "pinnedCount=" + pinnedCount +
+                    ", pinnedMillis=" + pinnedMillis +
+                    ", maxPinnedMillis=" + maxPinnedMillis +
+                    ", pinnedBySite=" + pinnedBySite +
+                    ", active=" + active +
+                    '}';
+        }
+    }
+}
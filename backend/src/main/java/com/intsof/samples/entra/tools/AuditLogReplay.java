@@ -0,0 +1,284 @@
+package com.intsof.samples.entra.tools;
+
+import com.intsof.samples.entra.config.ShadowPolicyProperties;
+import com.intsof.samples.entra.ratelimit.RateLimitDecision;
+import com.intsof.samples.entra.service.RateLimitingService;
+import com.intsof.samples.entra.service.ShadowRateLimitingService;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Offline replay of recorded logins against candidate rate limit policies.
+ *
+ * Reads {@code logs/audit.log} as written by {@code AuditLoggingService}, takes the
+ * password login attempts from it (AUTH_SUCCESS with method PASSWORD, AUTH_FAILURE,
+ * and LOGIN_RATE_LIMIT rejections) and runs them through each policy in log time,
+ * as fast as the file can be read. An attempt counts as legitimate if the same user
+ * logs in successfully from the same IP within the legit horizon (one hour by
+ * default); everything else is counted as an attack. For each policy the report shows
+ * how many legitimate and attack attempts it would have blocked.
+ *
+ * <pre>
+ * java -cp target/ms-entra-external-id-backend.jar \
+ *      -Dloader.main=com.intsof.samples.entra.tools.AuditLogReplay \
+ *      org.springframework.boot.loader.launch.PropertiesLauncher \
+ *      logs/audit.log src/main/resources/application.properties
+ * </pre>
+ *
+ * Policies are read from {@code auth.rate-limit.shadow.policies.*} in the given
+ * properties file, plus {@code current}: the enforcing policy from
+ * {@code auth.rate-limit.*} in the same file.
+ */
+public class AuditLogReplay {
+
+    private static final DateTimeFormatter LINE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final DateTimeFormatter FIELD_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String SEPARATOR = " | ";
+    private static final long DEFAULT_LEGIT_HORIZON_MILLIS = 60 * 60 * 1000L;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: AuditLogReplay <audit.log> [policies.properties] [legit-horizon-minutes]");
+            System.exit(2);
+        }
+
+        Properties properties = new Properties();
+        if (args.length > 1) {
+            try (Reader reader = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        long horizon = args.length > 2 ? Long.parseLong(args[2]) * 60_000L : DEFAULT_LEGIT_HORIZON_MILLIS;
+
+        long started = System.nanoTime();
+        List<LoginEvent> events = readEvents(Paths.get(args[0]));
+        Map<String, ReplayResult> results = replay(events, policies(properties), horizon);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        System.out.printf("Replayed %d login attempts in %d ms%n", events.size(), elapsedMillis);
+        results.forEach((name, result) -> System.out.println(name + ": " + result));
+    }
+
+    /**
+     * The policies to replay: the enforcing one ({@code current}) and every shadow candidate
+     */
+    static Map<String, ShadowPolicyProperties.Policy> policies(Properties properties) {
+        Map<String, Object> source = new HashMap<>();
+        properties.forEach((key, value) -> source.put(String.valueOf(key), value));
+        Binder binder = new Binder(new MapConfigurationPropertySource(source));
+
+        ShadowPolicyProperties.Policy current = new ShadowPolicyProperties.Policy();
+        current.setMaxAttempts(intProperty(properties, "auth.rate-limit.max-attempts", current.getMaxAttempts()));
+        current.setWindowMinutes(intProperty(properties, "auth.rate-limit.window-minutes", current.getWindowMinutes()));
+        current.setSubnetMaxAttempts(intProperty(properties, "auth.rate-limit.subnet.max-attempts", current.getSubnetMaxAttempts()));
+        current.setDomainMaxAttempts(intProperty(properties, "auth.rate-limit.domain.max-attempts", current.getDomainMaxAttempts()));
+        current.setGlobalMaxAttempts(intProperty(properties, "auth.rate-limit.global.max-attempts", current.getGlobalMaxAttempts()));
+        current.setLockoutEnabled(Boolean.parseBoolean(properties.getProperty("auth.rate-limit.lockout.enabled", "true").trim()));
+        current.setLockoutMaxMinutes(intProperty(properties, "auth.rate-limit.lockout.max-minutes", current.getLockoutMaxMinutes()));
+        current.setLockoutDecayMinutes(intProperty(properties, "auth.rate-limit.lockout.decay-minutes", current.getLockoutDecayMinutes()));
+        String scopes = properties.getProperty("auth.rate-limit.scopes");
+        if (scopes != null) {
+            current.setScopes(List.of(scopes.trim().split("\\s*,\\s*")));
+        }
+
+        Map<String, ShadowPolicyProperties.Policy> policies = new LinkedHashMap<>();
+        policies.put("current", current);
+        binder.bind("auth.rate-limit.shadow", Bindable.ofInstance(new ShadowPolicyProperties()))
+                .ifBound(shadow -> policies.putAll(shadow.getPolicies()));
+        return policies;
+    }
+
+    /**
+     * Password login attempts from an audit log, in file order
+     */
+    static List<LoginEvent> readEvents(Path file) throws IOException {
+        List<LoginEvent> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                LoginEvent event = parse(line);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Parse one audit log line, or return null if it is not a password login attempt
+     */
+    static LoginEvent parse(String line) {
+        int start = line.indexOf(" - ");
+        int typeEnd = start < 0 ? -1 : line.indexOf(SEPARATOR, start + 3);
+        if (typeEnd < 0) return null;
+
+        String type = line.substring(start + 3, typeEnd);
+        if (!"AUTH_SUCCESS".equals(type) && !"AUTH_FAILURE".equals(type) && !"RATE_LIMIT_EXCEEDED".equals(type)) {
+            return null;
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        for (int from = typeEnd + SEPARATOR.length(); from < line.length(); ) {
+            int end = line.indexOf(SEPARATOR, from);
+            if (end < 0) end = line.length();
+            int eq = line.indexOf('=', from);
+            if (eq > from && eq < end) {
+                fields.put(line.substring(from, eq), line.substring(eq + 1, end));
+            }
+            from = end + SEPARATOR.length();
+        }
+
+        String username = fields.get("username");
+        String ip = fields.get("ip");
+        if (username == null || "null".equals(username) || ip == null) return null;
+
+        Boolean success;
+        if ("AUTH_SUCCESS".equals(type)) {
+            if (!"PASSWORD".equals(fields.get("method"))) return null;
+            success = Boolean.TRUE;
+        } else if ("AUTH_FAILURE".equals(type)) {
+            success = Boolean.FALSE;
+        } else {
+            if (!"LOGIN_RATE_LIMIT".equals(fields.get("limitType"))) return null;
+            success = null;
+        }
+
+        long time = parseTime(line.substring(0, start), LINE_TIME);
+        long eventTime = parseTime(fields.getOrDefault("timestamp", ""), FIELD_TIME);
+        // The line time is more precise, unless the line was written after the second the event happened in
+        if (eventTime >= 0 && (time < eventTime || time - eventTime >= 1000)) {
+            time = eventTime;
+        }
+        return time < 0 ? null : new LoginEvent(time, ip, username, success);
+    }
+
+    /**
+     * Run the events through every policy and count blocked legitimate and attack attempts
+     */
+    static Map<String, ReplayResult> replay(List<LoginEvent> events, Map<String, ShadowPolicyProperties.Policy> policies,
+                                            long legitHorizonMillis) {
+        List<LoginEvent> ordered = new ArrayList<>(events);
+        ordered.sort((a, b) -> Long.compare(a.time, b.time));
+        boolean[] legit = classify(ordered, legitHorizonMillis);
+
+        Map<String, ReplayResult> results = new LinkedHashMap<>();
+        policies.forEach((name, settings) -> {
+            RateLimitingService policy = ShadowRateLimitingService.createPolicy(settings);
+            try {
+                ReplayResult result = new ReplayResult();
+                for (int i = 0; i < ordered.size(); i++) {
+                    LoginEvent event = ordered.get(i);
+                    RateLimitDecision decision = ShadowRateLimitingService.simulate(
+                            policy, event.ip, event.username, event.success, event.time);
+                    result.count(legit[i], !decision.isAllowed());
+                }
+                results.put(name, result);
+            } finally {
+                policy.shutdown();
+            }
+        });
+        return results;
+    }
+
+    /**
+     * An attempt is legitimate if the same user logs in successfully from the same IP within the horizon
+     */
+    private static boolean[] classify(List<LoginEvent> ordered, long horizonMillis) {
+        boolean[] legit = new boolean[ordered.size()];
+        Map<String, Long> nextSuccess = new HashMap<>();
+        for (int i = ordered.size() - 1; i >= 0; i--) {
+            LoginEvent event = ordered.get(i);
+            String pair = event.username.toLowerCase() + '\n' + event.ip;
+            if (Boolean.TRUE.equals(event.success)) {
+                nextSuccess.put(pair, event.time);
+                legit[i] = true;
+            } else {
+                Long success = nextSuccess.get(pair);
+                legit[i] = success != null && success - event.time <= horizonMillis;
+            }
+        }
+        return legit;
+    }
+
+    private static int intProperty(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static long parseTime(String text, DateTimeFormatter format) {
+        try {
+            return LocalDateTime.parse(text.trim(), format).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * One password login attempt from the audit log
+     */
+    static final class LoginEvent {
+        final long time;
+        final String ip;
+        final String username;
+        // null for attempts rejected by the rate limiter, whose outcome is unknown
+        final Boolean success;
+
+        LoginEvent(long time, String ip, String username, Boolean success) {
+            this.time = time;
+            this.ip = ip;
+            this.username = username;
+            this.success = success;
+        }
+    }
+
+    /**
+     * Blocked legitimate and attack attempts for one policy
+     */
+    static final class ReplayResult {
+        long legitAttempts;
+        long attackAttempts;
+        long blockedLegit;
+        long blockedAttack;
+
+        void count(boolean legit, boolean blocked) {
+            if (legit) {
+                legitAttempts++;
+                if (blocked) blockedLegit++;
+            } else {
+                attackAttempts++;
+                if (blocked) blockedAttack++;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("blocked legit %d/%d (%.1f%%), blocked attack %d/%d (%.1f%%)",
+                    blockedLegit, legitAttempts, percent(blockedLegit, legitAttempts),
+                    blockedAttack, attackAttempts, percent(blockedAttack, attackAttempts));
+        }
+
+        private static double percent(long part, long total) {
+            return total == 0 ? 0 : 100.0 * part / total;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.intsof.samples.entra.audit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AuditEventRing
+ */
+class AuditEventRingTest {
+
+    @Test
+    void testDrainsInOrderAndClearsSlots() {
+        AuditEventRing ring = new AuditEventRing(4);
+        assertTrue(ring.offer(AuditEventType.INVALID_TOKEN, "192.0.2.1", "/api/a", null, 0, 0));
+        assertTrue(ring.offer(AuditEventType.ROUTE_RATE_LIMITED, "192.0.2.2", "/api/b", "IP", 7, 1_000L));
+        assertEquals(2, ring.size());
+
+        List<String> seen = new ArrayList<>();
+        List<AuditEvent> slots = new ArrayList<>();
+        assertEquals(2, ring.drain(event -> {
+            seen.add(event.getType() + " " + event.getIpAddress() + " " + event.getPath() + " " + event.getDetail() + " "
+                    + event.getWaitTime() + " " + event.getTimestamp());
+            slots.add(event);
+        }, 10));
+        assertEquals(List.of("INVALID_TOKEN 192.0.2.1 /api/a null 0 0", "ROUTE_RATE_LIMITED 192.0.2.2 /api/b IP 7 1000"), seen);
+        assertEquals(0, ring.size());
+        assertEquals(0, ring.drain(event -> fail("ring should be empty"), 10));
+
+        // Slots are reused and must not keep request data alive
+        assertNull(slots.get(1).getPath());
+    }
+
+    @Test
+    void testRejectsWhenFullUntilDrained() {
+        AuditEventRing ring = new AuditEventRing(3);
+        assertEquals(4, ring.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(AuditEventType.MISSING_AUTHORIZATION, "ip" + i, "/p", null, 0, 0));
+        }
+        assertFalse(ring.offer(AuditEventType.MISSING_AUTHORIZATION, "ip4", "/p", null, 0, 0));
+
+        assertEquals(1, ring.drain(event -> assertEquals("ip0", event.getIpAddress()), 1));
+        assertTrue(ring.offer(AuditEventType.MISSING_AUTHORIZATION, "ip5", "/p", null, 0, 0));
+
+        List<String> rest = new ArrayList<>();
+        ring.drain(event -> rest.add(event.getIpAddress()), 10);
+        assertEquals(List.of("ip1", "ip2", "ip3", "ip5"), rest);
+        assertEquals(5, ring.published());
+    }
+
+    @Test
+    void testConcurrentProducersLoseNothingThatWasAccepted() throws Exception {
+        AuditEventRing ring = new AuditEventRing(1024);
+        int producers = 4;
+        int perProducer = 20_000;
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            String ip = "producer-" + p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    if (ring.offer(AuditEventType.INVALID_TOKEN, ip, null, null, i, 0)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // Per producer, events come out in the order they went in
+        long[] last = new long[producers];
+        java.util.Arrays.fill(last, -1);
+        Set<String> errors = new HashSet<>();
+        int[] consumed = new int[1];
+        start.countDown();
+        while (threads.stream().anyMatch(Thread::isAlive) || ring.size() > 0) {
+            consumed[0] += ring.drain(event -> {
+                int p = event.getIpAddress().charAt(event.getIpAddress().length() - 1) - '0';
+                if (event.getWaitTime() <= last[p]) {
+                    errors.add("out of order for producer " + p);
+                }
+                last[p] = event.getWaitTime();
+            }, 512);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        consumed[0] += ring.drain(event -> { }, Integer.MAX_VALUE);
+
+        assertTrue(errors.isEmpty(), errors.toString());
+        assertEquals(accepted.get(), consumed[0]);
+        assertEquals(accepted.get(), ring.published());
+    }
+}
@@ -0,0 +1,65 @@
+package com.intsof.samples.entra.benchmark;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * How login attempts are spread over client keys in benchmarks and accuracy runs
+ */
+public enum KeyDistribution {
+
+    /** Every attempt from the same IP and user */
+    HOT,
+
+    /** A few keys get most attempts (Zipf, s = 1.1), like real traffic plus a handful of attackers */
+    ZIPF,
+
+    /** Every key equally likely, like a spray from many addresses */
+    UNIFORM;
+
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    /**
+     * Pre-draw {@code length} key indexes in {@code [0, keys)}, so sampling costs nothing while measuring
+     */
+    public int[] sample(int keys, int length, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] indexes = new int[length];
+        switch (this) {
+            case HOT:
+                break;
+            case UNIFORM:
+                for (int i = 0; i < length; i++) {
+                    indexes[i] = random.nextInt(keys);
+                }
+                break;
+            case ZIPF:
+                double[] cumulative = new double[keys];
+                double sum = 0;
+                for (int k = 0; k < keys; k++) {
+                    sum += 1.0 / Math.pow(k + 1, ZIPF_EXPONENT);
+                    cumulative[k] = sum;
+                }
+                for (int i = 0; i < length; i++) {
+                    int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                    indexes[i] = Math.min(keys - 1, index >= 0 ? index : -index - 1);
+                }
+                break;
+        }
+        return indexes;
+    }
+
+    /**
+     * Client IP of key {@code index}
+     */
+    public static String ip(int index) {
+        return "10." + ((index >>> 16) & 0xff) + "." + ((index >>> 8) & 0xff) + "." + (index & 0xff);
+    }
+
+    /**
+     * Username of key {@code index}
+     */
+    public static String username(int index) {
+        return "user" + index + "@example.com";
+    }
+}
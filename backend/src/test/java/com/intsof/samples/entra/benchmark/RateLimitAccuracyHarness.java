@@ -0,0 +1,157 @@
+package com.intsof.samples.entra.benchmark;
+
+import com.intsof.samples.entra.config.ShadowPolicyProperties;
+import com.intsof.samples.entra.service.RateLimitingService;
+import com.intsof.samples.entra.service.ShadowRateLimitingService;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Measures how many failed logins a {@link RateLimitingService} actually lets through
+ * per window under concurrency, compared with the configured limit.
+ *
+ * Each simulated window starts a full window after the previous one, so every key
+ * has its whole budget back. All threads then hammer keys drawn from a
+ * {@link KeyDistribution} with the clock frozen at the window start: every attempt
+ * is reserved with {@code acquire} and, if allowed, kept as a failure, exactly as the
+ * login path does.
+ * Per key and window, anything above the limit is overshoot, and anything below
+ * {@code min(attempts, limit)} is a wrongly rejected attempt.
+ *
+ * Run with {@code main} for larger sweeps; {@code RateLimitAccuracyTest} runs a small one.
+ */
+public final class RateLimitAccuracyHarness {
+
+    private RateLimitAccuracyHarness() {
+    }
+
+    /**
+     * A policy with the progressive lockout switched off, so every window starts from a full budget
+     */
+    public static RateLimitingService policy(int maxAttempts, int windowMinutes) {
+        ShadowPolicyProperties.Policy policy = new ShadowPolicyProperties.Policy();
+        policy.setMaxAttempts(maxAttempts);
+        policy.setWindowMinutes(windowMinutes);
+        policy.setLockoutEnabled(false);
+        return ShadowRateLimitingService.createPolicy(policy);
+    }
+
+    public static Result run(RateLimitingService service, int limit, long windowMillis, KeyDistribution distribution,
+                             int keys, int threads, int attemptsPerThread, int windows) throws Exception {
+        String[] ips = new String[keys];
+        String[] usernames = new String[keys];
+        for (int k = 0; k < keys; k++) {
+            ips[k] = KeyDistribution.ip(k);
+            usernames[k] = KeyDistribution.username(k);
+        }
+        int[][] samples = new int[threads][];
+        for (int t = 0; t < threads; t++) {
+            samples[t] = distribution.sample(keys, attemptsPerThread, 31L * t + 7);
+        }
+
+        Result result = new Result(limit);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = 1_000_000_000_000L;
+            for (int w = 0; w < windows; w++) {
+                long now = start + w * windowMillis;
+                AtomicIntegerArray attempted = new AtomicIntegerArray(keys);
+                AtomicIntegerArray allowed = new AtomicIntegerArray(keys);
+                CountDownLatch go = new CountDownLatch(1);
+                Future<?>[] futures = new Future<?>[threads];
+                for (int t = 0; t < threads; t++) {
+                    int[] sample = samples[t];
+                    futures[t] = executor.submit(() -> {
+                        go.await();
+                        for (int key : sample) {
+                            attempted.incrementAndGet(key);
+                            if (service.acquire(ips[key], usernames[key], now).isAllowed()) {
+                                allowed.incrementAndGet(key);
+                                service.confirmFailedAttempt(ips[key], usernames[key], now);
+                            }
+                        }
+                        return null;
+                    });
+                }
+                go.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                result.addWindow(attempted, allowed);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int limit = 5;
+        int[] threadCounts = {1, 4, 16, 64};
+        for (KeyDistribution distribution : KeyDistribution.values()) {
+            for (int threads : threadCounts) {
+                RateLimitingService service = policy(limit, 1);
+                try {
+                    Result result = run(service, limit, 60_000L, distribution, 10_000, threads, 20_000, 5);
+                    System.out.printf("%-8s threads=%-3d %s%n", distribution, threads, result);
+                } finally {
+                    service.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Accuracy counters over all keys and windows
+     */
+    public static final class Result {
+        private final int limit;
+        private long allowed;
+        private long overshoot;
+        private long wronglyRejected;
+        private int maxAllowedPerWindow;
+        private long keyWindows;
+
+        Result(int limit) {
+            this.limit = limit;
+        }
+
+        void addWindow(AtomicIntegerArray attempted, AtomicIntegerArray allowedPerKey) {
+            for (int k = 0; k < attempted.length(); k++) {
+                int tries = attempted.get(k);
+                if (tries == 0) continue;
+                int passed = allowedPerKey.get(k);
+                keyWindows++;
+                allowed += passed;
+                overshoot += Math.max(0, passed - limit);
+                wronglyRejected += Math.max(0, Math.min(tries, limit) - passed);
+                maxAllowedPerWindow = Math.max(maxAllowedPerWindow, passed);
+            }
+        }
+
+        public long getAllowed() { return allowed; }
+        /** Attempts let through beyond the limit, summed over keys and windows */
+        public long getOvershoot() { return overshoot; }
+        /** Attempts rejected although the key was still within its limit */
+        public long getWronglyRejected() { return wronglyRejected; }
+        /** Most attempts any key got through in one window */
+        public int getMaxAllowedPerWindow() { return maxAllowedPerWindow; }
+        public long getKeyWindows() { return keyWindows; }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "limit=" + limit +
+                    ", keyWindows=" + keyWindows +
+                    ", allowed=" + allowed +
+                    ", overshoot=" + overshoot +
+                    ", wronglyRejected=" + wronglyRejected +
+                    ", maxAllowedPerWindow=" + maxAllowedPerWindow +
+                    '}';
+        }
+    }
+}
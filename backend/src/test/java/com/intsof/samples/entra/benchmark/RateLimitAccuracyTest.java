@@ -0,0 +1,51 @@
+package com.intsof.samples.entra.benchmark;
+
+import com.intsof.samples.entra.benchmark.RateLimitAccuracyHarness.Result;
+import com.intsof.samples.entra.service.RateLimitingService;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Small accuracy runs of RateLimitAccuracyHarness
+ */
+class RateLimitAccuracyTest {
+
+    private static final int LIMIT = 5;
+    private static final int THREADS = 8;
+
+    @Test
+    void testHotKeyNeverOvershoots() throws Exception {
+        Result result = run(KeyDistribution.HOT, 1, 2_000);
+
+        // Attempts are reserved atomically before the password check
+        assertTrue(result.getMaxAllowedPerWindow() <= LIMIT, result.toString());
+        assertEquals(0, result.getWronglyRejected(), result.toString());
+    }
+
+    @Test
+    void testZipfKeysStayWithinLimit() throws Exception {
+        Result result = run(KeyDistribution.ZIPF, 2_000, 2_000);
+
+        assertTrue(result.getMaxAllowedPerWindow() <= LIMIT, result.toString());
+        // Cold keys are counted in a shared sketch, whose collisions may reject a handful early
+        assertTrue(result.getWronglyRejected() <= result.getAllowed() / 100, result.toString());
+    }
+
+    @Test
+    void testUniformKeysStayWithinLimit() throws Exception {
+        Result result = run(KeyDistribution.UNIFORM, 500, 2_000);
+
+        assertTrue(result.getMaxAllowedPerWindow() <= LIMIT, result.toString());
+        assertTrue(result.getWronglyRejected() <= result.getAllowed() / 100, result.toString());
+    }
+
+    private static Result run(KeyDistribution distribution, int keys, int attemptsPerThread) throws Exception {
+        RateLimitingService service = RateLimitAccuracyHarness.policy(LIMIT, 1);
+        try {
+            return RateLimitAccuracyHarness.run(service, LIMIT, 60_000L, distribution, keys, THREADS, attemptsPerThread, 3);
+        } finally {
+            service.shutdown();
+        }
+    }
+}
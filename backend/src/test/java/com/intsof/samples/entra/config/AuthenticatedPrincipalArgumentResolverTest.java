@@ -0,0 +1,47 @@
+package com.intsof.samples.entra.config;
+
+import com.intsof.samples.entra.model.AuthenticatedPrincipal;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AuthenticatedPrincipalArgumentResolverTest {
+
+    @RestController
+    static class WhoAmIController {
+        @GetMapping("/api/whoami")
+        ResponseEntity<String> whoAmI(AuthenticatedPrincipal principal) {
+            return ResponseEntity.ok(principal == null ? "anonymous" : principal.getSubject() + " " + principal.getRoles());
+        }
+    }
+
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new WhoAmIController())
+            .setCustomArgumentResolvers(new AuthenticatedPrincipalArgumentResolver())
+            .build();
+
+    @Test
+    void testResolvesPrincipalSetByFilter() throws Exception {
+        AuthenticatedPrincipal principal = new AuthenticatedPrincipal("alice", List.of("USER"), "jti-1", Instant.now().plusSeconds(60));
+
+        mockMvc.perform(get("/api/whoami").requestAttr(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, principal))
+                .andExpect(status().isOk())
+                .andExpect(content().string("alice [USER]"));
+    }
+
+    @Test
+    void testResolvesNullWithoutPrincipal() throws Exception {
+        mockMvc.perform(get("/api/whoami"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("anonymous"));
+    }
+}
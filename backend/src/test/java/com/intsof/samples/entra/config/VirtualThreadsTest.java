@@ -0,0 +1,31 @@
+package com.intsof.samples.entra.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadsTest {
+
+    @Test
+    void testPlatformFactoryWhenNotRequested() {
+        ThreadFactory platform = Executors.defaultThreadFactory();
+        assertSame(platform, VirtualThreads.threadFactory(false, "test-", platform));
+    }
+
+    @Test
+    void testVirtualFactoryWhenSupported() throws Exception {
+        ThreadFactory platform = Executors.defaultThreadFactory();
+        ThreadFactory factory = VirtualThreads.threadFactory(true, "test-", platform);
+        if (!VirtualThreads.isSupported()) {
+            assertSame(platform, factory);
+            return;
+        }
+
+        Thread thread = factory.newThread(() -> { });
+        assertEquals("test-0", thread.getName());
+        assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(thread));
+    }
+}
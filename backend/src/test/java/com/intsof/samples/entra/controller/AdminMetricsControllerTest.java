@@ -0,0 +1,53 @@
+package com.intsof.samples.entra.controller;
+
+import com.intsof.samples.entra.model.AuthenticatedPrincipal;
+import com.intsof.samples.entra.service.AuditEventQueue;
+import com.intsof.samples.entra.service.FilterMetricsService;
+import com.intsof.samples.entra.service.LoadSheddingService;
+import com.intsof.samples.entra.service.VirtualThreadPinningMonitor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AdminMetricsController
+ */
+class AdminMetricsControllerTest {
+
+    private VirtualThreadPinningMonitor pinningMonitor;
+    private AdminMetricsController controller;
+
+    @BeforeEach
+    void setUp() {
+        pinningMonitor = new VirtualThreadPinningMonitor();
+        controller = new AdminMetricsController(mock(FilterMetricsService.class), mock(LoadSheddingService.class),
+                mock(AuditEventQueue.class), pinningMonitor);
+    }
+
+    @Test
+    void testVirtualThreadStatsRequireAdmin() {
+        assertEquals(HttpStatus.FORBIDDEN, controller.getVirtualThreadStats(null).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, controller.getVirtualThreadStats(principal("USER")).getStatusCode());
+    }
+
+    @Test
+    void testVirtualThreadStatsForAdmin() {
+        ResponseEntity<?> response = controller.getVirtualThreadStats(principal("ADMIN"));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        VirtualThreadPinningMonitor.PinningStats stats = (VirtualThreadPinningMonitor.PinningStats) response.getBody();
+        assertEquals(0, stats.getPinnedCount());
+        // Not started: virtual threads are off
+        assertFalse(stats.isActive());
+    }
+
+    private static AuthenticatedPrincipal principal(String role) {
+        return new AuthenticatedPrincipal("admin@example.com", List.of(role), "token-1", Instant.now().plusSeconds(60));
+    }
+}
@@ -0,0 +1,71 @@
+package com.intsof.samples.entra.controller;
+
+import com.intsof.samples.security.AuthenticationResult;
+import com.intsof.samples.security.EntraExternalIdSSOProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the asynchronous OAuth callback of EntraAuthController
+ */
+class EntraAuthControllerTest {
+
+    private EntraAuthController controller;
+    private EntraExternalIdSSOProvider entraProvider;
+
+    @BeforeEach
+    void setUp() {
+        entraProvider = mock(EntraExternalIdSSOProvider.class);
+        controller = new EntraAuthController();
+        ReflectionTestUtils.setField(controller, "entraProvider", entraProvider);
+        ReflectionTestUtils.setField(controller, "redirectUri", "http://localhost/callback");
+        ReflectionTestUtils.setField(controller, "callbackTimeoutMillis", 200L);
+    }
+
+    @Test
+    void testCallbackAnswersWhenExchangeCompletes() throws Exception {
+        CompletableFuture<AuthenticationResult> exchange = new CompletableFuture<>();
+        when(entraProvider.authenticateWithAuthorizationCodeAsync(anyString(), anyString())).thenReturn(exchange);
+
+        CompletableFuture<ResponseEntity<?>> response = controller.handleOAuthCallback("code-1", "state-1", "session-1");
+        assertFalse(response.isDone());
+
+        exchange.complete(new AuthenticationResult(true, "user@example.com", "Authentication successful",
+                "access", "access", 0, List.of("USER")));
+        ResponseEntity<?> redirect = response.get(1, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.FOUND, redirect.getStatusCode());
+        assertEquals("code=code-1&state=state-1&session_state=session-1&userid=user@example.com&error=",
+                redirect.getHeaders().getLocation().getQuery());
+    }
+
+    @Test
+    void testCallbackRedirectsWithProviderError() throws Exception {
+        when(entraProvider.authenticateWithAuthorizationCodeAsync(anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(new AuthenticationResult(false, null, "invalid_grant")));
+
+        ResponseEntity<?> redirect = controller.handleOAuthCallback("code-1", "state-1", "session-1").get(1, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.FOUND, redirect.getStatusCode());
+        assertTrue(redirect.getHeaders().getLocation().getQuery().endsWith("&userid=&error=invalid_grant"));
+    }
+
+    @Test
+    void testCallbackTimesOut() throws Exception {
+        when(entraProvider.authenticateWithAuthorizationCodeAsync(anyString(), anyString()))
+                .thenReturn(new CompletableFuture<>());
+
+        ResponseEntity<?> redirect = controller.handleOAuthCallback("code-1", "state-1", "session-1").get(5, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.FOUND, redirect.getStatusCode());
+        assertTrue(redirect.getHeaders().getLocation().getQuery().endsWith("&error=OAuth callback timed out"));
+    }
+}
@@ -1,9 +1,20 @@
 package com.intsof.samples.entra.filter;
 
+import com.intsof.samples.entra.config.RateLimitRouteProperties;
+import com.intsof.samples.entra.config.ShadowPolicyProperties;
+import com.intsof.samples.entra.model.AuthenticatedPrincipal;
+import com.intsof.samples.entra.service.ConcurrencyLimitingService;
+import com.intsof.samples.entra.service.CredentialStuffingDetector;
+import com.intsof.samples.entra.service.FilterMetricsService;
 import com.intsof.samples.entra.service.JwtService;
 import com.intsof.samples.entra.service.RateLimitingService;
 import com.intsof.samples.entra.service.AuditLoggingService;
+import com.intsof.samples.entra.service.AuthExecutorService;
+import com.intsof.samples.entra.service.RouteRateLimitingService;
+import com.intsof.samples.entra.service.ShadowRateLimitingService;
 import com.intsof.samples.entra.service.TokenBlacklistService;
+import com.intsof.samples.security.AuthenticationResult;
+import com.intsof.samples.security.SecurityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockHttpServletRequest;
@@ -14,9 +25,13 @@ import org.springframework.test.util.ReflectionTestUtils;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
 
 public class AuthenticationFilterTest {
     private AuthenticationFilter filter;
@@ -62,6 +77,30 @@ public class AuthenticationFilterTest {
         
         // Since we have a real valid token, the filter should pass through
         assertEquals(200, response.getStatus());
+        
+        // The decoded identity travels with the request
+        AuthenticatedPrincipal principal = (AuthenticatedPrincipal) request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
+        assertNotNull(principal);
+        assertEquals("testuser", principal.getSubject());
+        assertEquals(List.of("USER"), principal.getRoles());
+    }
+
+    @Test
+    public void testDoFilterReusesPrincipalFromLoadShedding() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        AuthenticatedPrincipal principal = new AuthenticatedPrincipal("testuser", List.of("USER"), null,
+                Instant.now().plusSeconds(60));
+        request.setAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, principal);
+        // Not verified again: the load shedding filter already authenticated this request
+        request.addHeader("Authorization", "Bearer not-checked-twice");
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(200, response.getStatus());
+        assertNotNull(chain.getRequest());
+        assertSame(principal, request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE));
     }
 
     @Test
@@ -87,6 +126,22 @@ public class AuthenticationFilterTest {
         assertEquals(401, response.getStatus());
     }
 
+    @Test
+    public void testLatencyIsRecordedPerRouteAndOutcome() throws ServletException, IOException {
+        FilterMetricsService metrics = new FilterMetricsService();
+        ReflectionTestUtils.setField(filter, "filterMetricsService", metrics);
+
+        MockHttpServletRequest valid = new MockHttpServletRequest();
+        valid.addHeader("Authorization", "Bearer " + jwtService.generateToken("testuser", List.of("USER"), null));
+        filter.doFilter(valid, new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(new MockHttpServletRequest("POST", "/auth/check-method"), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals(1, metrics.getStats().get("PROTECTED").get("PASSED").getCount());
+        assertEquals(1, metrics.getStats().get("PROTECTED").get("UNAUTHORIZED").getCount());
+        assertEquals(1, metrics.getStats().get("PUBLIC").get("PASSED").getCount());
+    }
+
     @Test
     public void testLoginEndpointGeneratesJwtToken() throws Exception {
         MockHttpServletRequest request = new MockHttpServletRequest();
@@ -123,4 +178,263 @@ public class AuthenticationFilterTest {
         String responseBody = response.getContentAsString();
         assertTrue(responseBody.contains("accessToken"));
     }
+
+    @Test
+    public void testRouteRateLimitRejectsBeforeRefreshIsProcessed() throws Exception {
+        RateLimitRouteProperties.Route route = new RateLimitRouteProperties.Route();
+        route.setPath("/refresh");
+        route.setMethod("POST");
+        route.setRate(1);
+        route.setBurst(2);
+        RateLimitRouteProperties properties = new RateLimitRouteProperties();
+        properties.getRoutes().put("refresh", route);
+        RouteRateLimitingService routeRateLimitingService = new RouteRateLimitingService(properties, true, 100, false);
+        ReflectionTestUtils.setField(filter, "routeRateLimitingService", routeRateLimitingService);
+
+        try {
+            for (int i = 0; i < 2; i++) {
+                MockHttpServletRequest request = new MockHttpServletRequest("POST", "/refresh");
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                filter.doFilter(request, response, new MockFilterChain());
+                assertEquals(401, response.getStatus());
+                assertEquals("2", response.getHeader("RateLimit-Limit"));
+                assertEquals(String.valueOf(1 - i), response.getHeader("RateLimit-Remaining"));
+            }
+
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/refresh");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+
+            assertEquals(429, response.getStatus());
+            assertEquals("0", response.getHeader("RateLimit-Remaining"));
+            assertNotNull(response.getHeader("Retry-After"));
+            assertTrue(Long.parseLong(response.getHeader("Retry-After")) > 0);
+            assertTrue(response.getContentAsString().contains("retryAfter"));
+        } finally {
+            routeRateLimitingService.shutdown();
+        }
+    }
+
+    @Test
+    public void testLoginShedWhenPasswordChecksAreSaturated() throws Exception {
+        ConcurrencyLimitingService concurrencyLimitingService = new ConcurrencyLimitingService(true, 2, 1, 10, 2.0, 10);
+        ReflectionTestUtils.setField(filter, "concurrencyLimitingService", concurrencyLimitingService);
+
+        // Two password checks already in progress
+        assertTrue(concurrencyLimitingService.tryAcquire());
+        assertTrue(concurrencyLimitingService.tryAcquire());
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        request.addHeader("X-Email", "user@example.com");
+        request.addHeader("X-Password", "secret");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("retryAfter"));
+        assertEquals(1, concurrencyLimitingService.getStats().getRejected());
+        // A shed login is not a failed attempt
+        assertEquals(5, rateLimitingService.getRemainingAttempts("127.0.0.1"));
+    }
+
+    @Test
+    public void testLoginRejectedForBlockedStuffingSource() throws Exception {
+        CredentialStuffingDetector detector = new CredentialStuffingDetector(auditLoggingService, true, 10, 3, 100, 30, 1440, true, 100, false);
+        ReflectionTestUtils.setField(filter, "credentialStuffingDetector", detector);
+
+        try {
+            for (int i = 0; i < 3; i++) {
+                detector.recordFailure("127.0.0.1", "user" + i + "@example.com");
+            }
+
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+            request.addHeader("X-Email", "next@example.com");
+            request.addHeader("X-Password", "secret");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+
+            assertEquals(429, response.getStatus());
+            assertTrue(Long.parseLong(response.getHeader("Retry-After")) > 0);
+        } finally {
+            detector.shutdown();
+        }
+    }
+
+    @Test
+    public void testShadowPoliciesSeeLoginsBlockedForStuffing() throws Exception {
+        CredentialStuffingDetector detector = new CredentialStuffingDetector(auditLoggingService, true, 10, 3, 100, 30, 1440, true, 100, false);
+        ShadowPolicyProperties properties = new ShadowPolicyProperties();
+        properties.getPolicies().put("lenient", new ShadowPolicyProperties.Policy());
+        ShadowRateLimitingService shadow = new ShadowRateLimitingService(properties, auditLoggingService);
+        ReflectionTestUtils.setField(filter, "credentialStuffingDetector", detector);
+        ReflectionTestUtils.setField(filter, "shadowRateLimitingService", shadow);
+
+        try {
+            for (int i = 0; i < 3; i++) {
+                detector.recordFailure("127.0.0.1", "user" + i + "@example.com");
+            }
+
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+            request.addHeader("X-Email", "next@example.com");
+            request.addHeader("X-Password", "secret");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+
+            assertEquals(429, response.getStatus());
+            ShadowRateLimitingService.ShadowPolicyStats stats = shadow.getStats().get("lenient");
+            assertEquals(1, stats.getAttempts());
+            assertEquals(1, stats.getExtraAllows());
+        } finally {
+            detector.shutdown();
+            shadow.shutdown();
+        }
+    }
+
+    @Test
+    public void testRefreshCompletesAsynchronouslyOnAuthExecutor() throws Exception {
+        AuthExecutorService authExecutorService = new AuthExecutorService(true, 1, 1, 5000, false);
+        ReflectionTestUtils.setField(filter, "authExecutorService", authExecutorService);
+
+        try {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/refresh");
+            request.setAsyncSupported(true);
+            request.addHeader("X-Refresh-Token", jwtService.generateRefreshToken("testuser"));
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+
+            assertTrue(awaitAsyncCompletion(request));
+            assertEquals(200, response.getStatus());
+            assertTrue(response.getContentAsString().contains("accessToken"));
+        } finally {
+            authExecutorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testRefreshShedWhenAuthExecutorIsFullOrTimesOut() throws Exception {
+        AuthExecutorService authExecutorService = new AuthExecutorService(true, 1, 1, 100, false);
+        ReflectionTestUtils.setField(filter, "authExecutorService", authExecutorService);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            // Occupy the only worker
+            authExecutorService.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            // Takes the only queue slot
+            MockHttpServletRequest queued = new MockHttpServletRequest("POST", "/refresh");
+            queued.setAsyncSupported(true);
+            MockHttpServletResponse queuedResponse = new MockHttpServletResponse();
+            filter.doFilter(queued, queuedResponse, new MockFilterChain());
+            assertTrue(queued.isAsyncStarted());
+
+            // Nothing left
+            MockHttpServletRequest rejected = new MockHttpServletRequest("POST", "/refresh");
+            rejected.setAsyncSupported(true);
+            MockHttpServletResponse rejectedResponse = new MockHttpServletResponse();
+            filter.doFilter(rejected, rejectedResponse, new MockFilterChain());
+            assertEquals(503, rejectedResponse.getStatus());
+            assertEquals("1", rejectedResponse.getHeader("Retry-After"));
+            assertEquals(1, authExecutorService.getStats().getRejected());
+
+            // The queued request times out before a worker picks it up
+            assertTrue(awaitAsyncCompletion(queued));
+            assertEquals(503, queuedResponse.getStatus());
+            assertTrue(queuedResponse.getContentAsString().contains("retryAfter"));
+            assertEquals(1, authExecutorService.getStats().getTimedOut());
+
+            // The worker skips the abandoned request
+            release.countDown();
+            authExecutorService.shutdown();
+            Thread.sleep(50);
+            assertEquals(503, queuedResponse.getStatus());
+        } finally {
+            release.countDown();
+            authExecutorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testShutdownAnswersQueuedRequests() throws Exception {
+        AuthExecutorService authExecutorService = new AuthExecutorService(true, 1, 1, 60_000, false);
+        ReflectionTestUtils.setField(filter, "authExecutorService", authExecutorService);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            // Occupy the only worker until shortly after shutdown starts
+            authExecutorService.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            MockHttpServletRequest queued = new MockHttpServletRequest("POST", "/refresh");
+            queued.setAsyncSupported(true);
+            MockHttpServletResponse queuedResponse = new MockHttpServletResponse();
+            filter.doFilter(queued, queuedResponse, new MockFilterChain());
+            assertTrue(queued.isAsyncStarted());
+
+            new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                release.countDown();
+            }).start();
+            authExecutorService.shutdown();
+
+            // Answered without waiting out the minute-long queue timeout
+            assertFalse(queued.isAsyncStarted());
+            assertEquals(503, queuedResponse.getStatus());
+            assertEquals("1", queuedResponse.getHeader("Retry-After"));
+        } finally {
+            release.countDown();
+            authExecutorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testLoginRunningPastQueueTimeoutKeepsItsResponse() throws Exception {
+        AuthExecutorService authExecutorService = new AuthExecutorService(true, 1, 1, 50, false);
+        SecurityManager securityManager = mock(SecurityManager.class);
+        when(securityManager.authenticate(anyString(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return new AuthenticationResult(false, null, "Invalid credentials");
+        });
+        ReflectionTestUtils.setField(filter, "authExecutorService", authExecutorService);
+        ReflectionTestUtils.setField(filter, "securityManager", securityManager);
+
+        try {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+            request.setAsyncSupported(true);
+            request.addHeader("X-Email", "slow@example.com");
+            request.addHeader("X-Password", "secret");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+
+            // The container never times the request out; only the wait in the queue is bounded
+            assertTrue(request.getAsyncContext().getTimeout() <= 0);
+            assertTrue(awaitAsyncCompletion(request));
+            assertEquals(401, response.getStatus());
+            assertEquals(0, authExecutorService.getStats().getTimedOut());
+        } finally {
+            authExecutorService.shutdown();
+        }
+    }
+
+    private static boolean awaitAsyncCompletion(MockHttpServletRequest request) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (request.isAsyncStarted() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        return !request.isAsyncStarted();
+    }
 }
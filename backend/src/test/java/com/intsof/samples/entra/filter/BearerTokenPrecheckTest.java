@@ -0,0 +1,53 @@
+package com.intsof.samples.entra.filter;
+
+import com.intsof.samples.entra.filter.BearerTokenPrecheck.Result;
+import com.intsof.samples.entra.service.JwtService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BearerTokenPrecheck
+ */
+class BearerTokenPrecheckTest {
+
+    private static final String HEADER = JwtService.ENCODED_HEADER;
+
+    private final BearerTokenPrecheck precheck = new BearerTokenPrecheck(HEADER, 256);
+
+    @Test
+    void testIssuedTokensPass() {
+        JwtService jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secret", "0123456789abcdef0123456789abcdef");
+        ReflectionTestUtils.setField(jwtService, "expiration", 3600000L);
+        ReflectionTestUtils.setField(jwtService, "issuer", "test");
+        String token = jwtService.generateToken("testuser", List.of("USER"), null);
+
+        assertEquals(Result.VALID, BearerTokenPrecheck.defaults().check("Bearer " + token, 7));
+        assertEquals(0, BearerTokenPrecheck.defaults().getStats().getRejected());
+    }
+
+    @Test
+    void testMalformedTokensAreRejectedByReason() {
+        assertEquals(Result.VALID, precheck.check(HEADER + ".e30.c2ln", 0));
+        assertEquals(Result.TOO_SHORT, precheck.check("invalid.jwt.token", 0));
+        assertEquals(Result.TOO_LONG, precheck.check(HEADER + "." + "a".repeat(300) + ".c2ln", 0));
+        assertEquals(Result.SEGMENT_COUNT, precheck.check(HEADER + ".e30c2lnbmF0dXJl", 0));
+        assertEquals(Result.SEGMENT_COUNT, precheck.check(HEADER + ".e30.c2ln.eHh4", 0));
+        assertEquals(Result.EMPTY_SEGMENT, precheck.check(HEADER + "..c2lnbmF0dXJl", 0));
+        assertEquals(Result.EMPTY_SEGMENT, precheck.check(HEADER + ".e30c2lnbmF0.", 0));
+        assertEquals(Result.INVALID_CHARACTER, precheck.check(HEADER + ".e30=.c2ln", 0));
+        assertEquals(Result.INVALID_CHARACTER, precheck.check(HEADER + ".e30.c2lé", 0));
+        assertEquals(Result.UNEXPECTED_HEADER, precheck.check("eyJhbGciOiJub25lIn0.e30.c2lnbmF0dXJl", 0));
+        assertEquals(Result.UNEXPECTED_HEADER, precheck.check(HEADER + "x.e30.c2ln", 0));
+
+        BearerTokenPrecheck.PrecheckStats stats = precheck.getStats();
+        assertEquals(10, stats.getRejected());
+        assertEquals(2, stats.getRejectedByReason().get("SEGMENT_COUNT"));
+        assertEquals(2, stats.getRejectedByReason().get("UNEXPECTED_HEADER"));
+        assertFalse(stats.getRejectedByReason().containsKey("VALID"));
+    }
+}
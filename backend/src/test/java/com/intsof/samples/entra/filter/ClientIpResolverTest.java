@@ -0,0 +1,79 @@
+package com.intsof.samples.entra.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ClientIpResolver
+ */
+class ClientIpResolverTest {
+
+    private final ClientIpResolver resolver = new ClientIpResolver(
+            List.of("10.0.0.0/8", "2001:db8:ffff::/48"), "X-Forwarded-For");
+
+    private static MockHttpServletRequest request(String remote, String... forwarded) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remote);
+        for (String value : forwarded) {
+            request.addHeader("X-Forwarded-For", value);
+        }
+        return request;
+    }
+
+    @Test
+    void testHeadersFromUntrustedPeersAreIgnored() {
+        MockHttpServletRequest request = request("198.51.100.7", "203.0.113.1");
+        request.addHeader("X-Real-IP", "203.0.113.2");
+        assertEquals("198.51.100.7", resolver.resolve(request));
+    }
+
+    @Test
+    void testTrustedHopsAreSkippedFromTheRight() {
+        // The client prepended a spoofed address; the proxies appended the real one
+        assertEquals("198.51.100.7", resolver.resolve(request("10.0.0.1", "1.2.3.4, 198.51.100.7, 10.0.0.2")));
+        assertEquals("2001:db8::7", resolver.resolve(request("10.0.0.1", "2001:db8::7,2001:db8:ffff::1")));
+        // Repeated headers form one list
+        assertEquals("198.51.100.7", resolver.resolve(request("10.0.0.1", "1.2.3.4", "198.51.100.7", "10.0.0.2")));
+    }
+
+    @Test
+    void testMalformedAndAllTrustedLists() {
+        // Garbage stops the walk at the last trusted hop
+        assertEquals("10.0.0.2", resolver.resolve(request("10.0.0.1", "unknown, 10.0.0.2")));
+        assertEquals("10.0.0.1", resolver.resolve(request("10.0.0.1", "198.51.100.7, ")));
+        // Only proxies: the leftmost is used
+        assertEquals("10.0.0.3", resolver.resolve(request("10.0.0.1", "10.0.0.3, 10.0.0.2")));
+    }
+
+    @Test
+    void testRealIpHeaderFromTrustedPeer() {
+        MockHttpServletRequest request = request("10.0.0.1");
+        request.addHeader("X-Real-IP", " 198.51.100.7 ");
+        assertEquals("198.51.100.7", resolver.resolve(request));
+
+        MockHttpServletRequest invalid = request("10.0.0.1");
+        invalid.addHeader("X-Real-IP", "not-an-ip");
+        assertEquals("10.0.0.1", resolver.resolve(invalid));
+    }
+
+    @Test
+    void testResolutionIsCachedPerConnectionButFollowsHeaderChanges() {
+        assertEquals("198.51.100.7", resolver.resolve(request("10.0.0.1", "198.51.100.7")));
+        assertEquals("198.51.100.7", resolver.resolve(request("10.0.0.1", "198.51.100.7")));
+        assertEquals("198.51.100.8", resolver.resolve(request("10.0.0.1", "198.51.100.8")));
+        assertEquals("198.51.100.9", resolver.resolve(request("198.51.100.9", "198.51.100.8")));
+    }
+
+    @Test
+    void testDefaultsTrustOnlyLoopback() {
+        ClientIpResolver defaults = ClientIpResolver.defaults();
+        assertTrue(defaults.isTrusted("127.0.0.1"));
+        assertTrue(defaults.isTrusted("::1"));
+        assertFalse(defaults.isTrusted("10.0.0.1"));
+        assertEquals("198.51.100.7", defaults.resolve(request("127.0.0.1", "198.51.100.7")));
+    }
+}
@@ -0,0 +1,57 @@
+package com.intsof.samples.entra.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonWriterTest {
+
+    @Test
+    void testWritesNestedValuesWithSeparators() {
+        byte[] json = JsonWriter.get().beginObject()
+                .name("a").value("x")
+                .name("n").value(-1234567890123L)
+                .name("ok").value(true)
+                .name("none").value((String) null)
+                .name("list").beginArray().value("r1").value("r2").endArray()
+                .name("empty").beginArray().endArray()
+                .endObject().toByteArray();
+
+        assertEquals("{\"a\":\"x\",\"n\":-1234567890123,\"ok\":true,\"none\":null,\"list\":[\"r1\",\"r2\"],\"empty\":[]}",
+                new String(json, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testEscapesStringsAndEncodesUtf8() {
+        String text = "q\"b\\n\n\t\u0001 é € 😀 \uD800";
+        byte[] json = JsonWriter.get().value(text).toByteArray();
+
+        assertEquals("\"q\\\"b\\\\n\\n\\t\\u0001 é € 😀 ?\"", new String(json, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWriterIsReusedAndResetPerResponse() throws Exception {
+        JsonWriter first = JsonWriter.get().beginObject().name("long").value("x".repeat(5000)).endObject();
+        JsonWriter second = JsonWriter.get();
+        assertSame(first, second);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        second.beginObject().name("k").value(Long.MIN_VALUE).endObject().send(response, 401);
+
+        assertEquals(401, response.getStatus());
+        assertEquals("{\"k\":-9223372036854775808}", response.getContentAsString());
+        assertEquals(response.getContentAsByteArray().length, response.getContentLength());
+    }
+
+    @Test
+    void testPreEncodedErrorBody() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        JsonWriter.send(response, 400, JsonWriter.errorBody("Email \"header\" missing"));
+
+        assertEquals("{\"error\":\"Email \\\"header\\\" missing\"}", response.getContentAsString());
+        assertEquals("UTF-8", response.getCharacterEncoding());
+    }
+}
@@ -0,0 +1,75 @@
+package com.intsof.samples.entra.filter;
+
+import com.intsof.samples.entra.config.AuthRouteProperties;
+import com.intsof.samples.entra.filter.RouteTable.Action;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteTableTest {
+
+    @Test
+    void testDefaultRoutesMatchTheLegacyWhitelist() {
+        RouteTable table = RouteTable.defaults();
+
+        assertEquals(Action.LOGIN, table.lookup("POST", "/login"));
+        assertEquals(Action.LOGIN, table.lookup("post", "/login"));
+        assertEquals(Action.REFRESH, table.lookup("POST", "/refresh"));
+        assertEquals(Action.LOGOUT, table.lookup("POST", "/logout"));
+        assertEquals(Action.PUBLIC, table.lookup("GET", "/logout"));
+        assertEquals(Action.PUBLIC, table.lookup("GET", "/login"));
+        assertEquals(Action.PUBLIC, table.lookup("POST", "/auth/check-method"));
+        assertEquals(Action.PUBLIC, table.lookup("GET", "/api/sso/config"));
+        assertEquals(Action.PUBLIC, table.lookup("GET", "/auth/entra/callback"));
+
+        assertEquals(Action.PROTECTED, table.lookup("GET", "/api/users"));
+        assertEquals(Action.PROTECTED, table.lookup("POST", "/login/extra"));
+        assertEquals(Action.PROTECTED, table.lookup("POST", "/logi"));
+        assertEquals(Action.PROTECTED, table.lookup("GET", "/"));
+        assertEquals(Action.PROTECTED, table.lookup("GET", ""));
+    }
+
+    @Test
+    void testSubtreeRoutesMatchOnSegmentBoundaries() {
+        AuthRouteProperties properties = new AuthRouteProperties();
+        properties.setPublicPaths(List.of("/docs/**", "GET /static/**", "/static/admin"));
+        RouteTable table = RouteTable.compile(properties);
+
+        assertEquals(Action.PUBLIC, table.lookup("GET", "/docs"));
+        assertEquals(Action.PUBLIC, table.lookup("GET", "/docs/"));
+        assertEquals(Action.PUBLIC, table.lookup("PUT", "/docs/api/v1/index.html"));
+        assertEquals(Action.PROTECTED, table.lookup("GET", "/docsx"));
+
+        assertEquals(Action.PUBLIC, table.lookup("GET", "/static/app.js"));
+        assertEquals(Action.PROTECTED, table.lookup("POST", "/static/app.js"));
+        // An exact route wins over the subtree around it
+        assertEquals(Action.PUBLIC, table.lookup("POST", "/static/admin"));
+    }
+
+    @Test
+    void testHandlersCanBeMovedAndExactRoutesWinOverPrefixes() {
+        AuthRouteProperties properties = new AuthRouteProperties();
+        properties.setHandlers(Map.of("login", "POST /api/auth/login"));
+        properties.setPublicPaths(List.of("/api/auth/**"));
+        RouteTable table = RouteTable.compile(properties);
+
+        assertEquals(Action.LOGIN, table.lookup("POST", "/api/auth/login"));
+        assertEquals(Action.PUBLIC, table.lookup("GET", "/api/auth/login"));
+        assertEquals(Action.PUBLIC, table.lookup("POST", "/api/auth/other"));
+        assertEquals(Action.PROTECTED, table.lookup("POST", "/login"));
+    }
+
+    @Test
+    void testInvalidRoutesAreRejectedAtStartup() {
+        AuthRouteProperties unknownHandler = new AuthRouteProperties();
+        unknownHandler.setHandlers(Map.of("signup", "POST /signup"));
+        assertThrows(IllegalArgumentException.class, () -> RouteTable.compile(unknownHandler));
+
+        AuthRouteProperties relativePath = new AuthRouteProperties();
+        relativePath.setPublicPaths(List.of("GET docs"));
+        assertThrows(IllegalArgumentException.class, () -> RouteTable.compile(relativePath));
+    }
+}
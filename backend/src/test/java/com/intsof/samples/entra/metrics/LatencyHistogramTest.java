@@ -0,0 +1,52 @@
+package com.intsof.samples.entra.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LatencyHistogram
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void testBucketsAreContiguousAndWithinRelativeError() {
+        assertEquals(0, LatencyHistogram.lowerBound(0));
+        for (int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+            assertEquals(LatencyHistogram.upperBound(i - 1) + 1, LatencyHistogram.lowerBound(i));
+        }
+        for (long value : new long[] {1, 31, 32, 33, 1000, 123_456, 7_654_321_000L}) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.lowerBound(index) <= value && value <= LatencyHistogram.upperBound(index));
+            assertTrue(LatencyHistogram.upperBound(index) - LatencyHistogram.lowerBound(index) <= value / 16);
+        }
+    }
+
+    @Test
+    void testQuantilesMeanAndMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500_500, snapshot.getMean(), 500_500 / 16.0);
+        assertEquals(500_000, snapshot.getValueAtQuantile(0.5), 500_000 / 16.0);
+        assertEquals(990_000, snapshot.getValueAtQuantile(0.99), 990_000 / 16.0);
+        assertEquals(1_000_000, snapshot.getMax(), 1_000_000 / 16.0);
+    }
+
+    @Test
+    void testOutOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE / 2);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtQuantile(0.5));
+        assertEquals(LatencyHistogram.upperBound(LatencyHistogram.BUCKETS - 1), snapshot.getMax());
+        assertEquals(0, new LatencyHistogram().snapshot().getValueAtQuantile(0.99));
+    }
+}
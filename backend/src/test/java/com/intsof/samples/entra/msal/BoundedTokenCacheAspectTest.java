@@ -0,0 +1,110 @@
+package com.intsof.samples.entra.msal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.aad.msal4j.ITokenCache;
+import com.microsoft.aad.msal4j.ITokenCacheAccessContext;
+import com.microsoft.aad.msal4j.IAccount;
+import com.microsoft.aad.msal4j.TokenCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BoundedTokenCacheAspect
+ */
+class BoundedTokenCacheAspectTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void testTrimKeepsMostRecentlyCachedAccounts() throws Exception {
+        TokenCache cache = new TokenCache();
+        cache.deserialize(cacheWithAccounts(5));
+
+        BoundedTokenCacheAspect aspect = new BoundedTokenCacheAspect(3);
+        aspect.trim(cache);
+
+        JsonNode trimmed = MAPPER.readTree(cache.serialize());
+        assertEquals(Set.of("uid-2.tid", "uid-3.tid", "uid-4.tid"), homeAccountIds(trimmed, "Account"));
+        assertEquals(Set.of("uid-2.tid", "uid-3.tid", "uid-4.tid"), homeAccountIds(trimmed, "AccessToken"));
+        assertEquals(Set.of("uid-2.tid", "uid-3.tid", "uid-4.tid"), homeAccountIds(trimmed, "RefreshToken"));
+        assertEquals(3, aspect.getAccounts());
+        assertEquals(2, aspect.getEvicted());
+    }
+
+    @Test
+    void testTrimsOnlyEveryFewChanges() throws Exception {
+        TokenCache cache = new TokenCache();
+        cache.deserialize(cacheWithAccounts(25));
+        // Twenty accounts: trimmed after every second change
+        BoundedTokenCacheAspect aspect = new BoundedTokenCacheAspect(20);
+
+        aspect.afterCacheAccess(context(cache, false));
+        aspect.afterCacheAccess(context(cache, true));
+        assertEquals(0, aspect.getEvicted());
+        aspect.afterCacheAccess(context(cache, true));
+        assertEquals(5, aspect.getEvicted());
+        assertEquals(20, homeAccountIds(MAPPER.readTree(cache.serialize()), "Account").size());
+    }
+
+    @Test
+    void testSmallCacheIsLeftAlone() throws Exception {
+        TokenCache cache = new TokenCache();
+        String data = cacheWithAccounts(2);
+        cache.deserialize(data);
+
+        BoundedTokenCacheAspect aspect = new BoundedTokenCacheAspect(3);
+        aspect.trim(cache);
+        assertEquals(2, aspect.getAccounts());
+        assertEquals(0, aspect.getEvicted());
+        assertTrue(aspect.getSerializedLength() > 0);
+    }
+
+    private static Set<String> homeAccountIds(JsonNode root, String section) {
+        Set<String> ids = new HashSet<>();
+        root.path(section).forEach(entry -> ids.add(entry.path("home_account_id").asText()));
+        return ids;
+    }
+
+    /**
+     * Serialized cache in MSAL's schema; account i was cached at second 1000 + i
+     */
+    private static String cacheWithAccounts(int count) {
+        StringBuilder accounts = new StringBuilder();
+        StringBuilder accessTokens = new StringBuilder();
+        StringBuilder refreshTokens = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String home = "uid-" + i + ".tid";
+            String sep = i == 0 ? "" : ",";
+            accounts.append(sep).append(String.format(
+                    "\"%s-login.microsoftonline.com-tid\":{\"home_account_id\":\"%s\",\"environment\":\"login.microsoftonline.com\","
+                            + "\"realm\":\"tid\",\"local_account_id\":\"uid-%d\",\"username\":\"user%d@example.com\",\"authority_type\":\"MSSTS\"}",
+                    home, home, i, i));
+            accessTokens.append(sep).append(String.format(
+                    "\"%s-login.microsoftonline.com-accesstoken-client-tid-openid\":{\"home_account_id\":\"%s\","
+                            + "\"environment\":\"login.microsoftonline.com\",\"credential_type\":\"AccessToken\",\"client_id\":\"client\","
+                            + "\"secret\":\"at-%d\",\"realm\":\"tid\",\"target\":\"openid\",\"cached_at\":\"%d\",\"expires_on\":\"%d\"}",
+                    home, home, i, 1000 + i, 999999999L));
+            refreshTokens.append(sep).append(String.format(
+                    "\"%s-login.microsoftonline.com-refreshtoken-client--\":{\"home_account_id\":\"%s\","
+                            + "\"environment\":\"login.microsoftonline.com\",\"credential_type\":\"RefreshToken\",\"client_id\":\"client\","
+                            + "\"secret\":\"rt-%d\"}",
+                    home, home, i));
+        }
+        return "{\"Account\":{" + accounts + "},\"AccessToken\":{" + accessTokens + "},\"RefreshToken\":{" + refreshTokens
+                + "},\"IdToken\":{},\"AppMetadata\":{}}";
+    }
+
+    private static ITokenCacheAccessContext context(ITokenCache cache, boolean changed) {
+        return new ITokenCacheAccessContext() {
+            @Override public ITokenCache tokenCache() { return cache; }
+            @Override public String clientId() { return "client"; }
+            @Override public IAccount account() { return null; }
+            @Override public boolean hasCacheChanged() { return changed; }
+        };
+    }
+}
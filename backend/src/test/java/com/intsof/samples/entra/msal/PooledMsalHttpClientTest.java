@@ -0,0 +1,80 @@
+package com.intsof.samples.entra.msal;
+
+import com.microsoft.aad.msal4j.HttpMethod;
+import com.microsoft.aad.msal4j.HttpRequest;
+import com.microsoft.aad.msal4j.IHttpResponse;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PooledMsalHttpClient against a local stub token endpoint
+ */
+class PooledMsalHttpClientTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final Set<Object> connections = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/token", exchange -> {
+            connections.add(exchange.getRemoteAddress().getPort());
+            String requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            byte[] body = (exchange.getRequestMethod() + " " + exchange.getRequestHeaders().getFirst("client-request-id")
+                    + " " + requestBody).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(exchange.getRequestMethod().equals("POST") ? 200 : 400, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testSendsRequestsOverPooledConnections() throws Exception {
+        PooledMsalHttpClient client = new PooledMsalHttpClient(2000, 2000);
+
+        for (int i = 0; i < 3; i++) {
+            IHttpResponse response = client.send(request(HttpMethod.POST, baseUrl + "/token",
+                    Map.of("client-request-id", "id-" + i, "Content-Length", "999", "Host", "example.com"),
+                    "grant_type=authorization_code&code=abc"));
+            assertEquals(200, response.statusCode());
+            assertEquals("POST id-" + i + " grant_type=authorization_code&code=abc", response.body());
+            assertEquals("application/json", response.headers().get("content-type").get(0));
+        }
+        // Kept alive between requests
+        assertEquals(1, connections.size());
+
+        IHttpResponse get = client.send(request(HttpMethod.GET, baseUrl + "/token", Map.of(), null));
+        assertEquals(400, get.statusCode());
+        assertEquals("GET null ", get.body());
+    }
+
+    private static HttpRequest request(HttpMethod method, String url, Map<String, String> headers, String body) throws Exception {
+        Constructor<HttpRequest> constructor = HttpRequest.class.getDeclaredConstructor(
+                HttpMethod.class, String.class, Map.class, String.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(method, url, headers, body);
+    }
+}
@@ -0,0 +1,79 @@
+package com.intsof.samples.entra.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BoundedRateLimiter
+ */
+class BoundedRateLimiterTest {
+
+    private static final int LIMIT = 5;
+    private static final long PERIOD = 60_000L;
+    private static final long NOW = 1_000_000L;
+
+    @Test
+    void testKeysArePromotedOnlyAfterRepeatedFailures() {
+        BoundedRateLimiter limiter = new BoundedRateLimiter(100, 3, 4, 1024);
+
+        limiter.recordFailure("suspect", LIMIT, PERIOD, NOW);
+        limiter.recordFailure("suspect", LIMIT, PERIOD, NOW);
+        assertEquals(0, limiter.trackedKeys());
+        assertEquals(3, limiter.remaining("suspect", LIMIT, PERIOD, NOW));
+
+        limiter.recordFailure("suspect", LIMIT, PERIOD, NOW);
+        assertEquals(1, limiter.trackedKeys());
+        assertEquals(2, limiter.remaining("suspect", LIMIT, PERIOD, NOW));
+
+        limiter.recordFailure("suspect", LIMIT, PERIOD, NOW);
+        limiter.recordFailure("suspect", LIMIT, PERIOD, NOW);
+        assertFalse(limiter.isAllowed("suspect", LIMIT, PERIOD, NOW));
+    }
+
+    @Test
+    void testSprayDoesNotGrowBeyondCap() {
+        BoundedRateLimiter limiter = new BoundedRateLimiter(50, 2, 4, 1024);
+
+        for (int i = 0; i < 10_000; i++) {
+            String key = "198.51." + (i / 256) + "." + (i % 256);
+            limiter.recordFailure(key, LIMIT, PERIOD, NOW);
+            limiter.recordFailure(key, LIMIT, PERIOD, NOW);
+        }
+
+        assertEquals(50, limiter.trackedKeys());
+        assertTrue(limiter.isSaturated());
+    }
+
+    @Test
+    void testSaturatedLimiterFallsBackToSketch() {
+        BoundedRateLimiter limiter = new BoundedRateLimiter(1, 2, 4, 1024);
+        limiter.recordFailure("filler", LIMIT, PERIOD, NOW);
+        limiter.recordFailure("filler", LIMIT, PERIOD, NOW);
+        assertTrue(limiter.isSaturated());
+
+        for (int i = 0; i < LIMIT; i++) {
+            assertTrue(limiter.isAllowed("attacker", LIMIT, PERIOD, NOW));
+            limiter.recordFailure("attacker", LIMIT, PERIOD, NOW);
+        }
+
+        assertFalse(limiter.isAllowed("attacker", LIMIT, PERIOD, NOW));
+        assertTrue(limiter.retryAfterMillis("attacker", LIMIT, PERIOD, NOW) > 0);
+        assertTrue(limiter.isAllowed("attacker", LIMIT, PERIOD, NOW + 2 * PERIOD));
+    }
+
+    @Test
+    void testResetKeepsClearedCounter() {
+        BoundedRateLimiter limiter = new BoundedRateLimiter(100, 2, 4, 1024);
+        for (int i = 0; i < LIMIT; i++) {
+            limiter.recordFailure("user", LIMIT, PERIOD, NOW);
+        }
+        assertFalse(limiter.isAllowed("user", LIMIT, PERIOD, NOW));
+
+        limiter.reset("user", NOW);
+        assertEquals(LIMIT, limiter.remaining("user", LIMIT, PERIOD, NOW));
+
+        limiter.evictIdle(PERIOD, NOW + 2 * PERIOD);
+        assertEquals(0, limiter.trackedKeys());
+    }
+}
@@ -0,0 +1,57 @@
+package com.intsof.samples.entra.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CoDelController
+ */
+class CoDelControllerTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void testBurstsBelowOneIntervalAreTolerated() {
+        CoDelController controller = new CoDelController(5 * MS, 100 * MS, 2);
+        assertEquals(0, controller.onSample(0, 50 * MS));
+        assertEquals(0, controller.onSample(60 * MS, 50 * MS));
+        // Drained before the interval ran out
+        assertEquals(0, controller.onSample(90 * MS, 1 * MS));
+        assertEquals(0, controller.onSample(150 * MS, 50 * MS));
+        assertEquals(0, controller.getLevel());
+    }
+
+    @Test
+    void testStandingQueueEscalatesByControlLaw() {
+        CoDelController controller = new CoDelController(5 * MS, 100 * MS, 2);
+        controller.onSample(0, 20 * MS);
+        assertEquals(0, controller.onSample(99 * MS, 20 * MS));
+        assertEquals(1, controller.onSample(100 * MS, 20 * MS));
+        // Next escalation after interval / sqrt(1)
+        assertEquals(1, controller.onSample(199 * MS, 20 * MS));
+        assertEquals(2, controller.onSample(200 * MS, 20 * MS));
+        // Capped at the maximum level
+        assertEquals(2, controller.onSample(1000 * MS, 20 * MS));
+        assertEquals(20 * MS, controller.getLastDelayNanos());
+    }
+
+    @Test
+    void testOneGoodSampleEndsSheddingAndReentryResumes() {
+        CoDelController controller = new CoDelController(5 * MS, 100 * MS, 2);
+        long now = 0;
+        controller.onSample(now, 20 * MS);
+        for (int i = 0; i < 5; i++) {
+            now += 100 * MS;
+            controller.onSample(now, 20 * MS);
+        }
+        assertEquals(2, controller.getLevel());
+
+        now += MS;
+        assertEquals(0, controller.onSample(now, 1 * MS));
+
+        // Back above target shortly after: shedding resumes at a high count after one interval
+        controller.onSample(now + MS, 20 * MS);
+        assertEquals(2, controller.onSample(now + 101 * MS, 20 * MS));
+    }
+}
@@ -0,0 +1,103 @@
+package com.intsof.samples.entra.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DistinctCountTracker
+ */
+class DistinctCountTrackerTest {
+
+    private static final long PERIOD = 600_000L;
+
+    @Test
+    void testSmallCountsAreNearlyExact() {
+        DistinctCountTracker tracker = new DistinctCountTracker(100);
+        long now = 1_000_000_000L;
+
+        for (int i = 1; i <= 10; i++) {
+            tracker.add(7L, 1000 + i, PERIOD, now);
+            // Repeats do not count
+            tracker.add(7L, 1000 + i, PERIOD, now);
+        }
+        assertEquals(10, tracker.estimate(7L, PERIOD, now), 1);
+        assertEquals(0, tracker.estimate(8L, PERIOD, now));
+    }
+
+    @Test
+    void testLargeCountsAreWithinErrorBound() {
+        DistinctCountTracker tracker = new DistinctCountTracker(100);
+        long now = 1_000_000_000L;
+
+        for (int i = 0; i < 5000; i++) {
+            tracker.add(7L, i, PERIOD, now);
+        }
+        int estimate = tracker.estimate(7L, PERIOD, now);
+        assertTrue(Math.abs(estimate - 5000) < 5000 * 0.4, "estimate " + estimate);
+    }
+
+    @Test
+    void testValuesAgeOutAfterTwoPeriods() {
+        DistinctCountTracker tracker = new DistinctCountTracker(100);
+        long now = PERIOD * 1000;
+
+        for (int i = 0; i < 10; i++) {
+            tracker.add(7L, i, PERIOD, now);
+        }
+        // Still remembered during the next period, merged with new values
+        tracker.add(7L, 100, PERIOD, now + PERIOD);
+        assertEquals(12, tracker.add(7L, 101, PERIOD, now + PERIOD), 1);
+        assertEquals(2, tracker.estimate(7L, PERIOD, now + 2 * PERIOD), 1);
+        assertEquals(0, tracker.estimate(7L, PERIOD, now + 4 * PERIOD));
+    }
+
+    @Test
+    void testKeysBeyondCapacityAreNotTracked() {
+        DistinctCountTracker tracker = new DistinctCountTracker(10);
+        long now = 1_000_000_000L;
+
+        for (long key = 1; key <= 20; key++) {
+            tracker.add(key, 1, PERIOD, now);
+        }
+        assertEquals(10, tracker.trackedKeys());
+        assertEquals(10, tracker.untrackedCount());
+        assertEquals(1, tracker.estimate(1L, PERIOD, now));
+        assertEquals(0, tracker.estimate(20L, PERIOD, now));
+    }
+
+    @Test
+    void testConcurrentAddsAreNotLost() throws InterruptedException {
+        DistinctCountTracker tracker = new DistinctCountTracker(1000);
+        long now = 1_000_000_000L;
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 10;
+            executor.submit(() -> {
+                start.await();
+                for (long key = 1; key <= 200; key++) {
+                    for (int i = 0; i < 10; i++) {
+                        tracker.add(key, offset + i, PERIOD, now);
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(200, tracker.trackedKeys());
+        for (long key = 1; key <= 200; key++) {
+            int estimate = tracker.estimate(key, PERIOD, now);
+            assertTrue(estimate >= 60 && estimate <= 110, "key " + key + " estimate " + estimate);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.intsof.samples.entra.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for GcraRateLimiter
+ */
+class GcraRateLimiterTest {
+
+    private static final int LIMIT = 3;
+    private static final long PERIOD = 60_000L;
+
+    private GcraRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new GcraRateLimiter();
+    }
+
+    @Test
+    void testRecordConsumesBudget() {
+        long now = 1_000_000L;
+
+        assertEquals(3, limiter.remaining("key", LIMIT, PERIOD, now));
+        limiter.record("key", LIMIT, PERIOD, now);
+        limiter.record("key", LIMIT, PERIOD, now);
+        assertTrue(limiter.isAllowed("key", LIMIT, PERIOD, now));
+
+        limiter.record("key", LIMIT, PERIOD, now);
+        assertFalse(limiter.isAllowed("key", LIMIT, PERIOD, now));
+        assertEquals(0, limiter.remaining("key", LIMIT, PERIOD, now));
+    }
+
+    @Test
+    void testBudgetReplenishesSmoothly() {
+        long now = 1_000_000L;
+        for (int i = 0; i < LIMIT; i++) {
+            limiter.record("key", LIMIT, PERIOD, now);
+        }
+
+        // One unit comes back every period / limit, not all at once at a window edge
+        assertEquals(20_000L, limiter.retryAfterMillis("key", LIMIT, PERIOD, now));
+        assertFalse(limiter.isAllowed("key", LIMIT, PERIOD, now + 19_999L));
+        assertEquals(1, limiter.remaining("key", LIMIT, PERIOD, now + 20_000L));
+        assertEquals(2, limiter.remaining("key", LIMIT, PERIOD, now + 40_000L));
+        assertEquals(3, limiter.remaining("key", LIMIT, PERIOD, now + 60_000L));
+    }
+
+    @Test
+    void testNoDoubleBurstAcrossWindowBoundary() {
+        long now = 1_000_000L;
+        for (int i = 0; i < LIMIT; i++) {
+            assertTrue(limiter.tryAcquire("key", LIMIT, PERIOD, now + PERIOD - 1));
+        }
+
+        // A fixed window would hand out a fresh budget here
+        assertFalse(limiter.tryAcquire("key", LIMIT, PERIOD, now + PERIOD + 1));
+    }
+
+    @Test
+    void testPenaltySaturatesAtOnePeriod() {
+        long now = 1_000_000L;
+        for (int i = 0; i < 100; i++) {
+            limiter.record("key", LIMIT, PERIOD, now);
+        }
+
+        assertTrue(limiter.isAllowed("key", LIMIT, PERIOD, now + 20_000L));
+    }
+
+    @Test
+    void testResetAndEvictIdle() {
+        long now = 1_000_000L;
+        limiter.record("a", LIMIT, PERIOD, now);
+        limiter.record("b", LIMIT, PERIOD, now);
+        assertEquals(2, limiter.size());
+
+        limiter.reset("a");
+        assertEquals(1, limiter.size());
+
+        limiter.evictIdle(now + PERIOD);
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    void testConcurrentAcquireIsExact() throws InterruptedException {
+        int threads = 16;
+        int attemptsPerThread = 1_000;
+        long now = 1_000_000L;
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    if (limiter.tryAcquire("hot", 50, PERIOD, now)) {
+                        granted.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(50, granted.get());
+    }
+
+    @Test
+    void testTableGrowsAndCompacts() {
+        long now = 1_000_000L;
+        for (long key = 1; key <= 10_000; key++) {
+            limiter.record(key, 1, LIMIT, PERIOD, now);
+        }
+        assertEquals(10_000, limiter.size());
+        assertEquals(LIMIT - 1, limiter.remaining(5_000L, LIMIT, PERIOD, now));
+
+        limiter.reset(5_000L);
+        assertFalse(limiter.contains(5_000L));
+        assertEquals(9_999, limiter.size());
+
+        limiter.record(1L, 1, LIMIT, PERIOD, now + PERIOD);
+        limiter.evictIdle(now + PERIOD / LIMIT);
+        assertEquals(1, limiter.size());
+        assertTrue(limiter.contains(1L));
+    }
+
+    @Test
+    void testFullTableFailsOpen() {
+        GcraRateLimiter bounded = new GcraRateLimiter(32);
+        long now = 1_000_000L;
+        for (long key = 1; key <= 64; key++) {
+            bounded.record(key, 1, LIMIT, PERIOD, now);
+        }
+        assertEquals(64, bounded.size());
+
+        bounded.record(1_000L, 1, LIMIT, PERIOD, now);
+        assertFalse(bounded.contains(1_000L));
+        assertTrue(bounded.isAllowed(1_000L, LIMIT, PERIOD, now));
+    }
+
+    @Test
+    void testConcurrentInsertsDuringGrowthAreExact() throws InterruptedException {
+        int threads = 8;
+        int keys = 2_000;
+        long now = 1_000_000L;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (long key = 1; key <= keys; key++) {
+                    limiter.record(key, 1, 100, PERIOD, now);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(keys, limiter.size());
+        for (long key = 1; key <= keys; key++) {
+            assertEquals(100 - threads, limiter.remaining(key, 100, PERIOD, now));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.intsof.samples.entra.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for IpAddress
+ */
+class IpAddressTest {
+
+    @Test
+    void testIpv4Keys() {
+        assertEquals(0x0000_ffff_c633_6407L, IpAddress.key("198.51.100.7"));
+        assertEquals(IpAddress.subnetKey("198.51.100.7"), IpAddress.subnetKey("198.51.100.250"));
+        assertNotEquals(IpAddress.subnetKey("198.51.100.7"), IpAddress.subnetKey("198.51.101.7"));
+        assertEquals(IpAddress.key("198.51.100.7"), IpAddress.key("for=198.51.100.7", 4, 16));
+    }
+
+    @Test
+    void testIpv6NotationsProduceTheSameKey() {
+        long key = IpAddress.key("2001:db8:0:0:0:0:0:1");
+        assertNotEquals(IpAddress.NO_KEY, key);
+        assertEquals(key, IpAddress.key("2001:db8::1"));
+        assertEquals(key, IpAddress.key("2001:DB8:0000::0001"));
+        assertEquals(key, IpAddress.key("[2001:db8::1]"));
+        assertEquals(key, IpAddress.key("2001:db8::1%eth0"));
+        assertNotEquals(key, IpAddress.key("2001:db8::2"));
+        assertNotEquals(IpAddress.NO_KEY, IpAddress.key("::"));
+        assertNotEquals(IpAddress.NO_KEY, IpAddress.key("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+    }
+
+    @Test
+    void testIpv6SubnetIsSlash64() {
+        assertEquals(IpAddress.subnetKey("2001:db8:1:2::1"), IpAddress.subnetKey("2001:db8:1:2:ffff::9"));
+        assertNotEquals(IpAddress.subnetKey("2001:db8:1:2::1"), IpAddress.subnetKey("2001:db8:1:3::1"));
+    }
+
+    @Test
+    void testIpv4MappedAddressesAreIpv4() {
+        assertEquals(IpAddress.key("203.0.113.9"), IpAddress.key("::ffff:203.0.113.9"));
+        assertEquals(IpAddress.key("203.0.113.9"), IpAddress.key("::ffff:cb00:7109"));
+        assertEquals(IpAddress.subnetKey("203.0.113.1"), IpAddress.subnetKey("::ffff:203.0.113.9"));
+    }
+
+    @Test
+    void testMalformedAddressesHaveNoKey() {
+        String[] malformed = {"", "unknown", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1..2.3", "1.2.3.4:8080",
+                "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9", "1::2::3", ":1::", "1:", "12345::", "g::1", "+1::", "[::1"};
+        for (String address : malformed) {
+            assertEquals(IpAddress.NO_KEY, IpAddress.key(address), address);
+            assertEquals(IpAddress.NO_KEY, IpAddress.subnetKey(address), address);
+        }
+        assertEquals(IpAddress.NO_KEY, IpAddress.key(null));
+    }
+}
@@ -0,0 +1,62 @@
+package com.intsof.samples.entra.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for IpRangeSet
+ */
+class IpRangeSetTest {
+
+    private static boolean contains(IpRangeSet set, String address) {
+        long[] bits = new long[2];
+        assertTrue(IpAddress.parse(address, 0, address.length(), bits), address);
+        return set.contains(bits[0], bits[1]);
+    }
+
+    @Test
+    void testIpv4Ranges() {
+        IpRangeSet set = IpRangeSet.of(List.of("10.0.0.0/8", "192.168.1.0/24", "203.0.113.7"));
+        assertTrue(contains(set, "10.1.2.3"));
+        assertTrue(contains(set, "192.168.1.255"));
+        assertFalse(contains(set, "192.168.2.1"));
+        assertTrue(contains(set, "203.0.113.7"));
+        assertFalse(contains(set, "203.0.113.8"));
+        assertFalse(contains(set, "11.0.0.1"));
+        // IPv4-mapped IPv6 notation of a listed address
+        assertTrue(contains(set, "::ffff:10.9.8.7"));
+    }
+
+    @Test
+    void testIpv6Ranges() {
+        IpRangeSet set = IpRangeSet.of(List.of("2001:db8::/32", "::1/128", "fd00:1:2:3::/64"));
+        assertTrue(contains(set, "2001:db8:ffff::1"));
+        assertFalse(contains(set, "2001:db9::1"));
+        assertTrue(contains(set, "::1"));
+        assertFalse(contains(set, "::2"));
+        assertTrue(contains(set, "fd00:1:2:3:abcd::1"));
+        assertFalse(contains(set, "fd00:1:2:4::1"));
+        assertFalse(contains(set, "127.0.0.1"));
+    }
+
+    @Test
+    void testHostBitsAndCatchAllRanges() {
+        // Bits beyond the prefix length are ignored
+        assertTrue(contains(IpRangeSet.of(List.of("172.16.5.9/12")), "172.31.255.255"));
+        assertTrue(contains(IpRangeSet.of(List.of("0.0.0.0/0")), "8.8.8.8"));
+        assertFalse(contains(IpRangeSet.of(List.of("0.0.0.0/0")), "2001:db8::1"));
+        assertTrue(contains(IpRangeSet.of(List.of("::/0")), "2001:db8::1"));
+        assertTrue(IpRangeSet.of(List.of(" ", "")).isEmpty());
+    }
+
+    @Test
+    void testInvalidRangesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> IpRangeSet.of(List.of("10.0.0.0/33")));
+        assertThrows(IllegalArgumentException.class, () -> IpRangeSet.of(List.of("2001:db8::/129")));
+        assertThrows(IllegalArgumentException.class, () -> IpRangeSet.of(List.of("proxy.local/24")));
+        assertThrows(IllegalArgumentException.class, () -> IpRangeSet.of(List.of("10.0.0.0/x")));
+    }
+}
@@ -0,0 +1,121 @@
+package com.intsof.samples.entra.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProgressiveLockout
+ */
+class ProgressiveLockoutTest {
+
+    private static final long BASE = 60_000L;
+    private static final long MAX = 3_600_000L;
+    private static final long DECAY = 900_000L;
+
+    private ProgressiveLockout lockout;
+
+    @BeforeEach
+    void setUp() {
+        lockout = new ProgressiveLockout(1000);
+    }
+
+    @Test
+    void testLockoutDoublesWithEachViolation() {
+        long now = 1_000_000_000L;
+
+        assertEquals(now + BASE, lockout.violation(42L, BASE, MAX, DECAY, now));
+        assertEquals(now + BASE, lockout.lockedUntil(42L, BASE, MAX, now + 1));
+
+        now += BASE;
+        assertEquals(0, lockout.lockedUntil(42L, BASE, MAX, now));
+        assertEquals(now + 2 * BASE, lockout.violation(42L, BASE, MAX, DECAY, now));
+
+        now += 2 * BASE;
+        assertEquals(now + 4 * BASE, lockout.violation(42L, BASE, MAX, DECAY, now));
+        assertEquals(3, lockout.level(42L, BASE, MAX, DECAY, now));
+    }
+
+    @Test
+    void testLockoutIsCappedAtMaximum() {
+        long now = 1_000_000_000L;
+        long end = 0;
+        for (int i = 0; i < 70; i++) {
+            end = lockout.violation(7L, BASE, MAX, DECAY, now);
+        }
+        assertEquals(now + MAX, end);
+    }
+
+    @Test
+    void testLevelDecaysOverCleanPeriods() {
+        long now = 1_000_000_000L;
+        lockout.violation(42L, BASE, MAX, DECAY, now);
+        lockout.violation(42L, BASE, MAX, DECAY, now);
+        lockout.violation(42L, BASE, MAX, DECAY, now);
+        long end = now + 4 * BASE;
+
+        // No decay while locked out
+        assertEquals(3, lockout.level(42L, BASE, MAX, DECAY, end - 1));
+        assertEquals(2, lockout.level(42L, BASE, MAX, DECAY, end + DECAY));
+        assertEquals(0, lockout.level(42L, BASE, MAX, DECAY, end + 3 * DECAY));
+
+        // After full decay the next violation starts over at the base duration
+        long later = end + 3 * DECAY;
+        assertEquals(later + BASE, lockout.violation(42L, BASE, MAX, DECAY, later));
+
+        lockout.evictIdle(BASE, MAX, DECAY, later + BASE + DECAY);
+        assertEquals(0, lockout.size());
+    }
+
+    @Test
+    void testReleaseEndsLockoutButKeepsLevel() {
+        long now = 1_000_000_000L;
+        lockout.violation(42L, BASE, MAX, DECAY, now);
+        lockout.violation(42L, BASE, MAX, DECAY, now);
+
+        lockout.release(42L, BASE, MAX, now + 1);
+        assertEquals(0, lockout.lockedUntil(42L, BASE, MAX, now + 1));
+        assertEquals(2, lockout.level(42L, BASE, MAX, DECAY, now + 1));
+
+        lockout.clear(42L);
+        assertEquals(0, lockout.level(42L, BASE, MAX, DECAY, now + 1));
+    }
+
+    @Test
+    void testSnapshotRoundTrip() throws IOException {
+        long now = 1_000_000_000L;
+        for (long key = 1; key <= 100; key++) {
+            for (int i = 0; i < key % 4; i++) {
+                lockout.violation(key, BASE, MAX, DECAY, now);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        lockout.writeTo(new DataOutputStream(bytes));
+        // Header plus 16 bytes per penalized key
+        assertEquals(8 + 16 * lockout.size(), bytes.size());
+
+        ProgressiveLockout restored = new ProgressiveLockout(1000);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(lockout.size(), restored.size());
+        for (long key = 1; key <= 100; key++) {
+            assertEquals(lockout.level(key, BASE, MAX, DECAY, now), restored.level(key, BASE, MAX, DECAY, now));
+            assertEquals(lockout.lockedUntil(key, BASE, MAX, now), restored.lockedUntil(key, BASE, MAX, now));
+        }
+    }
+
+    @Test
+    void testRejectsForeignSnapshot() {
+        byte[] garbage = {1, 2, 3, 4, 0, 0, 0, 0};
+        assertThrows(IOException.class,
+                () -> lockout.readFrom(new DataInputStream(new ByteArrayInputStream(garbage))));
+    }
+}
@@ -0,0 +1,107 @@
+package com.intsof.samples.entra.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SharedRateLimitStore, with two stores standing in for two instances
+ */
+class SharedRateLimitStoreTest {
+
+    private static final int LIMIT = 6;
+    private static final long PERIOD = 60_000L;
+    private static final long NOW = 6_000_000L;
+    private static final long KEY = 42L;
+
+    private SharedRateLimitStore first;
+    private SharedRateLimitStore second;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:hsqldb:mem:ratelimit-" + UUID.randomUUID(), "sa", "");
+        JdbcQuotaLedger ledger = new JdbcQuotaLedger(dataSource);
+        first = new SharedRateLimitStore("ip", ledger, new BoundedRateLimiter(100, 2, 4, 1024), 2, 100);
+        second = new SharedRateLimitStore("ip", ledger, new BoundedRateLimiter(100, 2, 4, 1024), 2, 100);
+    }
+
+    @Test
+    void testFirstFailurePreallocatesSlice() {
+        first.recordFailure(KEY, LIMIT, PERIOD, NOW);
+        assertEquals(2, first.remaining(KEY, LIMIT, PERIOD, NOW));
+
+        first.recordFailure(KEY, LIMIT, PERIOD, NOW);
+        first.recordFailure(KEY, LIMIT, PERIOD, NOW);
+        assertFalse(first.isAllowed(KEY, LIMIT, PERIOD, NOW));
+        assertTrue(second.isAllowed(KEY, LIMIT, PERIOD, NOW));
+    }
+
+    @Test
+    void testUnreachableLedgerKeepsLocalLimits() {
+        // Nothing listens on port 1: the ledger must still construct, and reconciliation must fail softly
+        DriverManagerDataSource down = new DriverManagerDataSource("jdbc:hsqldb:hsql://localhost:1/ratelimit", "sa", "");
+        SharedRateLimitStore store = new SharedRateLimitStore("ip", new JdbcQuotaLedger(down),
+                new BoundedRateLimiter(100, 2, 4, 1024), 2, 100);
+
+        store.recordFailure(KEY, LIMIT, PERIOD, NOW);
+        store.synchronize(LIMIT, PERIOD, NOW);
+
+        assertEquals(1, store.sharedKeys());
+        assertEquals(2, store.remaining(KEY, LIMIT, PERIOD, NOW));
+    }
+
+    @Test
+    void testLimitHoldsAcrossInstances() {
+        int allowed = 0;
+        for (int round = 0; round < 4; round++) {
+            long now = NOW + round;
+            for (SharedRateLimitStore store : new SharedRateLimitStore[]{first, second}) {
+                if (store.isAllowed(KEY, LIMIT, PERIOD, now)) {
+                    allowed++;
+                    store.recordFailure(KEY, LIMIT, PERIOD, now);
+                }
+            }
+            first.synchronize(LIMIT, PERIOD, now);
+            second.synchronize(LIMIT, PERIOD, now);
+        }
+
+        // Without sharing each instance would allow LIMIT; slices round up, so one extra may slip through
+        assertTrue(allowed <= LIMIT + 1, "allowed " + allowed);
+        assertFalse(first.isAllowed(KEY, LIMIT, PERIOD, NOW + 4));
+        assertFalse(second.isAllowed(KEY, LIMIT, PERIOD, NOW + 4));
+    }
+
+    @Test
+    void testSynchronizeResizesSlicesFromClusterCount() {
+        second.recordFailure(KEY, LIMIT, PERIOD, NOW);
+        second.recordFailure(KEY, LIMIT, PERIOD, NOW);
+        second.synchronize(LIMIT, PERIOD, NOW);
+
+        first.recordFailure(KEY, LIMIT, PERIOD, NOW);
+        first.synchronize(LIMIT, PERIOD, NOW);
+
+        // 3 of 6 used cluster-wide: this instance gets ceil(3 / 2) of the rest
+        assertEquals(2, first.remaining(KEY, LIMIT, PERIOD, NOW));
+    }
+
+    @Test
+    void testResetClearsClusterCount() {
+        first.recordFailure(KEY, LIMIT, PERIOD, NOW);
+        first.recordFailure(KEY, LIMIT, PERIOD, NOW);
+        first.synchronize(LIMIT, PERIOD, NOW);
+
+        first.reset(KEY, NOW);
+        first.synchronize(LIMIT, PERIOD, NOW);
+        assertEquals(0, first.sharedKeys());
+
+        second.recordFailure(KEY, LIMIT, PERIOD, NOW);
+        second.synchronize(LIMIT, PERIOD, NOW);
+        // Only this failure is left cluster-wide: ceil(5 / 2)
+        assertEquals(3, second.remaining(KEY, LIMIT, PERIOD, NOW));
+    }
+}
@@ -0,0 +1,146 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.audit.AuditEventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AuditEventQueue
+ */
+class AuditEventQueueTest {
+
+    private AuditEventQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    void testWriterLogsEventsInTheFilterFormat() {
+        RecordingAuditLoggingService audit = new RecordingAuditLoggingService(null);
+        queue = new AuditEventQueue(audit, true, 64, 1);
+
+        queue.publish(AuditEventType.MALFORMED_TOKEN, "192.0.2.1", "/api/a", "TOO_LONG", 0);
+        queue.publish(AuditEventType.ROUTE_RATE_LIMITED, "192.0.2.1", "/api/b", "IP", 12);
+        queue.shutdown();
+
+        assertEquals(List.of(
+                "TOKEN_VALIDATION_FAILED 192.0.2.1 {check=TOO_LONG, path=/api/a, reason=malformed_token}",
+                "ROUTE_RATE_LIMIT 192.0.2.1 {path=/api/b, scope=IP, waitTime=12}"), audit.lines);
+        AuditEventQueue.AuditQueueStats stats = queue.getStats();
+        assertEquals(2, stats.getPublished());
+        assertEquals(2, stats.getWritten());
+        assertEquals(0, stats.getDropped());
+        assertEquals(0, stats.getQueued());
+    }
+
+    @Test
+    void testDropsAndCountsWhenTheWriterFallsBehind() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingAuditLoggingService audit = new RecordingAuditLoggingService(release);
+        queue = new AuditEventQueue(audit, true, 4, 1);
+
+        // The first event holds the writer and its slot; three more fill the ring
+        for (int i = 0; i < 10; i++) {
+            queue.publish(AuditEventType.INVALID_TOKEN, "192.0.2." + i, "/api/a", null, 0);
+            if (i == 0) {
+                assertTrue(audit.blocked.await(5, TimeUnit.SECONDS));
+            }
+        }
+        AuditEventQueue.AuditQueueStats stats = queue.getStats();
+        assertEquals(4, stats.getPublished());
+        assertEquals(6, stats.getDropped());
+
+        release.countDown();
+        queue.shutdown();
+        assertEquals(4, queue.getStats().getWritten());
+        assertEquals(4, audit.lines.size());
+    }
+
+    @Test
+    void testEventsKeepThePublishTimeWhenWrittenLate() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingAuditLoggingService audit = new RecordingAuditLoggingService(release);
+        queue = new AuditEventQueue(audit, true, 4, 1);
+
+        long before = System.currentTimeMillis();
+        queue.publish(AuditEventType.INVALID_TOKEN, "192.0.2.1", "/api/a", null, 0);
+        assertTrue(audit.blocked.await(5, TimeUnit.SECONDS));
+        queue.publish(AuditEventType.ROUTE_RATE_LIMITED, "192.0.2.2", "/api/b", "IP", 3);
+        long after = System.currentTimeMillis();
+
+        // Hold the writer well past the publish time before it logs the second event
+        Thread.sleep(200);
+        release.countDown();
+        queue.shutdown();
+        assertEquals(2, audit.timestamps.size());
+        for (long timestamp : audit.timestamps) {
+            assertTrue(timestamp >= before && timestamp <= after, "logged with the publish time");
+        }
+    }
+
+    @Test
+    void testDisabledQueueLogsInlineAndAuditOffLogsNothing() {
+        RecordingAuditLoggingService audit = new RecordingAuditLoggingService(null);
+        queue = new AuditEventQueue(audit, false, 64, 1);
+        queue.publish(AuditEventType.REQUEST_SHED, "192.0.2.1", "/login", "queue_full", 0);
+        assertEquals(List.of("AUTH_REQUEST_SHED 192.0.2.1 {path=/login, reason=queue_full}"), audit.lines);
+        assertFalse(queue.getStats().isEnabled());
+
+        ReflectionTestUtils.setField(audit, "auditEnabled", false);
+        queue.publish(AuditEventType.MISSING_AUTHORIZATION, "192.0.2.1", "/api/a", null, 0);
+        assertEquals(1, audit.lines.size());
+    }
+
+    /**
+     * Captures audit calls instead of logging them; optionally holds the first call
+     */
+    private static class RecordingAuditLoggingService extends AuditLoggingService {
+        final List<String> lines = new CopyOnWriteArrayList<>();
+        final List<Long> timestamps = new CopyOnWriteArrayList<>();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        RecordingAuditLoggingService(CountDownLatch release) {
+            this.release = release;
+            ReflectionTestUtils.setField(this, "auditEnabled", true);
+        }
+
+        @Override
+        public void logAuthEvent(String eventType, String username, String ipAddress, Map<String, Object> eventData,
+                                 long timestamp) {
+            record(eventType, ipAddress, eventData, timestamp);
+        }
+
+        @Override
+        public void logRateLimitExceeded(String username, String ipAddress, String limitType, Map<String, Object> additionalData,
+                                         long timestamp) {
+            record(limitType, ipAddress, additionalData, timestamp);
+        }
+
+        private void record(String kind, String ipAddress, Map<String, Object> data, long timestamp) {
+            if (release != null && blocked.getCount() > 0) {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            timestamps.add(timestamp);
+            lines.add(kind + " " + ipAddress + " " + new java.util.TreeMap<>(data));
+        }
+    }
+}
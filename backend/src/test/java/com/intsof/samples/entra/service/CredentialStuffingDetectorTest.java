@@ -0,0 +1,116 @@
+package com.intsof.samples.entra.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CredentialStuffingDetector
+ */
+class CredentialStuffingDetectorTest {
+
+    private final List<String> threats = new ArrayList<>();
+    private CredentialStuffingDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        AuditLoggingService auditLoggingService = new AuditLoggingService() {
+            @Override
+            public void logSecurityThreat(String threatType, String username, String ipAddress, String details) {
+                threats.add(threatType);
+            }
+        };
+        detector = new CredentialStuffingDetector(auditLoggingService, true, 10, 5, 5, 30, 1440, true, 1000, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        detector.shutdown();
+    }
+
+    @Test
+    void testIpTryingManyUsernamesIsBlocked() {
+        for (int i = 0; i < 4; i++) {
+            detector.recordFailure("198.51.100.7", "user" + i + "@example.com");
+        }
+        assertEquals(0, detector.getBlockedSeconds("198.51.100.7", "someone@example.com"));
+        assertTrue(threats.isEmpty());
+
+        detector.recordFailure("198.51.100.7", "user4@example.com");
+
+        assertEquals(List.of("CREDENTIAL_STUFFING"), threats);
+        long blocked = detector.getBlockedSeconds("198.51.100.7", "someone@example.com");
+        assertTrue(blocked > 0 && blocked <= 30 * 60);
+        assertEquals(0, detector.getBlockedSeconds("198.51.100.8", "someone@example.com"));
+        assertEquals(1, detector.getStats().getBlockedIps());
+    }
+
+    @Test
+    void testRepeatedFailuresForOneUsernameAreNotStuffing() {
+        for (int i = 0; i < 50; i++) {
+            detector.recordFailure("198.51.100.7", "typo@example.com");
+        }
+        assertTrue(threats.isEmpty());
+        assertEquals(0, detector.getBlockedSeconds("198.51.100.7", "typo@example.com"));
+    }
+
+    @Test
+    void testUsernameTriedFromManyNetworksIsBlocked() {
+        for (int i = 0; i < 5; i++) {
+            detector.recordFailure("203.0." + i + ".7", "victim@example.com");
+        }
+
+        assertEquals(List.of("DISTRIBUTED_LOGIN_ATTACK"), threats);
+        assertTrue(detector.getBlockedSeconds("192.0.2.1", "VICTIM@example.com") > 0);
+        assertEquals(1, detector.getStats().getBlockedUsernames());
+    }
+
+    @Test
+    void testRotatingWithinOnePrefixCountsAsOneNetwork() {
+        for (int i = 0; i < 50; i++) {
+            detector.recordFailure("203.0.113." + i, "victim@example.com");
+            detector.recordFailure("2001:db8:1:2::" + Integer.toHexString(i + 1), "victim@example.com");
+        }
+
+        // One /24 and one /64: two networks, below the threshold of five
+        assertTrue(threats.isEmpty());
+        assertEquals(0, detector.getBlockedSeconds("192.0.2.1", "victim@example.com"));
+    }
+
+    @Test
+    void testTargetedUsernameIsOnlyReportedWhenBlockingIsOff() {
+        CredentialStuffingDetector reportOnly = new CredentialStuffingDetector(new AuditLoggingService() {
+            @Override
+            public void logSecurityThreat(String threatType, String username, String ipAddress, String details) {
+                threats.add(threatType);
+            }
+        }, true, 10, 5, 5, 30, 1440, false, 1000, false);
+        try {
+            for (int i = 0; i < 5; i++) {
+                reportOnly.recordFailure("203.0." + i + ".7", "victim@example.com");
+            }
+
+            assertEquals(List.of("DISTRIBUTED_LOGIN_ATTACK"), threats);
+            assertEquals(0, reportOnly.getBlockedSeconds("192.0.2.1", "victim@example.com"));
+        } finally {
+            reportOnly.shutdown();
+        }
+    }
+
+    @Test
+    void testDisabledDetector() {
+        CredentialStuffingDetector disabled = new CredentialStuffingDetector(new AuditLoggingService(),
+                false, 10, 1, 1, 30, 1440, true, 1000, false);
+        try {
+            disabled.recordFailure("198.51.100.7", "user@example.com");
+            assertEquals(0, disabled.getBlockedSeconds("198.51.100.7", "user@example.com"));
+        } finally {
+            disabled.shutdown();
+        }
+    }
+}
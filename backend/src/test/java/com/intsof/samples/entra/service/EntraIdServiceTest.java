@@ -38,16 +38,15 @@ public class EntraIdServiceTest {
     }
     
     @Test
-    public void testValidateToken_WithValidToken() {
-        // Create a valid token with correct issuer and audience
+    public void testValidateToken_WithUnverifiableSignature() {
+        // Valid issuer, audience and expiration, but no signing keys to check the signature with
         String validToken = createTestJWT(System.currentTimeMillis() / 1000 + 3600); // Expires in 1 hour
         
         EntraIdService.EntraTokenValidationResult result = entraIdService.validateToken(validToken);
         
-        // This should pass validation since the token has valid issuer, audience, and expiration
-        assertTrue(result.isValid());
-        assertEquals("Token validation successful", result.getMessage());
-        assertNotNull(result.getUserProfile());
+        assertFalse(result.isValid());
+        assertEquals("Invalid token signature", result.getMessage());
+        assertNull(result.getUserProfile());
     }
     
     @Test
@@ -0,0 +1,43 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.service.FilterMetricsService.Outcome;
+import com.intsof.samples.entra.service.FilterMetricsService.Route;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FilterMetricsService
+ */
+class FilterMetricsServiceTest {
+
+    @Test
+    void testOutcomeOfStatus() {
+        assertEquals(Outcome.OK, Outcome.ofStatus(200));
+        assertEquals(Outcome.OK, Outcome.ofStatus(302));
+        assertEquals(Outcome.UNAUTHORIZED, Outcome.ofStatus(401));
+        assertEquals(Outcome.UNAUTHORIZED, Outcome.ofStatus(403));
+        assertEquals(Outcome.RATE_LIMITED, Outcome.ofStatus(429));
+        assertEquals(Outcome.SHED, Outcome.ofStatus(503));
+        assertEquals(Outcome.CLIENT_ERROR, Outcome.ofStatus(400));
+        assertEquals(Outcome.ERROR, Outcome.ofStatus(500));
+    }
+
+    @Test
+    void testStatsOnlyListRecordedCombinations() {
+        FilterMetricsService metrics = new FilterMetricsService();
+        long start = System.nanoTime();
+        metrics.record(Route.LOGIN, Outcome.OK, start);
+        metrics.record(Route.LOGIN, Outcome.OK, start);
+        metrics.record(Route.PROTECTED, Outcome.UNAUTHORIZED, start);
+
+        Map<String, Map<String, FilterMetricsService.RouteStats>> stats = metrics.getStats();
+        assertEquals(2, stats.size());
+        assertEquals(2, stats.get("LOGIN").get("OK").getCount());
+        assertEquals(1, stats.get("PROTECTED").get("UNAUTHORIZED").getCount());
+        assertNull(stats.get("PROTECTED").get("PASSED"));
+        assertTrue(stats.get("LOGIN").get("OK").getP99Micros() >= stats.get("LOGIN").get("OK").getP50Micros());
+    }
+}
@@ -0,0 +1,218 @@
+package com.intsof.samples.entra.service;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for JwksKeyCache against a local stub JWKS endpoint
+ */
+class JwksKeyCacheTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long ONE_HOUR_IN_MINUTES = 60;
+
+    private HttpServer server;
+    private String jwksUri;
+    private final AtomicReference<String> jwks = new AtomicReference<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile long responseDelayMillis;
+    private JwksKeyCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/keys", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(responseDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = jwks.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        jwksUri = "http://127.0.0.1:" + server.getAddress().getPort() + "/keys";
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null) {
+            cache.shutdown();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    void testLoadsKeysAtStartupAndVerifiesEntraTokens() throws Exception {
+        RSAKey key = generateKey("key-1");
+        publish(key);
+        cache = new JwksKeyCache(jwksUri, ONE_HOUR_IN_MINUTES, ONE_HOUR_IN_MINUTES, HOUR, 5000);
+        awaitRequests(1);
+
+        EntraIdService service = entraIdService(cache);
+        EntraIdService.EntraTokenValidationResult result = service.validateToken(sign(key, "key-1"));
+        assertTrue(result.isValid(), result.getMessage());
+        assertEquals("user@example.com", result.getUserProfile().getEmail());
+
+        // Same kid, different key: the signature does not match
+        EntraIdService.EntraTokenValidationResult forged = service.validateToken(sign(generateKey("key-1"), "key-1"));
+        assertFalse(forged.isValid());
+        assertEquals("Invalid token signature", forged.getMessage());
+
+        // Unsigned tokens no longer pass once verification is on
+        SignedJWT signed = SignedJWT.parse(sign(key, "key-1"));
+        String unsigned = signed.getParsedParts()[0] + "." + signed.getParsedParts()[1] + ".c2lnbmF0dXJl";
+        assertFalse(service.validateToken(unsigned).isValid());
+
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.getStats().getKeys());
+    }
+
+    @Test
+    void testUnknownKidRefetchesAtMostOncePerInterval() throws Exception {
+        RSAKey first = generateKey("key-1");
+        RSAKey rotated = generateKey("key-2");
+        publish(first);
+        cache = new JwksKeyCache(jwksUri, ONE_HOUR_IN_MINUTES, ONE_HOUR_IN_MINUTES, 300, 5000);
+        awaitRequests(1);
+        assertNotNull(cache.getVerifier("key-1"));
+
+        // Key rotation: the new kid is picked up by a refetch once the interval has passed
+        publish(first, rotated);
+        Thread.sleep(350);
+        assertNotNull(cache.getVerifier("key-2"));
+        assertEquals(2, requests.get());
+
+        // Unknown kids within the interval do not hit the endpoint again
+        for (int i = 0; i < 20; i++) {
+            assertNull(cache.getVerifier("bogus-" + i));
+        }
+        assertEquals(2, requests.get());
+        assertTrue(cache.getStats().getThrottledRefetches() >= 20);
+    }
+
+    @Test
+    void testConcurrentUnknownKidLookupsShareOneDownload() throws Exception {
+        publish(generateKey("key-1"));
+        cache = new JwksKeyCache(jwksUri, ONE_HOUR_IN_MINUTES, ONE_HOUR_IN_MINUTES, 1000, 5000);
+        awaitRequests(1);
+
+        RSAKey rotated = generateKey("key-2");
+        publish(rotated);
+        Thread.sleep(1100);
+        responseDelayMillis = 300;
+        int callers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.getVerifier("key-2") != null;
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void testDisabledWithoutUri() {
+        cache = new JwksKeyCache("", ONE_HOUR_IN_MINUTES, ONE_HOUR_IN_MINUTES, HOUR, 5000);
+        assertFalse(cache.isEnabled());
+        assertNull(cache.getVerifier("key-1"));
+
+        // Without keys no signature can be checked, so tokens are rejected rather than trusted
+        EntraIdService service = entraIdService(cache);
+        SignedJWT token = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), claims());
+        String unsigned = token.getHeader().toBase64URL() + "." + token.getPayload().toBase64URL() + ".c2lnbmF0dXJl";
+        EntraIdService.EntraTokenValidationResult result = service.validateToken(unsigned);
+        assertFalse(result.isValid());
+        assertEquals("Invalid token signature", result.getMessage());
+        assertFalse(entraIdService(null).validateToken(unsigned).isValid());
+    }
+
+    private void awaitRequests(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (requests.get() < count || cache.getStats().getFetchedAt() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "JWKS was not loaded");
+            Thread.sleep(10);
+        }
+    }
+
+    private void publish(RSAKey... keys) {
+        List<com.nimbusds.jose.jwk.JWK> publicKeys = new ArrayList<>();
+        for (RSAKey key : keys) {
+            publicKeys.add(key.toPublicJWK());
+        }
+        jwks.set(new JWKSet(publicKeys).toString());
+    }
+
+    private static RSAKey generateKey(String kid) throws Exception {
+        return new RSAKeyGenerator(2048).keyID(kid).keyUse(KeyUse.SIGNATURE).generate();
+    }
+
+    private static JWTClaimsSet claims() {
+        return new JWTClaimsSet.Builder()
+                .issuer("https://login.microsoftonline.com/test-tenant/v2.0")
+                .audience("test-client-id")
+                .subject("subject-1")
+                .claim("email", "user@example.com")
+                .expirationTime(new Date(System.currentTimeMillis() + HOUR))
+                .build();
+    }
+
+    private static String sign(RSAKey key, String kid) throws Exception {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(kid).build(), claims());
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static EntraIdService entraIdService(JwksKeyCache cache) {
+        EntraIdService service = new EntraIdService();
+        ReflectionTestUtils.setField(service, "clientId", "test-client-id");
+        ReflectionTestUtils.setField(service, "jwksKeyCache", cache);
+        return service;
+    }
+}
@@ -1,5 +1,6 @@
 package com.intsof.samples.entra.service;
 
+import com.intsof.samples.entra.model.AuthenticatedPrincipal;
 import com.nimbusds.jwt.JWTClaimsSet;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -61,6 +62,29 @@ class JwtServiceTest {
         assertEquals(roles, extractedRoles);
     }
 
+    @Test
+    void testAuthenticateDecodesPrincipalOnce() {
+        TokenBlacklistService blacklist = new TokenBlacklistService();
+        ReflectionTestUtils.setField(jwtService, "tokenBlacklistService", blacklist);
+        String token = jwtService.generateToken("testuser", Arrays.asList("USER", "ADMIN"), null);
+
+        AuthenticatedPrincipal principal = jwtService.authenticate(token);
+        assertNotNull(principal);
+        assertEquals("testuser", principal.getSubject());
+        assertEquals(List.of("USER", "ADMIN"), principal.getRoles());
+        assertTrue(principal.hasRole("ADMIN"));
+        assertNotNull(principal.getTokenId());
+        assertTrue(principal.getExpiresAt().isAfter(java.time.Instant.now()));
+
+        // Every token gets its own id
+        assertNotEquals(principal.getTokenId(), jwtService.authenticate(
+                jwtService.generateToken("testuser", List.of("USER"), null)).getTokenId());
+
+        blacklist.blacklistToken(token, new Date(System.currentTimeMillis() + 60_000));
+        assertNull(jwtService.authenticate(token));
+        assertNull(jwtService.authenticate("invalid.token.value"));
+    }
+
     @Test
     void testInvalidToken() {
         assertFalse(jwtService.validateToken("invalid.token.value"));
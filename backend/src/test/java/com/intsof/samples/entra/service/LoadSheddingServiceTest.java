@@ -0,0 +1,164 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.service.LoadSheddingService.Priority;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LoadSheddingService
+ */
+class LoadSheddingServiceTest {
+
+    private static LoadSheddingService service(int maxConcurrent, long maxQueueWaitMillis) {
+        return service(maxConcurrent, maxQueueWaitMillis, 2000);
+    }
+
+    private static LoadSheddingService service(int maxConcurrent, long maxQueueWaitMillis, long maxHighQueueWaitMillis) {
+        return new LoadSheddingService(true, maxConcurrent, maxQueueWaitMillis, maxHighQueueWaitMillis, 5, 100,
+                List.of("/auth/check-method", "/api/sso/config"), List.of("/login"));
+    }
+
+    @Test
+    void testPriorityOfPaths() {
+        LoadSheddingService service = service(10, 100);
+        assertEquals(Priority.LOW, service.priorityOf("/auth/check-method", true));
+        assertEquals(Priority.NORMAL, service.priorityOf("/login", false));
+        assertEquals(Priority.HIGH, service.priorityOf("/api/orders", true));
+        // API calls without an authenticated token are shed with the logins
+        assertEquals(Priority.NORMAL, service.priorityOf("/api/orders", false));
+    }
+
+    @Test
+    void testProxyReportedStandingQueueShedsLowPriorityFirst() throws Exception {
+        LoadSheddingService service = service(10, 100);
+        long delay = TimeUnit.MILLISECONDS.toNanos(50);
+
+        assertTrue(service.tryAdmit(Priority.HIGH, delay));
+        service.release();
+        Thread.sleep(120);
+        assertTrue(service.tryAdmit(Priority.HIGH, delay));
+        service.release();
+        assertEquals(1, service.getStats().getLevel());
+
+        assertFalse(service.tryAdmit(Priority.LOW, delay));
+        assertTrue(service.tryAdmit(Priority.NORMAL, delay));
+        service.release();
+        Thread.sleep(120);
+        assertTrue(service.tryAdmit(Priority.HIGH, delay));
+        service.release();
+        assertEquals(2, service.getStats().getLevel());
+        assertFalse(service.tryAdmit(Priority.NORMAL, delay));
+        assertTrue(service.tryAdmit(Priority.HIGH, delay));
+        service.release();
+
+        // The queue drained: everything is admitted again
+        assertTrue(service.tryAdmit(Priority.HIGH, 0));
+        service.release();
+        assertTrue(service.tryAdmit(Priority.LOW, 0));
+        service.release();
+
+        LoadSheddingService.LoadSheddingStats stats = service.getStats();
+        assertEquals(0, stats.getLevel());
+        assertEquals(1, stats.getShedLow());
+        assertEquals(1, stats.getShedNormal());
+        assertEquals(3, stats.getLevelChanges());
+        assertEquals(0, stats.getInFlight());
+    }
+
+    @Test
+    void testRequestsQueueForSlotsAndTimeOut() throws Exception {
+        LoadSheddingService service = service(1, 50);
+        assertTrue(service.tryAdmit(Priority.HIGH, 0));
+        assertEquals(1, service.getStats().getInFlight());
+
+        // No slot frees up within the queue wait
+        assertFalse(service.tryAdmit(Priority.NORMAL, 0));
+        assertEquals(1, service.getStats().getQueueTimeouts());
+
+        // A slot freed while waiting admits the queued request
+        CountDownLatch waiting = new CountDownLatch(1);
+        Thread releaser = new Thread(() -> {
+            try {
+                waiting.await();
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            service.release();
+        });
+        releaser.start();
+        ReflectionTestUtils.setField(service, "maxQueueWaitMillis", 2000L);
+        waiting.countDown();
+        assertTrue(service.tryAdmit(Priority.NORMAL, 0));
+        service.release();
+        releaser.join();
+    }
+
+    @Test
+    void testNewcomerDoesNotOvertakeAQueuedRequest() throws Exception {
+        LoadSheddingService service = service(1, 2000);
+        assertTrue(service.tryAdmit(Priority.HIGH, 0));
+
+        boolean[] queuedAdmitted = new boolean[1];
+        Thread queued = new Thread(() -> queuedAdmitted[0] = service.tryAdmit(Priority.NORMAL, 0));
+        queued.start();
+        while (service.getStats().getQueued() == 0) {
+            Thread.sleep(1);
+        }
+
+        // The freed slot belongs to the queued request, so a newcomer that will not wait gets nothing
+        ReflectionTestUtils.setField(service, "maxQueueWaitMillis", 0L);
+        service.release();
+        assertFalse(service.tryAdmit(Priority.NORMAL, 0));
+        queued.join();
+        assertTrue(queuedAdmitted[0]);
+        service.release();
+        assertEquals(0, service.getStats().getInFlight());
+    }
+
+    @Test
+    void testHighPriorityWaitsPastTheQueueTimeout() throws Exception {
+        LoadSheddingService service = service(1, 20, 2000);
+        assertTrue(service.tryAdmit(Priority.HIGH, 0));
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(150);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            service.release();
+        });
+        releaser.start();
+        assertTrue(service.tryAdmit(Priority.HIGH, 0));
+        releaser.join();
+        assertEquals(0, service.getStats().getQueueTimeouts());
+        service.release();
+        assertEquals(0, service.getStats().getInFlight());
+    }
+
+    @Test
+    void testHighPriorityWaitIsBounded() {
+        LoadSheddingService service = service(1, 0, 50);
+        assertTrue(service.tryAdmit(Priority.HIGH, 0));
+
+        assertFalse(service.tryAdmit(Priority.HIGH, 0));
+        assertEquals(1, service.getStats().getQueueTimeouts());
+        service.release();
+        assertEquals(0, service.getStats().getInFlight());
+    }
+
+    @Test
+    void testDisabledAdmitsEverything() {
+        LoadSheddingService service = new LoadSheddingService(false, 1, 0, 0, 5, 100, List.of("/a"), List.of());
+        assertTrue(service.tryAdmit(Priority.LOW, TimeUnit.SECONDS.toNanos(10)));
+        assertTrue(service.tryAdmit(Priority.LOW, TimeUnit.SECONDS.toNanos(10)));
+        assertFalse(service.getStats().isEnabled());
+    }
+}
@@ -0,0 +1,36 @@
+package com.intsof.samples.entra.service;
+
+import com.microsoft.aad.msal4j.ConfidentialClientApplication;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MsalClientRegistry
+ */
+class MsalClientRegistryTest {
+
+    @Test
+    void testOneClientPerAuthorityAndClientId() {
+        MsalClientRegistry registry = MsalClientRegistry.defaults();
+        String authority = "https://login.microsoftonline.com/tenant-a";
+
+        ConfidentialClientApplication first = registry.getClient(authority, "client-1", "secret");
+        assertSame(first, registry.getClient(authority, "client-1", "secret"));
+        assertEquals("client-1", first.clientId());
+
+        assertNotSame(first, registry.getClient("https://login.microsoftonline.com/tenant-b", "client-1", "secret"));
+        assertNotSame(first, registry.getClient(authority, "client-2", "secret"));
+
+        MsalClientRegistry.MsalClientStats stats = registry.getStats();
+        assertEquals(3, stats.getClients());
+        assertEquals(3, stats.getCreated());
+    }
+
+    @Test
+    void testInvalidAuthorityIsNotCached() {
+        MsalClientRegistry registry = MsalClientRegistry.defaults();
+        assertThrows(RuntimeException.class, () -> registry.getClient("not a url", "client-1", "secret"));
+        assertEquals(0, registry.getStats().getClients());
+    }
+}
@@ -1,10 +1,16 @@
 package com.intsof.samples.entra.service;
 
+import com.intsof.samples.entra.ratelimit.RateLimitDecision;
+import com.intsof.samples.entra.ratelimit.RateLimitScope;
 import com.intsof.samples.entra.service.RateLimitingService.RateLimitStats;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -159,7 +165,15 @@ class RateLimitingServiceTest {
         assertEquals(1, initialStats.getWindowMinutes());
         assertTrue(initialStats.isEnabled());
         
-        // Create some activity
+        // A single failure is only counted in the sketch
+        rateLimitingService.recordFailedAttempt(ipAddress1, username1);
+        rateLimitingService.recordFailedAttempt(ipAddress2, username2);
+        
+        RateLimitStats sketchOnlyStats = rateLimitingService.getStats();
+        assertEquals(0, sketchOnlyStats.getActiveIpCounters());
+        assertEquals(0, sketchOnlyStats.getActiveUserCounters());
+        
+        // Repeated failures promote the keys to exact counters
         rateLimitingService.recordFailedAttempt(ipAddress1, username1);
         rateLimitingService.recordFailedAttempt(ipAddress2, username2);
         
@@ -168,6 +182,17 @@ class RateLimitingServiceTest {
         assertEquals(2, activeStats.getActiveUserCounters());
     }
     
+    @Test
+    void testChecksDoNotAllocateCounters() {
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(rateLimitingService.isAllowed("10.0." + (i / 256) + "." + (i % 256), "user" + i + "@example.com"));
+        }
+        
+        RateLimitStats stats = rateLimitingService.getStats();
+        assertEquals(0, stats.getActiveIpCounters());
+        assertEquals(0, stats.getActiveUserCounters());
+    }
+    
     @Test
     void testDisabledRateLimiting() {
         ReflectionTestUtils.setField(rateLimitingService, "rateLimitingEnabled", false);
@@ -187,6 +212,147 @@ class RateLimitingServiceTest {
         assertTrue(rateLimitingService.isAllowed(ipAddress, username));
     }
     
+    @Test
+    void testSubnetScopeCatchesRotatingAddresses() {
+        RateLimitingService hierarchical = hierarchicalService();
+        
+        // Each address stays below the per-IP limit, but the /24 as a whole does not
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(hierarchical.isAllowed("203.0.113." + i, "victim" + i + "@example.com"));
+            hierarchical.recordFailedAttempt("203.0.113." + i, "victim" + i + "@example.com");
+        }
+        
+        RateLimitDecision decision = hierarchical.check("203.0.113.99", "fresh@example.org");
+        assertFalse(decision.isAllowed());
+        assertEquals(RateLimitScope.SUBNET, decision.getScope());
+        assertTrue(decision.getRetryAfterSeconds() > 0);
+        
+        // A different /24 is unaffected
+        assertTrue(hierarchical.check("203.0.114.1", "fresh@example.org").isAllowed());
+    }
+    
+    @Test
+    void testIpv6SubnetScopeUsesSlash64() {
+        RateLimitingService hierarchical = hierarchicalService();
+        
+        for (int i = 1; i <= 4; i++) {
+            hierarchical.recordFailedAttempt("2001:db8:1:2::" + Integer.toHexString(i), "user" + i + "@example.com");
+        }
+        
+        assertEquals(RateLimitScope.SUBNET, hierarchical.check("2001:db8:1:2:ffff::1", "other@example.org").getScope());
+        assertTrue(hierarchical.check("2001:db8:1:3::1", "other@example.org").isAllowed());
+    }
+    
+    @Test
+    void testDomainScopeCatchesUsernameRotation() {
+        RateLimitingService hierarchical = hierarchicalService();
+        
+        for (int i = 0; i < 6; i++) {
+            hierarchical.recordFailedAttempt("198.51.100." + (i * 40), "user" + i + "@target.com");
+        }
+        
+        RateLimitDecision decision = hierarchical.check("192.0.2.1", "someone@TARGET.com");
+        assertFalse(decision.isAllowed());
+        assertEquals(RateLimitScope.DOMAIN, decision.getScope());
+        assertTrue(hierarchical.check("192.0.2.1", "someone@other.com").isAllowed());
+    }
+    
+    @Test
+    void testFirstDenyingScopeIsReported() {
+        RateLimitingService hierarchical = hierarchicalService();
+        
+        for (int i = 0; i < 3; i++) {
+            hierarchical.recordFailedAttempt("192.0.2.7", "user@example.com");
+        }
+        
+        // Both IP and user are exhausted; IP comes first in the chain
+        assertEquals(RateLimitScope.IP, hierarchical.check("192.0.2.7", "user@example.com").getScope());
+        assertEquals(RateLimitScope.USER, hierarchical.check("192.0.2.8", "user@example.com").getScope());
+    }
+    
+    @Test
+    void testRepeatedViolationsEscalateLockout() {
+        String ipAddress = "192.0.2.50";
+        String username = "target@example.com";
+        
+        for (int i = 0; i < 3; i++) {
+            rateLimitingService.recordFailedAttempt(ipAddress, username);
+        }
+        // First violation: locked out for one window
+        long firstWait = rateLimitingService.getTimeUntilNextAttempt(ipAddress, username);
+        assertTrue(firstWait > 0 && firstWait <= 60);
+        assertEquals(2, rateLimitingService.getStats().getPenalizedKeys()); // the IP and the user
+        
+        // The lockout is lifted by a successful login, but the IP's penalty remains
+        rateLimitingService.resetCounters(ipAddress, username);
+        assertTrue(rateLimitingService.isAllowed(ipAddress, username));
+        
+        for (int i = 0; i < 3; i++) {
+            rateLimitingService.recordFailedAttempt(ipAddress, "other@example.com");
+        }
+        RateLimitDecision decision = rateLimitingService.check(ipAddress, "other@example.com");
+        assertFalse(decision.isAllowed());
+        assertEquals(RateLimitScope.IP, decision.getScope());
+        assertTrue(decision.getRetryAfterSeconds() > 60);
+    }
+    
+    @Test
+    void testRefundRestoresReservedAttempt() {
+        String ipAddress = "192.168.1.60";
+        String username = "refund@example.com";
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rateLimitingService.acquire(ipAddress, username).isAllowed());
+            rateLimitingService.refund(ipAddress, username);
+        }
+        assertTrue(rateLimitingService.check(ipAddress, username).isAllowed());
+        assertEquals(3, rateLimitingService.getRemainingAttempts(ipAddress));
+    }
+    
+    @Test
+    void testConcurrentAcquireNeverExceedsLimit() throws Exception {
+        String ipAddress = "192.168.1.70";
+        String username = "race@example.com";
+        // One clock reading for all threads, so no attempt is judged against a stale time
+        long now = System.currentTimeMillis();
+        int threads = 16;
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (rateLimitingService.acquire(ipAddress, username, now).isAllowed()) {
+                    allowed.incrementAndGet();
+                    rateLimitingService.confirmFailedAttempt(ipAddress, username, now);
+                }
+            });
+            workers[i].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        
+        assertEquals(3, allowed.get());
+        assertFalse(rateLimitingService.check(ipAddress, username, now).isAllowed());
+    }
+    
+    private RateLimitingService hierarchicalService() {
+        RateLimitingService service = new RateLimitingService(1000, 1, 1024,
+                List.of("ip", "subnet", "user", "domain", "global"));
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "windowMinutes", 1);
+        ReflectionTestUtils.setField(service, "rateLimitingEnabled", true);
+        ReflectionTestUtils.setField(service, "subnetMaxAttempts", 4);
+        ReflectionTestUtils.setField(service, "domainMaxAttempts", 6);
+        ReflectionTestUtils.setField(service, "globalMaxAttempts", 1000);
+        return service;
+    }
+    
     @Test
     void testNullInputHandling() {
         // Should handle null inputs gracefully
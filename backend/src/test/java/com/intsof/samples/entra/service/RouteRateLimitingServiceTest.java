@@ -0,0 +1,128 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.config.RateLimitRouteProperties;
+import com.intsof.samples.entra.ratelimit.RateLimitDecision;
+import com.intsof.samples.entra.ratelimit.RateLimitScope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RouteRateLimitingService
+ */
+class RouteRateLimitingServiceTest {
+
+    private RouteRateLimitingService service;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitRouteProperties properties = new RateLimitRouteProperties();
+        properties.getRoutes().put("check-method", route("/auth/check-method", "POST", "ip", 3));
+        properties.getRoutes().put("check-method-user", route("/auth/check-method", "POST", "user", 2));
+        properties.getRoutes().put("callback", route("/auth/entra/callback", "*", "ip", 1));
+        service = new RouteRateLimitingService(properties, true, 100, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testUnconfiguredRouteIsNotLimited() {
+        assertNull(service.check(new MockHttpServletRequest("GET", "/api/sso/config"), "10.0.0.1"));
+    }
+
+    @Test
+    void testNewKeysKeepTheirOwnBudgetWhenTableIsFull() {
+        RateLimitRouteProperties properties = new RateLimitRouteProperties();
+        properties.getRoutes().put("check-method", route("/auth/check-method", "POST", "ip", 2));
+        RouteRateLimitingService small = new RouteRateLimitingService(properties, true, 1, false);
+        try {
+            assertTrue(small.check(new MockHttpServletRequest("POST", "/auth/check-method"), "10.0.0.1").isAllowed());
+
+            // Fresh addresses beyond the table's capacity are still limited one by one
+            assertTrue(small.check(new MockHttpServletRequest("POST", "/auth/check-method"), "10.0.0.2").isAllowed());
+            assertTrue(small.check(new MockHttpServletRequest("POST", "/auth/check-method"), "10.0.0.2").isAllowed());
+            RateLimitDecision denied = small.check(new MockHttpServletRequest("POST", "/auth/check-method"), "10.0.0.2");
+            assertFalse(denied.isAllowed());
+            assertTrue(denied.getRetryAfterSeconds() > 0);
+
+            // A spray of fresh addresses does not use up the budget of the next new client
+            for (int i = 0; i < 500; i++) {
+                small.check(new MockHttpServletRequest("POST", "/auth/check-method"), "10.1." + (i >> 8) + "." + (i & 255));
+            }
+            assertTrue(small.check(new MockHttpServletRequest("POST", "/auth/check-method"), "10.0.0.3").isAllowed());
+            assertEquals(1, small.check(new MockHttpServletRequest("POST", "/auth/check-method"), "10.0.0.4").getRemaining());
+
+            // The tracked key keeps its own budget
+            assertTrue(small.check(new MockHttpServletRequest("POST", "/auth/check-method"), "10.0.0.1").isAllowed());
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    @Test
+    void testMethodMustMatch() {
+        assertNull(service.check(new MockHttpServletRequest("GET", "/auth/check-method"), "10.0.0.1"));
+        assertNotNull(service.check(new MockHttpServletRequest("GET", "/auth/entra/callback"), "10.0.0.1"));
+    }
+
+    @Test
+    void testBurstIsEnforcedPerIp() {
+        for (int i = 0; i < 3; i++) {
+            RateLimitDecision decision = service.check(new MockHttpServletRequest("POST", "/auth/check-method"), "10.0.0.1");
+            assertTrue(decision.isAllowed());
+            assertEquals(3, decision.getLimit());
+            assertEquals(2 - i, decision.getRemaining());
+        }
+
+        RateLimitDecision denied = service.check(new MockHttpServletRequest("POST", "/auth/check-method"), "10.0.0.1");
+        assertFalse(denied.isAllowed());
+        assertEquals(RateLimitScope.IP, denied.getScope());
+        assertTrue(denied.getRetryAfterSeconds() > 0);
+
+        assertTrue(service.check(new MockHttpServletRequest("POST", "/auth/check-method"), "10.0.0.2").isAllowed());
+    }
+
+    @Test
+    void testUserScopeReadsEmailParameter() {
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/check-method");
+            request.setParameter("email", "Alice@Example.com");
+            assertTrue(service.check(request, "10.0.1." + i).isAllowed());
+        }
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/check-method");
+        request.setParameter("email", "alice@example.com");
+        RateLimitDecision denied = service.check(request, "10.0.1.9");
+        assertFalse(denied.isAllowed());
+        assertEquals(RateLimitScope.USER, denied.getScope());
+    }
+
+    @Test
+    void testDisabledServiceSkipsPolicies() {
+        RateLimitRouteProperties properties = new RateLimitRouteProperties();
+        properties.getRoutes().put("callback", route("/auth/entra/callback", "GET", "ip", 1));
+        RouteRateLimitingService disabled = new RouteRateLimitingService(properties, false, 100, false);
+        try {
+            assertNull(disabled.check(new MockHttpServletRequest("GET", "/auth/entra/callback"), "10.0.0.1"));
+        } finally {
+            disabled.shutdown();
+        }
+    }
+
+    private static RateLimitRouteProperties.Route route(String path, String method, String scope, int burst) {
+        RateLimitRouteProperties.Route route = new RateLimitRouteProperties.Route();
+        route.setPath(path);
+        route.setMethod(method);
+        route.setScope(scope);
+        route.setRate(1);
+        route.setPeriodSeconds(60);
+        route.setBurst(burst);
+        return route;
+    }
+}
@@ -0,0 +1,87 @@
+package com.intsof.samples.entra.service;
+
+import com.intsof.samples.entra.config.ShadowPolicyProperties;
+import com.intsof.samples.entra.service.ShadowRateLimitingService.ShadowPolicyStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ShadowRateLimitingService
+ */
+class ShadowRateLimitingServiceTest {
+
+    private final List<Map<String, Object>> shadowEvents = new ArrayList<>();
+    private ShadowRateLimitingService shadowService;
+
+    @BeforeEach
+    void setUp() {
+        ShadowPolicyProperties.Policy strict = new ShadowPolicyProperties.Policy();
+        strict.setMaxAttempts(2);
+        ShadowPolicyProperties properties = new ShadowPolicyProperties();
+        properties.getPolicies().put("strict", strict);
+
+        AuditLoggingService auditLoggingService = new AuditLoggingService() {
+            @Override
+            public void logAuthEvent(String eventType, String username, String ipAddress, Map<String, Object> eventData) {
+                if ("SHADOW_RATE_LIMIT".equals(eventType)) {
+                    shadowEvents.add(eventData);
+                }
+            }
+        };
+        shadowService = new ShadowRateLimitingService(properties, auditLoggingService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shadowService.shutdown();
+    }
+
+    @Test
+    void testRecordsWouldBeDecisionsWithoutEnforcing() {
+        assertTrue(shadowService.isActive());
+
+        shadowService.observe("192.0.2.1", "alice@example.com", true, false);
+        shadowService.observe("192.0.2.1", "alice@example.com", true, false);
+        assertTrue(shadowEvents.isEmpty());
+
+        // The enforcing policy still allows the third attempt, the candidate would not
+        shadowService.observe("192.0.2.1", "alice@example.com", true, true);
+
+        ShadowPolicyStats stats = shadowService.getStats().get("strict");
+        assertEquals(3, stats.getAttempts());
+        assertEquals(1, stats.getWouldDeny());
+        assertEquals(1, stats.getExtraDenials());
+        assertEquals(0, stats.getExtraAllows());
+        assertEquals(1, stats.getWouldDenySuccessful());
+
+        assertEquals(1, shadowEvents.size());
+        assertEquals("strict", shadowEvents.get(0).get("policy"));
+        assertEquals("deny", shadowEvents.get(0).get("shadowDecision"));
+        assertEquals("success", shadowEvents.get(0).get("outcome"));
+    }
+
+    @Test
+    void testRecordsAttemptsOnlyTheEnforcingPolicyDenies() {
+        shadowService.observe("192.0.2.1", "alice@example.com", false, null);
+
+        ShadowPolicyStats stats = shadowService.getStats().get("strict");
+        assertEquals(0, stats.getWouldDeny());
+        assertEquals(1, stats.getExtraAllows());
+        assertEquals("allow", shadowEvents.get(0).get("shadowDecision"));
+    }
+
+    @Test
+    void testInactiveWithoutCandidates() {
+        ShadowRateLimitingService none = new ShadowRateLimitingService(new ShadowPolicyProperties(), new AuditLoggingService());
+        assertFalse(none.isActive());
+        none.observe("192.0.2.1", "alice@example.com", true, false);
+        assertTrue(none.getStats().isEmpty());
+    }
+}
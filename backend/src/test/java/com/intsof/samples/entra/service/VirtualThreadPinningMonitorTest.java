@@ -0,0 +1,44 @@
+package com.intsof.samples.entra.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadPinningMonitorTest {
+
+    @Test
+    void testRecordsPinningPerSite() {
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor();
+        monitor.record(30_000_000L, "com.intsof.Example.run:10");
+        monitor.record(50_000_000L, "com.intsof.Example.run:10");
+        monitor.record(20_000_000L, "com.intsof.Other.call:5");
+
+        VirtualThreadPinningMonitor.PinningStats stats = monitor.getStats();
+        assertEquals(3, stats.getPinnedCount());
+        assertEquals(100, stats.getPinnedMillis());
+        assertEquals(50, stats.getMaxPinnedMillis());
+        assertEquals(2L, stats.getPinnedBySite().get("com.intsof.Example.run:10"));
+        assertEquals(1L, stats.getPinnedBySite().get("com.intsof.Other.call:5"));
+        assertFalse(stats.isActive());
+    }
+
+    @Test
+    void testSitesAreBounded() {
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor();
+        for (int i = 0; i < 500; i++) {
+            monitor.record(1_000_000L, "site" + i);
+        }
+
+        VirtualThreadPinningMonitor.PinningStats stats = monitor.getStats();
+        assertEquals(500, stats.getPinnedCount());
+        assertTrue(stats.getPinnedBySite().size() <= 100);
+    }
+
+    @Test
+    void testNotStartedWithoutVirtualThreads() {
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor();
+        monitor.start();
+        assertFalse(monitor.getStats().isActive());
+        monitor.shutdown();
+    }
+}
@@ -0,0 +1,106 @@
+package com.intsof.samples.entra.tools;
+
+import com.intsof.samples.entra.config.ShadowPolicyProperties;
+import com.intsof.samples.entra.tools.AuditLogReplay.LoginEvent;
+import com.intsof.samples.entra.tools.AuditLogReplay.ReplayResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AuditLogReplay
+ */
+class AuditLogReplayTest {
+
+    @Test
+    void testParsesLoginLines() {
+        LoginEvent failure = AuditLogReplay.parse("2026-10-19 05:28:55.250 - AUTH_FAILURE | timestamp=2026-10-19 05:28:55 | "
+                + "username=alice@example.com | reason=invalid_credentials | ip=192.0.2.1 | ");
+        assertNotNull(failure);
+        assertEquals("alice@example.com", failure.username);
+        assertEquals("192.0.2.1", failure.ip);
+        assertEquals(Boolean.FALSE, failure.success);
+
+        LoginEvent success = AuditLogReplay.parse("2026-10-19 05:28:56.000 - AUTH_SUCCESS | timestamp=2026-10-19 05:28:56 | "
+                + "username=alice@example.com | method=PASSWORD | ip=192.0.2.1 | roles=[USER] | authMethod=PASSWORD | ");
+        assertNotNull(success);
+        assertEquals(Boolean.TRUE, success.success);
+        assertEquals(750, success.time - failure.time);
+
+        LoginEvent limited = AuditLogReplay.parse("2026-10-19 05:28:57.000 - RATE_LIMIT_EXCEEDED | timestamp=2026-10-19 05:28:57 | "
+                + "username=alice@example.com | limitType=LOGIN_RATE_LIMIT | ip=192.0.2.1 | scope=IP | waitTime=12 | ");
+        assertNotNull(limited);
+        assertNull(limited.success);
+
+        // Written a few seconds late, e.g. by a backed-up writer: the event's own timestamp counts
+        LoginEvent late = AuditLogReplay.parse("2026-10-19 05:29:01.400 - RATE_LIMIT_EXCEEDED | timestamp=2026-10-19 05:28:57 | "
+                + "username=alice@example.com | limitType=LOGIN_RATE_LIMIT | ip=192.0.2.1 | ");
+        assertNotNull(late);
+        assertEquals(limited.time, late.time);
+
+        // Not password login attempts
+        assertNull(AuditLogReplay.parse("2026-10-19 05:28:57.000 - AUTH_SUCCESS | timestamp=2026-10-19 05:28:57 | "
+                + "username=bob@contoso.com | method=SSO | ip=192.0.2.1 | "));
+        assertNull(AuditLogReplay.parse("2026-10-19 05:28:57.000 - AUTH_FAILURE | timestamp=2026-10-19 05:28:57 | "
+                + "username=null | reason=missing_email_header | ip=192.0.2.1 | "));
+        assertNull(AuditLogReplay.parse("2026-10-19 05:28:57.000 - LOGOUT | timestamp=2026-10-19 05:28:57 | username=a | "));
+        assertNull(AuditLogReplay.parse("garbage"));
+    }
+
+    @Test
+    void testReplayCountsBlockedLegitAndAttackAttempts() {
+        List<LoginEvent> events = new ArrayList<>();
+        long t = 1_000_000_000L;
+        // A real user mistypes twice, then logs in
+        events.add(new LoginEvent(t, "192.0.2.1", "alice@example.com", false));
+        events.add(new LoginEvent(t + 1000, "192.0.2.1", "alice@example.com", false));
+        events.add(new LoginEvent(t + 2000, "192.0.2.1", "alice@example.com", true));
+        // An attacker hammers one account
+        for (int i = 0; i < 20; i++) {
+            events.add(new LoginEvent(t + 100 * i, "198.51.100.9", "bob@example.com", false));
+        }
+
+        ShadowPolicyProperties.Policy strict = new ShadowPolicyProperties.Policy();
+        strict.setMaxAttempts(2);
+        ShadowPolicyProperties.Policy lenient = new ShadowPolicyProperties.Policy();
+        lenient.setMaxAttempts(5);
+
+        Map<String, ReplayResult> results = AuditLogReplay.replay(events, Map.of("strict", strict, "lenient", lenient), 3_600_000L);
+
+        ReplayResult strictResult = results.get("strict");
+        assertEquals(3, strictResult.legitAttempts);
+        assertEquals(20, strictResult.attackAttempts);
+        assertEquals(1, strictResult.blockedLegit);
+        assertEquals(18, strictResult.blockedAttack);
+
+        ReplayResult lenientResult = results.get("lenient");
+        assertEquals(0, lenientResult.blockedLegit);
+        assertEquals(15, lenientResult.blockedAttack);
+    }
+
+    @Test
+    void testReadsPoliciesFromProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("auth.rate-limit.max-attempts", "7");
+        properties.setProperty("auth.rate-limit.scopes", "ip, subnet,user");
+        properties.setProperty("auth.rate-limit.subnet.max-attempts", "40");
+        properties.setProperty("auth.rate-limit.shadow.policies.strict.max-attempts", "3");
+        properties.setProperty("auth.rate-limit.shadow.policies.strict.window-minutes", "5");
+        properties.setProperty("auth.rate-limit.shadow.policies.strict.scopes", "ip,domain");
+
+        Map<String, ShadowPolicyProperties.Policy> policies = AuditLogReplay.policies(properties);
+
+        assertEquals(List.of("current", "strict"), List.copyOf(policies.keySet()));
+        assertEquals(7, policies.get("current").getMaxAttempts());
+        assertEquals(40, policies.get("current").getSubnetMaxAttempts());
+        assertEquals(List.of("ip", "subnet", "user"), policies.get("current").getScopes());
+        assertEquals(3, policies.get("strict").getMaxAttempts());
+        assertEquals(5, policies.get("strict").getWindowMinutes());
+        assertEquals(List.of("ip", "domain"), policies.get("strict").getScopes());
+    }
+}
@@ -1,17 +1,20 @@
 package com.intsof.samples.security;
 
 import com.intsof.samples.security.spi.ExternalIdTokenService;
+import com.microsoft.aad.msal4j.IAuthenticationResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 /**
@@ -65,6 +68,43 @@ public class EntraExternalIdSSOProviderTest {
         assertTrue(result.getMessage().toLowerCase().contains("failed"));
     }
 
+    @Test
+    public void testAuthenticateWithAuthorizationCodeAsync_DoesNotWaitForExchange() {
+        ExternalIdTokenService.ExternalUserProfile profile =
+                new ExternalIdTokenService.ExternalUserProfile("test@example.com", List.of("USER"));
+        when(tokenService.getUserProfileAsync(anyString())).thenReturn(CompletableFuture.completedFuture(profile));
+        CompletableFuture<IAuthenticationResult> exchange = new CompletableFuture<>();
+        when(tokenService.acquireTokenByAuthorizationCode(anyString(), anyString(), anySet())).thenReturn(exchange);
+
+        CompletableFuture<AuthenticationResult> pending = provider
+                .authenticateWithAuthorizationCodeAsync("auth-code", "http://localhost/callback").toCompletableFuture();
+        assertFalse(pending.isDone());
+
+        IAuthenticationResult token = mock(IAuthenticationResult.class);
+        when(token.accessToken()).thenReturn("access-token");
+        when(token.expiresOnDate()).thenReturn(new Date(3_600_000L));
+        exchange.complete(token);
+
+        AuthenticationResult result = pending.getNow(null);
+        assertNotNull(result);
+        assertTrue(result.isSuccess());
+        assertEquals("test@example.com", result.getUserId());
+        assertEquals(3600, result.getExpiresIn());
+    }
+
+    @Test
+    public void testAuthenticateWithAuthorizationCodeAsync_FailedExchange() {
+        CompletableFuture<IAuthenticationResult> exchange = new CompletableFuture<>();
+        exchange.completeExceptionally(new IllegalStateException("invalid_grant"));
+        when(tokenService.acquireTokenByAuthorizationCode(anyString(), anyString(), anySet())).thenReturn(exchange);
+
+        // Failures complete the stage normally, with an unsuccessful result
+        AuthenticationResult result = provider
+                .authenticateWithAuthorizationCodeAsync("bad", "http://localhost/callback").toCompletableFuture().join();
+        assertFalse(result.isSuccess());
+        assertEquals("Entra External ID authentication failed: invalid_grant", result.getMessage());
+    }
+
     @Test
     public void testValidateEntraToken_Success() {
         ExternalIdTokenService.ExternalUserProfile profile =
@@ -0,0 +1,67 @@
+#!/bin/bash
+
+# Side-by-side load test of the servlet backend (Tomcat) and its reactive edition
+# (WebFlux on Netty): the same endpoint under the same load, one after the other.
+# Needs wrk (https://github.com/wg/wrk). Both run over plain HTTP so TLS does not
+# dominate the comparison.
+#
+# Usage: ./load_test_reactive.sh [path] [connections] [duration]
+#   path         endpoint to load (default /api/sso/config); set TOKEN=... to send
+#                "Authorization: Bearer $TOKEN" for protected endpoints, e.g. to measure
+#                token validation with a token from POST /login
+#   connections  concurrent connections (default 10000)
+#   duration     wrk duration per run (default 60s)
+
+PATH_UNDER_TEST=${1:-/api/sso/config}
+CONNECTIONS=${2:-10000}
+DURATION=${3:-60s}
+THREADS=${WRK_THREADS:-16}
+PORT=${PORT:-8080}
+SERVLET_JAR=backend/target/ms-entra-external-id-backend-exec.jar
+REACTIVE_JAR=backend-reactive/target/ms-entra-external-id-backend-reactive.jar
+
+if ! command -v wrk > /dev/null; then
+    echo "wrk is required"
+    exit 1
+fi
+
+# The reactive profile builds both, the servlet backend's executable jar with an "exec" classifier
+if [ ! -f "$SERVLET_JAR" ] || [ ! -f "$REACTIVE_JAR" ]; then
+    echo "Building backend and backend-reactive..."
+    mvn -q -P reactive -DskipTests install || exit 1
+fi
+
+# 10k connections need more file descriptors than the usual default
+ulimit -n 65536 2> /dev/null || echo "Warning: could not raise the open file limit"
+
+run() {
+    local name=$1
+    local jar=$2
+    shift 2
+    echo -e "\n=== $name ==="
+
+    java -jar "$jar" --server.port="$PORT" --server.ssl.enabled=false \
+         --logging.level.root=WARN "$@" > "load_test_$name.log" 2>&1 &
+    local pid=$!
+
+    for i in $(seq 1 60); do
+        curl -s -o /dev/null "http://localhost:$PORT$PATH_UNDER_TEST" && break
+        sleep 1
+    done
+
+    # Warm up, then measure
+    wrk -t"$THREADS" -c200 -d10s ${TOKEN:+-H "Authorization: Bearer $TOKEN"} "http://localhost:$PORT$PATH_UNDER_TEST" > /dev/null
+    wrk -t"$THREADS" -c"$CONNECTIONS" -d"$DURATION" --latency --timeout 10s \
+        ${TOKEN:+-H "Authorization: Bearer $TOKEN"} "http://localhost:$PORT$PATH_UNDER_TEST" \
+        | tee "load_test_$name.txt" | grep -E "Requests/sec|99%|Socket errors|Non-2xx"
+
+    kill "$pid"
+    wait "$pid" 2> /dev/null
+}
+
+run servlet "$SERVLET_JAR" \
+    --server.tomcat.max-connections=$((CONNECTIONS + 1000)) \
+    --server.tomcat.accept-count="$CONNECTIONS"
+run reactive "$REACTIVE_JAR"
+
+echo -e "\nFull wrk reports: load_test_servlet.txt, load_test_reactive.txt"
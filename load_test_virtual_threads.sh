@@ -0,0 +1,63 @@
+#!/bin/bash
+
+# Compares throughput and p99 latency of the backend with platform and with virtual
+# request threads. Needs wrk (https://github.com/wg/wrk) and Java 21 for the virtual
+# thread run; on older JVMs both runs use platform threads.
+#
+# Usage: ./load_test_virtual_threads.sh [path] [connections] [duration]
+#   path         endpoint to load (default /api/sso/config); set TOKEN=... to send
+#                "Authorization: Bearer $TOKEN" for protected endpoints
+#   connections  concurrent connections (default 10000)
+#   duration     wrk duration per run (default 60s)
+
+PATH_UNDER_TEST=${1:-/api/sso/config}
+CONNECTIONS=${2:-10000}
+DURATION=${3:-60s}
+THREADS=${WRK_THREADS:-16}
+PORT=${PORT:-8080}
+JAR=backend/target/ms-entra-external-id-backend.jar
+
+if ! command -v wrk > /dev/null; then
+    echo "wrk is required"
+    exit 1
+fi
+
+if [ ! -f "$JAR" ]; then
+    echo "Building backend..."
+    (cd backend && mvn -q -DskipTests package) || exit 1
+fi
+
+# 10k connections need more file descriptors than the usual default
+ulimit -n 65536 2> /dev/null || echo "Warning: could not raise the open file limit"
+
+run() {
+    local virtual=$1
+    echo -e "\n=== spring.threads.virtual.enabled=$virtual ==="
+
+    # Plain HTTP and no load shedding, so wrk measures the thread model rather than TLS or the shedder
+    java -jar "$JAR" --server.port="$PORT" --server.ssl.enabled=false --auth.shedding.enabled=false \
+         --spring.threads.virtual.enabled="$virtual" \
+         --server.tomcat.max-connections=$((CONNECTIONS + 1000)) \
+         --server.tomcat.accept-count=$CONNECTIONS \
+         --logging.level.root=WARN > "load_test_$virtual.log" 2>&1 &
+    local pid=$!
+
+    for i in $(seq 1 60); do
+        curl -s -o /dev/null "http://localhost:$PORT$PATH_UNDER_TEST" && break
+        sleep 1
+    done
+
+    # Warm up, then measure
+    wrk -t"$THREADS" -c200 -d10s ${TOKEN:+-H "Authorization: Bearer $TOKEN"} "http://localhost:$PORT$PATH_UNDER_TEST" > /dev/null
+    wrk -t"$THREADS" -c"$CONNECTIONS" -d"$DURATION" --latency --timeout 10s \
+        ${TOKEN:+-H "Authorization: Bearer $TOKEN"} "http://localhost:$PORT$PATH_UNDER_TEST" \
+        | tee "load_test_$virtual.txt" | grep -E "Requests/sec|99%|Socket errors|Non-2xx"
+
+    kill "$pid"
+    wait "$pid" 2> /dev/null
+}
+
+run false
+run true
+
+echo -e "\nFull wrk reports: load_test_false.txt, load_test_true.txt"
@@ -8,6 +8,8 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Default implementation that relies on Microsoft Entra External ID. The heavy
@@ -33,28 +35,50 @@ public class EntraExternalIdSSOProvider implements ISecurityProvider {
 
     /**
      * Complete authentication using an authorization code received from the
-     * client-side OIDC flow.
+     * client-side OIDC flow. Blocks until the code exchange has finished; see
+     * {@link #authenticateWithAuthorizationCodeAsync} for the non-blocking form.
      */
     public AuthenticationResult authenticateWithAuthorizationCode(String authorizationCode, String redirectUri) {
-        try {
-            CompletableFuture<IAuthenticationResult> future = externalIdTokenService
-                    .acquireTokenByAuthorizationCode(authorizationCode, redirectUri, Set.of("openid", "profile", "email"));
+        return authenticateWithAuthorizationCodeAsync(authorizationCode, redirectUri).toCompletableFuture().join();
+    }
 
-            IAuthenticationResult result = future.get();
-            if (result != null && result.accessToken() != null) {
-                ExternalIdTokenService.ExternalUserProfile profile = externalIdTokenService.getUserProfile(result.accessToken());
-                if (profile != null) {
-                    return new AuthenticationResult(true, profile.getEmail(), "Authentication successful",
-                            result.accessToken(), result.accessToken(),
-                            result.expiresOnDate().getTime() / 1000, profile.getRoles());
-                }
-            }
-            return new AuthenticationResult(false, null, "Failed to acquire token or extract user profile");
+    /**
+     * Complete authentication using an authorization code without blocking the caller.
+     * The stage completes on the thread that finishes the token exchange, always with a
+     * result: failures are reported as unsuccessful results, not exceptionally.
+     */
+    public CompletionStage<AuthenticationResult> authenticateWithAuthorizationCodeAsync(String authorizationCode,
+                                                                                        String redirectUri) {
+        try {
+            return externalIdTokenService
+                    .acquireTokenByAuthorizationCode(authorizationCode, redirectUri, Set.of("openid", "profile", "email"))
+                    .thenCompose(this::toAuthenticationResult)
+                    .exceptionally(EntraExternalIdSSOProvider::authenticationFailed);
         } catch (Exception e) {
-            return new AuthenticationResult(false, null, "Entra External ID authentication failed: " + e.getMessage());
+            return CompletableFuture.completedFuture(authenticationFailed(e));
         }
     }
 
+    private CompletionStage<AuthenticationResult> toAuthenticationResult(IAuthenticationResult result) {
+        if (result == null || result.accessToken() == null) {
+            return CompletableFuture.completedFuture(tokenNotAcquired());
+        }
+        return externalIdTokenService.getUserProfileAsync(result.accessToken()).thenApply(profile -> profile == null
+                ? tokenNotAcquired()
+                : new AuthenticationResult(true, profile.getEmail(), "Authentication successful",
+                        result.accessToken(), result.accessToken(),
+                        result.expiresOnDate().getTime() / 1000, profile.getRoles()));
+    }
+
+    private static AuthenticationResult tokenNotAcquired() {
+        return new AuthenticationResult(false, null, "Failed to acquire token or extract user profile");
+    }
+
+    private static AuthenticationResult authenticationFailed(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return new AuthenticationResult(false, null, "Entra External ID authentication failed: " + cause.getMessage());
+    }
+
     /** Validate an already issued token. */
     public AuthenticationResult validateEntraToken(String token) {
         try {
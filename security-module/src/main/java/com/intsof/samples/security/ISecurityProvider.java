@@ -1,5 +1,8 @@
 package com.intsof.samples.security;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /**
  * Interface for authentication providers in a web application.
  * Supports multiple authentication mechanisms such as Database and SSO.
@@ -15,6 +18,20 @@ public interface ISecurityProvider {
      */
     AuthenticationResult authenticate(String username, String password);
 
+    /**
+     * Authenticates a user without blocking the calling thread.
+     * Providers that wait on a remote call override this; the default runs
+     * {@link #authenticate} on the caller's thread.
+     *
+     * @param username the username or identifier
+     * @param password the password or token (may be null for SSO)
+     * @return a stage completing with the AuthenticationResult; failures complete it
+     *         with an unsuccessful result rather than exceptionally
+     */
+    default CompletionStage<AuthenticationResult> authenticateAsync(String username, String password) {
+        return CompletableFuture.completedFuture(authenticate(username, password));
+    }
+
     /**
      * Checks if the provider supports the given authentication type.
      *
@@ -4,6 +4,7 @@ import com.microsoft.aad.msal4j.IAuthenticationResult;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Abstraction over operations required by SSO providers that integrate with
@@ -22,6 +23,14 @@ public interface ExternalIdTokenService {
     /** Extract the user profile from an already issued access token. */
     ExternalUserProfile getUserProfile(String accessToken);
 
+    /**
+     * Extract the user profile without blocking the calling thread. Implementations that
+     * call a user info endpoint override this; the default calls {@link #getUserProfile}.
+     */
+    default CompletionStage<ExternalUserProfile> getUserProfileAsync(String accessToken) {
+        return CompletableFuture.completedFuture(getUserProfile(accessToken));
+    }
+
     /** Validate a raw JWT token and return validation data. */
     ExternalTokenValidationResult validateToken(String token);
 